@@ -48,6 +48,7 @@ public abstract class Common {
   public static final String UDMI_COMMIT_ENV = "UDMI_COMMIT";
   public static final String UDMI_REF_ENV = "UDMI_REF";
   public static final String UDMI_TIMEVER_ENV = "UDMI_TIMEVER";
+  public static final String UDMI_METADATA_CACHE_ENV = "UDMI_METADATA_CACHE";
   public static final String SUBTYPE_PROPERTY_KEY = "subType";
   public static final String RAWFOLDER_PROPERTY_KEY = "rawFolder";
   public static final String SUBFOLDER_PROPERTY_KEY = "subFolder";
@@ -0,0 +1,592 @@
+package com.google.udmi.util;
+
+import static java.lang.String.format;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.File;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Precompiled schema validator, covering the JSON schema keywords used by the UDMI schemas. A
+ * schema (and everything it references) is compiled once into an immutable tree of nodes, so
+ * validation is a single walk over the instance with no per-message schema resolution. Violation
+ * messages and their order match the fge engine with deep checking enabled.
+ */
+public class CompiledSchemaValidator implements SchemaValidator {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final String FILE_PREFIX = "file:";
+  private static final Set<String> UNSUPPORTED_KEYWORDS = ImmutableSet.of("not", "dependencies",
+      "additionalItems", "exclusiveMinimum", "exclusiveMaximum", "const", "contains",
+      "propertyNames", "if", "then", "else");
+  private static final Set<String> SUPPORTED_FORMATS = ImmutableSet.of("date-time");
+  private static final Pattern DATE_TIME_PATTERN = Pattern.compile(
+      "(\\d{4})-(\\d{2})-(\\d{2})[Tt](\\d{2}):(\\d{2}):(\\d{2})(\\.\\d{1,12})?"
+          + "([Zz]|[+-](\\d{2}):?(\\d{2}))");
+  private static final String DATE_TIME_FORMATS =
+      "[yyyy-MM-dd'T'HH:mm:ssZ, yyyy-MM-dd'T'HH:mm:ss.[0-9]{1,12}Z]";
+  private static final int MAX_OFFSET_HOURS = 23;
+  private static final int MAX_OFFSET_MINUTES = 59;
+
+  private final SchemaNode root;
+
+  private CompiledSchemaValidator(SchemaNode root) {
+    this.root = root;
+  }
+
+  /**
+   * Compile the given schema file, resolving file references relative to the schema root.
+   */
+  public static CompiledSchemaValidator load(File schemaFile, File schemaRoot) {
+    try {
+      return new CompiledSchemaValidator(new Compiler(schemaRoot).compile(schemaFile, ""));
+    } catch (Exception e) {
+      throw new RuntimeException("While compiling schema " + schemaFile.getAbsolutePath(), e);
+    }
+  }
+
+  @Override
+  public ValidationException validate(JsonNode instance) {
+    List<Violation> violations = new ArrayList<>();
+    root.validate(instance, null, violations);
+    return MessageValidator.fromViolations(violations.stream()
+        .filter(violation -> !MessageValidator.isIgnored(violation.message))
+        .map(violation -> MessageValidator.makeViolation(pointer(violation.path),
+            violation.message))
+        .collect(ImmutableList.toImmutableList()));
+  }
+
+  private static String pointer(Path path) {
+    if (path == null) {
+      return "";
+    }
+    return pointer(path.parent) + "/" + path.token.replace("~", "~0").replace("/", "~1");
+  }
+
+  private static String typeName(JsonNode instance) {
+    return switch (instance.getNodeType()) {
+      case ARRAY -> "array";
+      case BOOLEAN -> "boolean";
+      case NULL -> "null";
+      case NUMBER -> instance.isIntegralNumber() ? "integer" : "number";
+      case OBJECT -> "object";
+      case STRING -> "string";
+      default -> throw new IllegalArgumentException("Unknown json type " + instance.getNodeType());
+    };
+  }
+
+  private static boolean isDateTime(String value) {
+    Matcher matcher = DATE_TIME_PATTERN.matcher(value);
+    if (!matcher.matches()) {
+      return false;
+    }
+    try {
+      LocalDateTime.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)),
+          Integer.parseInt(matcher.group(3)), Integer.parseInt(matcher.group(4)),
+          Integer.parseInt(matcher.group(5)), Integer.parseInt(matcher.group(6)));
+    } catch (Exception e) {
+      return false;
+    }
+    return matcher.group(9) == null || (Integer.parseInt(matcher.group(9)) <= MAX_OFFSET_HOURS
+        && Integer.parseInt(matcher.group(10)) <= MAX_OFFSET_MINUTES);
+  }
+
+  /**
+   * Json equality where numbers compare by value (so 1 equals 1.0), as used by enum and
+   * uniqueItems.
+   */
+  private static boolean jsonEquals(JsonNode left, JsonNode right) {
+    if (left.isNumber() && right.isNumber()) {
+      return left.decimalValue().compareTo(right.decimalValue()) == 0;
+    }
+    if (left.getNodeType() != right.getNodeType() || left.size() != right.size()) {
+      return false;
+    }
+    if (left.isArray()) {
+      for (int index = 0; index < left.size(); index++) {
+        if (!jsonEquals(left.get(index), right.get(index))) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (left.isObject()) {
+      Iterator<Entry<String, JsonNode>> fields = left.fields();
+      while (fields.hasNext()) {
+        Entry<String, JsonNode> field = fields.next();
+        JsonNode other = right.get(field.getKey());
+        if (other == null || !jsonEquals(field.getValue(), other)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return left.equals(right);
+  }
+
+  private static ArrayNode toArrayNode(Collection<String> values) {
+    ArrayNode arrayNode = JsonNodeFactory.instance.arrayNode();
+    values.forEach(arrayNode::add);
+    return arrayNode;
+  }
+
+  /**
+   * Resolves and compiles schema documents, memoizing nodes by location so that shared and
+   * recursive references compile to the same node.
+   */
+  private static class Compiler {
+
+    private final File schemaRoot;
+    private final Map<File, JsonNode> documents = new HashMap<>();
+    private final Map<String, SchemaNode> compiled = new HashMap<>();
+
+    Compiler(File schemaRoot) {
+      this.schemaRoot = schemaRoot;
+    }
+
+    SchemaNode compile(File document, String pointer) {
+      String location = document.getAbsolutePath() + "#" + pointer;
+      SchemaNode existing = compiled.get(location);
+      if (existing != null) {
+        return existing;
+      }
+      JsonNode schema = getDocument(document).at(pointer);
+      if (!schema.isObject()) {
+        throw new IllegalArgumentException("Schema not found at " + location);
+      }
+      if (schema.has("$ref")) {
+        SchemaNode target = resolve(document, schema.get("$ref").asText());
+        compiled.put(location, target);
+        return target;
+      }
+      SchemaNode node = new SchemaNode();
+      compiled.put(location, node);
+      node.build(this, document, pointer, schema);
+      return node;
+    }
+
+    private SchemaNode resolve(File document, String ref) {
+      String[] parts = ref.split("#", 2);
+      String pointer = parts.length > 1 ? parts[1] : "";
+      if (parts[0].isEmpty()) {
+        return compile(document, pointer);
+      }
+      if (!parts[0].startsWith(FILE_PREFIX)) {
+        throw new IllegalArgumentException("Unsupported schema reference " + ref);
+      }
+      return compile(new File(schemaRoot, parts[0].substring(FILE_PREFIX.length())), pointer);
+    }
+
+    private JsonNode getDocument(File document) {
+      return documents.computeIfAbsent(document.getAbsoluteFile(), file -> {
+        try {
+          return OBJECT_MAPPER.readTree(file);
+        } catch (Exception e) {
+          throw new RuntimeException("While loading schema " + file.getAbsolutePath(), e);
+        }
+      });
+    }
+  }
+
+  /**
+   * One compiled schema object. Fields are only written during compilation.
+   */
+  private static class SchemaNode {
+
+    private final Map<String, SchemaNode> properties = new LinkedHashMap<>();
+    private final Map<Pattern, SchemaNode> patternProperties = new LinkedHashMap<>();
+    private final List<SchemaNode> oneOf = new ArrayList<>();
+    private final List<SchemaNode> anyOf = new ArrayList<>();
+    private final List<SchemaNode> allOf = new ArrayList<>();
+    private boolean additionalAllowed = true;
+    private SchemaNode additionalProperties;
+    private List<String> required;
+    private Set<String> types;
+    private ArrayNode allowedTypes;
+    private ArrayNode enumValues;
+    private Pattern pattern;
+    private String patternSource;
+    private boolean dateTime;
+    private JsonNode minimum;
+    private JsonNode maximum;
+    private JsonNode multipleOf;
+    private Integer minLength;
+    private Integer maxLength;
+    private Integer minProperties;
+    private Integer maxProperties;
+    private Integer minItems;
+    private Integer maxItems;
+    private boolean uniqueItems;
+    private SchemaNode items;
+
+    void build(Compiler compiler, File document, String pointer, JsonNode schema) {
+      Iterator<Entry<String, JsonNode>> fields = schema.fields();
+      while (fields.hasNext()) {
+        Entry<String, JsonNode> field = fields.next();
+        String keyword = field.getKey();
+        JsonNode value = field.getValue();
+        String keywordPointer = pointer + "/" + keyword;
+        switch (keyword) {
+          case "type" -> {
+            types = new TreeSet<>();
+            if (value.isArray()) {
+              value.forEach(type -> types.add(type.asText()));
+            } else {
+              types.add(value.asText());
+            }
+            if (types.contains("number")) {
+              types.add("integer");
+            }
+            allowedTypes = toArrayNode(types);
+          }
+          case "properties" -> value.fieldNames().forEachRemaining(name -> properties.put(name,
+              compiler.compile(document, keywordPointer + "/" + escape(name))));
+          case "patternProperties" -> value.fieldNames().forEachRemaining(
+              regex -> patternProperties.put(Pattern.compile(regex),
+                  compiler.compile(document, keywordPointer + "/" + escape(regex))));
+          case "additionalProperties" -> {
+            if (value.isBoolean()) {
+              additionalAllowed = value.booleanValue();
+            } else {
+              additionalProperties = compiler.compile(document, keywordPointer);
+            }
+          }
+          case "required" -> {
+            required = new ArrayList<>();
+            value.forEach(name -> required.add(name.asText()));
+          }
+          case "enum" -> enumValues = (ArrayNode) value;
+          case "pattern" -> {
+            patternSource = value.asText();
+            pattern = Pattern.compile(patternSource);
+          }
+          case "format" -> {
+            if (!SUPPORTED_FORMATS.contains(value.asText())) {
+              throw new IllegalArgumentException("Unsupported format " + value.asText());
+            }
+            dateTime = true;
+          }
+          case "minimum" -> minimum = value;
+          case "maximum" -> maximum = value;
+          case "multipleOf" -> multipleOf = value;
+          case "minLength" -> minLength = value.asInt();
+          case "maxLength" -> maxLength = value.asInt();
+          case "minProperties" -> minProperties = value.asInt();
+          case "maxProperties" -> maxProperties = value.asInt();
+          case "minItems" -> minItems = value.asInt();
+          case "maxItems" -> maxItems = value.asInt();
+          case "uniqueItems" -> uniqueItems = value.asBoolean();
+          case "items" -> {
+            if (!value.isObject()) {
+              throw new IllegalArgumentException("Unsupported items at " + keywordPointer);
+            }
+            items = compiler.compile(document, keywordPointer);
+          }
+          case "oneOf" -> compileAll(compiler, document, keywordPointer, value, oneOf);
+          case "anyOf" -> compileAll(compiler, document, keywordPointer, value, anyOf);
+          case "allOf" -> compileAll(compiler, document, keywordPointer, value, allOf);
+          default -> {
+            // Other keywords are annotations (ignored by fge too), but standard validation
+            // keywords that aren't implemented here would silently pass, so refuse to compile.
+            if (UNSUPPORTED_KEYWORDS.contains(keyword)) {
+              throw new IllegalArgumentException("Unsupported schema keyword " + keywordPointer);
+            }
+          }
+        }
+      }
+    }
+
+    private static void compileAll(Compiler compiler, File document, String pointer,
+        JsonNode schemas, List<SchemaNode> nodes) {
+      for (int index = 0; index < schemas.size(); index++) {
+        nodes.add(compiler.compile(document, pointer + "/" + index));
+      }
+    }
+
+    private static String escape(String token) {
+      return token.replace("~", "~0").replace("/", "~1");
+    }
+
+    /**
+     * Validate an instance, keyword checks first (in keyword order, as fge does), and then
+     * recursing into container children.
+     */
+    void validate(JsonNode instance, Path path, List<Violation> violations) {
+      checkAdditionalProperties(instance, path, violations);
+      checkAllOf(instance, path, violations);
+      checkAnyOf(instance, path, violations);
+      checkEnum(instance, path, violations);
+      checkFormat(instance, path, violations);
+      checkItemCount(instance, path, violations);
+      checkLength(instance, path, violations);
+      checkPropertyCount(instance, path, violations);
+      checkNumeric(instance, path, violations);
+      checkOneOf(instance, path, violations);
+      checkPattern(instance, path, violations);
+      checkRequired(instance, path, violations);
+      checkType(instance, path, violations);
+      checkUniqueItems(instance, path, violations);
+      if (instance.isObject()) {
+        validateFields(instance, path, violations);
+      } else if (instance.isArray() && items != null) {
+        for (int index = 0; index < instance.size(); index++) {
+          items.validate(instance.get(index), new Path(path, Integer.toString(index)),
+              violations);
+        }
+      }
+    }
+
+    private void validateFields(JsonNode instance, Path path, List<Violation> violations) {
+      for (String field : new TreeSet<>(ImmutableList.copyOf(instance.fieldNames()))) {
+        JsonNode value = instance.get(field);
+        Path fieldPath = new Path(path, field);
+        boolean matched = false;
+        SchemaNode property = properties.get(field);
+        if (property != null) {
+          matched = true;
+          property.validate(value, fieldPath, violations);
+        }
+        for (Entry<Pattern, SchemaNode> entry : patternProperties.entrySet()) {
+          if (entry.getKey().matcher(field).find()) {
+            matched = true;
+            entry.getValue().validate(value, fieldPath, violations);
+          }
+        }
+        if (!matched && additionalProperties != null) {
+          additionalProperties.validate(value, fieldPath, violations);
+        }
+      }
+    }
+
+    private boolean isAdditional(String field) {
+      return !properties.containsKey(field) && patternProperties.keySet().stream()
+          .noneMatch(regex -> regex.matcher(field).find());
+    }
+
+    private void checkAdditionalProperties(JsonNode instance, Path path,
+        List<Violation> violations) {
+      if (additionalAllowed || !instance.isObject()) {
+        return;
+      }
+      Set<String> extra = new TreeSet<>();
+      instance.fieldNames().forEachRemaining(field -> {
+        if (isAdditional(field)) {
+          extra.add(field);
+        }
+      });
+      if (!extra.isEmpty()) {
+        violations.add(new Violation(path, format(
+            "object instance has properties which are not allowed by the schema: %s",
+            toArrayNode(extra))));
+      }
+    }
+
+    private void checkAllOf(JsonNode instance, Path path, List<Violation> violations) {
+      int matched = countMatches(allOf, instance, path);
+      if (matched != allOf.size()) {
+        violations.add(new Violation(path, format(
+            "instance failed to match all required schemas (matched only %d out of %d)",
+            matched, allOf.size())));
+      }
+    }
+
+    private void checkAnyOf(JsonNode instance, Path path, List<Violation> violations) {
+      if (!anyOf.isEmpty() && countMatches(anyOf, instance, path) == 0) {
+        violations.add(new Violation(path, format(
+            "instance failed to match at least one required schema among %d", anyOf.size())));
+      }
+    }
+
+    private void checkOneOf(JsonNode instance, Path path, List<Violation> violations) {
+      if (oneOf.isEmpty()) {
+        return;
+      }
+      int matched = countMatches(oneOf, instance, path);
+      if (matched != 1) {
+        violations.add(new Violation(path, format(
+            "instance failed to match exactly one schema (matched %d out of %d)",
+            matched, oneOf.size())));
+      }
+    }
+
+    private static int countMatches(List<SchemaNode> schemas, JsonNode instance, Path path) {
+      int matched = 0;
+      for (SchemaNode schema : schemas) {
+        List<Violation> results = new ArrayList<>();
+        schema.validate(instance, path, results);
+        matched += results.isEmpty() ? 1 : 0;
+      }
+      return matched;
+    }
+
+    private void checkEnum(JsonNode instance, Path path, List<Violation> violations) {
+      if (enumValues == null) {
+        return;
+      }
+      for (JsonNode value : enumValues) {
+        if (jsonEquals(value, instance)) {
+          return;
+        }
+      }
+      violations.add(new Violation(path, format(
+          "instance value (%s) not found in enum (possible values: %s)", instance, enumValues)));
+    }
+
+    private void checkFormat(JsonNode instance, Path path, List<Violation> violations) {
+      if (dateTime && instance.isTextual() && !isDateTime(instance.textValue())) {
+        violations.add(new Violation(path, format(
+            "string \"%s\" is invalid against requested date format(s) %s",
+            instance.textValue(), DATE_TIME_FORMATS)));
+      }
+    }
+
+    private void checkItemCount(JsonNode instance, Path path, List<Violation> violations) {
+      if (!instance.isArray()) {
+        return;
+      }
+      if (maxItems != null && instance.size() > maxItems) {
+        violations.add(new Violation(path, format(
+            "array is too long: must have at most %d elements but instance has %d elements",
+            maxItems, instance.size())));
+      }
+      if (minItems != null && instance.size() < minItems) {
+        violations.add(new Violation(path, format(
+            "array is too short: must have at least %d elements but instance has %d elements",
+            minItems, instance.size())));
+      }
+    }
+
+    private void checkLength(JsonNode instance, Path path, List<Violation> violations) {
+      if (!instance.isTextual()) {
+        return;
+      }
+      String value = instance.textValue();
+      int length = value.codePointCount(0, value.length());
+      if (maxLength != null && length > maxLength) {
+        violations.add(new Violation(path, format(
+            "string \"%s\" is too long (length: %d, maximum allowed: %d)",
+            value, length, maxLength)));
+      }
+      if (minLength != null && length < minLength) {
+        violations.add(new Violation(path, format(
+            "string \"%s\" is too short (length: %d, required minimum: %d)",
+            value, length, minLength)));
+      }
+    }
+
+    private void checkPropertyCount(JsonNode instance, Path path, List<Violation> violations) {
+      if (!instance.isObject()) {
+        return;
+      }
+      if (maxProperties != null && instance.size() > maxProperties) {
+        violations.add(new Violation(path, format(
+            "object has too many properties (found %d but schema requires at most %d)",
+            instance.size(), maxProperties)));
+      }
+      if (minProperties != null && instance.size() < minProperties) {
+        violations.add(new Violation(path, format(
+            "object has too few properties (found %d but schema requires at least %d)",
+            instance.size(), minProperties)));
+      }
+    }
+
+    private void checkNumeric(JsonNode instance, Path path, List<Violation> violations) {
+      if (!instance.isNumber()) {
+        return;
+      }
+      BigDecimal value = instance.decimalValue();
+      if (maximum != null && value.compareTo(maximum.decimalValue()) > 0) {
+        violations.add(new Violation(path, format(
+            "numeric instance is greater than the required maximum (maximum: %s, found: %s)",
+            maximum, instance)));
+      }
+      if (minimum != null && value.compareTo(minimum.decimalValue()) < 0) {
+        violations.add(new Violation(path, format(
+            "numeric instance is lower than the required minimum (minimum: %s, found: %s)",
+            minimum, instance)));
+      }
+      if (multipleOf != null
+          && value.remainder(multipleOf.decimalValue()).compareTo(BigDecimal.ZERO) != 0) {
+        violations.add(new Violation(path, format(
+            "remainder of division is not zero (%s / %s)", instance, multipleOf)));
+      }
+    }
+
+    private void checkPattern(JsonNode instance, Path path, List<Violation> violations) {
+      if (pattern != null && instance.isTextual()
+          && !pattern.matcher(instance.textValue()).find()) {
+        violations.add(new Violation(path, format(
+            "ECMA 262 regex \"%s\" does not match input string \"%s\"",
+            patternSource, instance.textValue())));
+      }
+    }
+
+    private void checkRequired(JsonNode instance, Path path, List<Violation> violations) {
+      if (required == null || !instance.isObject()) {
+        return;
+      }
+      Set<String> missing = new TreeSet<>();
+      required.stream().filter(name -> !instance.has(name)).forEach(missing::add);
+      if (!missing.isEmpty()) {
+        violations.add(new Violation(path, format(
+            "object has missing required properties (%s)", toArrayNode(missing))));
+      }
+    }
+
+    private void checkType(JsonNode instance, Path path, List<Violation> violations) {
+      if (types == null) {
+        return;
+      }
+      String type = typeName(instance);
+      if (types.contains(type)) {
+        return;
+      }
+      violations.add(new Violation(path, format(
+          "instance type (%s) does not match any allowed primitive type (allowed: %s)",
+          type, allowedTypes)));
+    }
+
+    private void checkUniqueItems(JsonNode instance, Path path, List<Violation> violations) {
+      if (!uniqueItems || !instance.isArray()) {
+        return;
+      }
+      for (int index = 0; index < instance.size(); index++) {
+        for (int other = index + 1; other < instance.size(); other++) {
+          if (jsonEquals(instance.get(index), instance.get(other))) {
+            violations.add(new Violation(path, "array must not contain duplicate elements"));
+            return;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Instance location, only turned into a json pointer string when there's a violation.
+   */
+  private record Path(Path parent, String token) {
+
+  }
+
+  private record Violation(Path path, String message) {
+
+  }
+}
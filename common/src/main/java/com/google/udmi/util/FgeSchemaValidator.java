@@ -0,0 +1,75 @@
+package com.google.udmi.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfiguration;
+import com.github.fge.jsonschema.core.load.download.URIDownloader;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+
+/**
+ * Schema validation using the fge json-schema-validator library (deep check enabled).
+ */
+public class FgeSchemaValidator implements SchemaValidator {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final String FILE_URL_PREFIX = "file:";
+
+  private final JsonSchema schema;
+
+  private FgeSchemaValidator(JsonSchema schema) {
+    this.schema = schema;
+  }
+
+  /**
+   * Load the given schema file, resolving file references relative to the schema root.
+   */
+  public static FgeSchemaValidator load(File schemaFile, File schemaRoot) {
+    try (InputStream schemaStream = Files.newInputStream(schemaFile.toPath())) {
+      return new FgeSchemaValidator(JsonSchemaFactory.newBuilder()
+          .setLoadingConfiguration(
+              LoadingConfiguration.newBuilder()
+                  .addScheme("file", new RelativeDownloader(schemaRoot))
+                  .freeze())
+          .freeze()
+          .getJsonSchema(OBJECT_MAPPER.readTree(schemaStream)));
+    } catch (Exception e) {
+      throw new RuntimeException("While loading schema " + schemaFile.getAbsolutePath(), e);
+    }
+  }
+
+  @Override
+  public ValidationException validate(JsonNode instance) {
+    try {
+      ProcessingReport report = schema.validate(instance, true);
+      return report.isSuccess() ? null : MessageValidator.fromProcessingReport(report);
+    } catch (ProcessingException e) {
+      return new ValidationException(e.getMessage());
+    }
+  }
+
+  record RelativeDownloader(File schemaRoot) implements URIDownloader {
+
+    @Override
+    public InputStream fetch(URI source) {
+      String url = source.toString();
+      try {
+        if (!url.startsWith(FILE_URL_PREFIX)) {
+          throw new IllegalStateException("Expected path to start with " + FILE_URL_PREFIX);
+        }
+        String newUrl =
+            FILE_URL_PREFIX + new File(schemaRoot, url.substring(FILE_URL_PREFIX.length()));
+        return (InputStream) (new URL(newUrl)).getContent();
+      } catch (Exception e) {
+        throw new RuntimeException("While loading URL " + url, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package com.google.udmi.util;
+
+import static com.google.udmi.util.CleanDateFormat.cleanDate;
+import static com.google.udmi.util.GeneralUtils.ifNotNullGet;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Field-wise deep copy for the generated udmi.schema classes. The result is equal to that of the
+ * json round-trip copy in GeneralUtils: null fields are skipped so field defaults are preserved,
+ * dates are truncated to whole seconds, and untyped (Object) values, including untyped collection
+ * entries, are still round-tripped through json so they come back as plain maps and lists. The
+ * copy plan for each class is computed once and then cached.
+ */
+public abstract class FieldCopier {
+
+  private static final String SCHEMA_PACKAGE = "udmi.schema";
+  private static final Map<Class<?>, Optional<CopyPlan>> COPY_PLANS = new ConcurrentHashMap<>();
+
+  /**
+   * Check if the given class can be copied field-wise (else needs a json round-trip).
+   */
+  public static boolean canCopy(Class<?> clazz) {
+    return getCopyPlan(clazz).isPresent();
+  }
+
+  /**
+   * Make a field-wise deep copy of the given schema object.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T copy(T object) {
+    if (object == null) {
+      return null;
+    }
+    Class<?> clazz = object.getClass();
+    CopyPlan plan = getCopyPlan(clazz).orElseThrow(
+        () -> new IllegalArgumentException("Not field-copyable " + clazz.getName()));
+    try {
+      T copy = (T) plan.constructor.newInstance();
+      for (Field field : plan.fields) {
+        Object value = field.get(object);
+        if (value != null) {
+          field.set(copy, copyValue(value, field.getGenericType()));
+        }
+      }
+      return copy;
+    } catch (Exception e) {
+      throw new RuntimeException("While making field copy of " + clazz.getName(), e);
+    }
+  }
+
+  private static Optional<CopyPlan> getCopyPlan(Class<?> clazz) {
+    return COPY_PLANS.computeIfAbsent(clazz, FieldCopier::makeCopyPlan);
+  }
+
+  private static Optional<CopyPlan> makeCopyPlan(Class<?> clazz) {
+    if (!SCHEMA_PACKAGE.equals(clazz.getPackageName()) || clazz.isEnum()) {
+      return Optional.empty();
+    }
+    try {
+      Constructor<?> constructor = clazz.getConstructor();
+      List<Field> fields = new ArrayList<>();
+      for (Class<?> current = clazz; current != Object.class; current = current.getSuperclass()) {
+        for (Field field : current.getDeclaredFields()) {
+          int modifiers = field.getModifiers();
+          if (Modifier.isStatic(modifiers)) {
+            continue;
+          }
+          // Anything not a simple public data field is beyond the scope of a field-wise copy.
+          if (!Modifier.isPublic(modifiers) || Modifier.isFinal(modifiers)) {
+            return Optional.empty();
+          }
+          fields.add(field);
+        }
+      }
+      return Optional.of(new CopyPlan(constructor, fields));
+    } catch (NoSuchMethodException e) {
+      return Optional.empty();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Object copyValue(Object value, Type type) {
+    if (type == Object.class) {
+      return GeneralUtils.jsonCopy(value, Object.class);
+    } else if (value instanceof String || value instanceof Number || value instanceof Boolean
+        || value instanceof Enum) {
+      return value;
+    } else if (value instanceof Date date) {
+      return cleanDate(new Date(date.getTime()));
+    } else if (canCopy(value.getClass())) {
+      return copy(value);
+    } else if (value instanceof Map<?, ?> map) {
+      Type entryType = typeArgument(type, 1);
+      Map<Object, Object> copy = map instanceof SortedMap<?, ?> sorted
+          ? new TreeMap<>((Comparator<Object>) sorted.comparator()) : new LinkedHashMap<>();
+      map.forEach((key, entry) -> copy.put(key,
+          ifNotNullGet(entry, raw -> copyValue(raw, entryType))));
+      return copy;
+    } else if (value instanceof List<?> || value instanceof Set<?>) {
+      Type itemType = typeArgument(type, 0);
+      Collection<Object> copy = value instanceof SortedSet<?> sorted
+          ? new TreeSet<>((Comparator<Object>) sorted.comparator())
+          : value instanceof Set<?> ? new LinkedHashSet<>() : new ArrayList<>();
+      ((Collection<?>) value).forEach(
+          item -> copy.add(ifNotNullGet(item, raw -> copyValue(raw, itemType))));
+      return copy;
+    }
+    return GeneralUtils.deepCopy(value);
+  }
+
+  /**
+   * Get the declared type argument for a collection, or Object if it's raw or not a plain type.
+   */
+  private static Type typeArgument(Type type, int index) {
+    if (type instanceof ParameterizedType parameterized) {
+      Type argument = parameterized.getActualTypeArguments()[index];
+      if (argument instanceof Class<?> || argument instanceof ParameterizedType) {
+        return argument;
+      }
+    }
+    return Object.class;
+  }
+
+  private record CopyPlan(Constructor<?> constructor, List<Field> fields) {
+
+  }
+}
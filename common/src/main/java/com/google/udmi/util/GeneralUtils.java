@@ -46,13 +46,16 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -144,15 +147,44 @@ public class GeneralUtils {
       return null;
     }
     Class<?> targetClass = object.getClass();
+    if (FieldCopier.canCopy(targetClass)) {
+      return FieldCopier.copy(object);
+    }
+    @SuppressWarnings("unchecked")
+    T t = (T) jsonCopy(object, targetClass);
+    return t;
+  }
+
+  /**
+   * Copy an object by a json round-trip, converting it to the given target class.
+   */
+  static <T> T jsonCopy(Object object, Class<T> targetClass) {
     try {
-      @SuppressWarnings("unchecked")
-      T t = (T) OBJECT_MAPPER.readValue(toJsonString(object), targetClass);
-      return t;
+      return OBJECT_MAPPER.readValue(toJsonString(object), targetClass);
     } catch (Exception e) {
       throw new RuntimeException("While making deep copy of " + targetClass.getName(), e);
     }
   }
 
+  /**
+   * Structural copy of a json-like tree of maps and lists (much cheaper than a json round-trip).
+   * Sorted maps stay sorted, and leaf values are shared since they are immutable.
+   */
+  @SuppressWarnings("unchecked")
+  public static Object copyTree(Object value) {
+    if (value instanceof Map<?, ?> map) {
+      Map<Object, Object> copy = map instanceof SortedMap<?, ?> sorted
+          ? new TreeMap<>((Comparator<Object>) sorted.comparator()) : new LinkedHashMap<>();
+      map.forEach((key, item) -> copy.put(key, copyTree(item)));
+      return copy;
+    } else if (value instanceof List<?> list) {
+      List<Object> copy = new ArrayList<>(list.size());
+      list.forEach(item -> copy.add(copyTree(item)));
+      return copy;
+    }
+    return value;
+  }
+
   public static String encodeBase64(String payload) {
     return ifNotNullGet(payload, raw -> encodeBase64(raw.getBytes()));
   }
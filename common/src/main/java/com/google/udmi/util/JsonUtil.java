@@ -165,6 +165,37 @@ public abstract class JsonUtil {
     }
   }
 
+  /**
+   * Convert a generic object to a json tree, without an intermediate string representation.
+   */
+  public static JsonNode toTree(Object message) {
+    return message == null ? null : OBJECT_MAPPER.valueToTree(message);
+  }
+
+  /**
+   * Bind a json tree to a specific class.
+   */
+  public static <T> T fromTree(Class<T> targetClass, JsonNode tree) {
+    requireNonNull(targetClass, "target class is null");
+    try {
+      return tree == null ? null : OBJECT_MAPPER.treeToValue(tree, targetClass);
+    } catch (Exception e) {
+      throw new RuntimeException("While converting tree to " + targetClass.getName(), e);
+    }
+  }
+
+  /**
+   * Bind a json tree to a specific class with strict field mappings.
+   */
+  public static <T> T fromTreeStrict(Class<T> targetClass, JsonNode tree) {
+    requireNonNull(targetClass, "target class is null");
+    try {
+      return tree == null ? null : STRICT_MAPPER.treeToValue(tree, targetClass);
+    } catch (Exception e) {
+      throw new RuntimeException("While converting tree/strict to " + targetClass.getName(), e);
+    }
+  }
+
   /**
    * Get a Date object parsed from a string representation.
    *
@@ -239,7 +270,11 @@ public abstract class JsonUtil {
   }
 
   public static String currentIsoMs() {
-    return ISO8601Utils.format(new Date(), true);
+    return isoConvertMs(new Date());
+  }
+
+  public static String isoConvertMs(Date timestamp) {
+    return ISO8601Utils.format(timestamp, true);
   }
 
   /**
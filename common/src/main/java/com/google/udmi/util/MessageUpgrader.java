@@ -16,6 +16,7 @@ import com.fasterxml.jackson.databind.node.TextNode;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -38,13 +39,15 @@ public class MessageUpgrader {
   public static final String DEVICE_TYPE = "DEVICE";
   public static final String PROXIED_TYPE = Resource_type.PROXIED.value();
   public static final String DIRECT_TYPE = Resource_type.DIRECT.value();
+  private static final int LATEST_MINOR = SchemaVersion.CURRENT.value() / 100 % 100;
+  private static final int LATEST_PATCH = SchemaVersion.CURRENT.value() % 100;
   private final ObjectNode message;
-  private final JsonNode original;
   private final String schemaName;
   private final int major;
   private final String originalVersion;
   private int patch;
   private int minor;
+  private int changes;
 
   /**
    * Create basic container for message upgrading.
@@ -61,7 +64,6 @@ public class MessageUpgrader {
 
     this.message = (ObjectNode) message;
     this.schemaName = schemaName;
-    this.original = message.deepCopy();
 
     JsonNode version = message.get(VERSION_KEY);
     originalVersion = (version == null ? "1" : convertVersion(version.asText()));
@@ -95,7 +97,7 @@ public class MessageUpgrader {
   }
 
   public boolean wasUpgraded() {
-    return !original.equals(message);
+    return changes > 0;
   }
 
   /**
@@ -123,6 +125,12 @@ public class MessageUpgrader {
       throw new IllegalArgumentException("Starting major version " + major);
     }
 
+    // Fast path for current messages (the common case), which don't need any work at all.
+    if (!forceUpgrade && (minor > LATEST_MINOR
+        || (minor == LATEST_MINOR && patch >= LATEST_PATCH))) {
+      return message;
+    }
+
     boolean upgraded = false;
 
     if (forceUpgrade || minor < 0) {
@@ -137,10 +145,7 @@ public class MessageUpgrader {
     }
 
     if (minor == 3 && patch < 14) {
-      JsonNode before = message.deepCopy();
-      upgradeTo_1_3_14();
-      upgraded |= !before.equals(message);
-      patch = 14;
+      upgraded |= didMessageChange(this::upgradeTo_1_3_14, patchUpdater(14));
     }
 
     if (minor < 4) {
@@ -149,18 +154,14 @@ public class MessageUpgrader {
     }
 
     if (minor == 4 && patch < 1) {
-      JsonNode before = message.deepCopy();
-      upgradeTo_1_4_1();
-      upgraded |= !before.equals(message);
-      patch = 1;
+      upgraded |= didMessageChange(this::upgradeTo_1_4_1, patchUpdater(1));
     }
 
     if (minor < 5) {
-      JsonNode before = message.deepCopy();
-      upgradeTo_1_5_0();
-      upgraded |= !before.equals(message);
-      patch = 0;
-      minor = 5;
+      upgraded |= didMessageChange(this::upgradeTo_1_5_0, () -> {
+        patch = 0;
+        minor = 5;
+      });
     }
 
     if (minor == 5) {
@@ -177,6 +178,7 @@ public class MessageUpgrader {
     if (upgraded && message.has(VERSION_KEY) && !currentVersion.equals(originalVersion)) {
       message.put(UPGRADED_FROM, originalVersion);
       message.put(VERSION_KEY, currentVersion);
+      changes++;
     }
 
     return message;
@@ -186,11 +188,19 @@ public class MessageUpgrader {
     return () -> patch = newPatch;
   }
 
+  /**
+   * Run an upgrade step, returning true if it changed the message. Rather than comparing copies of
+   * the message, each step is responsible for calling markChanged() when it modifies anything.
+   */
   private boolean didMessageChange(Runnable updater, Runnable postfix) {
-    JsonNode before = message.deepCopy();
+    int before = changes;
     updater.run();
     postfix.run();
-    return !before.equals(message);
+    return changes != before;
+  }
+
+  private void markChanged() {
+    changes++;
   }
 
   private void upgradeTo_1_3_14() {
@@ -223,6 +233,7 @@ public class MessageUpgrader {
     ObjectNode subsystem = (ObjectNode) localnet.remove("subsystem");
     if (subsystem != null) {
       localnet.set("families", subsystem);
+      markChanged();
     }
   }
 
@@ -247,6 +258,7 @@ public class MessageUpgrader {
     if (tags == null) {
       return;
     }
+    markChanged();
 
     if (!message.has("system")) {
       message.put("system", new ObjectNode(NODE_FACTORY));
@@ -261,7 +273,10 @@ public class MessageUpgrader {
   }
 
   private void upgradeTo_1_5_2_events_system() {
-    ifNotNullThen(message.remove("event_count"), node -> message.put("event_no", node));
+    ifNotNullThen(message.remove("event_count"), node -> {
+      message.put("event_no", node);
+      markChanged();
+    });
   }
 
   private void upgradeTo_1_5_3() {
@@ -302,6 +317,7 @@ public class MessageUpgrader {
       if (isNumericUnitId(addr)) {
         modbus.remove("addr");
         modbus.put("unitid", addr);
+        markChanged();
       }
     }
   }
@@ -314,6 +330,7 @@ public class MessageUpgrader {
         if (isNumericUnitId(addr)) {
           target.remove("addr");
           target.put("unitid", addr);
+          markChanged();
         }
       }
     });
@@ -350,6 +367,7 @@ public class MessageUpgrader {
             String newRef = matcher.group(1) + "/" + matcher.group(2)
                 + (matcher.group(3) != null ? matcher.group(3) : "");
             pointObj.put("ref", newRef);
+            markChanged();
           }
         }
         if (pointObj.has("url")) {
@@ -359,6 +377,7 @@ public class MessageUpgrader {
             String newUrl = matcher.group(1) + "/" + matcher.group(2)
                 + (matcher.group(3) != null ? matcher.group(3) : "");
             pointObj.put("url", newUrl);
+            markChanged();
           }
         }
       }
@@ -374,6 +393,7 @@ public class MessageUpgrader {
     AtomicReference<String> resourceType = new AtomicReference<>(orig);
 
     ifNotNullThen(cloud.remove("connection_type"), node -> {
+      markChanged();
       String connectionType = node.textValue();
       boolean legacyProxy =
           PROXIED_TYPE.equals(connectionType) && DEVICE_TYPE.equals(resourceType.get());
@@ -386,6 +406,7 @@ public class MessageUpgrader {
     });
     ifTrueThen(DEVICE_TYPE.equals(resourceType.get()), () -> resourceType.set(DIRECT_TYPE));
     ifNotNullThen(resourceType.get(), endResult -> cloud.put("resource_type", endResult));
+    ifTrueThen(!Objects.equals(orig, resourceType.get()), this::markChanged);
   }
 
   private void upgradeTo_1_5_0() {
@@ -406,6 +427,7 @@ public class MessageUpgrader {
           if (category.startsWith("system.network")) {
             String newCategory = category.replace("system.network", "localnet.network");
             ((ObjectNode) entry).put("category", newCategory);
+            markChanged();
           }
         }
       }
@@ -416,6 +438,7 @@ public class MessageUpgrader {
     ObjectNode gateway = (ObjectNode) message.get("gateway");
     if (gateway != null && gateway.has("devices")) {
       gateway.remove("devices");
+      markChanged();
     }
   }
 
@@ -433,11 +456,13 @@ public class MessageUpgrader {
       if (!family.has("addr")) {
         TextNode id = (TextNode) family.remove("id");
         family.put("addr", id);
+        markChanged();
       }
     });
 
     if (!message.has("gateway")) {
       message.put("gateway", new ObjectNode(NODE_FACTORY));
+      markChanged();
     }
 
     ObjectNode gateway = (ObjectNode) message.get("gateway");
@@ -451,6 +476,7 @@ public class MessageUpgrader {
     // that gateways which use the localnet value use either "vendor" or "bacnet"
     ObjectNode gatewayTarget = new ObjectNode(NODE_FACTORY);
     gateway.put("target", gatewayTarget);
+    markChanged();
 
     final String targetFamily;
     if (gateway.has("family")) {
@@ -481,6 +507,7 @@ public class MessageUpgrader {
       ObjectNode operation = new ObjectNode(NODE_FACTORY);
       system.set("operation", operation);
       operation.set("operational", operational);
+      markChanged();
     }
   }
 
@@ -492,6 +519,7 @@ public class MessageUpgrader {
 
   private void upgradeStatuses(ObjectNode system) {
     JsonNode statuses = system.remove("statuses");
+    ifNotNullThen(statuses, removed -> markChanged());
     if (statuses != null && !system.has("status") && statuses.size() != 0) {
       system.set("status", statuses.get(0));
     }
@@ -500,6 +528,7 @@ public class MessageUpgrader {
   private void upgradeFirmware(ObjectNode system) {
     JsonNode firmware = system.remove("firmware");
     if (firmware != null) {
+      markChanged();
       JsonNode version = ((ObjectNode) firmware).remove("version");
       if (version != null && !system.has("software")) {
         ObjectNode softwareNode = new ObjectNode(NODE_FACTORY);
@@ -522,6 +551,7 @@ public class MessageUpgrader {
 
   private void upgradeMakeModel(ObjectNode system) {
     JsonNode makeModel = system.remove("make_model");
+    ifNotNullThen(makeModel, removed -> markChanged());
     if (makeModel != null && !system.has("hardware")) {
       ObjectNode hardwareNode = new ObjectNode(NODE_FACTORY);
       hardwareNode.put("model", makeModel.asText());
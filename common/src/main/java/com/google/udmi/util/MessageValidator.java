@@ -4,24 +4,15 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.lang.String.format;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.fge.jsonschema.core.exceptions.ProcessingException;
-import com.github.fge.jsonschema.core.load.configuration.LoadingConfiguration;
-import com.github.fge.jsonschema.core.load.download.URIDownloader;
 import com.github.fge.jsonschema.core.report.LogLevel;
 import com.github.fge.jsonschema.core.report.ProcessingMessage;
 import com.github.fge.jsonschema.core.report.ProcessingReport;
-import com.github.fge.jsonschema.main.JsonSchema;
-import com.github.fge.jsonschema.main.JsonSchemaFactory;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
+import com.google.udmi.util.SchemaValidator.Engine;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URI;
-import java.net.URL;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -39,8 +30,9 @@ public class MessageValidator {
   private static final List<Pattern> IGNORE_PATTERNS = IGNORE_LIST.stream().map(Pattern::compile)
       .toList();
 
-  private final Map<String, JsonSchema> schemaMap = Maps.newConcurrentMap();
+  private final Map<String, SchemaValidator> schemaMap = Maps.newConcurrentMap();
   private final File schemaRoot;
+  private final Engine engine;
 
   /**
    * Create a message validator for the given schema root path.
@@ -48,6 +40,17 @@ public class MessageValidator {
    * @param schemaRootPath path to schema
    */
   public MessageValidator(String schemaRootPath) {
+    this(schemaRootPath, Engine.FGE);
+  }
+
+  /**
+   * Create a message validator for the given schema root path, using the given engine.
+   *
+   * @param schemaRootPath path to schema
+   * @param engine         schema validation engine
+   */
+  public MessageValidator(String schemaRootPath, Engine engine) {
+    this.engine = engine;
     schemaRoot = new File(schemaRootPath);
     if (!schemaRoot.isDirectory()) {
       throw new IllegalStateException(
@@ -68,13 +71,39 @@ public class MessageValidator {
             .filter(MessageValidator::errorOrWorse)
             .filter(MessageValidator::notOnIgnoreList)
             .map(MessageValidator::convertMessage).collect(toImmutableList());
+    return fromViolations(causingExceptions);
+  }
+
+  /**
+   * Combine individual schema violations into a single exception.
+   *
+   * @param causingExceptions violations, as created by {@link #makeViolation}
+   * @return Combined exception, or null if there are no violations.
+   */
+  public static ValidationException fromViolations(
+      ImmutableList<ValidationException> causingExceptions) {
     return causingExceptions.isEmpty() ? null : new ValidationException(
         format("%d schema violations found", causingExceptions.size()), causingExceptions);
   }
 
+  /**
+   * Make a single schema violation for the given instance pointer and message.
+   */
+  public static ValidationException makeViolation(String pointer, String message) {
+    String prefix =
+        com.google.api.client.util.Strings.isNullOrEmpty(pointer) ? "" : (pointer + ": ");
+    return new ValidationException(prefix + message);
+  }
+
+  /**
+   * Check if a schema violation message should be ignored.
+   */
+  public static boolean isIgnored(String message) {
+    return IGNORE_PATTERNS.stream().anyMatch(p -> p.matcher(message).matches());
+  }
+
   private static boolean notOnIgnoreList(ProcessingMessage processingMessage) {
-    return IGNORE_PATTERNS.stream()
-        .noneMatch(p -> p.matcher(processingMessage.getMessage()).matches());
+    return !isIgnored(processingMessage.getMessage());
   }
 
   private static boolean errorOrWorse(ProcessingMessage processingMessage) {
@@ -83,9 +112,7 @@ public class MessageValidator {
 
   private static ValidationException convertMessage(ProcessingMessage processingMessage) {
     String pointer = processingMessage.asJson().get("instance").get("pointer").asText();
-    String prefix =
-        com.google.api.client.util.Strings.isNullOrEmpty(pointer) ? "" : (pointer + ": ");
-    return new ValidationException(prefix + processingMessage.getMessage());
+    return makeViolation(pointer, processingMessage.getMessage());
   }
 
   /**
@@ -96,56 +123,16 @@ public class MessageValidator {
    * @return list of validation results
    */
   public List<String> validateMessage(String subFolder, String data) {
-    JsonSchema schema = schemaMap.computeIfAbsent(subFolder, this::getSchema);
+    SchemaValidator schema = schemaMap.computeIfAbsent(subFolder, this::getSchema);
     try {
-      ProcessingReport report = schema.validate(OBJECT_MAPPER.readTree(data), true);
-      if (report.isSuccess()) {
-        return ImmutableList.of();
-      }
-      throw fromProcessingReport(report);
-    } catch (ValidationException e) {
-      return e.getAllMessages();
-    } catch (IOException | ProcessingException ex) {
+      ValidationException violations = schema.validate(OBJECT_MAPPER.readTree(data));
+      return violations == null ? ImmutableList.of() : violations.getAllMessages();
+    } catch (IOException ex) {
       return ImmutableList.of(ex.getMessage());
     }
   }
 
-  private JsonSchema getSchema(String subFolder) {
-    return getSchema(new File(schemaRoot, subFolder + ".json"));
-  }
-
-  private JsonSchema getSchema(File schemaFile) {
-    try (InputStream schemaStream = new FileInputStream(schemaFile)) {
-      JsonNode rawSchema = OBJECT_MAPPER.readTree(schemaStream);
-      return JsonSchemaFactory.newBuilder()
-          .setLoadingConfiguration(
-              LoadingConfiguration.newBuilder()
-                  .addScheme("file", new RelativeDownloader())
-                  .freeze())
-          .freeze()
-          .getJsonSchema(rawSchema);
-    } catch (Exception e) {
-      throw new RuntimeException("While loading schema " + schemaFile.getAbsolutePath(), e);
-    }
-  }
-
-  class RelativeDownloader implements URIDownloader {
-
-    public static final String FILE_URL_PREFIX = "file:";
-
-    @Override
-    public InputStream fetch(URI source) {
-      String url = source.toString();
-      try {
-        if (!url.startsWith(FILE_URL_PREFIX)) {
-          throw new IllegalStateException("Expected path to start with " + FILE_URL_PREFIX);
-        }
-        String newUrl =
-            FILE_URL_PREFIX + new File(schemaRoot, url.substring(FILE_URL_PREFIX.length()));
-        return (InputStream) (new URL(newUrl)).getContent();
-      } catch (Exception e) {
-        throw new RuntimeException("While loading URL " + url, e);
-      }
-    }
+  private SchemaValidator getSchema(String subFolder) {
+    return SchemaValidator.load(engine, new File(schemaRoot, subFolder + ".json"), schemaRoot);
   }
 }
@@ -0,0 +1,98 @@
+package com.google.udmi.util;
+
+import static com.google.udmi.util.GeneralUtils.catchToNull;
+import static com.google.udmi.util.GeneralUtils.getFileBytes;
+import static com.google.udmi.util.GeneralUtils.sha256;
+import static com.google.udmi.util.JsonUtil.OBJECT_MAPPER;
+import static java.util.Optional.ofNullable;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * On-disk cache of merged and upgraded device metadata. Entries are keyed by the source file's
+ * modification time and size, falling back to a content hash if those have changed, and the whole
+ * cache is invalidated if the site defaults or templates (the base hash) change.
+ */
+class MetadataCache {
+
+  private final File cacheFile;
+  private final String baseHash;
+  private final Map<String, CacheEntry> entries = new ConcurrentHashMap<>();
+  private volatile boolean dirty;
+
+  MetadataCache(File cacheFile, String baseHash) {
+    this.cacheFile = cacheFile;
+    this.baseHash = baseHash;
+    CacheStore store = catchToNull(() -> JsonUtil.loadFile(CacheStore.class, cacheFile));
+    if (store != null && baseHash.equals(store.base_hash) && store.devices != null) {
+      entries.putAll(store.devices);
+    }
+  }
+
+  /**
+   * Get the cached metadata object for a device, or use the loader (and cache the result) if the
+   * source file has changed since it was cached.
+   */
+  ObjectNode get(String deviceId, File sourceFile, Supplier<ObjectNode> loader) {
+    long modified = sourceFile.lastModified();
+    long length = sourceFile.length();
+    CacheEntry entry = entries.get(deviceId);
+    if (entry != null && entry.modified == modified && entry.length == length) {
+      return entry.metadata;
+    }
+    String hash = sha256(getFileBytes(sourceFile));
+    ObjectNode metadata = entry != null && hash.equals(entry.hash) ? entry.metadata : loader.get();
+    CacheEntry updated = new CacheEntry();
+    updated.modified = modified;
+    updated.length = length;
+    updated.hash = hash;
+    updated.metadata = metadata;
+    entries.put(deviceId, updated);
+    dirty = true;
+    return metadata;
+  }
+
+  /**
+   * Write out the cache, if anything has changed since it was loaded.
+   */
+  synchronized void save() {
+    if (!dirty) {
+      return;
+    }
+    CacheStore store = new CacheStore();
+    store.base_hash = baseHash;
+    store.devices = new TreeMap<>(entries);
+    ofNullable(cacheFile.getParentFile()).ifPresent(File::mkdirs);
+    try {
+      OBJECT_MAPPER.writeValue(cacheFile, store);
+      dirty = false;
+    } catch (Exception e) {
+      throw new RuntimeException("While writing " + cacheFile.getAbsolutePath(), e);
+    }
+  }
+
+  /**
+   * Cached metadata for a single device.
+   */
+  static class CacheEntry {
+
+    public long modified;
+    public long length;
+    public String hash;
+    public ObjectNode metadata;
+  }
+
+  /**
+   * On-disk representation of the cache.
+   */
+  static class CacheStore {
+
+    public String base_hash;
+    public Map<String, CacheEntry> devices;
+  }
+}
@@ -0,0 +1,38 @@
+package com.google.udmi.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.File;
+
+/**
+ * Pluggable JSON schema validation engine. Implementations are thread-safe, so a loaded schema
+ * can be shared across validation threads.
+ */
+public interface SchemaValidator {
+
+  /**
+   * Validate an instance against this schema.
+   *
+   * @param instance message to validate
+   * @return exception detailing all the schema violations, or null if the instance is valid
+   */
+  ValidationException validate(JsonNode instance);
+
+  /**
+   * Load a schema file using the given engine. File references in the schema are resolved
+   * relative to the schema root directory.
+   */
+  static SchemaValidator load(Engine engine, File schemaFile, File schemaRoot) {
+    return switch (engine) {
+      case FGE -> FgeSchemaValidator.load(schemaFile, schemaRoot);
+      case COMPILED -> CompiledSchemaValidator.load(schemaFile, schemaRoot);
+    };
+  }
+
+  /**
+   * Available validation engines.
+   */
+  enum Engine {
+    FGE,
+    COMPILED
+  }
+}
@@ -5,11 +5,13 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.udmi.util.Common.DEFAULT_REGION;
 import static com.google.udmi.util.Common.NO_SITE;
 import static com.google.udmi.util.Common.UDMI_COMMIT_ENV;
+import static com.google.udmi.util.Common.UDMI_METADATA_CACHE_ENV;
 import static com.google.udmi.util.Common.UDMI_REF_ENV;
 import static com.google.udmi.util.Common.UDMI_TIMEVER_ENV;
 import static com.google.udmi.util.Common.UDMI_VERSION_ENV;
 import static com.google.udmi.util.Common.getNamespacePrefix;
 import static com.google.udmi.util.GeneralUtils.OBJECT_MAPPER_RAW;
+import static com.google.udmi.util.GeneralUtils.copyTree;
 import static com.google.udmi.util.GeneralUtils.deepCopy;
 import static com.google.udmi.util.GeneralUtils.friendlyStackTrace;
 import static com.google.udmi.util.GeneralUtils.getFileBytes;
@@ -17,6 +19,7 @@ import static com.google.udmi.util.GeneralUtils.ifNotNullGet;
 import static com.google.udmi.util.GeneralUtils.ifNotNullGetElse;
 import static com.google.udmi.util.GeneralUtils.ifNotNullThen;
 import static com.google.udmi.util.GeneralUtils.ifNullThen;
+import static com.google.udmi.util.GeneralUtils.ifTrueThen;
 import static com.google.udmi.util.GeneralUtils.isTrue;
 import static com.google.udmi.util.GeneralUtils.removeStringArg;
 import static com.google.udmi.util.GeneralUtils.sha256;
@@ -48,12 +51,17 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -70,6 +78,7 @@ import udmi.schema.GatewayModel;
 import udmi.schema.IotAccess.IotProvider;
 import udmi.schema.Metadata;
 import udmi.schema.SiteMetadata;
+import udmi.util.SchemaVersion;
 
 public class SiteModel {
 
@@ -115,6 +124,10 @@ public class SiteModel {
       "README.md"
   );
   private static final String TEMPLATE_KEY = "extend";
+  private static final String METADATA_CACHE_FILE = "out/metadata_cache.json";
+  // Cached entries hold upgraded metadata, so are only valid for the current schema version.
+  private static final String METADATA_CACHE_VERSION = "1-" + SchemaVersion.CURRENT.key();
+  private static final int LOADER_THREADS = Runtime.getRuntime().availableProcessors();
 
   private final String sitePath;
   private final Map<String, Object> siteDefaults;
@@ -128,6 +141,8 @@ public class SiteModel {
   private boolean warningsAsErrors;
   private SiteMetadata siteMetadata;
   private final Map<String, Map<String, Object>> allTemplates;
+  private final Map<String, Map<String, Object>> templateBases = new ConcurrentHashMap<>();
+  private MetadataCache metadataCache;
 
   public SiteModel(String specPath) {
     this(specPath, null, null);
@@ -153,6 +168,8 @@ public class SiteModel {
     loadVersionInfo(exeConfig);
     siteDefaults = ofNullable(asMap(getSiteFile(SITE_DEFAULTS_FILE))).orElseGet(HashMap::new);
     allTemplates = loadAllTemplates();
+    ifTrueThen(Boolean.parseBoolean(System.getenv(UDMI_METADATA_CACHE_ENV)),
+        () -> enableMetadataCache(new File(sitePath, METADATA_CACHE_FILE)));
     if (overrides != null && overrides.project_id != null) {
       exeConfig.iot_provider = overrides.iot_provider;
       exeConfig.project_id = overrides.project_id;
@@ -424,32 +441,10 @@ public class SiteModel {
       File deviceDir = getDeviceDir(deviceId);
       File deviceMetadataFile = new File(deviceDir, METADATA_JSON);
 
-      ObjectNode rawMetadata = loadFileRequired(ObjectNode.class, deviceMetadataFile);
-      Map<String, Object> mergedMetadata = GeneralUtils.deepCopy(siteDefaults);
-      JsonNode usedTemplate = rawMetadata.remove(TEMPLATE_KEY);
-      if (usedTemplate != null) {
-        String templateName = usedTemplate.asText();
-        Map<String, Object> templateData = allTemplates.get(templateName);
-        requireNonNull(templateData, String.format("template %s not found in %s",
-            templateName, getTemplatesDir()));
-        GeneralUtils.mergeObject(mergedMetadata, templateData);
-      }
-      GeneralUtils.mergeObject(mergedMetadata, asMap(rawMetadata));
-
-      ObjectNode metadataObject = OBJECT_MAPPER_RAW.valueToTree(mergedMetadata);
-
-      // We must upgrade before converting to Metadata, otherwise data is lost
-      // The empty array fix (below) needs a Metadata typed metadata object
-      // So upgrade if applicable, convert, apply the fixes
-      // But, the `baseVersion` aka `upgraded from` is required for config downgrading
-      // There is an `upgraded_from` - but this is where the upgrade errors are put
-      if (upgradeMetadata) {
-        try {
-          new MessageUpgrader(METADATA_SCHEMA, metadataObject).upgrade(false);
-        } catch (Exception e) {
-          throw new RuntimeException("Error upgrading message " + friendlyStackTrace(e), e);
-        }
-      }
+      ObjectNode metadataObject = metadataCache != null && upgradeMetadata
+          ? metadataCache.get(deviceId, deviceMetadataFile,
+              () -> mergeDeviceMetadata(deviceMetadataFile, true))
+          : mergeDeviceMetadata(deviceMetadataFile, upgradeMetadata);
 
       return convertToStrict(Metadata.class, metadataObject);
 
@@ -466,12 +461,93 @@ public class SiteModel {
 
   }
 
+  private ObjectNode mergeDeviceMetadata(File deviceMetadataFile, boolean upgradeMetadata) {
+    ObjectNode rawMetadata = loadFileRequired(ObjectNode.class, deviceMetadataFile);
+    JsonNode usedTemplate = rawMetadata.remove(TEMPLATE_KEY);
+    @SuppressWarnings("unchecked")
+    Map<String, Object> mergedMetadata = (Map<String, Object>) copyTree(
+        getTemplateBase(ifNotNullGet(usedTemplate, JsonNode::asText)));
+    GeneralUtils.mergeObject(mergedMetadata, asMap(rawMetadata));
+
+    ObjectNode metadataObject = OBJECT_MAPPER_RAW.valueToTree(mergedMetadata);
+
+    // We must upgrade before converting to Metadata, otherwise data is lost
+    // The empty array fix (below) needs a Metadata typed metadata object
+    // So upgrade if applicable, convert, apply the fixes
+    // But, the `baseVersion` aka `upgraded from` is required for config downgrading
+    // There is an `upgraded_from` - but this is where the upgrade errors are put
+    if (upgradeMetadata) {
+      try {
+        new MessageUpgrader(METADATA_SCHEMA, metadataObject).upgrade(false);
+      } catch (Exception e) {
+        throw new RuntimeException("Error upgrading message " + friendlyStackTrace(e), e);
+      }
+    }
+    return metadataObject;
+  }
+
+  /**
+   * Get the site defaults merged with the given template (if any). This is computed once per
+   * template, and must be copied before being merged with any device metadata.
+   */
+  private Map<String, Object> getTemplateBase(String templateName) {
+    return templateBases.computeIfAbsent(ofNullable(templateName).orElse(""), name -> {
+      Map<String, Object> base = deepCopy(siteDefaults);
+      if (!name.isEmpty()) {
+        Map<String, Object> templateData = allTemplates.get(name);
+        requireNonNull(templateData, String.format("template %s not found in %s",
+            name, getTemplatesDir()));
+        GeneralUtils.mergeObject(base, templateData);
+      }
+      return base;
+    });
+  }
+
   private void loadAllDeviceMetadata() {
     Set<String> deviceIds = getDeviceIds();
-    allMetadata = deviceIds.stream().collect(toMap(key -> key, this::loadDeviceMetadataSafe));
+    allMetadata = loadDeviceMetadataSafe(deviceIds);
     allDevices = deviceIds.stream().collect(toMap(key -> key, this::newCloudModel));
   }
 
+  /**
+   * Load the metadata for the given devices in parallel, using a bounded thread pool. Any errors
+   * are returned as a MetadataException entry, rather than thrown.
+   */
+  public Map<String, Metadata> loadDeviceMetadataSafe(Collection<String> deviceIds) {
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(LOADER_THREADS, deviceIds.size())));
+    try {
+      Map<String, Future<Metadata>> futures = new LinkedHashMap<>();
+      deviceIds.forEach(id -> futures.put(id, executor.submit(() -> loadDeviceMetadataSafe(id))));
+      Map<String, Metadata> loaded = new HashMap<>();
+      for (Entry<String, Future<Metadata>> entry : futures.entrySet()) {
+        loaded.put(entry.getKey(), entry.getValue().get());
+      }
+      return loaded;
+    } catch (Exception e) {
+      throw new RuntimeException("While loading device metadata", e);
+    } finally {
+      executor.shutdownNow();
+      saveMetadataCache();
+    }
+  }
+
+  /**
+   * Enable the on-disk cache of merged device metadata, stored in the given file.
+   */
+  public void enableMetadataCache(File cacheFile) {
+    String baseHash = sha256(METADATA_CACHE_VERSION + stringifyTerse(siteDefaults)
+        + stringifyTerse(allTemplates));
+    metadataCache = new MetadataCache(cacheFile, baseHash);
+  }
+
+  /**
+   * Persist any updates to the metadata cache (if enabled).
+   */
+  public void saveMetadataCache() {
+    ifNotNullThen(metadataCache, MetadataCache::save);
+  }
+
   private Map<String, Map<String, Object>> loadAllTemplates() {
     Set<String> templateIds = getTemplateIds();
     return templateIds.stream().collect(toMap(id -> id, this::loadSingleTemplate));
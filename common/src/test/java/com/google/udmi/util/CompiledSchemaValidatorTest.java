@@ -0,0 +1,99 @@
+package com.google.udmi.util;
+
+import static com.google.udmi.util.JsonUtil.OBJECT_MAPPER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.udmi.util.SchemaValidator.Engine;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.Test;
+
+/**
+ * Tests for the compiled schema validation engine, checked against the fge engine.
+ */
+public class CompiledSchemaValidatorTest {
+
+  private static final File SCHEMA_ROOT = new File("../schema");
+  private static final File CORPUS_ROOT = new File("../tests/schemas");
+
+  @Test
+  public void corpusParity() throws Exception {
+    Map<String, List<JsonNode>> corpus = loadCorpus();
+    int checked = 0;
+    for (Map.Entry<String, List<JsonNode>> entry : corpus.entrySet()) {
+      File schemaFile = new File(SCHEMA_ROOT, entry.getKey() + ".json");
+      SchemaValidator fge = SchemaValidator.load(Engine.FGE, schemaFile, SCHEMA_ROOT);
+      SchemaValidator compiled = SchemaValidator.load(Engine.COMPILED, schemaFile, SCHEMA_ROOT);
+      for (JsonNode message : entry.getValue()) {
+        assertEquals("violations for " + entry.getKey(), messages(fge.validate(message)),
+            messages(compiled.validate(message)));
+        checked++;
+      }
+    }
+    assertTrue("corpus messages checked", checked > 100);
+  }
+
+  @Test
+  public void violationFormat() throws Exception {
+    File schemaFile = new File(SCHEMA_ROOT, "events_pointset.json");
+    SchemaValidator compiled = SchemaValidator.load(Engine.COMPILED, schemaFile, SCHEMA_ROOT);
+    SchemaValidator fge = SchemaValidator.load(Engine.FGE, schemaFile, SCHEMA_ROOT);
+    ObjectNode message = OBJECT_MAPPER.createObjectNode();
+    message.put("timestamp", "2024-02-30T12:00:00Z");
+    message.put("extra_field", true);
+    message.putObject("points").putObject("bad/point");
+    ValidationException violations = compiled.validate(message);
+    assertNotNull("expected violations", violations);
+    assertEquals(messages(fge.validate(message)), violations.getAllMessages());
+    assertEquals(ImmutableList.of("4 schema violations found",
+        "object instance has properties which are not allowed by the schema: [\"extra_field\"]",
+        "object has missing required properties ([\"version\"])",
+        "/points: object instance has properties which are not allowed by the schema: "
+            + "[\"bad/point\"]",
+        "/timestamp: string \"2024-02-30T12:00:00Z\" is invalid against requested date "
+            + "format(s) [yyyy-MM-dd'T'HH:mm:ssZ, yyyy-MM-dd'T'HH:mm:ss.[0-9]{1,12}Z]"),
+        violations.getAllMessages());
+  }
+
+  @Test
+  public void validMessage() throws Exception {
+    File schemaFile = new File(SCHEMA_ROOT, "events_pointset.json");
+    SchemaValidator compiled = SchemaValidator.load(Engine.COMPILED, schemaFile, SCHEMA_ROOT);
+    JsonNode message = OBJECT_MAPPER.readTree(
+        new File(CORPUS_ROOT, "events_pointset/example.json"));
+    assertNull("example message violations", compiled.validate(message));
+  }
+
+  private static List<String> messages(ValidationException violations) {
+    return violations == null ? ImmutableList.of() : violations.getAllMessages();
+  }
+
+  private static Map<String, List<JsonNode>> loadCorpus() throws Exception {
+    Map<String, List<JsonNode>> corpus = new TreeMap<>();
+    File[] schemaDirs = CORPUS_ROOT.listFiles(File::isDirectory);
+    assertNotNull("missing corpus " + CORPUS_ROOT.getAbsolutePath(), schemaDirs);
+    for (File schemaDir : schemaDirs) {
+      if (!new File(SCHEMA_ROOT, schemaDir.getName() + ".json").exists()) {
+        continue;
+      }
+      List<JsonNode> messages = new ArrayList<>();
+      File[] messageFiles = schemaDir.listFiles((dir, name) -> name.endsWith(".json"));
+      Arrays.sort(messageFiles);
+      for (File messageFile : messageFiles) {
+        messages.add(OBJECT_MAPPER.readTree(messageFile));
+      }
+      corpus.put(schemaDir.getName(), messages);
+    }
+    return corpus;
+  }
+}
@@ -5,12 +5,23 @@ import static com.google.udmi.util.GeneralUtils.friendlyStackTrace;
 import static com.google.udmi.util.GeneralUtils.mergeObject;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import org.junit.Test;
+import udmi.schema.Auth_provider;
+import udmi.schema.Basic;
+import udmi.schema.EndpointConfiguration;
+import udmi.schema.Envelope;
+import udmi.schema.Envelope.SubFolder;
+import udmi.schema.Envelope.SubType;
+import udmi.schema.PointsetConfig;
 
 /**
  * Tests for general utilities.
@@ -27,6 +38,53 @@ public class GeneralUtilsTest {
     assertNotEquals("copy is not equal", original, copy);
   }
 
+  @Test
+  public void testDeepCopySchema() {
+    Envelope original = new Envelope();
+    original.deviceId = "AHU-1";
+    original.deviceRegistryId = "ZZ-TRI-FECTA";
+    original.subType = SubType.STATE;
+    original.subFolder = SubFolder.UPDATE;
+    original.publishTime = new Date(1234567);
+    Envelope copy = deepCopy(original);
+    assertEquals("same as json copy", jsonCopy(original), copy);
+    assertNotSame("copy is not same", original, copy);
+    assertNotSame("copy date is not same", original.publishTime, copy.publishTime);
+    copy.deviceId = "AHU-2";
+    assertEquals("original unchanged", "AHU-1", original.deviceId);
+  }
+
+  @Test
+  public void testDeepCopyUntyped() {
+    EndpointConfiguration original = new EndpointConfiguration();
+    original.keyBytes = new Basic();
+    original.generation = new Date(1234567);
+    EndpointConfiguration copy = deepCopy(original);
+    assertEquals("same as json copy", jsonCopy(original), copy);
+    assertTrue("untyped as map", copy.keyBytes instanceof Map);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T jsonCopy(T object) {
+    return GeneralUtils.jsonCopy(object, (Class<T>) object.getClass());
+  }
+
+  @Test
+  public void testDeepCopyNested() {
+    EndpointConfiguration original = new EndpointConfiguration();
+    original.auth_provider = new Auth_provider();
+    original.auth_provider.basic = new Basic();
+    original.auth_provider.basic.username = "user";
+    original.keyBytes = ImmutableMap.of("A", ImmutableList.of("B"));
+    EndpointConfiguration copy = deepCopy(original);
+    assertEquals("nested value", "user", copy.auth_provider.basic.username);
+    assertNotSame("nested object", original.auth_provider.basic, copy.auth_provider.basic);
+    assertEquals("copied object", original.keyBytes, copy.keyBytes);
+    PointsetConfig pointsetConfig = new PointsetConfig();
+    pointsetConfig.sample_rate_sec = null;
+    assertEquals("default value", 300, (int) deepCopy(pointsetConfig).sample_rate_sec);
+  }
+
   private Map<String, Object> getBaseMap() {
     Map<String, Object> original = new HashMap<>();
     original.put("A", "B");
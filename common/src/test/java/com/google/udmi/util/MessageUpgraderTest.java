@@ -1,11 +1,15 @@
 package com.google.udmi.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.junit.Test;
 import udmi.schema.State;
+import udmi.util.SchemaVersion;
 
 /**
  * Unit tests for message upgrading.
@@ -79,4 +83,45 @@ public class MessageUpgraderTest {
     assertEquals("1.5.7", upgraded.get("version").asText());
   }
 
-}
\ No newline at end of file
+  @Test
+  public void currentVersionUnchanged() {
+    ObjectNode message = MessageUpgrader.NODE_FACTORY.objectNode();
+    message.put("version", SchemaVersion.CURRENT.key());
+    message.putObject("system").put("make_model", "legacy");
+
+    MessageUpgrader upgrader = new MessageUpgrader("state", message);
+    Object upgraded = upgrader.upgrade();
+
+    assertSame(message, upgraded);
+    assertFalse(upgrader.wasUpgraded());
+    assertEquals("legacy", message.get("system").get("make_model").asText());
+  }
+
+  @Test
+  public void unchangedMetadataNotUpgraded() {
+    ObjectNode message = MessageUpgrader.NODE_FACTORY.objectNode();
+    message.put("version", "1.5.2");
+    message.putObject("cloud").put("resource_type", "DIRECT");
+
+    MessageUpgrader upgrader = new MessageUpgrader("metadata", message);
+    upgrader.upgrade();
+
+    assertFalse(upgrader.wasUpgraded());
+    assertEquals("1.5.2", message.get("version").asText());
+    assertEquals("DIRECT", message.get("cloud").get("resource_type").asText());
+  }
+
+  @Test
+  public void changedStateUpgraded() {
+    ObjectNode message = MessageUpgrader.NODE_FACTORY.objectNode();
+    message.put("version", "1.3.13");
+    message.putObject("system").put("make_model", "legacy");
+
+    MessageUpgrader upgrader = new MessageUpgrader("state", message);
+    upgrader.upgrade();
+
+    assertTrue(upgrader.wasUpgraded());
+    assertEquals("legacy", message.get("system").get("hardware").get("model").asText());
+    assertEquals("1.3.13", message.get("upgraded_from").asText());
+  }
+}
@@ -0,0 +1,72 @@
+package com.google.udmi.util;
+
+import static com.google.udmi.util.JsonUtil.OBJECT_MAPPER;
+import static com.google.udmi.util.JsonUtil.stringify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.udmi.util.SiteModel.MetadataException;
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import udmi.schema.Metadata;
+
+/**
+ * Tests for site model loading.
+ */
+public class SiteModelTest {
+
+  private static final List<String> TEST_SITES = List.of("../tests/sites/basic",
+      "../tests/sites/templates", "../tests/sites/downgrade");
+  private static final String TEMPLATE_SITE = "../tests/sites/templates";
+  private static final String TEMPLATE_DEVICE = "TPS-1";
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void parallelLoadParity() {
+    for (String sitePath : TEST_SITES) {
+      SiteModel siteModel = new SiteModel(sitePath);
+      Map<String, Metadata> loaded = siteModel.loadDeviceMetadataSafe(siteModel.getDeviceIds());
+      assertEquals("loaded devices", siteModel.getDeviceIds(), loaded.keySet());
+      SiteModel sequential = new SiteModel(sitePath);
+      loaded.forEach((deviceId, metadata) -> assertEquals(sitePath + " " + deviceId,
+          describe(sequential.loadDeviceMetadataSafe(deviceId)), describe(metadata)));
+    }
+  }
+
+  @Test
+  public void metadataCache() throws Exception {
+    File cacheFile = tempFolder.newFile("metadata_cache.json");
+    SiteModel original = new SiteModel(TEMPLATE_SITE);
+    original.enableMetadataCache(cacheFile);
+    Map<String, Metadata> expected = original.loadDeviceMetadataSafe(original.getDeviceIds());
+    assertTrue("cache file written", cacheFile.length() > 0);
+
+    SiteModel cached = new SiteModel(TEMPLATE_SITE);
+    cached.enableMetadataCache(cacheFile);
+    Map<String, Metadata> loaded = cached.loadDeviceMetadataSafe(cached.getDeviceIds());
+    expected.forEach((deviceId, metadata) -> assertEquals("cached " + deviceId,
+        describe(metadata), describe(loaded.get(deviceId))));
+
+    // Tweak the cache contents directly, to make sure they're used when the source is unchanged.
+    ObjectNode cacheStore = (ObjectNode) OBJECT_MAPPER.readTree(cacheFile);
+    ((ObjectNode) cacheStore.at("/devices/" + TEMPLATE_DEVICE + "/metadata/system/hardware"))
+        .put("model", "cached");
+    OBJECT_MAPPER.writeValue(cacheFile, cacheStore);
+    SiteModel tweaked = new SiteModel(TEMPLATE_SITE);
+    tweaked.enableMetadataCache(cacheFile);
+    assertEquals("cached hardware model", "cached",
+        tweaked.loadDeviceMetadata(TEMPLATE_DEVICE).system.hardware.model);
+  }
+
+  private static String describe(Metadata metadata) {
+    return metadata instanceof MetadataException exception
+        ? exception.exception.getMessage() : stringify(metadata);
+  }
+}
@@ -0,0 +1,50 @@
+package udmi.schema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Date;
+import org.junit.Test;
+
+/**
+ * Tests for the generated endpoint configuration class.
+ */
+public class EndpointConfigurationTest {
+
+  private static Object sampleValue(Class<?> type) throws Exception {
+    if (type == Integer.class) {
+      return 1;
+    } else if (type == Boolean.class) {
+      return true;
+    } else if (type == Double.class) {
+      return 0.5;
+    } else if (type == Date.class) {
+      return new Date(1000);
+    } else if (type.isEnum()) {
+      return type.getEnumConstants()[0];
+    } else if (type == String.class || type == Object.class) {
+      return "value";
+    }
+    return type.getConstructor().newInstance();
+  }
+
+  @Test
+  public void equalsCoversAllFields() throws Exception {
+    for (Field field : EndpointConfiguration.class.getFields()) {
+      if (Modifier.isStatic(field.getModifiers())) {
+        continue;
+      }
+      EndpointConfiguration base = new EndpointConfiguration();
+      EndpointConfiguration changed = new EndpointConfiguration();
+      field.set(changed, sampleValue(field.getType()));
+      assertNotEquals("equals for field " + field.getName(), base, changed);
+      assertNotEquals("hashCode for field " + field.getName(), base.hashCode(),
+          changed.hashCode());
+
+      field.set(base, sampleValue(field.getType()));
+      assertEquals("same value for field " + field.getName(), base, changed);
+    }
+  }
+}
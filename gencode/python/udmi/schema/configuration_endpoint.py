@@ -64,8 +64,11 @@ class EndpointConfiguration(DataModel):
     enabled: Optional[str] = None
     noConfigAck: Optional[bool] = None
     capacity: Optional[int] = None
+    threads: Optional[int] = None
+    sharded: Optional[bool] = None
     publish_delay_sec: Optional[int] = None
     periodic_sec: Optional[int] = None
+    capture_rate: Optional[float] = None
     keyBytes: Optional[Any] = None
     algorithm: Optional[str] = None
     auth_provider: Optional[AuthProvider] = None
@@ -0,0 +1,36 @@
+package daq.pubber;
+
+import daq.pubber.impl.host.PubberSwarmHost;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Main class for running a swarm of UDMI publishers in one process.
+ */
+public class PubberSwarm {
+
+  static final Logger LOG = LoggerFactory.getLogger(PubberSwarm.class);
+  static final String USAGE = "Usage: config_file [ramp_ms [max_devices]]";
+  private static final long DEFAULT_RAMP_MS = 100;
+
+  /**
+   * Start a swarm of UDMI publishers with command line args.
+   */
+  public static void main(String[] args) {
+    try {
+      if (args.length < 1 || args.length > 3) {
+        throw new IllegalArgumentException(USAGE);
+      }
+      long rampMs = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_RAMP_MS;
+      int maxDevices = args.length > 2 ? Integer.parseInt(args[2]) : Integer.MAX_VALUE;
+      PubberSwarmHost swarm = new PubberSwarmHost(args[0]);
+      swarm.start(maxDevices, rampMs);
+      swarm.awaitDone();
+      LOG.info("Done with swarm");
+      System.exit(0);
+    } catch (Exception e) {
+      LOG.error("Exception running swarm", e);
+      System.exit(-1);
+    }
+  }
+}
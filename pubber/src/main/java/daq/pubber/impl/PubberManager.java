@@ -13,6 +13,8 @@ import static java.util.Optional.ofNullable;
 import com.google.udmi.util.SiteModel;
 import daq.pubber.impl.host.PubberPublisherHost;
 import java.io.File;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.ObjIntConsumer;
 import udmi.lib.base.ManagerBase;
 import udmi.lib.intf.ManagerHost;
 import udmi.schema.Metadata;
@@ -28,17 +30,34 @@ public class PubberManager extends ManagerBase {
   protected static final String PERSISTENT_STORE_FILE = "persistent_data.json";
   protected static final String PERSISTENT_TMP_FORMAT = "/tmp/pubber_%s_" + PERSISTENT_STORE_FILE;
 
+  protected static final ObjIntConsumer<String> SYSTEM_EXIT =
+      (deviceId, exitCode) -> System.exit(exitCode);
+
   protected final PubberConfiguration config;
   protected final PubberOptions options;
+  protected final ObjIntConsumer<String> exitHandler;
   protected File outDir;
 
   /**
-   * New instance.
+   * New instance, sharing the executor and exit handler of its host.
    */
   public PubberManager(ManagerHost host, PubberConfiguration configuration) {
     super(host, configuration.deviceId);
     config = configuration;
     options = configuration.options;
+    exitHandler = host instanceof PubberManager manager ? manager.exitHandler : SYSTEM_EXIT;
+  }
+
+  /**
+   * New instance with an explicit shared executor (null for its own thread), and a handler for
+   * device lifecycle exits, which are passed on to managers hosted by this one.
+   */
+  protected PubberManager(ManagerHost host, PubberConfiguration configuration,
+      ScheduledExecutorService sharedExecutor, ObjIntConsumer<String> exitHandler) {
+    super(host, configuration.deviceId, sharedExecutor);
+    config = configuration;
+    options = configuration.options;
+    this.exitHandler = exitHandler;
   }
 
   @Override
@@ -54,7 +73,10 @@ public class PubberManager extends ManagerBase {
     return config;
   }
 
-  protected static PubberConfiguration loadConfiguration(String configPath) {
+  /**
+   * Load a pubber configuration file, with default options if none are specified.
+   */
+  public static PubberConfiguration loadConfiguration(String configPath) {
     File configFile = new File(configPath);
     try {
       PubberConfiguration fromFile = fromJsonFileStrict(configFile, PubberConfiguration.class);
@@ -32,12 +32,16 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjIntConsumer;
 import udmi.lib.base.MqttDevice;
+import udmi.lib.base.StatePublishTracker;
 import udmi.lib.blob.intf.BlobLifecycleHandler;
 import udmi.lib.client.host.PublisherHost;
 import udmi.lib.client.manager.DeviceManager;
@@ -48,6 +52,8 @@ import udmi.schema.DevicePersistent;
 import udmi.schema.EndpointConfiguration;
 import udmi.schema.Metadata;
 import udmi.schema.Operation;
+import udmi.schema.PubberConfiguration;
+import udmi.util.LatencyStats;
 import udmi.util.SchemaVersion;
 
 /**
@@ -60,6 +66,9 @@ public class PubberPublisherHost extends PubberManager implements PublisherHost
   private PubberDeviceManager deviceManager;
   private SiteModel siteModel;
   private BlobLifecycleHandler blobLifecycleHandler;
+  private String logPath = LOG_PATH;
+  private ExecutorService sharedPublisher;
+  private LatencyStats publishStats;
 
   /**
    * Start an instance from a configuration file.
@@ -84,6 +93,28 @@ public class PubberPublisherHost extends PubberManager implements PublisherHost
     outDir = createOutDir(serialNo);
   }
 
+  /**
+   * Start an instance from a configuration and an already loaded site model, as when hosting many
+   * devices in the same process. Output goes into a per-device directory.
+   *
+   * @param configuration Device configuration
+   * @param siteModel     Shared site model
+   * @param scheduler     Shared scheduler for all the device's managers
+   * @param publisher     Shared executor for publishing messages
+   * @param publishStats  Publish latency statistics, or null
+   * @param exitHandler   Handler for device lifecycle exits
+   */
+  public PubberPublisherHost(PubberConfiguration configuration, SiteModel siteModel,
+      ScheduledExecutorService scheduler, ExecutorService publisher, LatencyStats publishStats,
+      ObjIntConsumer<String> exitHandler) {
+    super(null, configuration, scheduler, exitHandler);
+    this.siteModel = siteModel;
+    this.sharedPublisher = publisher;
+    this.publishStats = publishStats;
+    outDir = createOutDir(configuration.deviceId);
+    logPath = outDir.getPath();
+  }
+
   @Override
   public void initialize() {
     EndpointConfiguration.Protocol protocol = requireNonNullElse(
@@ -96,10 +127,13 @@ public class PubberPublisherHost extends PubberManager implements PublisherHost
   public void initializeDevice() {
     deviceManager = new PubberDeviceManager(this, config);
 
-    if (config.sitePath != null) {
+    if (siteModel == null && config.sitePath != null) {
       PubberFeatures.writeFeatureFile(config.sitePath, deviceManager);
       siteModel = new SiteModel(config.sitePath);
       siteModel.initialize();
+    }
+
+    if (siteModel != null) {
       if (config.endpoint == null) {
         config.endpoint = siteModel.makeEndpointConfig(config.iotProject, deviceId);
       }
@@ -264,7 +298,8 @@ public class PubberPublisherHost extends PubberManager implements PublisherHost
     String targetDeviceId = getTargetDeviceId(siteModel, config.deviceId);
     CertManager certManager = new CertManager(new File(siteModel.getReflectorDir(), "ca.crt"),
         siteModel.getDeviceDir(targetDeviceId), endpoint.transport, keyPassword, this::info);
-    deviceTarget = new MqttDevice(endpoint, this::publisherException, certManager, isMsTimestamp());
+    deviceTarget = new MqttDevice(endpoint, this::publisherException, certManager, isMsTimestamp(),
+        sharedPublisher, publishStats);
     publishDirtyState();
   }
 
@@ -299,7 +334,7 @@ public class PubberPublisherHost extends PubberManager implements PublisherHost
 
   @Override
   public String getLogPath() {
-    return LOG_PATH;
+    return logPath;
   }
 
   public SiteModel getSiteModel() {
@@ -310,6 +345,7 @@ public class PubberPublisherHost extends PubberManager implements PublisherHost
   private final Map<String, AtomicInteger> messageCounts = new ConcurrentHashMap<>();
   private final AtomicInteger retriesCount = new AtomicInteger(0);
   private final ReentrantLock stateLock = new ReentrantLock();
+  private final StatePublishTracker stateTracker = new StatePublishTracker();
 
   private CountDownLatch configLatch;
   private MqttDevice deviceTarget;
@@ -331,7 +367,7 @@ public class PubberPublisherHost extends PubberManager implements PublisherHost
 
   @Override
   public void schedule(long ms, Runnable runnable) {
-    executor.schedule(runnable, ms, TimeUnit.MILLISECONDS);
+    schedule(runnable, ms, TimeUnit.MILLISECONDS);
   }
 
   @Override
@@ -409,6 +445,11 @@ public class PubberPublisherHost extends PubberManager implements PublisherHost
     return stateLock;
   }
 
+  @Override
+  public StatePublishTracker getStateTracker() {
+    return stateTracker;
+  }
+
   @Override
   public EndpointConfiguration getExtractedEndpoint() {
     return extractedEndpoint;
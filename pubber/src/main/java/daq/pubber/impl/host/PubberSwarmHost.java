@@ -0,0 +1,225 @@
+package daq.pubber.impl.host;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.udmi.util.GeneralUtils.catchToNull;
+import static com.google.udmi.util.GeneralUtils.deepCopy;
+import static com.google.udmi.util.GeneralUtils.ifNotNullThen;
+import static com.google.udmi.util.JsonUtil.safeSleep;
+import static java.lang.String.format;
+import static java.util.Optional.ofNullable;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.udmi.util.SiteModel;
+import daq.pubber.impl.PubberManager;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import udmi.lib.client.manager.SystemManager;
+import udmi.schema.EndpointConfiguration;
+import udmi.schema.Metadata;
+import udmi.schema.Operation.SystemMode;
+import udmi.schema.PubberConfiguration;
+import udmi.util.CatchingScheduledThreadPoolExecutor;
+import udmi.util.LatencyStats;
+
+/**
+ * Host for a swarm of simulated devices from a site model, all running in the same process. The
+ * devices share scheduler and publishing threads, but each keeps its own MQTT connection (proxied
+ * devices are hosted by their gateway, so they multiplex through the gateway's connection).
+ */
+public class PubberSwarmHost {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PubberSwarmHost.class);
+  private static final int REPORT_INTERVAL_SEC = 30;
+  private static final int SCHEDULER_THREADS_PER_CPU = 4;
+  private static final int RESTART_EXIT_CODE =
+      SystemManager.EXIT_CODE_MAP.get(SystemMode.RESTART);
+
+  private final PubberConfiguration baseConfig;
+  private final SiteModel siteModel;
+  private final Map<String, PubberPublisherHost> devices = new ConcurrentHashMap<>();
+  private final LatencyStats publishStats = new LatencyStats();
+  private final AtomicInteger starting = new AtomicInteger();
+  private final AtomicInteger failed = new AtomicInteger();
+  private final AtomicInteger exited = new AtomicInteger();
+  private final CountDownLatch done = new CountDownLatch(1);
+  private final AtomicInteger remaining = new AtomicInteger();
+  private ScheduledExecutorService scheduler;
+  private ExecutorService workers;
+
+  /**
+   * Create a swarm from a base pubber configuration, which supplies the site model path, options,
+   * and an optional endpoint template. The base deviceId, if any, is only used to identify the
+   * device-specific parts of the endpoint template.
+   */
+  public PubberSwarmHost(PubberConfiguration configuration) {
+    baseConfig = configuration;
+    checkState(baseConfig.sitePath != null, "swarm configuration sitePath not defined");
+    siteModel = new SiteModel(baseConfig.sitePath);
+    siteModel.initialize();
+  }
+
+  public PubberSwarmHost(String configPath) {
+    this(PubberManager.loadConfiguration(configPath));
+  }
+
+  /**
+   * Get the devices hosted directly by the swarm, which excludes proxied devices since they are
+   * started by their respective gateway.
+   */
+  List<String> getSwarmDevices(int maxDevices) {
+    return siteModel.getDeviceIds().stream().sorted()
+        .filter(deviceId -> getGatewayId(deviceId) == null)
+        .limit(maxDevices).toList();
+  }
+
+  private String getGatewayId(String deviceId) {
+    Metadata metadata = siteModel.getMetadata(deviceId);
+    return catchToNull(() -> metadata.gateway.gateway_id);
+  }
+
+  PubberConfiguration makeDeviceConfig(String deviceId) {
+    PubberConfiguration config = deepCopy(baseConfig);
+    config.deviceId = deviceId;
+    config.serialNo = ofNullable(catchToNull(
+        () -> siteModel.getMetadata(deviceId).system.serial_no)).orElse(deviceId);
+    config.gatewayId = null;
+    config.keyBytes = null;
+    config.endpoint = makeEndpoint(deviceId);
+    return config;
+  }
+
+  /**
+   * Make a device endpoint from the base configuration template (if any), by swapping in the new
+   * device id where the template has the base device id, as bin/pubber would have done.
+   */
+  private EndpointConfiguration makeEndpoint(String deviceId) {
+    if (baseConfig.endpoint == null) {
+      return null;
+    }
+    String baseId = baseConfig.deviceId;
+    checkState(baseId != null, "endpoint template requires base configuration deviceId");
+    EndpointConfiguration endpoint = deepCopy(baseConfig.endpoint);
+    endpoint.client_id = replaceDevice(endpoint.client_id, baseId, deviceId);
+    endpoint.topic_prefix = replaceDevice(endpoint.topic_prefix, baseId, deviceId);
+    ifNotNullThen(catchToNull(() -> endpoint.auth_provider.basic), basic -> {
+      basic.username = replaceDevice(basic.username, baseId, deviceId);
+      basic.password = siteModel.getDevicePassword(deviceId);
+    });
+    return endpoint;
+  }
+
+  private static String replaceDevice(String value, String baseId, String deviceId) {
+    String suffix = "/" + baseId;
+    return value != null && value.endsWith(suffix)
+        ? value.substring(0, value.length() - baseId.length()) + deviceId
+        : value;
+  }
+
+  /**
+   * Start up to maxDevices from the site model, waiting rampMs between each device start.
+   */
+  public void start(int maxDevices, long rampMs) {
+    ThreadFactory threadFactory = getThreadFactory();
+    int schedulerThreads = Runtime.getRuntime().availableProcessors() * SCHEDULER_THREADS_PER_CPU;
+    scheduler = new CatchingScheduledThreadPoolExecutor(schedulerThreads, threadFactory);
+    workers = Executors.newCachedThreadPool(threadFactory);
+
+    List<String> deviceIds = getSwarmDevices(maxDevices);
+    remaining.set(deviceIds.size());
+    if (deviceIds.isEmpty()) {
+      done.countDown();
+    }
+    LOG.info(format("Starting swarm of %d devices with %dms ramp", deviceIds.size(), rampMs));
+    scheduler.scheduleAtFixedRate(this::report, REPORT_INTERVAL_SEC, REPORT_INTERVAL_SEC, SECONDS);
+    deviceIds.forEach(deviceId -> {
+      workers.submit(() -> startDevice(deviceId));
+      safeSleep(rampMs);
+    });
+    LOG.info("Swarm device ramp complete");
+  }
+
+  private void startDevice(String deviceId) {
+    PubberPublisherHost host = new PubberPublisherHost(makeDeviceConfig(deviceId), siteModel,
+        scheduler, workers, publishStats, this::deviceExit);
+    starting.incrementAndGet();
+    try {
+      devices.put(deviceId, host);
+      host.initialize();
+      host.startConnection();
+    } catch (Exception e) {
+      LOG.error(format("Swarm device %s failed to start", deviceId), e);
+      devices.remove(deviceId);
+      host.shutdown();
+      failed.incrementAndGet();
+      deviceDone();
+    } finally {
+      starting.decrementAndGet();
+    }
+  }
+
+  private void deviceExit(String deviceId, int exitCode) {
+    PubberPublisherHost host = devices.remove(deviceId);
+    if (host == null) {
+      LOG.warn(format("Ignoring exit %d for unhosted device %s", exitCode, deviceId));
+      return;
+    }
+    workers.submit(() -> {
+      host.shutdown();
+      if (exitCode == RESTART_EXIT_CODE) {
+        LOG.info(format("Restarting swarm device %s", deviceId));
+        startDevice(deviceId);
+      } else {
+        LOG.info(format("Swarm device %s exited with code %d", deviceId, exitCode));
+        exited.incrementAndGet();
+        deviceDone();
+      }
+    });
+  }
+
+  private void deviceDone() {
+    if (remaining.decrementAndGet() <= 0) {
+      done.countDown();
+    }
+  }
+
+  private void report() {
+    LOG.info(format("Swarm %d devices (%d starting), %d failed, %d exited; publish %s",
+        devices.size(), starting.get(), failed.get(), exited.get(), publishStats.summarize()));
+  }
+
+  /**
+   * Wait for all swarm devices to exit, and then shut down the shared executors.
+   */
+  public void awaitDone() throws InterruptedException {
+    done.await();
+    report();
+    scheduler.shutdownNow();
+    workers.shutdownNow();
+  }
+
+  /**
+   * Get a factory for virtual threads when the runtime supports them (looked up reflectively,
+   * since the build targets an older language level), otherwise for regular platform threads.
+   */
+  static ThreadFactory getThreadFactory() {
+    try {
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder = builderClass.getMethod("name", String.class, long.class)
+          .invoke(builder, "swarm-", 0L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (Exception e) {
+      LOG.warn("Virtual threads not available, using platform threads");
+      return Executors.defaultThreadFactory();
+    }
+  }
+}
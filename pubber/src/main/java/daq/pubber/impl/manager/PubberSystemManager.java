@@ -83,7 +83,7 @@ public class PubberSystemManager extends PubberManager implements SystemManager
     int exitCode = EXIT_CODE_MAP.getOrDefault(mode, UNKNOWN_MODE_EXIT_CODE);
     error(
         format("Stopping system with extreme prejudice, restart %s with code %s", mode, exitCode));
-    System.exit(exitCode);
+    exitHandler.accept(deviceId, exitCode);
   }
 
   @Override
@@ -8,6 +8,9 @@ import static java.util.Optional.ofNullable;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -37,9 +40,12 @@ public abstract class ManagerBase implements SubBlockManager {
   protected final AtomicInteger sendRateSec = new AtomicInteger(DEFAULT_REPORT_SEC);
   protected final Config deviceConfig = new Config();
   protected final State deviceState = new State();
-  protected final ScheduledExecutorService executor = new CatchingScheduledThreadPoolExecutor(1);
+  protected final ScheduledExecutorService executor;
   protected final AtomicBoolean stateDirty = new AtomicBoolean();
   private final AtomicInteger eventCount = new AtomicInteger();
+  private final Set<ScheduledFuture<?>> scheduled = ConcurrentHashMap.newKeySet();
+  private volatile boolean shutdown;
+  private final ScheduledExecutorService sharedExecutor;
   protected final ManagerHost host;
   protected final String deviceId;
 
@@ -47,11 +53,24 @@ public abstract class ManagerBase implements SubBlockManager {
   protected ScheduledFuture<?> initialUpdate;
 
   /**
-   * New instance.
+   * New instance, using the same shared executor (if any) as its host.
    */
   protected ManagerBase(ManagerHost host, String deviceId) {
+    this(host, deviceId, host instanceof ManagerBase base ? base.sharedExecutor : null);
+  }
+
+  /**
+   * New instance that schedules on the given shared executor, rather than a thread of its own, so
+   * that many devices can be hosted in the same process. Shutting down the manager will then leave
+   * the shared executor running. A null executor gives the manager its own thread.
+   */
+  protected ManagerBase(ManagerHost host, String deviceId,
+      ScheduledExecutorService sharedExecutor) {
     this.host = host;
     this.deviceId = requireNonNull(deviceId, "device id not defined");
+    this.sharedExecutor = sharedExecutor;
+    executor = ofNullable(sharedExecutor)
+        .orElseGet(() -> new CatchingScheduledThreadPoolExecutor(1));
   }
 
   /**
@@ -95,12 +114,9 @@ public abstract class ManagerBase implements SubBlockManager {
    * Schedule a future for the futureTask parameter.
    */
   public ScheduledFuture<?> scheduleFuture(Date futureTime, Runnable futureTask) {
-    if (executor.isShutdown()) {
-      throw new RuntimeException("Executor shutdown, not scheduling");
-    }
     long delay = Math.max(futureTime.getTime() - getNow().getTime(), 0);
     debug(format("Scheduling future in %dms", delay));
-    return executor.schedule(() -> wrappedRunnable(futureTask), delay, TimeUnit.MILLISECONDS);
+    return schedule(() -> wrappedRunnable(futureTask), delay, TimeUnit.MILLISECONDS);
   }
 
   private void wrappedRunnable(Runnable futureTask) {
@@ -111,8 +127,39 @@ public abstract class ManagerBase implements SubBlockManager {
     }
   }
 
+  /**
+   * Schedule a one-shot task for this manager, which is cancelled when the manager is shut down.
+   */
+  protected ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+    checkNotShutdown();
+    return track(executor.schedule(() -> runIfActive(task), delay, unit));
+  }
+
+  /**
+   * Schedule a periodic task for this manager, which is cancelled when the manager is shut down.
+   */
   public ScheduledFuture<?> schedulePeriodic(int sec, Runnable periodicUpdate) {
-    return executor.scheduleAtFixedRate(periodicUpdate, sec, sec, SECONDS);
+    checkNotShutdown();
+    return track(executor.scheduleAtFixedRate(() -> runIfActive(periodicUpdate), sec, sec,
+        SECONDS));
+  }
+
+  private void checkNotShutdown() {
+    if (shutdown || executor.isShutdown()) {
+      throw new RuntimeException("Executor shutdown, not scheduling");
+    }
+  }
+
+  private void runIfActive(Runnable task) {
+    if (!shutdown) {
+      task.run();
+    }
+  }
+
+  private ScheduledFuture<?> track(ScheduledFuture<?> future) {
+    scheduled.removeIf(Future::isDone);
+    scheduled.add(future);
+    return future;
   }
 
   @Override
@@ -177,7 +224,7 @@ public abstract class ManagerBase implements SubBlockManager {
     if (sec != 0) {
       if (sec > INITIAL_THRESHOLD_SEC) {
         // Do this sooner to raise any obvious exceptions.
-        initialUpdate = executor.schedule(this::periodicUpdate, INITIAL_THRESHOLD_SEC, SECONDS);
+        initialUpdate = schedule(this::periodicUpdate, INITIAL_THRESHOLD_SEC, SECONDS);
       }
       periodicSender = schedulePeriodic(sec, this::periodicUpdate);
     }
@@ -204,6 +251,11 @@ public abstract class ManagerBase implements SubBlockManager {
   }
 
   private void stopExecutor() {
+    scheduled.forEach(this::cancelFuture);
+    scheduled.clear();
+    if (executor == sharedExecutor) {
+      return;
+    }
     try {
       executor.shutdown();
       if (!executor.awaitTermination(INITIAL_THRESHOLD_SEC, TimeUnit.SECONDS)) {
@@ -221,6 +273,7 @@ public abstract class ManagerBase implements SubBlockManager {
 
   @Override
   public void shutdown() {
+    shutdown = true;
     cancelPeriodicSend();
     stopExecutor();
   }
@@ -5,9 +5,11 @@ import static java.util.Objects.requireNonNull;
 import static udmi.lib.base.MqttPublisher.TEST_PREFIX;
 
 import com.google.udmi.util.CertManager;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 import udmi.lib.intf.Publisher;
 import udmi.schema.EndpointConfiguration;
+import udmi.util.LatencyStats;
 
 /**
  * Encapsulation of a device connection.
@@ -31,10 +33,19 @@ public class MqttDevice {
    */
   public MqttDevice(EndpointConfiguration configuration, Consumer<Exception> onError,
       CertManager certManager, boolean msTimestamp) {
+    this(configuration, onError, certManager, msTimestamp, null, null);
+  }
+
+  /**
+   * Builds a MQTT device that publishes on a shared executor, recording publish latency.
+   */
+  public MqttDevice(EndpointConfiguration configuration, Consumer<Exception> onError,
+      CertManager certManager, boolean msTimestamp, ExecutorService sharedExecutor,
+      LatencyStats publishStats) {
     this.certManager = certManager;
     this.msTimestamp = msTimestamp;
     deviceId = requireNonNull(configuration.deviceId, "deviceId not specified");
-    publisher = getPublisher(configuration, onError);
+    publisher = getPublisher(configuration, onError, sharedExecutor, publishStats);
     ifNotNullThen(configuration.topic_prefix, p -> publisher.setDeviceTopicPrefix(deviceId, p));
   }
 
@@ -53,10 +64,12 @@ public class MqttDevice {
     msTimestamp = false;
   }
 
-  Publisher getPublisher(EndpointConfiguration configuration, Consumer<Exception> onError) {
+  Publisher getPublisher(EndpointConfiguration configuration, Consumer<Exception> onError,
+      ExecutorService sharedExecutor, LatencyStats publishStats) {
     return TEST_PREFIX.equals(configuration.topic_prefix)
         ? new ListPublisher(onError)
-        : new MqttPublisher(configuration, onError, certManager, msTimestamp);
+        : new MqttPublisher(configuration, onError, certManager, msTimestamp, sharedExecutor,
+            publishStats);
   }
 
   public <T> void registerHandler(String topicSuffix, Consumer<T> handler, Class<T> messageType) {
@@ -3,6 +3,7 @@ package udmi.lib.base;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.udmi.util.GeneralUtils.ifNotNullGet;
+import static com.google.udmi.util.GeneralUtils.ifNotNullThen;
 import static com.google.udmi.util.GeneralUtils.ifNotTrueThen;
 import static com.google.udmi.util.GeneralUtils.ifTrueThen;
 import static com.google.udmi.util.GeneralUtils.isTrue;
@@ -33,7 +34,6 @@ import java.security.spec.PKCS8EncodedKeySpec;
 import java.text.FieldPosition;
 import java.time.Instant;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
@@ -43,6 +43,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
@@ -65,6 +66,7 @@ import udmi.schema.Config;
 import udmi.schema.EndpointConfiguration;
 import udmi.schema.EndpointConfiguration.Transport;
 import udmi.schema.Jwt;
+import udmi.util.LatencyStats;
 
 /**
  * Handle publishing sensor data to a Cloud IoT MQTT endpoint.
@@ -88,7 +90,7 @@ public class MqttPublisher implements Publisher {
   private static final int QOS_AT_MOST_ONCE = 0;
   private static final int QOS_AT_LEAST_ONCE = 1;
   private static final String EVENT_MARK_PREFIX = "events/";
-  private static final Map<String, AtomicInteger> EVENT_SERIAL = new HashMap<>();
+  private static final Map<String, AtomicInteger> EVENT_SERIAL = new ConcurrentHashMap<>();
   private static final String GCP_CLIENT_PREFIX = "projects/";
   private static final Integer DEFAULT_MQTT_PORT = 8883;
   private static final long RETRY_DELAY_MS = 1000;
@@ -99,8 +101,10 @@ public class MqttPublisher implements Publisher {
   private final Map<String, MqttClient> mqttClients = new ConcurrentHashMap<>();
   private final Map<String, Instant> reAuthTimes = new ConcurrentHashMap<>();
   private final ReentrantLock reconnectLock = new ReentrantLock();
-  private final ExecutorService publisherExecutor =
-      Executors.newFixedThreadPool(PUBLISH_THREAD_COUNT);
+  private final ExecutorService sharedExecutor;
+  private final LatencyStats publishStats;
+  private final ExecutorService publisherExecutor;
+  private final AtomicBoolean active = new AtomicBoolean(true);
   private final AtomicInteger publishCounter = new AtomicInteger(0);
   private final AtomicInteger errorCounter = new AtomicInteger(0);
   private final Map<String, Consumer<Object>> handlers = new ConcurrentHashMap<>();
@@ -123,6 +127,20 @@ public class MqttPublisher implements Publisher {
    */
   public MqttPublisher(EndpointConfiguration configuration, Consumer<Exception> onError,
       CertManager certManager, boolean msTimestamp) {
+    this(configuration, onError, certManager, msTimestamp, null, null);
+  }
+
+  /**
+   * Create a mqtt publisher that publishes on a shared executor (null for its own threads), and
+   * optionally records the publish-to-ack latency of every message sent.
+   */
+  public MqttPublisher(EndpointConfiguration configuration, Consumer<Exception> onError,
+      CertManager certManager, boolean msTimestamp, ExecutorService sharedExecutor,
+      LatencyStats publishStats) {
+    this.sharedExecutor = sharedExecutor;
+    this.publishStats = publishStats;
+    publisherExecutor = ofNullable(sharedExecutor)
+        .orElseGet(() -> Executors.newFixedThreadPool(PUBLISH_THREAD_COUNT));
     this.configuration = configuration;
     this.certManager = certManager;
     this.msTimestamp = msTimestamp;
@@ -183,7 +201,7 @@ public class MqttPublisher implements Publisher {
 
   @Override
   public boolean isActive() {
-    return !publisherExecutor.isShutdown();
+    return active.get() && !publisherExecutor.isShutdown();
   }
 
   @Override
@@ -194,7 +212,9 @@ public class MqttPublisher implements Publisher {
         ? decorateMessage(topicSuffix, data)
         : data;
     try {
-      publisherExecutor.submit(() -> publishCore(deviceId, topicSuffix, marked, callback));
+      long startNanos = System.nanoTime();
+      publisherExecutor.submit(
+          () -> publishCore(deviceId, topicSuffix, marked, callback, startNanos));
     } catch (Exception e) {
       throw new RuntimeException(format("While publishing to topic suffix %s", topicSuffix), e);
     }
@@ -224,7 +244,8 @@ public class MqttPublisher implements Publisher {
     topicPrefixPrefix = topicPrefix.substring(0, topicPrefix.length() - deviceId.length());
   }
 
-  private void publishCore(String deviceId, String topicSuffix, Object data, Runnable callback) {
+  private void publishCore(String deviceId, String topicSuffix, Object data, Runnable callback,
+      long startNanos) {
     try {
       String payload = getMessagePayload(data);
       String sendTopic = getSendTopic(deviceId, getMessageTopic(topicSuffix, data));
@@ -233,13 +254,16 @@ public class MqttPublisher implements Publisher {
         debug(format("Queue message for retry %s %s", topicSuffix, deviceId));
         safeSleep(RETRY_DELAY_MS);
         if (isActive()) {
-          publisherExecutor.submit(() -> publishCore(deviceId, topicSuffix, data, callback));
+          publisherExecutor.submit(
+              () -> publishCore(deviceId, topicSuffix, data, callback, startNanos));
         }
         return;
       }
+      ifNotNullThen(publishStats, stats -> stats.record(System.nanoTime() - startNanos, true));
     } catch (Exception e) {
       if (isActive()) {
         errorCounter.incrementAndGet();
+        ifNotNullThen(publishStats, stats -> stats.record(System.nanoTime() - startNanos, false));
         warn(format("Publish %s failed for %s: %s", topicSuffix, deviceId, e));
         if (!isProxyDevice(deviceId)) {
           reconnect();
@@ -328,7 +352,7 @@ public class MqttPublisher implements Publisher {
 
   @Override
   public void shutdown() {
-    if (isActive()) {
+    if (active.getAndSet(false) && publisherExecutor != sharedExecutor) {
       publisherExecutor.shutdownNow();
     }
   }
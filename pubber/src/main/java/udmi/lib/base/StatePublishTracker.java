@@ -0,0 +1,105 @@
+package udmi.lib.base;
+
+import static com.google.udmi.util.JsonUtil.OBJECT_MAPPER;
+import static java.lang.String.format;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bookkeeping for coalescing device state updates: which sub-blocks have changed, whether a flush
+ * is already pending, and what was last sent, so redundant state publishes can be skipped.
+ */
+public class StatePublishTracker {
+
+  private static final String TIMESTAMP_KEY = "timestamp";
+
+  private final AtomicBoolean flushPending = new AtomicBoolean();
+  private final AtomicInteger published = new AtomicInteger();
+  private final AtomicInteger suppressed = new AtomicInteger();
+  private final AtomicInteger coalesced = new AtomicInteger();
+  private final Set<String> dirtyBlocks = new TreeSet<>();
+  private String lastSent;
+
+  /**
+   * Note that the given state sub-block (an update instance or marker class) has changed.
+   */
+  public synchronized void markBlock(Object update) {
+    Class<?> blockClass = update instanceof Class<?> marker ? marker : update.getClass();
+    dirtyBlocks.add(blockClass.getSimpleName());
+  }
+
+  /**
+   * Get and clear the set of sub-blocks changed since the last call.
+   */
+  public synchronized Set<String> takeDirtyBlocks() {
+    Set<String> blocks = new TreeSet<>(dirtyBlocks);
+    dirtyBlocks.clear();
+    return blocks;
+  }
+
+  /**
+   * Claim the (single) pending flush, returning false if one is already scheduled, in which case
+   * the request is coalesced into that one.
+   */
+  public boolean claimFlush() {
+    if (flushPending.compareAndSet(false, true)) {
+      return true;
+    }
+    coalesced.incrementAndGet();
+    return false;
+  }
+
+  public void releaseFlush() {
+    flushPending.set(false);
+  }
+
+  /**
+   * Check if the given state fingerprint is the same as what was last sent, counting it as
+   * suppressed if so.
+   */
+  public synchronized boolean suppressUnchanged(String fingerprint) {
+    if (lastSent == null || !lastSent.equals(fingerprint)) {
+      return false;
+    }
+    suppressed.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Record the fingerprint of a state that was actually sent.
+   */
+  public synchronized void sent(String fingerprint) {
+    lastSent = fingerprint;
+    published.incrementAndGet();
+  }
+
+  /**
+   * Get a comparable fingerprint of the given state, ignoring the timestamp.
+   */
+  public static String fingerprint(Object state) {
+    JsonNode tree = OBJECT_MAPPER.valueToTree(state);
+    if (tree instanceof ObjectNode objectNode) {
+      objectNode.remove(TIMESTAMP_KEY);
+    }
+    return Objects.toString(tree);
+  }
+
+  public int getSuppressed() {
+    return suppressed.get();
+  }
+
+  public int getCoalesced() {
+    return coalesced.get();
+  }
+
+  public String getSummary() {
+    return format("State updates published %d, suppressed %d, coalesced %d", published.get(),
+        suppressed.get(), coalesced.get());
+  }
+}
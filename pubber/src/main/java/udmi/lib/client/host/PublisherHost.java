@@ -56,6 +56,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import org.apache.http.ConnectionClosedException;
 import org.slf4j.Logger;
@@ -63,6 +64,7 @@ import org.slf4j.LoggerFactory;
 import udmi.lib.base.GatewayError;
 import udmi.lib.base.MqttDevice;
 import udmi.lib.base.MqttPublisher;
+import udmi.lib.base.StatePublishTracker;
 import udmi.lib.base.UdmiException;
 import udmi.lib.blob.intf.BlobLifecycleHandler;
 import udmi.lib.client.manager.DeviceManager;
@@ -464,15 +466,21 @@ public interface PublisherHost extends ManagerHost {
    */
   default void markStateDirty(long delayMs) {
     getStateDirty().set(true);
-    if (delayMs >= 0) {
+    if (delayMs >= 0 && getStateTracker().claimFlush()) {
       try {
-        schedule(delayMs, this::flushDirtyState);
+        schedule(delayMs, () -> {
+          getStateTracker().releaseFlush();
+          flushDirtyState();
+        });
       } catch (Exception e) {
+        getStateTracker().releaseFlush();
         LOG.error("Rejecting state publish after {}", delayMs, e);
       }
     }
   }
 
+  StatePublishTracker getStateTracker();
+
   /**
    * Periodic update.
    */
@@ -509,6 +517,7 @@ public interface PublisherHost extends ManagerHost {
       return;
     }
     updateStateHolder(getDeviceState(), update);
+    getStateTracker().markBlock(update);
     markStateDirty();
     if (update instanceof SystemState) {
       ifTrueThen(isDupeState(), this::sendPartialState);
@@ -1067,7 +1076,7 @@ public interface PublisherHost extends ManagerHost {
         if (delay > 0) {
           markStateDirty(delay);
         } else {
-          publishStateMessage();
+          publishStateMessage(!isSpamState());
         }
       } finally {
         getStateLock().unlock();
@@ -1082,7 +1091,44 @@ public interface PublisherHost extends ManagerHost {
    * ensure thread safety, and handles exceptions by wrapping them in a RuntimeException.
    */
   default void publishSynchronousState() {
-    withStateLock(this::publishStateMessage);
+    withThrottledStateLock(this::publishStateMessage);
+  }
+
+  /**
+   * Run a state action under the state lock once the state throttle time has elapsed. The wait
+   * happens outside the lock, so other threads can keep updating state in the meantime. If the
+   * caller is already holding the lock, the action is dropped and a state flush is deferred to
+   * when the throttle time has elapsed instead.
+   */
+  default void withThrottledStateLock(Runnable action) {
+    Lock stateLock = getStateLock();
+    while (true) {
+      long delay = getLastStateTimeMs() + STATE_THROTTLE_MS - System.currentTimeMillis();
+      if (delay > 0) {
+        warn(format("State update delay %dms", delay));
+        safeSleep(delay);
+      }
+      stateLock.lock();
+      try {
+        long remaining = getLastStateTimeMs() + STATE_THROTTLE_MS - System.currentTimeMillis();
+        boolean nested = stateLock instanceof ReentrantLock reentrant
+            && reentrant.getHoldCount() > 1;
+        if (remaining > 0 && nested) {
+          debug(format("Nested state update deferred %dms", remaining));
+          markStateDirty(remaining);
+          return;
+        }
+        if (remaining > 0) {
+          continue;
+        }
+        action.run();
+        return;
+      } catch (Exception e) {
+        throw new RuntimeException("While executing locked state action", e);
+      } finally {
+        stateLock.unlock();
+      }
+    }
   }
 
   /**
@@ -1090,15 +1136,31 @@ public interface PublisherHost extends ManagerHost {
    * the publisher is not active, it marks the state as dirty and returns without publishing.
    */
   default void publishStateMessage() {
+    publishStateMessage(false);
+  }
+
+  /**
+   * Publishes the current device state, optionally skipping it if it is unchanged (ignoring the
+   * timestamp) from what was last sent.
+   */
+  default void publishStateMessage(boolean skipUnchanged) {
     if (!isConnected()) {
       markStateDirty(-1);
       return;
     }
     getStateDirty().set(false);
+    Set<String> changedBlocks = getStateTracker().takeDirtyBlocks();
+    Object stateToSend = isBadState() ? getDeviceState().system : getDeviceState();
+    String fingerprint = StatePublishTracker.fingerprint(stateToSend);
+    if (skipUnchanged && getStateTracker().suppressUnchanged(fingerprint)) {
+      debug(format("Suppressing unchanged state update, blocks updated %s", changedBlocks));
+      return;
+    }
+    debug(format("State blocks updated %s", changedBlocks));
     getDeviceState().timestamp = getNow();
     info(format("Update state %s last_config %s", isoConvert(getDeviceState().timestamp),
             isoConvert(getDeviceState().system.last_config)));
-    publishStateMessage(isBadState() ? getDeviceState().system : getDeviceState());
+    withThrottledStateLock(() -> publishStateMessageRaw(stateToSend, fingerprint));
   }
 
   /**
@@ -1107,7 +1169,7 @@ public interface PublisherHost extends ManagerHost {
    * @param stateToSend The state object to be published.
    */
   default void publishStateMessage(Object stateToSend) {
-    withStateLock(() -> publishStateMessageRaw(stateToSend));
+    withThrottledStateLock(() -> publishStateMessageRaw(stateToSend));
   }
 
   AtomicBoolean getStateDirty();
@@ -1118,17 +1180,18 @@ public interface PublisherHost extends ManagerHost {
    * @param stateToSend The current device state to be published.
    */
   default void publishStateMessageRaw(Object stateToSend) {
+    publishStateMessageRaw(stateToSend, StatePublishTracker.fingerprint(stateToSend));
+  }
+
+  /**
+   * Publishes the given state, recording its fingerprint as sent once the publish completes.
+   */
+  default void publishStateMessageRaw(Object stateToSend, String fingerprint) {
     if (getConfigLatch() == null || getConfigLatch().getCount() > 0) {
       warn("Dropping state update until config received...");
       return;
     }
 
-    long delay = getLastStateTimeMs() + STATE_THROTTLE_MS - System.currentTimeMillis();
-    if (delay > 0) {
-      warn(format("State update delay %dms", delay));
-      safeSleep(delay);
-    }
-
     setLastStateTimeMs(System.currentTimeMillis());
     CountDownLatch latch = new CountDownLatch(1);
 
@@ -1143,13 +1206,17 @@ public interface PublisherHost extends ManagerHost {
       setLastStateTimeMs(System.currentTimeMillis());
       latch.countDown();
     });
+    if (isNoState()) {
+      return;
+    }
     try {
-      if (!isNoState() && !latch.await(INITIAL_THRESHOLD_SEC, TimeUnit.SECONDS)) {
+      if (!latch.await(INITIAL_THRESHOLD_SEC, TimeUnit.SECONDS)) {
         throw new RuntimeException("Timeout waiting for state send");
       }
     } catch (Exception e) {
       throw new RuntimeException(format("While waiting for %s state send latch", getDeviceId()), e);
     }
+    getStateTracker().sent(fingerprint);
   }
 
   default void publishDeviceMessage(Object message) {
@@ -1387,6 +1454,7 @@ public interface PublisherHost extends ManagerHost {
     ifNotNullThen(getDeviceManager(),
         dm -> captureExceptions("Device manager shutdown", dm::shutdown));
     ifNotNullThen(shutdownTask, t -> captureExceptions("PublisherHost sender shutdown", t));
+    info(getStateTracker().getSummary());
     captureExceptions("Disconnecting mqtt", this::disconnectMqtt);
   }
 
@@ -5,6 +5,7 @@ import static com.google.udmi.util.GeneralUtils.ifNotNullThen;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,6 +26,16 @@ public class CatchingScheduledThreadPoolExecutor extends ScheduledThreadPoolExec
     super(corePoolSize);
   }
 
+  /**
+   * Create a new executor using the given thread factory.
+   *
+   * @param corePoolSize  number of threads to utilize
+   * @param threadFactory factory for creating executor threads
+   */
+  public CatchingScheduledThreadPoolExecutor(int corePoolSize, ThreadFactory threadFactory) {
+    super(corePoolSize, threadFactory);
+  }
+
   protected void afterExecute(Runnable r, Throwable t) {
     Throwable exception = t;
     if (exception == null && r instanceof Future<?>) {
@@ -0,0 +1,65 @@
+package udmi.util;
+
+import static java.lang.String.format;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregate latency statistics, collected from many threads and reported per interval.
+ */
+public class LatencyStats {
+
+  private final List<Long> samples = new ArrayList<>();
+  private long totalCount;
+  private long totalErrors;
+  private int errors;
+
+  /**
+   * Record the outcome of one operation.
+   *
+   * @param latencyNanos time taken for the operation
+   * @param success      if the operation completed successfully
+   */
+  public synchronized void record(long latencyNanos, boolean success) {
+    if (success) {
+      samples.add(latencyNanos);
+      totalCount++;
+    } else {
+      errors++;
+      totalErrors++;
+    }
+  }
+
+  /**
+   * Summarize everything recorded since the last summary, and then reset the interval.
+   */
+  public String summarize() {
+    List<Long> interval;
+    int intervalErrors;
+    long count;
+    long failed;
+    synchronized (this) {
+      interval = new ArrayList<>(samples);
+      intervalErrors = errors;
+      count = totalCount;
+      failed = totalErrors;
+      samples.clear();
+      errors = 0;
+    }
+    Collections.sort(interval);
+    return format("%d acked, %d errors (total %d/%d), latency ms p50 %s p99 %s max %s",
+        interval.size(), intervalErrors, count, failed, percentile(interval, 50),
+        percentile(interval, 99), percentile(interval, 100));
+  }
+
+  static String percentile(List<Long> sorted, int percent) {
+    if (sorted.isEmpty()) {
+      return "n/a";
+    }
+    int index = Math.max((int) Math.ceil(sorted.size() * percent / 100.0) - 1, 0);
+    return Long.toString(TimeUnit.NANOSECONDS.toMillis(sorted.get(index)));
+  }
+}
@@ -0,0 +1,76 @@
+package daq.pubber.impl.host;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import org.junit.Test;
+import udmi.schema.Auth_provider;
+import udmi.schema.Basic;
+import udmi.schema.EndpointConfiguration;
+import udmi.schema.PubberConfiguration;
+import udmi.schema.PubberOptions;
+
+/**
+ * Tests for hosting a swarm of devices.
+ */
+public class PubberSwarmHostTest {
+
+  private static final String SITE_PATH = "../tests/sites/basic";
+  private static final String BASE_DEVICE = "AHU-1";
+  private static final String SWARM_DEVICE = "GAT-72";
+  private static final String CLIENT_PREFIX = "/r/ZZ-TRI-FECTA/d/";
+
+  private static PubberConfiguration getBaseConfiguration() {
+    PubberConfiguration configuration = new PubberConfiguration();
+    configuration.sitePath = SITE_PATH;
+    configuration.deviceId = BASE_DEVICE;
+    configuration.options = new PubberOptions();
+    return configuration;
+  }
+
+  @Test
+  public void proxiedDevicesExcluded() {
+    PubberSwarmHost swarm = new PubberSwarmHost(getBaseConfiguration());
+    assertEquals("swarm devices", List.of("AHU-1", "GAT-123", "GAT-72"),
+        swarm.getSwarmDevices(Integer.MAX_VALUE));
+    assertEquals("limited devices", List.of("AHU-1"), swarm.getSwarmDevices(1));
+  }
+
+  @Test(timeout = 10000)
+  public void emptySwarm() throws Exception {
+    PubberSwarmHost swarm = new PubberSwarmHost(getBaseConfiguration());
+    swarm.start(0, 0);
+    swarm.awaitDone();
+  }
+
+  @Test
+  public void endpointTemplate() {
+    PubberConfiguration base = getBaseConfiguration();
+    base.endpoint = new EndpointConfiguration();
+    base.endpoint.client_id = CLIENT_PREFIX + BASE_DEVICE;
+    base.endpoint.topic_prefix = CLIENT_PREFIX + BASE_DEVICE;
+    base.endpoint.auth_provider = new Auth_provider();
+    base.endpoint.auth_provider.basic = new Basic();
+    base.endpoint.auth_provider.basic.username = CLIENT_PREFIX + BASE_DEVICE;
+    base.endpoint.auth_provider.basic.password = "base";
+
+    PubberConfiguration config = new PubberSwarmHost(base).makeDeviceConfig(SWARM_DEVICE);
+    assertEquals("device id", SWARM_DEVICE, config.deviceId);
+    assertEquals("client id", CLIENT_PREFIX + SWARM_DEVICE, config.endpoint.client_id);
+    assertEquals("topic prefix", CLIENT_PREFIX + SWARM_DEVICE, config.endpoint.topic_prefix);
+    Basic basic = config.endpoint.auth_provider.basic;
+    assertEquals("username", CLIENT_PREFIX + SWARM_DEVICE, basic.username);
+    assertEquals("password length", 8, basic.password.length());
+    assertEquals("base unchanged", "base", base.endpoint.auth_provider.basic.password);
+  }
+
+  @Test
+  public void siteEndpoint() {
+    PubberConfiguration config =
+        new PubberSwarmHost(getBaseConfiguration()).makeDeviceConfig(SWARM_DEVICE);
+    assertNull("derived from site model", config.endpoint);
+    assertNotNull("serial number", config.serialNo);
+  }
+}
@@ -0,0 +1,59 @@
+package udmi.lib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static udmi.lib.base.StatePublishTracker.fingerprint;
+
+import java.util.Date;
+import java.util.Set;
+import org.junit.Test;
+import udmi.lib.base.StatePublishTracker;
+import udmi.schema.PointsetState;
+import udmi.schema.State;
+import udmi.schema.SystemState;
+
+/**
+ * Test cases for state publish coalescing.
+ */
+public class StatePublishTrackerTest {
+
+  @Test
+  public void suppressUnchanged() {
+    StatePublishTracker tracker = new StatePublishTracker();
+    State state = new State();
+    state.system = new SystemState();
+    state.timestamp = new Date(1000);
+    assertFalse("nothing sent yet", tracker.suppressUnchanged(fingerprint(state)));
+    tracker.sent(fingerprint(state));
+
+    state.timestamp = new Date(2000);
+    assertTrue("only timestamp changed", tracker.suppressUnchanged(fingerprint(state)));
+
+    state.system.serial_no = "changed";
+    assertFalse("content changed", tracker.suppressUnchanged(fingerprint(state)));
+    assertEquals("suppressed count", 1, tracker.getSuppressed());
+  }
+
+  @Test
+  public void dirtyBlocks() {
+    StatePublishTracker tracker = new StatePublishTracker();
+    tracker.markBlock(new SystemState());
+    tracker.markBlock(PointsetState.class);
+    tracker.markBlock(new SystemState());
+    assertEquals("dirty blocks", Set.of("PointsetState", "SystemState"),
+        tracker.takeDirtyBlocks());
+    assertEquals("cleared blocks", Set.of(), tracker.takeDirtyBlocks());
+  }
+
+  @Test
+  public void singlePendingFlush() {
+    StatePublishTracker tracker = new StatePublishTracker();
+    assertTrue("first claim", tracker.claimFlush());
+    assertFalse("coalesced claim", tracker.claimFlush());
+    assertFalse("coalesced claim", tracker.claimFlush());
+    tracker.releaseFlush();
+    assertTrue("claim after release", tracker.claimFlush());
+    assertEquals("coalesced count", 2, tracker.getCoalesced());
+  }
+}
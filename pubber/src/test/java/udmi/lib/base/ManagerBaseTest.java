@@ -0,0 +1,78 @@
+package udmi.lib.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.Date;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import udmi.lib.intf.ManagerHost;
+import udmi.util.CatchingScheduledThreadPoolExecutor;
+
+/**
+ * Tests for manager scheduling on a shared executor.
+ */
+public class ManagerBaseTest {
+
+  private static final long FUTURE_MS = 200;
+  private final ScheduledExecutorService shared = new CatchingScheduledThreadPoolExecutor(1);
+  private ManagerBase manager;
+
+  @Before
+  public void setUp() {
+    manager = new ManagerBase(mock(ManagerHost.class), "AHU-1", shared) {
+    };
+  }
+
+  @After
+  public void tearDown() {
+    shared.shutdownNow();
+  }
+
+  @Test
+  public void shutdownCancelsScheduled() throws Exception {
+    AtomicInteger runs = new AtomicInteger();
+    Date futureTime = new Date(System.currentTimeMillis() + FUTURE_MS);
+    ScheduledFuture<?> future = manager.scheduleFuture(futureTime, runs::incrementAndGet);
+    ScheduledFuture<?> periodic = manager.schedulePeriodic(1, runs::incrementAndGet);
+
+    manager.shutdown();
+
+    assertTrue("future cancelled", future.isCancelled());
+    assertTrue("periodic cancelled", periodic.isCancelled());
+    assertFalse("shared executor running", shared.isShutdown());
+    Thread.sleep(FUTURE_MS * 2);
+    assertEquals("tasks run after shutdown", 0, runs.get());
+  }
+
+  @Test
+  public void shutdownRefusesScheduling() {
+    manager.shutdown();
+    assertThrows(RuntimeException.class, () -> manager.scheduleFuture(new Date(), () -> { }));
+    assertThrows(RuntimeException.class, () -> manager.schedule(() -> { }, 0, TimeUnit.SECONDS));
+    assertThrows(RuntimeException.class, () -> manager.schedulePeriodic(1, () -> { }));
+  }
+
+  @Test
+  public void otherManagerUnaffected() throws Exception {
+    ManagerBase other = new ManagerBase(mock(ManagerHost.class), "AHU-2", shared) {
+    };
+    AtomicInteger runs = new AtomicInteger();
+    manager.schedule(runs::incrementAndGet, FUTURE_MS, TimeUnit.MILLISECONDS);
+    ScheduledFuture<?> future =
+        other.schedule(runs::incrementAndGet, FUTURE_MS, TimeUnit.MILLISECONDS);
+
+    manager.shutdown();
+
+    future.get(FUTURE_MS * 10, TimeUnit.MILLISECONDS);
+    assertEquals("only other manager task run", 1, runs.get());
+  }
+}
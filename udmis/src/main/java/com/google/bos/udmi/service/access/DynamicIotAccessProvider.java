@@ -198,6 +198,19 @@ public class DynamicIotAccessProvider extends IotAccessBase {
         progress);
   }
 
+  @Override
+  public Map<String, CloudModel> modelDevices(String registryId, Map<String, CloudModel> models,
+      Consumer<String> progress) {
+    Map<IotAccessProvider, Map<String, CloudModel>> batches = new HashMap<>();
+    models.forEach((deviceId, model) -> batches.computeIfAbsent(
+        getRegistryProvider(registryId, deviceId), provider -> new HashMap<>())
+        .put(deviceId, model));
+    Map<String, CloudModel> receipts = new HashMap<>();
+    batches.forEach((provider, batch) -> receipts.putAll(
+        provider.modelDevices(registryId, batch, progress)));
+    return receipts;
+  }
+
   @Override
   public CloudModel modelRegistry(String registryId, String deviceId, CloudModel cloudModel) {
     return getRegistryProvider(registryId, deviceId)
@@ -46,6 +46,7 @@ import com.google.udmi.util.JsonUtil;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -57,7 +58,9 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import udmi.schema.Auth_provider;
@@ -113,6 +116,7 @@ public class ImplicitIotAccessProvider extends IotAccessBase {
   private static final String BROKER_HOST_KEY = "broker_host";
   private static final String BROKER_PORT_KEY = "broker_port";
   private static final String LAST_CONFIG_KEY = "last_config";
+  private static final Set<String> CONFIG_KEYS = ImmutableSet.of(LAST_CONFIG_KEY, CONFIG_VER_KEY);
   private static final String LAST_STATE_KEY = "last_state";
   private static final String DEVICES_ACTIVE = "active";
   private static final String BOUND_TO_KEY = "bound_to";
@@ -140,6 +144,9 @@ public class ImplicitIotAccessProvider extends IotAccessBase {
   private final ConnectionBroker broker;
   private final Future<Void> connLogger;
   private IotDataProvider database;
+  private final ThreadLocal<AtomicInteger> configRpcCount = new ThreadLocal<>();
+  final AtomicLong configUpdates = new AtomicLong();
+  final AtomicLong configUpdateRpcs = new AtomicLong();
 
   private final Map<String, Integer> configPublished = new ConcurrentHashMap<>();
   private final String brokerHost;
@@ -635,9 +642,10 @@ public class ImplicitIotAccessProvider extends IotAccessBase {
   @Override
   public Entry<Long, String> fetchConfig(String registryId, String deviceId) {
     DataRef dataRef = registryDeviceRef(registryId, deviceId);
-    try (AutoCloseable locked = dataRef.lock()) {
-      String config = dataRef.get(LAST_CONFIG_KEY);
-      String version = dataRef.get(CONFIG_VER_KEY);
+    try {
+      Map<String, Entry<Long, String>> revised = dataRef.getRevised(CONFIG_KEYS);
+      String config = ifNotNullGet(revised.get(LAST_CONFIG_KEY), Entry::getValue);
+      String version = ifNotNullGet(revised.get(CONFIG_VER_KEY), Entry::getValue);
       info("Fetched config %s #%s", dataRef, version);
       Long versionLong = ofNullable(version).map(Long::parseLong).orElse(null);
       return new SimpleEntry<>(versionLong, ofNullable(config).orElse(EMPTY_JSON));
@@ -909,13 +917,78 @@ public class ImplicitIotAccessProvider extends IotAccessBase {
     super.shutdown();
   }
 
+  /**
+   * Modify a device config, tracking the number of data store round-trips it takes.
+   */
+  @Override
+  public String modifyConfig(Envelope envelope, Function<Entry<Long, String>, String> munger) {
+    AtomicInteger rpcs = new AtomicInteger();
+    configRpcCount.set(rpcs);
+    try {
+      return super.modifyConfig(envelope, munger);
+    } finally {
+      configRpcCount.remove();
+      configUpdates.incrementAndGet();
+      configUpdateRpcs.addAndGet(rpcs.get());
+      debug("Modified config %s/%s with %d rpcs", envelope.deviceRegistryId, envelope.deviceId,
+          rpcs.get());
+    }
+  }
+
+  /**
+   * Optimistic lock-free config update: one consistent read of the config and its version, and
+   * then a single transaction conditional on the version entry's modification revision.
+   */
+  @Override
+  protected String modifyConfigOnce(Envelope envelope,
+      Function<Entry<Long, String>, String> munger) {
+    String registryId = envelope.deviceRegistryId;
+    String deviceId = envelope.deviceId;
+    DataRef dataRef = registryDeviceRef(registryId, deviceId);
+    countConfigRpc();
+    Map<String, Entry<Long, String>> revised = dataRef.getRevised(CONFIG_KEYS);
+    Entry<Long, String> versionEntry = revised.get(CONFIG_VER_KEY);
+    long revision = ifNotNullGet(versionEntry, Entry::getKey, 0L);
+    Long version = ifNotNullGet(versionEntry, entry -> Long.parseLong(entry.getValue()));
+    String config = ofNullable(revised.get(LAST_CONFIG_KEY)).map(Entry::getValue)
+        .orElse(EMPTY_JSON);
+    debug("Retrieved config %s #%s at revision %d", dataRef, version, revision);
+
+    String updated = safeMunge(munger, new SimpleEntry<>(version, config));
+    if (updated == null) {
+      return null;
+    }
+    checkConfigLength(updated);
+
+    String update = Long.toString(ofNullable(version).map(v -> v + 1).orElse(1L));
+    Map<String, String> puts = Map.of(
+        LAST_CONFIG_KEY, updated,
+        CONFIG_VER_KEY, update
+    );
+    countConfigRpc();
+    if (!dataRef.updateIfRevision(CONFIG_VER_KEY, revision, puts, null)) {
+      throw new ConcurrentModificationException(
+          format("Config %s modified since revision %d", dataRef, revision));
+    }
+
+    info("Updated config %s #%s to #%s", dataRef, version, update);
+    sendConfigUpdate(registryId, deviceId, updated);
+    return updated;
+  }
+
+  private void countConfigRpc() {
+    ifNotNullThen(configRpcCount.get(), AtomicInteger::incrementAndGet);
+  }
+
   @Override
   public String updateConfig(Envelope envelope, String config, Long prevVersion) {
     String registryId = envelope.deviceRegistryId;
     String deviceId = envelope.deviceId;
     DataRef dataRef = registryDeviceRef(registryId, deviceId);
-    try (AutoCloseable lock = dataRef.lock()) {
-      String prev = dataRef.get(CONFIG_VER_KEY);
+    try {
+      Entry<Long, String> versionEntry =
+          dataRef.getRevised(ImmutableSet.of(CONFIG_VER_KEY)).get(CONFIG_VER_KEY);
+      String prev = ifNotNullGet(versionEntry, Entry::getValue);
       if (prevVersion != null && !prevVersion.toString().equals(prev)) {
         throw new RuntimeException("Config version update mismatch");
       }
@@ -928,7 +1001,8 @@ public class ImplicitIotAccessProvider extends IotAccessBase {
           CONFIG_VER_KEY, update
       );
 
-      boolean success = dataRef.updateIfMatch(CONFIG_VER_KEY, prev, puts, null);
+      long revision = ifNotNullGet(versionEntry, Entry::getKey, 0L);
+      boolean success = dataRef.updateIfRevision(CONFIG_VER_KEY, revision, puts, null);
       if (!success) {
         throw new RuntimeException("Concurrent modification of config version detected");
       }
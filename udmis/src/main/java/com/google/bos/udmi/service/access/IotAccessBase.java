@@ -4,11 +4,13 @@ import static com.google.udmi.util.GeneralUtils.CSV_JOINER;
 import static com.google.udmi.util.GeneralUtils.friendlyStackTrace;
 import static com.google.udmi.util.GeneralUtils.ifNotNullGet;
 import static com.google.udmi.util.GeneralUtils.ifNotNullThen;
+import static com.google.udmi.util.GeneralUtils.ifTrueThen;
 import static com.google.udmi.util.JsonUtil.isoConvert;
 import static com.google.udmi.util.JsonUtil.safeSleep;
 import static com.google.udmi.util.JsonUtil.toMap;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.CompletableFuture.runAsync;
 
 import com.google.bos.udmi.service.core.DistributorPipe;
 import com.google.bos.udmi.service.core.ProcessorBase.PreviousParseException;
@@ -24,11 +26,18 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import udmi.schema.CloudModel;
+import udmi.schema.CloudModel.ModelOperation;
 import udmi.schema.Envelope;
 import udmi.schema.Envelope.SubFolder;
 import udmi.schema.IotAccess;
@@ -45,9 +54,13 @@ public abstract class IotAccessBase extends ContainerBase implements IotAccessPr
   private static final long REGISTRY_COMMAND_BACKOFF_SEC = 60;
   private static final Map<Entry<String, String>, Instant> BACKOFF_MAP = new ConcurrentHashMap<>();
   private static final long CONFIG_UPDATE_BACKOFF_MS = 1000;
+  private static final long CONFIG_UPDATE_MIN_BACKOFF_MS = 20;
+  private static final int MAX_BACKOFF_SHIFT = 16;
   private static final int CONFIG_UPDATE_MAX_RETRIES = 10;
   private static final Duration REGISTRY_REFRESH = Duration.ofMinutes(10);
   private static final Duration REGISTRY_BACKOFF = Duration.ofMinutes(1);
+  private static final int BATCH_PROGRESS_INTERVAL = 10;
+  private static final int BATCH_THREADS = 8;
   final Map<String, String> options;
   private final AtomicReference<Instant> lastRegistryFetch =
       new AtomicReference<>(Instant.ofEpochSecond(0));
@@ -130,12 +143,26 @@ public abstract class IotAccessBase extends ContainerBase implements IotAccessPr
     }
   }
 
-  private String checkedUpdate(Envelope envelope, Long version, String updated) {
+  /**
+   * Get a jittered exponential backoff delay for the given (zero-based) retry attempt, so that
+   * competing writers don't retry in lock-step.
+   */
+  static long jitteredBackoff(int attempt) {
+    long ceiling = Math.min(CONFIG_UPDATE_BACKOFF_MS,
+        CONFIG_UPDATE_MIN_BACKOFF_MS << Math.min(attempt, MAX_BACKOFF_SHIFT));
+    return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+  }
+
+  static void checkConfigLength(String updated) {
     int configLength = updated.length();
     if (configLength > MAX_CONFIG_LENGTH) {
       throw new AbortLoopException(
           format("Config length %d exceeds maximum %d", configLength, MAX_CONFIG_LENGTH));
     }
+  }
+
+  private String checkedUpdate(Envelope envelope, Long version, String updated) {
+    checkConfigLength(updated);
     return updateConfig(envelope, updated, version);
   }
 
@@ -175,7 +202,7 @@ public abstract class IotAccessBase extends ContainerBase implements IotAccessPr
     return until;
   }
 
-  private String safeMunge(Function<Entry<Long, String>, String> munger,
+  String safeMunge(Function<Entry<Long, String>, String> munger,
       Entry<Long, String> configPair) {
     try {
       return munger.apply(configPair);
@@ -188,6 +215,26 @@ public abstract class IotAccessBase extends ContainerBase implements IotAccessPr
     }
   }
 
+  /**
+   * Make a single read-modify-write attempt at updating a device config. Any exception (other
+   * than an abort) will cause the attempt to be retried after a backoff.
+   */
+  protected String modifyConfigOnce(Envelope envelope,
+      Function<Entry<Long, String>, String> munger) {
+    String registryId = envelope.deviceRegistryId;
+    String deviceId = envelope.deviceId;
+    Entry<Long, String> currentConfig = fetchConfig(registryId, deviceId);
+    Long version = ifNotNullGet(currentConfig, Entry::getKey);
+    debug("Retrieved config %s/%s #%d", registryId, deviceId, version);
+    String updatedConfig = ifNotNullGet(safeMunge(munger, currentConfig),
+        updated -> checkedUpdate(envelope, version, updated));
+    // Preventing a spurious "applied config" message when no changes occurred.
+    if (updatedConfig != null) {
+      debug("Applied config %s/%s #%d", registryId, deviceId, version);
+    }
+    return updatedConfig;
+  }
+
   @Override
   public void activate() {
     super.activate();
@@ -217,6 +264,46 @@ public abstract class IotAccessBase extends ContainerBase implements IotAccessPr
     throw new RuntimeException("Not implemented");
   }
 
+  /**
+   * Default batch implementation that applies the individual device operations concurrently, on a
+   * bounded pool of its own since each operation blocks on provider calls.
+   */
+  @Override
+  public Map<String, CloudModel> modelDevices(String registryId, Map<String, CloudModel> models,
+      Consumer<String> progress) {
+    info("Processing batch of %d device models for %s", models.size(), registryId);
+    Map<String, CloudModel> receipts = new ConcurrentHashMap<>();
+    AtomicInteger completed = new AtomicInteger();
+    ExecutorService executor =
+        Executors.newFixedThreadPool(Math.max(1, Math.min(BATCH_THREADS, models.size())));
+    try {
+      CompletableFuture.allOf(models.entrySet().stream().map(entry -> runAsync(() -> {
+        receipts.put(entry.getKey(),
+            modelDeviceReceipt(registryId, entry.getKey(), entry.getValue(), progress));
+        int count = completed.incrementAndGet();
+        ifTrueThen(count % BATCH_PROGRESS_INTERVAL == 0, () -> ifNotNullThen(progress,
+            p -> p.accept(format("Modeled %d of %d devices...", count, models.size()))));
+      }, executor)).toArray(CompletableFuture[]::new)).join();
+    } finally {
+      executor.shutdown();
+    }
+    return receipts;
+  }
+
+  private CloudModel modelDeviceReceipt(String registryId, String deviceId, CloudModel model,
+      Consumer<String> progress) {
+    try {
+      return modelDevice(registryId, deviceId, model, progress);
+    } catch (Exception e) {
+      warn("Batch %s failed for %s/%s: %s", model.operation, registryId, deviceId,
+          friendlyStackTrace(e));
+      CloudModel receipt = new CloudModel();
+      receipt.operation = ModelOperation.ERROR;
+      receipt.detail = friendlyStackTrace(e);
+      return receipt;
+    }
+  }
+
   /**
    * Modify a device configuration. Return the full/complete update that was actually written.
    */
@@ -228,16 +315,7 @@ public abstract class IotAccessBase extends ContainerBase implements IotAccessPr
     try {
       while (true) {
         try {
-          Entry<Long, String> currentConfig = fetchConfig(registryId, deviceId);
-          Long version = ifNotNullGet(currentConfig, Entry::getKey);
-          debug("Retrieved config %s/%s #%d", registryId, deviceId, version);
-          String updatedConfig = ifNotNullGet(safeMunge(munger, currentConfig),
-              updated -> checkedUpdate(envelope, version, updated));
-          // Preventing a spurious "applied config" message when no changes occurred.
-          if (updatedConfig != null) {
-            debug("Applied config %s/%s #%d", registryId, deviceId, version);
-          }
-          return updatedConfig;
+          return modifyConfigOnce(envelope, munger);
         } catch (AbortLoopException e) {
           throw e;
         } catch (Exception e) {
@@ -249,7 +327,7 @@ public abstract class IotAccessBase extends ContainerBase implements IotAccessPr
           warn(
               format("Error modifying config for %s/%s, remaining retries %d...", registryId,
                   deviceId, --retryCount));
-          safeSleep(CONFIG_UPDATE_BACKOFF_MS);
+          safeSleep(jitteredBackoff(CONFIG_UPDATE_MAX_RETRIES - retryCount - 1));
         }
       }
     } catch (AbortLoopException e) {
@@ -64,6 +64,13 @@ public interface IotAccessProvider extends UdmiComponent {
   CloudModel modelDevice(String registryId, String deviceId,
       CloudModel cloudModel, Consumer<String> progress);
 
+  /**
+   * Apply a batch of independent device model operations, returning a receipt for each device.
+   * Individual failures are reported as ERROR receipts rather than failing the whole batch.
+   */
+  Map<String, CloudModel> modelDevices(String registryId, Map<String, CloudModel> models,
+      Consumer<String> progress);
+
   CloudModel modelRegistry(String registryId, String deviceId, CloudModel cloudModel);
 
   String modifyConfig(Envelope envelope, Function<Entry<Long, String>, String> munger);
@@ -2,16 +2,17 @@ package com.google.bos.udmi.service.core;
 
 import static com.google.udmi.util.GeneralUtils.friendlyStackTrace;
 import static com.google.udmi.util.JsonUtil.stringify;
-import static com.google.udmi.util.JsonUtil.toMap;
 
 import com.google.bos.udmi.service.messaging.MessageContinuation;
+import com.google.bos.udmi.service.support.BatchWriter;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.StringReader;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
@@ -19,6 +20,8 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 import udmi.schema.EndpointConfiguration;
 import udmi.schema.Envelope;
 import udmi.schema.Envelope.SubFolder;
@@ -26,11 +29,18 @@ import udmi.schema.Envelope.SubType;
 
 /**
  * UDMIS component that captures incoming message streams and stores pointset events to InfluxDB
- * and all other messages to PostgreSQL.
+ * and all other messages to PostgreSQL. Writes are buffered and flushed in batches by background
+ * writers, so the dispatcher threads never block on the databases (except for backpressure when
+ * the write buffers are full).
  */
 @ComponentName("capture")
 public class CaptureProcessor extends ProcessorBase {
 
+  private static final String COPY_SQL = "COPY udmi_messages ("
+      + "project_id, registry_id, device_id, sub_folder, sub_type, publish_time, payload"
+      + ") FROM STDIN WITH (FORMAT csv)";
+  private static final int VALIDITY_TIMEOUT_SEC = 5;
+
   private final String postgresHost;
   private final String postgresPort;
   private final String postgresUser;
@@ -44,6 +54,9 @@ public class CaptureProcessor extends ProcessorBase {
   private final String influxBucket;
 
   private final HttpClient httpClient;
+  private final BatchWriter<PostgresRow> postgresWriter;
+  private final BatchWriter<String> influxWriter;
+  private Connection postgresConnection;
 
   /**
    * Construct a new CaptureProcessor component.
@@ -65,6 +78,15 @@ public class CaptureProcessor extends ProcessorBase {
 
     httpClient = HttpClient.newHttpClient();
 
+    int capacity = Integer.parseInt(getEnvOrDefault("CAPTURE_BUFFER_SIZE", "10000"));
+    int maxBatch = Integer.parseInt(getEnvOrDefault("CAPTURE_BATCH_SIZE", "500"));
+    long maxDelayMs = Long.parseLong(getEnvOrDefault("CAPTURE_FLUSH_MS", "1000"));
+    long maxBlockMs = Long.parseLong(getEnvOrDefault("CAPTURE_BLOCK_MS", "5000"));
+    postgresWriter = new BatchWriter<>("postgres", capacity, maxBatch, maxDelayMs, maxBlockMs,
+        this::writeToPostgres);
+    influxWriter = new BatchWriter<>("influx", capacity, maxBatch, maxDelayMs, maxBlockMs,
+        this::writeToInflux);
+
     registerHandler(udmi.schema.PointsetEvents.class, this::pointsetEventsHandler);
 
     initPostgres();
@@ -82,7 +104,7 @@ public class CaptureProcessor extends ProcessorBase {
   }
 
   private Connection getPostgresConnection() throws SQLException {
-    String url = String.format("jdbc:postgresql://%s:%s/%s",
+    String url = String.format("jdbc:postgresql://%s:%s/%s?reWriteBatchedInserts=true",
         postgresHost, postgresPort, postgresDb);
     if (postgresUser != null && !postgresUser.isEmpty()) {
       return DriverManager.getConnection(url, postgresUser, postgresPassword);
@@ -90,6 +112,29 @@ public class CaptureProcessor extends ProcessorBase {
     return DriverManager.getConnection(url);
   }
 
+  /**
+   * Get the shared connection used by the writer thread, reconnecting if it's gone bad.
+   */
+  private Connection getWriterConnection() throws SQLException {
+    if (postgresConnection == null || !postgresConnection.isValid(VALIDITY_TIMEOUT_SEC)) {
+      closeWriterConnection();
+      postgresConnection = getPostgresConnection();
+    }
+    return postgresConnection;
+  }
+
+  private void closeWriterConnection() {
+    try {
+      if (postgresConnection != null) {
+        postgresConnection.close();
+      }
+    } catch (Exception e) {
+      debug("Ignoring error closing PostgreSQL connection: " + friendlyStackTrace(e));
+    } finally {
+      postgresConnection = null;
+    }
+  }
+
   private void initPostgres() {
     String sql = "CREATE TABLE IF NOT EXISTS udmi_messages ("
         + "id SERIAL PRIMARY KEY, "
@@ -111,6 +156,27 @@ public class CaptureProcessor extends ProcessorBase {
     }
   }
 
+  @Override
+  public void activate() {
+    super.activate();
+    postgresWriter.start();
+    influxWriter.start();
+  }
+
+  @Override
+  public void shutdown() {
+    super.shutdown();
+    postgresWriter.stop();
+    influxWriter.stop();
+    closeWriterConnection();
+    info("Capture writer stats: %s; %s", postgresWriter, influxWriter);
+  }
+
+  @Override
+  protected void periodicTask() {
+    info("Capture writer stats: %s; %s", postgresWriter, influxWriter);
+  }
+
   @Override
   protected void defaultHandler(Object defaultedMessage) {
     MessageContinuation continuation = getContinuation(defaultedMessage);
@@ -129,26 +195,32 @@ public class CaptureProcessor extends ProcessorBase {
   }
 
   /**
-   * Save message envelope and payload into PostgreSQL table.
+   * Queue message envelope and payload for saving into PostgreSQL table.
    */
   public void saveToPostgres(Envelope envelope, Object payload) {
-    String sql = "INSERT INTO udmi_messages ("
-        + "project_id, registry_id, device_id, sub_folder, sub_type, publish_time, payload"
-        + ") VALUES (?, ?, ?, ?, ?, ?, ?::jsonb)";
-    try (Connection conn = getPostgresConnection();
-         PreparedStatement stmt = conn.prepareStatement(sql)) {
-      stmt.setString(1, envelope.projectId);
-      stmt.setString(2, envelope.deviceRegistryId);
-      stmt.setString(3, envelope.deviceId);
-      stmt.setString(4, envelope.subFolder != null ? envelope.subFolder.value() : null);
-      stmt.setString(5, envelope.subType != null ? envelope.subType.value() : null);
-      stmt.setTimestamp(6, envelope.publishTime != null
-          ? new Timestamp(envelope.publishTime.getTime())
-          : null);
-      stmt.setString(7, stringify(payload));
-      stmt.executeUpdate();
+    PostgresRow row = new PostgresRow(envelope.projectId, envelope.deviceRegistryId,
+        envelope.deviceId, envelope.subFolder != null ? envelope.subFolder.value() : null,
+        envelope.subType != null ? envelope.subType.value() : null,
+        envelope.publishTime != null ? new Timestamp(envelope.publishTime.getTime()) : null,
+        stringify(payload));
+    if (!postgresWriter.add(row)) {
+      warn("Dropped PostgreSQL row for device %s, write buffer full", envelope.deviceId);
+    }
+  }
+
+  /**
+   * Write a batch of rows with a single COPY, which is much cheaper for the database than
+   * individual (or even batched) inserts.
+   */
+  private void writeToPostgres(List<PostgresRow> rows) {
+    try {
+      CopyManager copyManager = getWriterConnection().unwrap(PGConnection.class).getCopyAPI();
+      long copied = copyManager.copyIn(COPY_SQL, new StringReader(toCopyCsv(rows)));
+      debug("Saved %d messages to PostgreSQL", copied);
     } catch (Exception e) {
-      error("Error saving message to PostgreSQL: " + friendlyStackTrace(e));
+      closeWriterConnection();
+      error("Error saving %d messages to PostgreSQL: %s", rows.size(), friendlyStackTrace(e));
+      throw new RuntimeException("While saving to PostgreSQL", e);
     }
   }
 
@@ -165,7 +237,7 @@ public class CaptureProcessor extends ProcessorBase {
         ? publishTime.getTime() * 1_000_000L
         : System.currentTimeMillis() * 1_000_000L;
 
-    Map<String, Object> payloadMap = toMap(payload);
+    Map<String, Object> payloadMap = messageMap(payload);
     Object pointsObj = payloadMap.get("points");
     if (!(pointsObj instanceof Map)) {
       return;
@@ -214,13 +286,14 @@ public class CaptureProcessor extends ProcessorBase {
       return;
     }
 
-    String lineProtocolData = String.join("\n", lines);
-    info(String.format("Writing %d point_value metrics to InfluxDB for device %s",
-        lines.size(), deviceId));
-    writeToInfluxHttp(lineProtocolData);
+    debug("Queueing %d point_value metrics to InfluxDB for device %s", lines.size(), deviceId);
+    if (!influxWriter.add(String.join("\n", lines))) {
+      warn("Dropped InfluxDB metrics for device %s, write buffer full", deviceId);
+    }
   }
 
-  private void writeToInfluxHttp(String lineProtocolData) {
+  private void writeToInflux(List<String> batch) {
+    String lineProtocolData = String.join("\n", batch);
     try {
       String urlStr = String.format("http://%s:%s/api/v2/write?org=%s&bucket=%s&precision=ns",
           influxHost, influxPort, influxOrg, influxBucket);
@@ -233,13 +306,43 @@ public class CaptureProcessor extends ProcessorBase {
       HttpResponse<String> response = httpClient.send(request,
           HttpResponse.BodyHandlers.ofString());
       if (response.statusCode() >= 400) {
-        error(String.format("InfluxDB write failed with status %d: %s",
+        throw new IllegalStateException(String.format("InfluxDB write failed with status %d: %s",
             response.statusCode(), response.body()));
-      } else {
-        info(String.format("InfluxDB write succeeded with status %d", response.statusCode()));
       }
+      debug("InfluxDB write of %d messages succeeded with status %d", batch.size(),
+          response.statusCode());
     } catch (Exception e) {
       error("Error writing to InfluxDB: " + friendlyStackTrace(e));
+      throw new RuntimeException("While writing to InfluxDB", e);
     }
   }
+
+  /**
+   * Format rows as csv for COPY, where a null is an unquoted empty field (and a quoted empty field
+   * is an empty string). Timestamps use the same local time form that JDBC would have sent.
+   */
+  @VisibleForTesting
+  static String toCopyCsv(List<PostgresRow> rows) {
+    StringBuilder csv = new StringBuilder();
+    for (PostgresRow row : rows) {
+      appendCsv(csv, row.projectId).append(',');
+      appendCsv(csv, row.registryId).append(',');
+      appendCsv(csv, row.deviceId).append(',');
+      appendCsv(csv, row.subFolder).append(',');
+      appendCsv(csv, row.subType).append(',');
+      appendCsv(csv, row.publishTime == null ? null : row.publishTime.toString()).append(',');
+      appendCsv(csv, row.payload).append('\n');
+    }
+    return csv.toString();
+  }
+
+  private static StringBuilder appendCsv(StringBuilder csv, String value) {
+    return value == null ? csv : csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+  }
+
+  record PostgresRow(String projectId, String registryId, String deviceId,
+                             String subFolder, String subType, Timestamp publishTime,
+                             String payload) {
+
+  }
 }
@@ -1,6 +1,7 @@
 package com.google.bos.udmi.service.core;
 
 import static com.google.udmi.util.GeneralUtils.deepCopy;
+import static com.google.udmi.util.GeneralUtils.ifTrueThen;
 import static com.google.udmi.util.JsonUtil.stringifyTerse;
 import static java.lang.String.format;
 
@@ -8,6 +9,7 @@ import com.google.bos.udmi.service.pod.SimpleHandler;
 import com.google.bos.udmi.service.pod.UdmiServicePod;
 import udmi.schema.EndpointConfiguration;
 import udmi.schema.Envelope;
+import udmi.schema.Level;
 
 /**
  * Simple distributor that uses an underlying message pipe.
@@ -42,7 +44,8 @@ public class DistributorPipe extends ProcessorBase {
   @Override
   protected void defaultHandler(Object message) {
     Envelope envelope = getContinuation(message).getEnvelope();
-    debug("Handling distribution from " + stringifyTerse(envelope));
+    ifTrueThen(isLoggable(Level.DEBUG),
+        () -> debug("Handling distribution from " + stringifyTerse(envelope)));
     try {
       String[] routeId = envelope.gatewayId.split(ROUTE_SEPARATOR, 2);
       if (clientId.equals(routeId[0])) {
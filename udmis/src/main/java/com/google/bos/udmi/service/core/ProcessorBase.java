@@ -21,6 +21,7 @@ import static com.google.udmi.util.GeneralUtils.ifNotNullGet;
 import static com.google.udmi.util.GeneralUtils.ifNotNullThen;
 import static com.google.udmi.util.GeneralUtils.ifNotTrueThen;
 import static com.google.udmi.util.GeneralUtils.ifTrueGet;
+import static com.google.udmi.util.GeneralUtils.ifTrueThen;
 import static com.google.udmi.util.GeneralUtils.isNullOrTruthy;
 import static com.google.udmi.util.JsonUtil.asMap;
 import static com.google.udmi.util.JsonUtil.getDate;
@@ -56,12 +57,14 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.TreeMap;
 import java.util.function.Consumer;
 import org.jetbrains.annotations.TestOnly;
 import udmi.schema.EndpointConfiguration;
 import udmi.schema.Envelope;
 import udmi.schema.Envelope.SubFolder;
 import udmi.schema.Envelope.SubType;
+import udmi.schema.Level;
 
 /**
  * Base class for UDMIS components.
@@ -151,8 +154,8 @@ public abstract class ProcessorBase extends ContainerBase implements SimpleHandl
   protected String processConfigChange(Envelope envelope, Object payload, Date newLastStart) {
     // TODO: This should really be pushed down to ReflectProcessor, not sure why it's here.
     SubFolder subFolder = envelope.subFolder;
-    debug(format("Modifying device config %s/%s/%s %s", envelope.deviceRegistryId,
-        envelope.deviceId, subFolder, envelope.transactionId));
+    debug("Modifying device config %s/%s/%s %s", envelope.deviceRegistryId,
+        envelope.deviceId, subFolder, envelope.transactionId);
 
     String configUpdate = iotAccess.modifyConfig(
         envelope, previous -> updateConfig(previous, envelope, payload, newLastStart));
@@ -402,8 +405,8 @@ public abstract class ProcessorBase extends ContainerBase implements SimpleHandl
 
   @Override
   public void processMessage(Envelope envelope, Object message) {
-    debug("Process message " + stringifyTerse(envelope));
-    trace("Message payload " + stringifyTerse(message));
+    ifTrueThen(isLoggable(Level.DEBUG), () -> debug("Process message " + stringifyTerse(envelope)));
+    ifTrueThen(isLoggable(Level.TRACE), () -> trace("Message payload " + stringifyTerse(message)));
     ((MessageDispatcherImpl) dispatcher).processMessage(envelope, message);
   }
 
@@ -455,6 +458,20 @@ public abstract class ProcessorBase extends ContainerBase implements SimpleHandl
     return dispatcher.getContinuation(message);
   }
 
+  /**
+   * Convert a received message to the given class, reusing any conversion already made.
+   */
+  <T> T convertMessage(Object message, Class<T> targetClass) {
+    return dispatcher.convertMessage(message, targetClass);
+  }
+
+  /**
+   * Get a received message as a (modifiable) map.
+   */
+  Map<String, Object> messageMap(Object message) {
+    return mapCast(convertMessage(message, TreeMap.class));
+  }
+
   @TestOnly
   public MessageDispatcher getDispatcher() {
     return dispatcher;
@@ -34,7 +34,6 @@ import static com.google.udmi.util.JsonUtil.isoConvert;
 import static com.google.udmi.util.JsonUtil.mapCast;
 import static com.google.udmi.util.JsonUtil.stringify;
 import static com.google.udmi.util.JsonUtil.stringifyTerse;
-import static com.google.udmi.util.JsonUtil.toMap;
 import static com.google.udmi.util.JsonUtil.toObject;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
@@ -83,6 +82,7 @@ public class ReflectProcessor extends ProcessorBase {
   private static final String REFLECTOR_TXN_PREFIX = "RC:";
   private static final String CONFIG_TXN_PREFIX = "CU:";
   private static final String PROCESSOR_TXN_PREFIX = "RP:";
+  private static final String REGISTRY_NUM_ID = "registry";
 
   public ReflectProcessor(EndpointConfiguration config) {
     super(config);
@@ -97,7 +97,7 @@ public class ReflectProcessor extends ProcessorBase {
   protected void defaultHandler(Object message) {
     MessageContinuation continuation = getContinuation(message);
     Envelope reflect = continuation.getEnvelope();
-    Map<String, Object> objectMap = toMap(message);
+    Map<String, Object> objectMap = messageMap(message);
     String principal = ofNullable(reflect.principal).orElse((String) objectMap.get("principal"));
 
     // Loopback protection using instance ID
@@ -297,12 +297,48 @@ public class ReflectProcessor extends ProcessorBase {
   }
 
   private CloudModel reflectModel(Envelope attributes, CloudModel request) {
+    if (isBatchRequest(request)) {
+      return reflectModelBatch(attributes, request);
+    }
     CloudModel modelResult = updateModel(attributes, request);
     ifNotNullThen(extractModel(request),
         model -> publish(makeTargetEnvelope(attributes), model));
     return modelResult;
   }
 
+  /**
+   * A batch request is a registry-level model with per-device models in device_ids, each with its
+   * own operation, which are applied together and returned as per-device receipts.
+   */
+  private static boolean isBatchRequest(CloudModel request) {
+    return request.resource_type == REGISTRY && request.device_ids != null;
+  }
+
+  private CloudModel reflectModelBatch(Envelope attributes, CloudModel request) {
+    Map<String, CloudModel> models = request.device_ids;
+    debug("Processing batch %s of %d device models", attributes.transactionId, models.size());
+    Map<String, CloudModel> receipts = iotAccess.modelDevices(attributes.deviceRegistryId,
+        models, progress -> reflectUdmiLog(attributes, progress));
+    models.forEach((deviceId, model) -> {
+      CloudModel receipt = receipts.get(deviceId);
+      if (receipt == null || receipt.operation == ModelOperation.ERROR) {
+        return;
+      }
+      try {
+        Envelope target = makeTargetEnvelope(attributes);
+        target.deviceId = deviceId;
+        publish(target, extractModel(model));
+      } catch (Exception e) {
+        warn("Batch model update failed for %s: %s", deviceId, friendlyStackTrace(e));
+      }
+    });
+    CloudModel reply = new CloudModel();
+    reply.operation = request.operation;
+    reply.num_id = REGISTRY_NUM_ID;
+    reply.device_ids = receipts;
+    return reply;
+  }
+
   private CloudModel updateModel(Envelope attributes, CloudModel request) {
     if (request.operation == PREVIEW) {
       // Nothing more to do in this case since this is just preview, meaning no impact.
@@ -499,7 +535,8 @@ public class ReflectProcessor extends ProcessorBase {
 
   void updateAwareness(Envelope envelope, UdmiState toolState) {
     debug("Processing UdmiState for %s/%s", envelope.deviceRegistryId, envelope.deviceId);
-    trace("UdmiState payload: %s", stringifyTerse(toolState));
+    ifTrueThen(isLoggable(Level.TRACE),
+        () -> trace("UdmiState payload: %s", stringifyTerse(toolState)));
     ifNotNullThen(toolState.setup, setup -> updateProviderAffinity(envelope, toolState.source));
     ifNotNullThen(toolState.regions, this::updateRegistryRegions);
   }
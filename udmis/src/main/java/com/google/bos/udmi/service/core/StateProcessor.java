@@ -1,22 +1,27 @@
 package com.google.bos.udmi.service.core;
 
 import static com.google.udmi.util.GeneralUtils.catchToNull;
-import static com.google.udmi.util.GeneralUtils.ifNotNullThen;
+import static com.google.udmi.util.GeneralUtils.deepCopy;
 import static com.google.udmi.util.JsonUtil.convertTo;
 import static com.google.udmi.util.JsonUtil.isoConvert;
 import static com.google.udmi.util.JsonUtil.stringify;
 import static com.google.udmi.util.JsonUtil.stringifyTerse;
-import static com.google.udmi.util.JsonUtil.toMap;
+import static com.google.udmi.util.JsonUtil.toTree;
 import static com.google.udmi.util.MessageUpgrader.STATE_SCHEMA;
 import static udmi.schema.Envelope.SubFolder.UPDATE;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.bos.udmi.service.messaging.MessageContinuation;
 import com.google.bos.udmi.service.messaging.StateUpdate;
+import com.google.bos.udmi.service.messaging.impl.MessageBase.Bundle;
 import com.google.udmi.util.MessageUpgrader;
+import java.lang.reflect.Field;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 import udmi.schema.EndpointConfiguration;
 import udmi.schema.Envelope;
@@ -34,6 +39,10 @@ public class StateProcessor extends ProcessorBase {
 
   private static final Set<String> STATE_SUB_FOLDERS =
       Arrays.stream(SubFolder.values()).map(SubFolder::value).collect(Collectors.toSet());
+  private static final Map<String, SubFolder> STATE_SHARDS = Arrays.stream(State.class.getFields())
+      .map(Field::getName).filter(STATE_SUB_FOLDERS::contains)
+      .collect(Collectors.toMap(name -> name, SubFolder::fromValue, (a, b) -> a,
+          LinkedHashMap::new));
 
   public StateProcessor(EndpointConfiguration config) {
     super(config);
@@ -48,7 +57,8 @@ public class StateProcessor extends ProcessorBase {
 
     reflectMessage(envelope, stringify(originalMessage));
 
-    Object upgradedMessage = new MessageUpgrader(STATE_SCHEMA, originalMessage).upgrade();
+    JsonNode messageTree = convertMessage(originalMessage, JsonNode.class);
+    Object upgradedMessage = new MessageUpgrader(STATE_SCHEMA, messageTree).upgrade();
     StateUpdate stateMessage = convertTo(StateUpdate.class, upgradedMessage);
     processStateUpdate(continuation, envelope, stateMessage);
 
@@ -65,27 +75,31 @@ public class StateProcessor extends ProcessorBase {
     iotAccess.saveState(envelope.deviceRegistryId, envelope.deviceId, stringifyTerse(message));
     continuation.publish(message);
     String origTxnId = envelope.transactionId;
-    AtomicInteger txnSuffix = new AtomicInteger();
+    int txnSuffix = 0;
     info("Sharding state message for %s/%s %s last_config %s", envelope.deviceRegistryId,
         envelope.deviceId, origTxnId, isoConvert(catchToNull(() -> message.system.last_config)));
-    Arrays.stream(State.class.getFields()).forEach(field -> {
+    JsonNode stateTree = toTree(message);
+    for (Entry<String, SubFolder> shard : STATE_SHARDS.entrySet()) {
+      JsonNode fieldTree = stateTree.get(shard.getKey());
+      if (fieldTree == null || fieldTree.isNull()) {
+        continue;
+      }
       try {
-        if (STATE_SUB_FOLDERS.contains(field.getName())) {
-          ifNotNullThen(field.get(message), fieldMessage -> {
-            Map<String, Object> stringObjectMap = toMap(fieldMessage);
-            stringObjectMap.put("version", message.version);
-            stringObjectMap.put("timestamp", message.timestamp);
-            envelope.subFolder = SubFolder.fromValue(field.getName());
-            envelope.transactionId = origTxnId + "-" + txnSuffix.getAndIncrement();
-            debug("Sharding state %s %s", envelope.subFolder, envelope.transactionId);
-            reflectMessage(envelope, stringify(stringObjectMap));
-            continuation.publish(stringObjectMap);
-          });
-        }
+        Map<String, Object> shardMessage = new TreeMap<>();
+        fieldTree.fields().forEachRemaining(
+            field -> shardMessage.put(field.getKey(), field.getValue()));
+        shardMessage.put("version", message.version);
+        shardMessage.put("timestamp", message.timestamp);
+        envelope.subFolder = shard.getValue();
+        envelope.transactionId = origTxnId + "-" + txnSuffix++;
+        debug("Sharding state %s %s", envelope.subFolder, envelope.transactionId);
+        String shardJson = stringify(shardMessage);
+        reflectMessage(envelope, shardJson);
+        continuation.publish(new Bundle(deepCopy(envelope), shardMessage, shardJson));
       } catch (Exception e) {
-        throw new RuntimeException("While extracting field " + field.getName(), e);
+        throw new RuntimeException("While extracting field " + shard.getKey(), e);
       }
-    });
+    }
   }
 
   /**
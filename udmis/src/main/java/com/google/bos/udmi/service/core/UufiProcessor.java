@@ -40,7 +40,7 @@ public class UufiProcessor extends ProcessorBase {
   protected void defaultHandler(Object message) {
     MessageContinuation continuation = getContinuation(message);
     Envelope envelope = continuation.getEnvelope();
-    Map<String, Object> messageMap = toMap(message);
+    Map<String, Object> messageMap = messageMap(message);
 
     boolean isUufi = "uufi".equals(envelope.gatewayId);
     String principal = (String) messageMap.get("principal");
@@ -61,7 +61,7 @@ public class UufiProcessor extends ProcessorBase {
 
         if (isHandshake(envelope, message)) {
           info("Processing UUFI handshake request");
-          handleHandshake(envelope, convertTo(UdmiState.class, message));
+          handleHandshake(envelope, convertMessage(message, UdmiState.class));
         } else if (messageMap.containsKey(PAYLOAD_KEY)) {
           // Wrapped message from MQTT.
 
@@ -182,7 +182,7 @@ public class UufiProcessor extends ProcessorBase {
         && (envelope.subFolder == null || envelope.subFolder == SubFolder.UPDATE);
     if (isStateUpdate) {
       try {
-        StateUpdate stateUpdate = convertTo(StateUpdate.class, message);
+        StateUpdate stateUpdate = convertMessage(message, StateUpdate.class);
         Arrays.stream(udmi.schema.State.class.getFields()).forEach(field -> {
           try {
             String fieldName = field.getName();
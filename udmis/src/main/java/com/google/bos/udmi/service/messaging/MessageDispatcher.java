@@ -54,6 +54,13 @@ public interface MessageDispatcher {
 
   boolean isActive();
 
+  /**
+   * Convert a received message to the given class. Conversions of the message currently being
+   * dispatched are made from a single json tree and cached for the bundle, but each result is a
+   * private copy that the caller is free to modify.
+   */
+  <T> T convertMessage(Object message, Class<T> targetClass);
+
   /**
    * Publish a message to the outgoing channel of this pipe. The type of the message object is
    * extracted at runtime and used to properly reconstruct on the receiving end.
@@ -75,5 +75,7 @@ public interface MessagePipe {
     public int count;
     public double latency;
     public double size;
+    public int[] lanes;
+    public double paused;
   }
 }
\ No newline at end of file
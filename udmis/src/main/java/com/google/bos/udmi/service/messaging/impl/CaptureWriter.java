@@ -0,0 +1,244 @@
+package com.google.bos.udmi.service.messaging.impl;
+
+import static com.google.udmi.util.JsonUtil.isoConvertMs;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background writer for the message capture log. Captured messages go into a bounded buffer
+ * (dropped if full, so capture never blocks the message path), and are then formatted and written
+ * in batches through a single open file channel. The log is rotated by size and age, keeping a
+ * fixed number of old files. Writers are shared per file, and closed (draining anything still
+ * buffered) when the last user releases them.
+ */
+class CaptureWriter {
+
+  static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+  static final long DEFAULT_MAX_AGE_MS = TimeUnit.HOURS.toMillis(1);
+  static final int DEFAULT_KEEP_FILES = 5;
+  private static final int BUFFER_SIZE = 10000;
+  private static final int MAX_BATCH = 500;
+  private static final long POLL_MS = 100;
+  private static final long CLOSE_WAIT_MS = 10000;
+  private static final Map<String, CaptureWriter> WRITERS = new ConcurrentHashMap<>();
+
+  private final File captureFile;
+  private final long maxBytes;
+  private final long maxAgeMs;
+  private final int keepFiles;
+  private final BlockingQueue<Capture> buffer = new ArrayBlockingQueue<>(BUFFER_SIZE);
+  private final AtomicLong queued = new AtomicLong();
+  private final AtomicLong written = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final Thread writerThread;
+  private FileChannel channel;
+  private long openedAt;
+  private int users;
+  private volatile boolean closed;
+
+  CaptureWriter(File captureFile, long maxBytes, long maxAgeMs, int keepFiles) {
+    this.captureFile = captureFile;
+    this.maxBytes = maxBytes;
+    this.maxAgeMs = maxAgeMs;
+    this.keepFiles = keepFiles;
+    writerThread = new Thread(this::writeLoop, "capture-writer");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /**
+   * Get the shared writer for the given capture file. Each call should be matched by a call to
+   * {@link #release(String)} when the user shuts down.
+   */
+  static CaptureWriter forFile(String path) {
+    return WRITERS.compute(path, (key, existing) -> {
+      CaptureWriter writer = existing != null ? existing : new CaptureWriter(new File(key),
+          DEFAULT_MAX_BYTES, DEFAULT_MAX_AGE_MS, DEFAULT_KEEP_FILES);
+      writer.users++;
+      return writer;
+    });
+  }
+
+  /**
+   * Release a shared writer, closing it once it has no remaining users.
+   */
+  static void release(String path) {
+    CaptureWriter[] last = new CaptureWriter[1];
+    WRITERS.computeIfPresent(path, (key, writer) -> {
+      if (--writer.users > 0) {
+        return writer;
+      }
+      last[0] = writer;
+      return null;
+    });
+    if (last[0] != null) {
+      last[0].close();
+    }
+  }
+
+  /**
+   * Check if a message should be captured, given a sample rate (null means capture everything).
+   */
+  static boolean shouldCapture(Double sampleRate) {
+    if (sampleRate == null || sampleRate >= 1.0) {
+      return true;
+    }
+    return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+  }
+
+  /**
+   * Queue a message for capture.
+   */
+  void capture(String clientId, boolean incoming, String topic, String message) {
+    if (closed) {
+      dropped.incrementAndGet();
+      return;
+    }
+    Capture entry = new Capture(System.currentTimeMillis(), clientId, incoming, topic, message);
+    if (buffer.offer(entry)) {
+      queued.incrementAndGet();
+    } else {
+      dropped.incrementAndGet();
+    }
+  }
+
+  long getDropped() {
+    return dropped.get();
+  }
+
+  long getWritten() {
+    return written.get();
+  }
+
+  /**
+   * Block until everything queued so far has been written out (for testing).
+   */
+  boolean awaitFlushed(long timeoutMs) throws InterruptedException {
+    long target = queued.get();
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    while (written.get() < target) {
+      if (System.currentTimeMillis() >= deadline) {
+        return false;
+      }
+      Thread.sleep(POLL_MS / 10);
+    }
+    return true;
+  }
+
+  /**
+   * Stop the writer, writing out anything already buffered and closing the capture file.
+   */
+  void close() {
+    closed = true;
+    try {
+      writerThread.join(CLOSE_WAIT_MS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (writerThread.isAlive()) {
+      writerThread.interrupt();
+    }
+  }
+
+  private void writeLoop() {
+    while (!closed || !buffer.isEmpty()) {
+      try {
+        Capture first = buffer.poll(POLL_MS, TimeUnit.MILLISECONDS);
+        if (first != null) {
+          List<Capture> batch = new ArrayList<>(MAX_BATCH);
+          batch.add(first);
+          buffer.drainTo(batch, MAX_BATCH - 1);
+          try {
+            writeBatch(batch);
+          } catch (Exception e) {
+            // Capture is best-effort, so errors writing to the capture log are ignored.
+            closeChannel();
+          } finally {
+            written.addAndGet(batch.size());
+          }
+        }
+      } catch (InterruptedException e) {
+        break;
+      }
+    }
+    closeChannel();
+  }
+
+  private void writeBatch(List<Capture> batch) throws Exception {
+    StringBuilder lines = new StringBuilder();
+    for (Capture capture : batch) {
+      String direction = capture.incoming ? "<<<" : ">>>";
+      lines.append(isoConvertMs(new Date(capture.timestamp))).append(' ')
+          .append(capture.clientId).append(' ').append(direction).append(' ')
+          .append(capture.topic).append(": ").append(capture.message).append('\n');
+    }
+    FileChannel output = getChannel();
+    ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(UTF_8));
+    while (bytes.hasRemaining()) {
+      output.write(bytes);
+    }
+  }
+
+  private FileChannel getChannel() throws Exception {
+    if (channel != null && (channel.size() >= maxBytes
+        || System.currentTimeMillis() - openedAt >= maxAgeMs)) {
+      rotate();
+    }
+    if (channel == null) {
+      File parent = captureFile.getAbsoluteFile().getParentFile();
+      parent.mkdirs();
+      channel = FileChannel.open(captureFile.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+      openedAt = System.currentTimeMillis();
+    }
+    return channel;
+  }
+
+  private void rotate() {
+    closeChannel();
+    File oldest = rotatedFile(keepFiles);
+    oldest.delete();
+    for (int index = keepFiles - 1; index > 0; index--) {
+      File rotated = rotatedFile(index);
+      if (rotated.exists()) {
+        rotated.renameTo(rotatedFile(index + 1));
+      }
+    }
+    captureFile.renameTo(rotatedFile(1));
+  }
+
+  File rotatedFile(int index) {
+    return new File(captureFile.getPath() + "." + index);
+  }
+
+  private void closeChannel() {
+    try {
+      if (channel != null) {
+        channel.close();
+      }
+    } catch (Exception e) {
+      // Ignore errors closing capture log.
+    } finally {
+      channel = null;
+    }
+  }
+
+  private record Capture(long timestamp, String clientId, boolean incoming, String topic,
+                         String message) {
+
+  }
+}
@@ -0,0 +1,276 @@
+package com.google.bos.udmi.service.messaging.impl;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.udmi.util.Common.DEVICE_ID_KEY;
+import static com.google.udmi.util.Common.GATEWAY_ID_KEY;
+import static com.google.udmi.util.Common.PROJECT_ID_PROPERTY_KEY;
+import static com.google.udmi.util.Common.PUBLISH_TIME_KEY;
+import static com.google.udmi.util.Common.RAWFOLDER_PROPERTY_KEY;
+import static com.google.udmi.util.Common.REGISTRY_ID_PROPERTY_KEY;
+import static com.google.udmi.util.Common.SOURCE_KEY;
+import static com.google.udmi.util.Common.SUBFOLDER_PROPERTY_KEY;
+import static com.google.udmi.util.Common.SUBTYPE_PROPERTY_KEY;
+import static com.google.udmi.util.Common.TRANSACTION_KEY;
+import static com.google.udmi.util.GeneralUtils.catchToElse;
+import static com.google.udmi.util.GeneralUtils.nullAsNull;
+import static com.google.udmi.util.JsonUtil.fromString;
+import static com.google.udmi.util.JsonUtil.getDate;
+
+import com.google.udmi.util.CleanDateFormat;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import udmi.schema.Envelope;
+import udmi.schema.Envelope.SubFolder;
+import udmi.schema.Envelope.SubType;
+
+/**
+ * Direct conversion between an Envelope and its message attribute map or MQTT topic, for use on
+ * the per-message path of the pipes. This is equivalent to the generic JSON conversion of the
+ * Envelope class (same keys, values, and null handling), but without reflection or intermediate
+ * objects. Registry and device ids are interned, since the same small set of ids shows up over and
+ * over again on every message.
+ */
+public abstract class EnvelopeCodec {
+
+  private static final String DEVICE_NUM_ID_KEY = "deviceNumId";
+  private static final String REGISTRY_LOCATION_KEY = "deviceRegistryLocation";
+  private static final String PAYLOAD_KEY = "payload";
+  private static final String PRINCIPAL_KEY = "principal";
+  private static final String LEGACY_TOPIC_PREFIX = "/devices/";
+  private static final String IMPLICIT_TOPIC_PREFIX = "/r/";
+  private static final String SEND_CHANNEL_DESIGNATOR = "c";
+  private static final String UUFI_GATEWAY = "uufi";
+  private static final int MAX_TOPIC_PARTS = 12;
+  private static final int MAX_INTERNED = 100000;
+  private static final Map<String, String> INTERNED = new ConcurrentHashMap<>();
+
+  /**
+   * Convert an envelope into a string attribute map, leaving out any null fields.
+   */
+  public static Map<String, String> toAttributes(Envelope envelope) {
+    Map<String, String> attributes = new HashMap<>();
+    putIfNotNull(attributes, DEVICE_ID_KEY, envelope.deviceId);
+    putIfNotNull(attributes, DEVICE_NUM_ID_KEY, envelope.deviceNumId);
+    putIfNotNull(attributes, REGISTRY_ID_PROPERTY_KEY, envelope.deviceRegistryId);
+    putIfNotNull(attributes, REGISTRY_LOCATION_KEY, envelope.deviceRegistryLocation);
+    putIfNotNull(attributes, PROJECT_ID_PROPERTY_KEY, envelope.projectId);
+    putIfNotNull(attributes, PAYLOAD_KEY, envelope.payload);
+    putIfNotNull(attributes, SOURCE_KEY, envelope.source);
+    putIfNotNull(attributes, GATEWAY_ID_KEY, envelope.gatewayId);
+    putIfNotNull(attributes, TRANSACTION_KEY, envelope.transactionId);
+    putIfNotNull(attributes, PRINCIPAL_KEY, envelope.principal);
+    if (envelope.publishTime != null) {
+      attributes.put(PUBLISH_TIME_KEY, formatTime(envelope.publishTime));
+    }
+    putIfNotNull(attributes, RAWFOLDER_PROPERTY_KEY, envelope.rawFolder);
+    if (envelope.subFolder != null) {
+      attributes.put(SUBFOLDER_PROPERTY_KEY, envelope.subFolder.value());
+    }
+    if (envelope.subType != null) {
+      attributes.put(SUBTYPE_PROPERTY_KEY, envelope.subType.value());
+    }
+    return attributes;
+  }
+
+  /**
+   * Convert a string attribute map into an envelope. Unknown attributes are ignored, and the
+   * subType/subFolder values are expected to already be valid enum values.
+   */
+  public static Envelope fromAttributes(Map<String, String> attributes) {
+    Envelope envelope = new Envelope();
+    attributes.forEach((key, value) -> {
+      if (value == null) {
+        return;
+      }
+      switch (key) {
+        case DEVICE_ID_KEY -> envelope.deviceId = intern(value);
+        case DEVICE_NUM_ID_KEY -> envelope.deviceNumId = value;
+        case REGISTRY_ID_PROPERTY_KEY -> envelope.deviceRegistryId = intern(value);
+        case REGISTRY_LOCATION_KEY -> envelope.deviceRegistryLocation = value;
+        case PROJECT_ID_PROPERTY_KEY -> envelope.projectId = value;
+        case PAYLOAD_KEY -> envelope.payload = value;
+        case SOURCE_KEY -> envelope.source = value;
+        case GATEWAY_ID_KEY -> envelope.gatewayId = value;
+        case TRANSACTION_KEY -> envelope.transactionId = value;
+        case PRINCIPAL_KEY -> envelope.principal = value;
+        case PUBLISH_TIME_KEY -> envelope.publishTime = parseTime(value);
+        case RAWFOLDER_PROPERTY_KEY -> envelope.rawFolder = value;
+        case SUBFOLDER_PROPERTY_KEY -> envelope.subFolder = SubFolder.fromValue(value);
+        case SUBTYPE_PROPERTY_KEY -> envelope.subType = SubType.fromValue(value);
+        default -> {
+          // Other attributes (e.g. from the transport layer) aren't part of the envelope.
+        }
+      }
+    });
+    return envelope;
+  }
+
+  /**
+   * Parse an MQTT envelope topic (uufi, legacy, or implicit format) into an attribute map.
+   */
+  public static Map<String, String> parseTopic(String topic) {
+    try {
+      if (topic == null) {
+        throw new IllegalArgumentException("Topic cannot be null");
+      }
+      String[] parts = splitTopic(topic);
+      if (isUufiTopic(parts)) {
+        return parseUufiTopic(parts);
+      } else if (topic.startsWith(LEGACY_TOPIC_PREFIX)) {
+        return parseLegacyTopic(parts);
+      } else if (topic.startsWith(IMPLICIT_TOPIC_PREFIX)) {
+        return parseImplicitTopic(topic, parts);
+      } else {
+        throw new IllegalArgumentException("Unrecognized topic structure: " + topic);
+      }
+    } catch (Exception e) {
+      throw new RuntimeException("While parsing envelope topic " + topic, e);
+    }
+  }
+
+  /**
+   * Return a canonical instance of the given id string, so that repeated ids share storage.
+   */
+  static String intern(String value) {
+    if (value == null) {
+      return null;
+    }
+    String existing = INTERNED.get(value);
+    if (existing != null) {
+      return existing;
+    }
+    if (INTERNED.size() >= MAX_INTERNED) {
+      return value;
+    }
+    existing = INTERNED.putIfAbsent(value, value);
+    return existing == null ? value : existing;
+  }
+
+  /**
+   * Split a topic into at most MAX_TOPIC_PARTS parts, with the same semantics as
+   * String.split("/", MAX_TOPIC_PARTS).
+   */
+  static String[] splitTopic(String topic) {
+    String[] parts = new String[MAX_TOPIC_PARTS];
+    int count = 0;
+    int start = 0;
+    int next;
+    while (count < MAX_TOPIC_PARTS - 1 && (next = topic.indexOf('/', start)) >= 0) {
+      parts[count++] = topic.substring(start, next);
+      start = next + 1;
+    }
+    parts[count++] = topic.substring(start);
+    return count == MAX_TOPIC_PARTS ? parts : Arrays.copyOf(parts, count);
+  }
+
+  private static boolean isUufiTopic(String[] parts) {
+    int start = parts[0].isEmpty() ? 1 : 0;
+    return parts.length > start && UUFI_GATEWAY.equals(parts[start]);
+  }
+
+  private static Map<String, String> parseUufiTopic(String[] parts) {
+    // UUFI topic: [/namespace]/uufi/[r/REG/d/DEV/]c/TYPE/FOLDER
+    Map<String, String> attributes = new HashMap<>();
+    int base = (parts[0].isEmpty() ? 1 : 0) + 1;
+    if ("r".equals(parts[base])) {
+      putIfNotNull(attributes, REGISTRY_ID_PROPERTY_KEY, intern(nullAsNull(parts[base + 1])));
+      checkState("d".equals(parts[base + 2]), "expected devices");
+      putIfNotNull(attributes, DEVICE_ID_KEY, intern(nullAsNull(parts[base + 3])));
+      base += 4;
+    }
+    checkState("c".equals(parts[base]), "expected commands");
+    putSubType(attributes, parts[base + 1]);
+    putSubFolder(attributes, parts[base + 2]);
+    attributes.put(GATEWAY_ID_KEY, UUFI_GATEWAY);
+    return attributes;
+  }
+
+  private static Map<String, String> parseLegacyTopic(String[] parts) {
+    // 0/1      /2     /3   [/4     ]
+    //  /devices/DEVICE/TYPE[/FOLDER]
+    Map<String, String> attributes = new HashMap<>();
+    if (parts.length >= 3 && !parts[2].isEmpty()) {
+      putIfNotNull(attributes, DEVICE_ID_KEY, intern(nullAsNull(parts[2])));
+    }
+    if (parts.length >= 4 && !parts[3].isEmpty()) {
+      putSubType(attributes, parts[3]);
+    }
+    if (parts.length >= 5 && !parts[4].isEmpty()) {
+      // TODO: technically the subfolder is the remainder including all slashes until the end.
+      putSubFolder(attributes, parts[4]);
+    }
+    return attributes;
+  }
+
+  private static Map<String, String> parseImplicitTopic(String topic, String[] parts) {
+    // 0/1/2       /3/4     /5   [/6     [/7      ]]
+    //  /r/REGISTRY/d/DEVICE/TYPE[/FOLDER[/GATEWAY]]
+    if (parts.length < 6 || parts.length > 10) {
+      throw new IllegalArgumentException("Unexpected topic length: " + topic);
+    }
+    Map<String, String> attributes = new HashMap<>();
+    checkState(parts[0].isEmpty(), "non-empty prefix");
+    checkState("r".equals(parts[1]), "expected registries");
+    putIfNotNull(attributes, REGISTRY_ID_PROPERTY_KEY, intern(nullAsNull(parts[2])));
+    checkState("d".equals(parts[3]), "expected devices");
+    putIfNotNull(attributes, DEVICE_ID_KEY, intern(nullAsNull(parts[4])));
+    int base = parts[5].equals(SEND_CHANNEL_DESIGNATOR) ? 2 : 0;
+    if (parts.length < base + 6) {
+      throw new IllegalArgumentException("Unexpected topic length for implicit topic: " + topic);
+    }
+    if (base > 0) {
+      attributes.put(SOURCE_KEY, parts[6]);
+    }
+    putSubType(attributes, parts[base + 5]);
+    if (parts.length > base + 6 && !parts[base + 6].isEmpty()) {
+      putSubFolder(attributes, parts[base + 6]);
+    }
+    if (parts.length > base + 7 && !parts[base + 7].isEmpty()) {
+      putIfNotNull(attributes, GATEWAY_ID_KEY, nullAsNull(parts[base + 7]));
+    }
+    if (parts.length > base + 8) {
+      throw new IllegalArgumentException("Unrecognized extra topic arguments: " + parts[base + 8]);
+    }
+    return attributes;
+  }
+
+  private static void putSubType(Map<String, String> attributes, String part) {
+    String value = nullAsNull(part);
+    if (value != null) {
+      attributes.put(SUBTYPE_PROPERTY_KEY,
+          catchToElse(() -> SubType.fromValue(value), SubType.INVALID).value());
+    }
+  }
+
+  private static void putSubFolder(Map<String, String> attributes, String part) {
+    String value = nullAsNull(part);
+    if (value != null) {
+      attributes.put(SUBFOLDER_PROPERTY_KEY,
+          catchToElse(() -> SubFolder.fromValue(value), SubFolder.INVALID).value());
+    }
+  }
+
+  private static void putIfNotNull(Map<String, String> attributes, String key, String value) {
+    if (value != null) {
+      attributes.put(key, value);
+    }
+  }
+
+  private static Date parseTime(String timestamp) {
+    try {
+      return CleanDateFormat.cleanDate(getDate(timestamp));
+    } catch (Exception e) {
+      // Fall back to the full JSON date parser for less common timestamp formats.
+      return fromString(Date.class, "\"" + timestamp + "\"");
+    }
+  }
+
+  private static String formatTime(Date timestamp) {
+    // Same as the JSON date format: second resolution, UTC, e.g. 2020-01-01T10:10:10Z.
+    return timestamp.toInstant().truncatedTo(ChronoUnit.SECONDS).toString();
+  }
+}
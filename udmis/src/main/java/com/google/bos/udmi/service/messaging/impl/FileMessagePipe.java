@@ -5,7 +5,6 @@ import static com.google.udmi.util.GeneralUtils.ifNotNullThen;
 import static com.google.udmi.util.JsonUtil.JSON_EXT;
 import static com.google.udmi.util.JsonUtil.loadFileString;
 import static com.google.udmi.util.JsonUtil.safeSleep;
-import static com.google.udmi.util.JsonUtil.toStringMap;
 import static java.lang.String.format;
 
 import com.google.bos.udmi.service.messaging.MessagePipe;
@@ -81,7 +80,8 @@ public class FileMessagePipe extends MessageBase {
   private void consumeFile(File file) {
     try {
       Envelope envelope = makeEnvelope(file);
-      receiveMessage(toStringMap(envelope), loadFileString(file));
+      awaitReceiveCapacity();
+      receiveMessage(EnvelopeCodec.toAttributes(envelope), loadFileString(file));
       // Processing of received messages is asynchronous, so add a small artificial delay.
       safeSleep(FILE_PLAYBACK_MESSAGE_DELAY_MS);
     } catch (Exception e) {
@@ -1,7 +1,6 @@
 package com.google.bos.udmi.service.messaging.impl;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.udmi.util.JsonUtil.stringify;
 import static java.lang.String.format;
 
 import com.google.bos.udmi.service.messaging.MessagePipe;
@@ -32,6 +31,7 @@ public class LocalMessagePipe extends MessageBase {
    * Create a new local message pipe given a configuration bundle.
    */
   public LocalMessagePipe(EndpointConfiguration config) {
+    super(config);
     namespace = normalizeNamespace(config.hostname);
     sourceName = config.recv_id;
     setSourceQueue(getQueueForScope(sourceName));
@@ -67,7 +67,7 @@ public class LocalMessagePipe extends MessageBase {
   protected void publishRaw(Bundle bundle) {
     try {
       debug("Publishing bundle to %s", this);
-      pushQueueEntry(destinationQueue, stringify(bundle));
+      pushQueueEntry(destinationQueue, detachBundle(bundle));
     } catch (Exception e) {
       throw new RuntimeException("While publishing to destination queue", e);
     }
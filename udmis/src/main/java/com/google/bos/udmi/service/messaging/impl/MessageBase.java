@@ -1,7 +1,13 @@
 package com.google.bos.udmi.service.messaging.impl;
 
 import static com.google.api.client.util.Preconditions.checkState;
+import static com.google.bos.udmi.service.support.LatencyMetrics.DISPATCH;
+import static com.google.bos.udmi.service.support.LatencyMetrics.PUBLISH;
+import static com.google.bos.udmi.service.support.LatencyMetrics.QUEUE_WAIT;
+import static com.google.bos.udmi.service.support.LatencyMetrics.RECEIVE;
+import static com.google.udmi.util.Common.DEVICE_ID_KEY;
 import static com.google.udmi.util.Common.RAWFOLDER_PROPERTY_KEY;
+import static com.google.udmi.util.Common.REGISTRY_ID_PROPERTY_KEY;
 import static com.google.udmi.util.Common.SUBFOLDER_PROPERTY_KEY;
 import static com.google.udmi.util.Common.SUBTYPE_PROPERTY_KEY;
 import static com.google.udmi.util.GeneralUtils.catchToElse;
@@ -9,22 +15,27 @@ import static com.google.udmi.util.GeneralUtils.deepCopy;
 import static com.google.udmi.util.GeneralUtils.friendlyStackTrace;
 import static com.google.udmi.util.GeneralUtils.ifNotNullGet;
 import static com.google.udmi.util.GeneralUtils.ifNotNullThen;
+import static com.google.udmi.util.GeneralUtils.ifTrueThen;
+import static com.google.udmi.util.GeneralUtils.isTrue;
 import static com.google.udmi.util.GeneralUtils.mergeObject;
 import static com.google.udmi.util.GeneralUtils.stackTraceString;
-import static com.google.udmi.util.JsonUtil.convertTo;
-import static com.google.udmi.util.JsonUtil.fromString;
+import static com.google.udmi.util.JsonUtil.OBJECT_MAPPER;
 import static com.google.udmi.util.JsonUtil.parseJson;
 import static com.google.udmi.util.JsonUtil.stringify;
+import static java.lang.Math.floorMod;
 import static java.lang.String.format;
 import static java.util.Objects.isNull;
 import static java.util.Objects.requireNonNull;
 import static java.util.Optional.ofNullable;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.bos.udmi.service.messaging.MessageDispatcher;
 import com.google.bos.udmi.service.messaging.MessageDispatcher.RawString;
 import com.google.bos.udmi.service.messaging.MessagePipe;
 import com.google.bos.udmi.service.pod.ContainerBase;
 import com.google.bos.udmi.service.pod.UdmiServicePod;
+import com.google.bos.udmi.service.support.LatencyHistogram;
+import com.google.bos.udmi.service.support.LatencyMetrics;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.AtomicDouble;
@@ -36,11 +47,13 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -48,6 +61,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 import udmi.schema.EndpointConfiguration;
@@ -62,8 +76,7 @@ import udmi.schema.UdmiConfig;
 public abstract class MessageBase extends ContainerBase implements MessagePipe {
 
   public static final String INVALID_ENVELOPE_KEY = "invalid";
-  // TODO: Not every message loop needs the same thread count
-  // Ones on the registrar path may potentially need more.
+  // Default thread count, can be overridden per-endpoint with the threads parameter.
   public static final int EXECUTION_THREADS = 20;
   public static final String ERROR_MESSAGE_MARKER = "error-mark";
   public static final String PUBLISH_STATS = "publish";
@@ -76,13 +89,27 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
   private static final long DEFAULT_POLL_TIME_SEC = 1;
   private static final long AWAIT_TERMINATION_SEC = 10;
   private static final int DEFAULT_CAPACITY = 10000;
+  private static final long MAX_PAUSE_WAIT_MS = 10000;
+  private static final double NANOS_PER_SEC = 1e9;
   protected final int queueCapacity;
   protected final long publishDelaySec;
-  private final ExecutorService executor = Executors.newFixedThreadPool(EXECUTION_THREADS);
+  protected final int threadCount;
+  protected final boolean sharded;
+  private final ExecutorService executor;
   private final Entry<AtomicInteger, AtomicDouble> publishStats = makeEmptyStats();
   private final Entry<AtomicInteger, AtomicDouble> receiveStats = makeEmptyStats();
+  private final LatencyHistogram receiveLatency = LatencyMetrics.get(RECEIVE, containerId);
+  private final LatencyHistogram publishLatency = LatencyMetrics.get(PUBLISH, containerId);
+  private final LatencyHistogram queueWaitLatency = LatencyMetrics.get(QUEUE_WAIT, containerId);
+  private final LatencyHistogram dispatchLatency = LatencyMetrics.get(DISPATCH, containerId);
   private final AtomicBoolean subscriptionsThrottled = new AtomicBoolean();
+  private final Object pauseLock = new Object();
+  private final Object receptionLock = new Object();
+  private boolean receptionPaused;
+  private long pausedSince;
+  private long pausedNanos;
   private BlockingQueue<QueueEntry> sourceQueue;
+  private List<BlockingQueue<QueueEntry>> laneQueues;
   private Consumer<Bundle> dispatcher;
   private boolean activated;
 
@@ -92,6 +119,9 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
   public MessageBase() {
     queueCapacity = DEFAULT_CAPACITY;
     publishDelaySec = 0;
+    threadCount = EXECUTION_THREADS;
+    sharded = false;
+    executor = Executors.newFixedThreadPool(threadCount);
   }
 
   /**
@@ -104,6 +134,12 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
     if (publishDelaySec > 0) {
       warn("Artificially delaying message publishing by %ds", publishDelaySec);
     }
+    threadCount = ofNullable(configuration.threads).filter(threads -> threads > 0)
+        .orElse(EXECUTION_THREADS);
+    sharded = isTrue(configuration.sharded);
+    // Sharded mode has an additional thread for routing messages from the source to the lanes.
+    executor = Executors.newFixedThreadPool(threadCount + (sharded ? 1 : 0));
+    ifTrueThen(sharded, () -> notice("Sharding message processing across %d lanes", threadCount));
   }
 
   /**
@@ -115,8 +151,46 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
     return ifNotNullGet(defined, () -> mergeObject(deepCopy(useDefaults), defined));
   }
 
-  static Bundle extractBundle(String bundleString) {
-    return ifNotNullGet(bundleString, b -> fromString(Bundle.class, b));
+  /**
+   * Make a detached copy of a bundle, suitable for passing to an in-process receiver without
+   * sharing any mutable state with the publisher.
+   */
+  static Bundle detachBundle(Bundle bundle) {
+    Bundle detached = new Bundle(deepCopy(bundle.envelope), null);
+    detached.setMessage(toPlainObject(bundle.message), bundle.getMessageJson());
+    detached.attributesMap = ifNotNullGet(bundle.attributesMap, map -> new HashMap<>(map));
+    detached.payload = bundle.payload;
+    return detached;
+  }
+
+  /**
+   * Get the shard key for a bundle, which groups all messages from the same device together.
+   */
+  static String shardKey(Bundle bundle) {
+    Envelope envelope = bundle.envelope;
+    if (envelope != null && (envelope.deviceRegistryId != null || envelope.deviceId != null)) {
+      return format("%s/%s", envelope.deviceRegistryId, envelope.deviceId);
+    }
+    return ifNotNullGet(bundle.attributesMap, map -> format("%s/%s",
+        map.get(REGISTRY_ID_PROPERTY_KEY), map.get(DEVICE_ID_KEY)), "");
+  }
+
+  /**
+   * Convert a message to the plain (map/list/string) object form that would result from a json
+   * string round-trip, but directly through a token buffer without any string serialization.
+   */
+  static Object toPlainObject(Object message) {
+    if (message instanceof String || message instanceof RawString) {
+      return message;
+    }
+    return OBJECT_MAPPER.convertValue(message, Object.class);
+  }
+
+  /**
+   * Get the serialized message for a bundle, reusing an existing serialization if available.
+   */
+  static String encodeMessage(Bundle bundle) {
+    return ofNullable(bundle.getMessageJson()).orElseGet(() -> stringify(bundle.message));
   }
 
   static String normalizeNamespace(String configSpace) {
@@ -152,12 +226,12 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
 
   protected abstract void publishRaw(Bundle bundle);
 
-  protected void pushQueueEntry(BlockingQueue<QueueEntry> queue, String stringBundle) {
+  protected void pushQueueEntry(BlockingQueue<QueueEntry> queue, Bundle bundle) {
     try {
-      requireNonNull(stringBundle, "missing queue bundle");
-      throttleQueue();
+      requireNonNull(bundle, "missing queue bundle");
       randomlyFail();
-      queue.add(new QueueEntry(grabExecutionContext(), stringBundle));
+      queue.add(new QueueEntry(grabExecutionContext(), bundle));
+      throttleQueue();
     } catch (Exception e) {
       throw new RuntimeException("While adding queue entry", e);
     }
@@ -173,11 +247,11 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
 
   protected void receiveMessage(Map<String, String> attributesMap, String messageString) {
     grabExecutionContext();
-    final Instant start = Instant.now();
+    final long start = System.nanoTime();
     try {
       receiveMessageRaw(attributesMap, messageString);
     } finally {
-      accumulateStats(RECEIVE_STATS, receiveStats, Duration.between(start, Instant.now()));
+      accumulateStats(RECEIVE_STATS, receiveStats, receiveLatency, System.nanoTime() - start);
     }
   }
 
@@ -191,11 +265,17 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
 
   protected void terminateHandlers() {
     debug("Terminating " + this);
-    for (int i = 0; i < EXECUTION_THREADS; i++) {
+    // When sharded, the shard loop will fan out the terminate marker to all the lanes.
+    int markers = sharded ? 1 : threadCount;
+    for (int i = 0; i < markers; i++) {
       receiveBundle(new Bundle(TERMINATE_MARKER));
     }
   }
 
+  /**
+   * Check the receive and publish queues against the high-water mark, and pause (or resume)
+   * message reception when crossing the mark (or dropping back below half of it).
+   */
   protected void throttleQueue() {
     double receiveQueueSize = getReceiveQueueSize();
     double publishQueueSize = getPublishQueueSize();
@@ -205,22 +285,92 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
     boolean releaseReceiver = receiveQueueSize < QUEUE_THROTTLE_MARK / 2.0;
     boolean releasePublisher = publishQueueSize < QUEUE_THROTTLE_MARK / 2.0;
 
-    String message = messageQueueMessage();
     if (blockReceiver || blockPublisher) {
       if (!subscriptionsThrottled.getAndSet(true)) {
-        warn(message + ", crossing high-water mark");
+        warn(messageQueueMessage() + ", crossing high-water mark");
+        synchronized (pauseLock) {
+          pausedSince = System.nanoTime();
+        }
+        updateReception();
       }
     } else if (releaseReceiver && releasePublisher) {
       if (subscriptionsThrottled.getAndSet(false)) {
-        warn(message + ", below high-water mark");
+        warn(messageQueueMessage() + ", below high-water mark");
+        synchronized (pauseLock) {
+          pausedNanos += System.nanoTime() - pausedSince;
+          pauseLock.notifyAll();
+        }
+        updateReception();
       }
     }
   }
 
-  private synchronized void accumulateStats(String statsBucket,
-      Entry<AtomicInteger, AtomicDouble> stats,
-      Duration duration) {
-    double seconds = duration.getSeconds() + duration.toMillisPart() / 1000.0;
+  /**
+   * Bring the source reception state in line with the current throttle flag. The flag can flip
+   * back and forth between threads before either gets here, so this always converges on the
+   * latest value rather than acting on the particular transition the caller made.
+   */
+  private void updateReception() {
+    synchronized (receptionLock) {
+      boolean throttled = subscriptionsThrottled.get();
+      if (throttled == receptionPaused) {
+        return;
+      }
+      receptionPaused = throttled;
+      if (throttled) {
+        pauseReception();
+      } else {
+        resumeReception();
+      }
+    }
+  }
+
+  /**
+   * Check if reception is currently throttled because the queues are too full.
+   */
+  protected boolean isReceptionThrottled() {
+    return subscriptionsThrottled.get();
+  }
+
+  /**
+   * Pause reception of messages from the underlying source, because the queues are too full. The
+   * default is to do nothing, relying on sources that call awaitReceiveCapacity() to block.
+   */
+  protected void pauseReception() {
+  }
+
+  /**
+   * Resume reception of messages after a pause.
+   */
+  protected void resumeReception() {
+  }
+
+  /**
+   * Block the calling (receiving) thread while reception is paused. There is an upper bound on the
+   * wait, so a stuck consumer can't completely wedge the source.
+   */
+  protected void awaitReceiveCapacity() {
+    if (!subscriptionsThrottled.get()) {
+      return;
+    }
+    long deadline = System.currentTimeMillis() + MAX_PAUSE_WAIT_MS;
+    try {
+      synchronized (pauseLock) {
+        long remaining;
+        while (subscriptionsThrottled.get()
+            && (remaining = deadline - System.currentTimeMillis()) > 0) {
+          pauseLock.wait(remaining);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void accumulateStats(String statsBucket, Entry<AtomicInteger, AtomicDouble> stats,
+      LatencyHistogram histogram, long nanos) {
+    histogram.record(nanos);
+    double seconds = nanos / NANOS_PER_SEC;
     stats.getKey().incrementAndGet();
     stats.getValue().addAndGet(seconds);
     if (seconds >= MESSAGE_WARN_THRESHOLD_SEC) {
@@ -235,6 +385,19 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
     }
   }
 
+  private double extractPausedSec() {
+    synchronized (pauseLock) {
+      long nanos = pausedNanos;
+      if (subscriptionsThrottled.get()) {
+        long now = System.nanoTime();
+        nanos += now - pausedSince;
+        pausedSince = now;
+      }
+      pausedNanos = 0;
+      return nanos / NANOS_PER_SEC;
+    }
+  }
+
   private PipeStats extractStat(Entry<AtomicInteger, AtomicDouble> stats, double size) {
     PipeStats pipeStats = new PipeStats();
     pipeStats.count = stats.getKey().getAndSet(0);
@@ -244,11 +407,29 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
   }
 
   @Nullable
-  private String getFromSourceQueue() throws InterruptedException {
-    QueueEntry poll = sourceQueue.poll(DEFAULT_POLL_TIME_SEC, TimeUnit.SECONDS);
-    throttleQueue();
+  private QueueEntry pollEntry(BlockingQueue<QueueEntry> queue) throws InterruptedException {
+    QueueEntry poll = queue.poll(DEFAULT_POLL_TIME_SEC, TimeUnit.SECONDS);
     ifNotNullThen(poll, p -> setExecutionContext(p.context));
-    return ifNotNullGet(poll, p -> p.message);
+    return poll;
+  }
+
+  @Nullable
+  private Bundle getFromQueue(BlockingQueue<QueueEntry> queue) throws InterruptedException {
+    QueueEntry poll = pollEntry(queue);
+    ifNotNullThen(poll, p -> queueWaitLatency.record(System.nanoTime() - p.enqueued));
+    return ifNotNullGet(poll, p -> p.bundle);
+  }
+
+  @Nullable
+  private Bundle getFromSourceQueue() throws InterruptedException {
+    Bundle bundle = getFromQueue(sourceQueue);
+    throttleQueue();
+    return bundle;
+  }
+
+  private int[] getLaneQueueSizes() {
+    return ifNotNullGet(laneQueues,
+        lanes -> lanes.stream().mapToInt(Collection::size).toArray());
   }
 
   private double getReceiveQueueSize() {
@@ -270,9 +451,25 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
     if (!HANDLED_QUEUES.add(System.identityHashCode(sourceQueue))) {
       throw new IllegalStateException("Source queue handled multiple times!");
     }
-    for (int i = 0; i < EXECUTION_THREADS; i++) {
+    if (sharded) {
+      handleShardedQueue();
+      return;
+    }
+    for (int i = 0; i < threadCount; i++) {
+      String id = format("%s:%02d", queueIdentifier(), i);
+      executor.submit(() -> messageLoop(id, this::getFromSourceQueue));
+    }
+  }
+
+  private void handleShardedQueue() {
+    laneQueues = IntStream.range(0, threadCount)
+        .<BlockingQueue<QueueEntry>>mapToObj(i -> new LinkedBlockingQueue<>(queueCapacity))
+        .toList();
+    executor.submit(() -> shardLoop(format("%s:sh", queueIdentifier())));
+    for (int i = 0; i < threadCount; i++) {
       String id = format("%s:%02d", queueIdentifier(), i);
-      executor.submit(() -> messageLoop(id));
+      BlockingQueue<QueueEntry> laneQueue = laneQueues.get(i);
+      executor.submit(() -> messageLoop(id, () -> getFromQueue(laneQueue)));
     }
   }
 
@@ -280,7 +477,7 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
     return new SimpleEntry<>(new AtomicInteger(), new AtomicDouble());
   }
 
-  private void messageLoop(String id) {
+  private void messageLoop(String id, Callable<Bundle> bundleSource) {
     info("Starting message loop %s", id);
     while (true) {
       try {
@@ -288,7 +485,7 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
         Envelope envelope = null;
         try {
           final Instant before = Instant.now();
-          Bundle bundle = extractBundle(getFromSourceQueue());
+          Bundle bundle = bundleSource.call();
           if (bundle == null) {
             continue;
           }
@@ -305,7 +502,9 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
           if (ERROR_MESSAGE_MARKER.equals(envelope.transactionId)) {
             throw new RuntimeException("Exception due to test-induced error");
           }
+          long dispatchStart = System.nanoTime();
           dispatcher.accept(bundle);
+          dispatchLatency.record(System.nanoTime() - dispatchStart);
           long seconds = Duration.between(start, Instant.now()).getSeconds();
           trace("Processing took %ds for message loop %s", seconds, id);
         } catch (Exception e) {
@@ -319,6 +518,38 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
     }
   }
 
+  /**
+   * Route bundles from the shared source queue to per-device lanes. Since there is only one
+   * shard loop, and each lane is processed by exactly one thread, messages for any given device
+   * are processed in-order and never concurrently.
+   */
+  private void shardLoop(String id) {
+    info("Starting shard loop %s with %d lanes", id, laneQueues.size());
+    while (true) {
+      try {
+        QueueEntry entry = pollEntry(sourceQueue);
+        throttleQueue();
+        if (entry == null) {
+          continue;
+        }
+        Bundle bundle = entry.bundle;
+        if (TERMINATE_MARKER.equals(bundle.message)) {
+          info("Terminating shard loop %s", id);
+          for (BlockingQueue<QueueEntry> laneQueue : laneQueues) {
+            laneQueue.put(new QueueEntry(grabExecutionContext(), bundle));
+          }
+          return;
+        }
+        int lane = floorMod(shardKey(bundle).hashCode(), laneQueues.size());
+        // Blocking put so that a backed-up lane backs up the source queue (and its throttling).
+        // The original enqueue time is kept, so queue wait covers both the source and the lane.
+        laneQueues.get(lane).put(new QueueEntry(grabExecutionContext(), bundle, entry.enqueued));
+      } catch (Exception e) {
+        error("Shard loop exception: " + friendlyStackTrace(e));
+      }
+    }
+  }
+
   private String messageQueueMessage() {
     double receiveQueue = getReceiveQueueSize();
     double publishQueue = getPublishQueueSize();
@@ -326,12 +557,8 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
   }
 
   private void receiveBundle(Bundle bundle) {
-    receiveBundle(stringify(bundle));
-  }
-
-  private void receiveBundle(String stringBundle) {
     ensureSourceQueue();
-    pushQueueEntry(sourceQueue, stringBundle);
+    pushQueueEntry(sourceQueue, bundle);
   }
 
   private void receiveException(Map<String, String> attributesMap, String messageString,
@@ -342,7 +569,7 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
     HashMap<String, String> mutableMap = new HashMap<>(attributesMap);
     bundle.attributesMap = mutableMap;
     ifNotNullThen(forceFolder, folder -> mutableMap.put(SUBFOLDER_PROPERTY_KEY, folder.value()));
-    receiveBundle(stringify(bundle));
+    receiveBundle(bundle);
   }
 
   private void receiveMessageRaw(Map<String, String> attributesMap, String messageString) {
@@ -357,7 +584,7 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
 
     try {
       sanitizeAttributeMap(attributesMap);
-      envelope = convertTo(Envelope.class, attributesMap);
+      envelope = EnvelopeCodec.fromAttributes(attributesMap);
     } catch (Exception e) {
       attributesMap.put(INVALID_ENVELOPE_KEY, friendlyStackTrace(e));
       receiveException(attributesMap, messageString, e, null);
@@ -365,7 +592,10 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
     }
 
     try {
-      Bundle bundle = new Bundle(envelope, messageObject);
+      Bundle bundle = new Bundle(envelope, toPlainObject(messageObject));
+      if (messageObject instanceof JsonNode tree) {
+        bundle.view = new MessageView(bundle.message, tree);
+      }
       debug("Received %s %s/%s -> %s %s", bundle.envelope.deviceRegistryId,
           bundle.envelope.subType, bundle.envelope.subFolder, queueIdentifier(),
           bundle.envelope.transactionId);
@@ -388,7 +618,7 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
     } else {
       SubFolder subFolder = catchToElse(() -> SubFolder.fromValue(subFolderRaw), SubFolder.INVALID);
       if (!subFolder.value().equals(subFolderRaw)) {
-        trace("Coerced subFolder " + subFolderRaw + " to " + subFolder.value());
+        trace("Coerced subFolder %s to %s", subFolderRaw, subFolder.value());
         attributesMap.put(RAWFOLDER_PROPERTY_KEY, subFolderRaw);
         attributesMap.put(SUBFOLDER_PROPERTY_KEY, subFolder.value());
       }
@@ -403,7 +633,7 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
     } else if (!Strings.isNullOrEmpty(subTypeRaw)) {
       SubType subType = catchToElse(() -> SubType.fromValue(subTypeRaw), SubType.INVALID);
       if (!subType.value().equals(subTypeRaw)) {
-        trace("Coerced subType " + subTypeRaw + " to " + subType.value());
+        trace("Coerced subType %s to %s", subTypeRaw, subType.value());
         attributesMap.put(SUBTYPE_PROPERTY_KEY, subType.value());
       }
     }
@@ -443,12 +673,15 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
   @Override
   public synchronized Map<String, PipeStats> extractStats() {
     double receiveQueue = getReceiveQueueSize();
-    double publishQueue = getPublishQueueSize();
+    final double publishQueue = getPublishQueueSize();
     if (subscriptionsThrottled.get()) {
       warn(messageQueueMessage() + ", currently paused");
     }
+    PipeStats receivePipeStats = extractStat(receiveStats, receiveQueue);
+    receivePipeStats.lanes = getLaneQueueSizes();
+    receivePipeStats.paused = extractPausedSec();
     return ImmutableMap.of(
-        RECEIVE_STATS, extractStat(receiveStats, receiveQueue),
+        RECEIVE_STATS, receivePipeStats,
         PUBLISH_STATS, extractStat(publishStats, publishQueue));
   }
 
@@ -466,7 +699,7 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
         throw new RuntimeException("Drain on active pipe");
       }
       debug("Polling on %s", this);
-      return ifNotNullGet(getFromSourceQueue(), MessageBase::extractBundle);
+      return getFromSourceQueue();
     } catch (Exception e) {
       throw new RuntimeException("While polling queue", e);
     }
@@ -474,12 +707,11 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
 
   @Override
   public final void publish(Bundle bundle) {
-    Instant start = Instant.now();
+    long start = System.nanoTime();
     try {
       publishRaw(bundle);
     } finally {
-      Duration between = Duration.between(start, Instant.now());
-      accumulateStats(PUBLISH_STATS, publishStats, between);
+      accumulateStats(PUBLISH_STATS, publishStats, publishLatency, System.nanoTime() - start);
     }
   }
 
@@ -514,6 +746,10 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
     public Object message;
     public Map<String, String> attributesMap;
     public String payload;
+    // Pre-serialized form of message (from stringify), only valid for the message it was made for.
+    private String messageJson;
+    private Object messageJsonFor;
+    private MessageView view;
 
     public Bundle() {
       this.envelope = new Envelope();
@@ -529,6 +765,15 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
       assignMessage(message);
     }
 
+    /**
+     * Create a bundle with a message that has already been serialized (by stringify), so the
+     * serialization can be reused when publishing. The message must not be modified afterwards.
+     */
+    public Bundle(Envelope envelope, Object message, String messageJson) {
+      this(envelope, null);
+      setMessage(message, messageJson);
+    }
+
     public Bundle(Map<String, String> attributes, Object message) {
       this.attributesMap = attributes;
       assignMessage(message);
@@ -542,6 +787,30 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
       }
     }
 
+    void setMessage(Object message, String messageJson) {
+      this.message = message;
+      this.messageJson = messageJson;
+      messageJsonFor = message;
+    }
+
+    /**
+     * Get the pre-serialized form of the current message, or null if there isn't one (or the
+     * message has since been replaced).
+     */
+    String getMessageJson() {
+      return message != null && message == messageJsonFor ? messageJson : null;
+    }
+
+    /**
+     * Get the lazily converted view of the current bundle message.
+     */
+    MessageView getView() {
+      if (view == null || !view.isFor(message)) {
+        view = new MessageView(message, null);
+      }
+      return view;
+    }
+
     /**
      * Get the actual send bytes for this bundle, either from raw payload or message object.
      */
@@ -570,7 +839,11 @@ public abstract class MessageBase extends ContainerBase implements MessagePipe {
     }
   }
 
-  record QueueEntry(String context, String message) {
+  record QueueEntry(String context, Bundle bundle, long enqueued) {
+
+    QueueEntry(String context, Bundle bundle) {
+      this(context, bundle, System.nanoTime());
+    }
 
   }
 
@@ -2,15 +2,15 @@ package com.google.bos.udmi.service.messaging.impl;
 
 import static com.google.bos.udmi.service.messaging.impl.MessageBase.PUBLISH_STATS;
 import static com.google.bos.udmi.service.messaging.impl.MessageBase.RECEIVE_STATS;
+import static com.google.bos.udmi.service.support.LatencyMetrics.HANDLER;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.udmi.util.Common.RAWFOLDER_PROPERTY_KEY;
 import static com.google.udmi.util.Common.SUBFOLDER_PROPERTY_KEY;
 import static com.google.udmi.util.GeneralUtils.deepCopy;
 import static com.google.udmi.util.GeneralUtils.ifNotNullThen;
 import static com.google.udmi.util.GeneralUtils.requireNull;
-import static com.google.udmi.util.JsonUtil.convertToStrict;
+import static com.google.udmi.util.JsonUtil.convertTo;
 import static com.google.udmi.util.JsonUtil.stringify;
-import static com.google.udmi.util.JsonUtil.toMap;
 import static com.google.udmi.util.JsonUtil.toStringMap;
 import static java.lang.String.format;
 import static java.util.Objects.isNull;
@@ -28,6 +28,7 @@ import com.google.bos.udmi.service.messaging.StateUpdate;
 import com.google.bos.udmi.service.messaging.impl.MessageBase.Bundle;
 import com.google.bos.udmi.service.messaging.impl.MessageBase.BundleException;
 import com.google.bos.udmi.service.pod.ContainerBase;
+import com.google.bos.udmi.service.support.LatencyMetrics;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
@@ -40,6 +41,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
@@ -86,6 +88,7 @@ public class MessageDispatcherImpl extends ContainerBase implements MessageDispa
   private final Map<Class<?>, AtomicInteger> handlerCounts = new ConcurrentHashMap<>();
   private final String projectId;
   private final ThreadLocal<Envelope> threadEnvelope = new ThreadLocal<>();
+  private final ThreadLocal<MessageView> threadView = new ThreadLocal<>();
 
   /**
    * Create a new instance of the message dispatcher.
@@ -102,11 +105,11 @@ public class MessageDispatcherImpl extends ContainerBase implements MessageDispa
   }
 
   @Nullable
-  private static Object convertStrictOrObject(Class<?> handlerType, Object message) {
+  private static Object convertStrictOrObject(Class<?> handlerType, MessageView view) {
     try {
-      return convertToStrict(handlerType, message);
+      return view.convertToStrict(handlerType);
     } catch (Exception e) {
-      return toMap(message);
+      return view.convertTo(TreeMap.class);
     }
   }
 
@@ -169,7 +172,9 @@ public class MessageDispatcherImpl extends ContainerBase implements MessageDispa
 
   private void executeHandler(Class<?> handlerType, Object messageObject) {
     try {
+      long start = System.nanoTime();
       handlers.get(handlerType).accept(messageObject);
+      LatencyMetrics.record(HANDLER, handlerType.getSimpleName(), System.nanoTime() - start);
       synchronized (handlerCounts) {
         handlerCounts.computeIfAbsent(handlerType, key -> new AtomicInteger()).incrementAndGet();
         handlerCounts.notify();
@@ -185,6 +190,12 @@ public class MessageDispatcherImpl extends ContainerBase implements MessageDispa
     double average = stats.latency / stats.count;
     String message = format("Pipe %s %s count %.3f/s latency %.03fs, queue %.03f",
         messagePipe, key, rate, average, stats.size);
+    if (stats.lanes != null) {
+      message += format(", lanes %s", Arrays.toString(stats.lanes));
+    }
+    if (stats.paused > 0) {
+      message += format(", paused %.03fs", stats.paused);
+    }
     boolean asWarn = average >= LATENCY_WARNING_THRESHOLD || stats.size >= SIZE_WARNING_THRESHOLD;
     Consumer<String> logger = asWarn ? this::warn : this::trace;
     logger.accept(message);
@@ -205,8 +216,15 @@ public class MessageDispatcherImpl extends ContainerBase implements MessageDispa
     }
   }
 
-  private void processHandler(Envelope envelope, Class<?> handlerType, Object messageObject) {
-    withEnvelopeFor(envelope, messageObject, () -> executeHandler(handlerType, messageObject));
+  private void processHandler(Envelope envelope, Class<?> handlerType, Object messageObject,
+      MessageView view) {
+    MessageView savedView = threadView.get();
+    try {
+      threadView.set(view);
+      withEnvelopeFor(envelope, messageObject, () -> executeHandler(handlerType, messageObject));
+    } finally {
+      threadView.set(savedView);
+    }
   }
 
   private void processMessageBundle(Bundle bundle) {
@@ -229,14 +247,15 @@ public class MessageDispatcherImpl extends ContainerBase implements MessageDispa
         notice("Defaulting messages of type/folder " + key.getName());
         return handlers.getOrDefault(DEFAULT_CLASS, this::devNullHandler);
       });
+      MessageView view = isException || isRawString ? null : bundle.getView();
       Object messageObject = isException ? message :
           isRawString ? ((RawString) message).rawString
-              : convertStrictOrObject(handlerType, message);
+              : convertStrictOrObject(handlerType, view);
       if (messageObject instanceof Map) {
         handlerType = Object.class;
       }
       trace("Processing %s from %s in %s", handlerType.getSimpleName(), messagePipe, this);
-      processHandler(envelope, handlerType, messageObject);
+      processHandler(envelope, handlerType, messageObject, view);
     } catch (Exception e) {
       throw new RuntimeException("While processing message " + stringify(envelope), e);
     }
@@ -298,6 +317,15 @@ public class MessageDispatcherImpl extends ContainerBase implements MessageDispa
     };
   }
 
+  @Override
+  public <T> T convertMessage(Object message, Class<T> targetClass) {
+    MessageView view = threadView.get();
+    if (view != null && view.isViewOf(message)) {
+      return view.convertTo(targetClass);
+    }
+    return convertTo(targetClass, message);
+  }
+
   @Override
   public int getHandlerCount(Class<?> clazz) {
     return handlerCounts.computeIfAbsent(clazz, key -> new AtomicInteger()).get();
@@ -0,0 +1,111 @@
+package com.google.bos.udmi.service.messaging.impl;
+
+import static com.google.udmi.util.GeneralUtils.copyTree;
+import static com.google.udmi.util.JsonUtil.fromTree;
+import static com.google.udmi.util.JsonUtil.fromTreeStrict;
+import static com.google.udmi.util.JsonUtil.toTree;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.udmi.util.FieldCopier;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lazily converted views of a single bundle message. The message is turned into a json tree (at
+ * most) once, and then bound to the requested classes on demand. Each binding is cached for the
+ * lifetime of the bundle, but callers only ever get their own copy, so a handler that modifies its
+ * message can't affect any other handler or later conversion. Views are confined to the thread
+ * processing the bundle.
+ */
+class MessageView {
+
+  private final Object message;
+  private final Map<Class<?>, Object> conversions = new HashMap<>();
+  private final Map<Class<?>, Object> strictConversions = new HashMap<>();
+  private final Map<Object, Object> issued = new IdentityHashMap<>();
+  private JsonNode tree;
+
+  MessageView(Object message, JsonNode tree) {
+    this.message = message;
+    this.tree = tree;
+  }
+
+  /**
+   * Get the json tree for this message. The tree is shared, so must not be modified.
+   */
+  JsonNode getTree() {
+    if (tree == null) {
+      tree = toTree(message);
+    }
+    return tree;
+  }
+
+  /**
+   * Get a copy of the message bound to the given class, using relaxed field mappings.
+   */
+  @SuppressWarnings("unchecked")
+  <T> T convertTo(Class<T> targetClass) {
+    if (JsonNode.class.isAssignableFrom(targetClass)) {
+      return (T) getTree().deepCopy();
+    }
+    Object strict = strictConversions.get(targetClass);
+    if (strict != null) {
+      return issue(targetClass, strict, true);
+    }
+    return issue(targetClass, conversions.computeIfAbsent(targetClass,
+        key -> fromTree(key, getTree())), false);
+  }
+
+  /**
+   * Get a copy of the message bound to the given class, using strict field mappings.
+   */
+  <T> T convertToStrict(Class<T> targetClass) {
+    return issue(targetClass, strictConversions.computeIfAbsent(targetClass,
+        key -> fromTreeStrict(key, getTree())), true);
+  }
+
+  /**
+   * Hand out a copy of a cached conversion: field-wise for schema classes, structurally for plain
+   * maps and lists, and otherwise by binding the tree again.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T issue(Class<T> targetClass, Object cached, boolean strict) {
+    T copy = FieldCopier.canCopy(targetClass) ? (T) FieldCopier.copy(cached)
+        : copyStructure(cached);
+    if (!targetClass.isInstance(copy)) {
+      copy = strict ? fromTreeStrict(targetClass, getTree()) : fromTree(targetClass, getTree());
+    }
+    issued.put(copy, cached);
+    return copy;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T copyStructure(Object cached) {
+    return cached instanceof Map<?, ?> || cached instanceof List<?> ? (T) copyTree(cached) : null;
+  }
+
+  /**
+   * Check if this view is for the given original message.
+   */
+  boolean isFor(Object object) {
+    return object == message;
+  }
+
+  /**
+   * Check if the given object is either the original message or an unmodified copy handed out by
+   * this view. A modified copy no longer matches the cached conversions, so needs to be converted
+   * on its own.
+   */
+  boolean isViewOf(Object object) {
+    if (object == null) {
+      return false;
+    }
+    if (object == message) {
+      return true;
+    }
+    Object cached = issued.get(object);
+    return cached != null && cached.equals(object);
+  }
+}
@@ -8,8 +8,6 @@ import static com.google.udmi.util.GeneralUtils.ifNotNullGet;
 import static com.google.udmi.util.GeneralUtils.ifNotNullThen;
 import static com.google.udmi.util.GeneralUtils.ifNullThen;
 import static com.google.udmi.util.JsonUtil.isoConvert;
-import static com.google.udmi.util.JsonUtil.stringify;
-import static com.google.udmi.util.JsonUtil.toMap;
 import static java.lang.String.format;
 import static java.time.Instant.ofEpochSecond;
 import static java.util.Optional.ofNullable;
@@ -45,7 +43,6 @@ import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -72,6 +69,7 @@ public class PubSubPipe extends MessageBase implements MessageReceiver {
   private final String topicId;
   private final Set<String> subscriberSet;
   private List<Subscriber> subscribers;
+  private boolean terminated;
   private final AtomicInteger publisherQueueSize = new AtomicInteger();
 
   /**
@@ -147,17 +145,15 @@ public class PubSubPipe extends MessageBase implements MessageReceiver {
     try {
       int currentQueueSize = publisherQueueSize.incrementAndGet();
       Envelope envelope = ofNullable(bundle.envelope).orElse(new Envelope());
-      Map<String, String> stringMap = toMap(envelope).entrySet().stream()
-          .collect(Collectors.toMap(Entry::getKey, entry -> (String) entry.getValue()));
+      Map<String, String> stringMap = EnvelopeCodec.toAttributes(envelope);
       PubsubMessage message = PubsubMessage.newBuilder()
           .putAllAttributes(stringMap)
-          .setData(ByteString.copyFromUtf8(stringify(bundle.message)))
+          .setData(ByteString.copyFromUtf8(encodeMessage(bundle)))
           .build();
       randomlyFail();
 
-      debug(
-          format("Preparing to publish PubSub message for %s/%s. Current internal queue size: %d",
-          envelope.deviceRegistryId, envelope.deviceId, currentQueueSize));
+      debug("Preparing to publish PubSub message for %s/%s. Current internal queue size: %d",
+          envelope.deviceRegistryId, envelope.deviceId, currentQueueSize);
 
       long publishStartTime = System.currentTimeMillis();
       long sleepTime = publishDelaySec * MS_PER_SEC;
@@ -187,12 +183,12 @@ public class PubSubPipe extends MessageBase implements MessageReceiver {
           long gcpAckLatencyMs = (System.currentTimeMillis() - publishStartTime) - sleepTime;
 
           String publishedTransactionId = PS_TXN_PREFIX + result;
-          debug(format("Published PubSub %s/%s to %s as %s/%s %s -> %s",
+          debug("Published PubSub %s/%s to %s as %s/%s %s -> %s",
               stringMap.get(SUBTYPE_PROPERTY_KEY), stringMap.get(SUBFOLDER_PROPERTY_KEY),
               topicId, envelope.deviceRegistryId, envelope.deviceId, envelope.transactionId,
-              publishedTransactionId));
-          debug(format("PubSub Message %s published with GCP Ack Latency %dms",
-              publishedTransactionId, gcpAckLatencyMs));
+              publishedTransactionId);
+          debug("PubSub Message %s published with GCP Ack Latency %dms",
+              publishedTransactionId, gcpAckLatencyMs);
         }
       }, MoreExecutors.directExecutor());
 
@@ -218,6 +214,9 @@ public class PubSubPipe extends MessageBase implements MessageReceiver {
   }
 
   private void awaitTerminated() {
+    synchronized (this) {
+      terminated = true;
+    }
     stopAsyncSubscribers().forEach(ApiService::awaitTerminated);
   }
 
@@ -233,12 +232,34 @@ public class PubSubPipe extends MessageBase implements MessageReceiver {
     subscribers = ifNotNullGet(subscriberSet, this::getSubscribers);
   }
 
-  private List<ApiService> stopAsyncSubscribers() {
-    List<ApiService> apiServices = subscribers.stream().map(AbstractApiService::stopAsync).toList();
+  private synchronized List<ApiService> stopAsyncSubscribers() {
+    List<ApiService> apiServices = ifNotNullGet(subscribers,
+        list -> list.stream().map(AbstractApiService::stopAsync).toList(), List.of());
     subscribers = null;
     return apiServices;
   }
 
+  /**
+   * Stop the subscribers while paused, since PubSub will happily keep delivering messages. Stopped
+   * subscribers can't be restarted, so new ones are created on resume.
+   */
+  @Override
+  protected synchronized void pauseReception() {
+    if (isActive() && !terminated && subscribers != null) {
+      notice("Pausing %d PubSub subscribers for %s", subscribers.size(), containerId);
+      stopAsyncSubscribers();
+    }
+  }
+
+  @Override
+  protected synchronized void resumeReception() {
+    if (isActive() && !terminated && subscribers == null && subscriberSet != null) {
+      notice("Resuming PubSub subscribers for %s", containerId);
+      initializeSubscribers();
+      subscribers.forEach(Subscriber::startAsync);
+    }
+  }
+
   @Override
   public void activate(Consumer<Bundle> bundleConsumer) {
     super.activate(bundleConsumer);
@@ -257,8 +278,8 @@ public class PubSubPipe extends MessageBase implements MessageReceiver {
         message.getPublishTime().getNanos()
     );
     long latencyMs = Duration.between(publishTime, Instant.now()).toMillis();
-    debug(format("PubSub message %s received. Processing latency from publish time %s: %dms",
-        messageTransactionId, publishTime, latencyMs));
+    debug("PubSub message %s received. Processing latency from publish time %s: %dms",
+        messageTransactionId, publishTime, latencyMs);
 
     Map<String, String> attributesMap = new HashMap<>(message.getAttributesMap());
     attributesMap.computeIfAbsent("publishTime",
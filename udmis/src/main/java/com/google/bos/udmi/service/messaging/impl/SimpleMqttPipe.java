@@ -5,14 +5,12 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.udmi.util.Common.PUBLISH_TIME_KEY;
 import static com.google.udmi.util.Common.SOURCE_KEY;
 import static com.google.udmi.util.Common.TRANSACTION_KEY;
-import static com.google.udmi.util.GeneralUtils.catchToElse;
 import static com.google.udmi.util.GeneralUtils.friendlyStackTrace;
 import static com.google.udmi.util.GeneralUtils.ifNotNullGet;
 import static com.google.udmi.util.GeneralUtils.ifNotNullThen;
 import static com.google.udmi.util.GeneralUtils.ifTrueGet;
 import static com.google.udmi.util.GeneralUtils.ifTrueThen;
 import static com.google.udmi.util.GeneralUtils.isNotEmpty;
-import static com.google.udmi.util.GeneralUtils.nullAsNull;
 import static com.google.udmi.util.GeneralUtils.stackTraceString;
 import static com.google.udmi.util.JsonUtil.isoConvert;
 import static com.google.udmi.util.JsonUtil.toStringMap;
@@ -20,13 +18,11 @@ import static java.lang.String.format;
 import static java.util.Optional.ofNullable;
 
 import com.google.bos.udmi.service.messaging.MessagePipe;
-import com.google.common.base.Strings;
 import com.google.udmi.util.CertManager;
-import com.google.udmi.util.JsonUtil;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.PrintWriter;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledFuture;
@@ -62,11 +58,11 @@ public class SimpleMqttPipe extends MessageBase {
   private static final long RECONNECT_SEC = 10;
   private static final int DEFAULT_PORT = 8883;
   private static final String LEGACY_TOPIC_PREFIX = "/devices/";
-  private static final String IMPLICIT_TOPIC_PREFIX = "/r/";
   private static final Envelope EXCEPTION_ENVELOPE = makeExceptionEnvelope();
   private static final String SUB_BASE_FORMAT = "/r/+/d/+/%s";
   private static final String DEFAULT_NAMESPACE = "default";
   private static final long CONNECT_TIMEOUT_SEC = 30;
+  private static final String CAPTURE_FILE = "out/udmis_messages.log";
   private final String autoId = format("mqtt-%08x", (long) (Math.random() * 0x100000000L));
   private final String clientId;
   private final String namespace;
@@ -78,6 +74,8 @@ public class SimpleMqttPipe extends MessageBase {
   private final CountDownLatch connectLatch = new CountDownLatch(1);
   private final boolean publishMessages;
   private final String sendTopicChannel;
+  private final CaptureWriter captureWriter = CaptureWriter.forFile(CAPTURE_FILE);
+  private final Queue<MqttMessage> deferredAcks = new ConcurrentLinkedQueue<>();
 
   /**
    * Create new pipe instance for the given config.
@@ -117,16 +115,6 @@ public class SimpleMqttPipe extends MessageBase {
         () -> SimpleMqttPipe.this.tryConnect(true), 0, RECONNECT_SEC, TimeUnit.SECONDS);
   }
 
-  private static SubFolder convertSubFolder(String part) {
-    return catchToElse(() -> ofNullable(nullAsNull(part)).map(SubFolder::fromValue).orElse(null),
-        SubFolder.INVALID);
-  }
-
-  private static SubType convertSubType(String part) {
-    return catchToElse(() -> ofNullable(nullAsNull(part))
-        .map(SubType::fromValue).orElse(null), SubType.INVALID);
-  }
-
   public static MessagePipe fromConfig(EndpointConfiguration config) {
     return new SimpleMqttPipe(config);
   }
@@ -142,91 +130,6 @@ public class SimpleMqttPipe extends MessageBase {
     return topic != null && topic.startsWith(LEGACY_TOPIC_PREFIX);
   }
 
-  private static Map<String, String> parseLegacyTopic(String topic) {
-    if (topic == null) {
-      throw new IllegalArgumentException("Topic cannot be null");
-    }
-    String cleanTopic = topic.startsWith("/") ? topic.substring(1) : topic;
-    String[] parts = cleanTopic.split("/");
-    Envelope envelope = new Envelope();
-    if (parts.length >= 2 && !parts[1].isEmpty()) {
-      envelope.deviceId = nullAsNull(parts[1]);
-    }
-    if (parts.length >= 3 && !parts[2].isEmpty()) {
-      envelope.subType = convertSubType(parts[2]);
-    }
-    if (parts.length >= 4 && !parts[3].isEmpty()) {
-      // TODO: technically the subfolder is the remainder including all slashes until the end.
-      envelope.subFolder = convertSubFolder(parts[3]);
-    }
-    return toStringMap(envelope);
-  }
-
-  private static boolean isUufiTopic(String topic) {
-    if (topic == null) {
-      return false;
-    }
-    String[] parts = topic.split("/", 12);
-    int start = Strings.isNullOrEmpty(parts[0]) ? 1 : 0;
-    return parts.length > start && "uufi".equals(parts[start]);
-  }
-
-  private static Map<String, String> parseUufiTopic(String topic) {
-    String[] parts = topic.split("/", 12);
-    int start = Strings.isNullOrEmpty(parts[0]) ? 1 : 0;
-    Envelope envelope = new Envelope();
-
-    // UUFI topic: [/namespace]/uufi/[r/REG/d/DEV/]c/TYPE/FOLDER
-    int base = start + 1;
-    if ("r".equals(parts[base])) {
-      envelope.deviceRegistryId = nullAsNull(parts[base + 1]);
-      checkState("d".equals(parts[base + 2]), "expected devices");
-      envelope.deviceId = nullAsNull(parts[base + 3]);
-      base += 4;
-    }
-    checkState("c".equals(parts[base]), "expected commands");
-    envelope.subType = convertSubType(parts[base + 1]);
-    envelope.subFolder = convertSubFolder(parts[base + 2]);
-    envelope.gatewayId = "uufi";
-    return toStringMap(envelope);
-  }
-
-  private static Map<String, String> parseImplicitTopic(String topic) {
-    if (topic == null) {
-      throw new IllegalArgumentException("Topic cannot be null");
-    }
-    // 0/1/2       /3/4     /5   [/6     [/7      ]]
-    //  /r/REGISTRY/d/DEVICE/TYPE[/FOLDER[/GATEWAY]]
-    String[] parts = topic.split("/", 12);
-    if (parts.length < 6 || parts.length > 10) {
-      throw new IllegalArgumentException("Unexpected topic length: " + topic);
-    }
-    Envelope envelope = new Envelope();
-    checkState(Strings.isNullOrEmpty(parts[0]), "non-empty prefix");
-    checkState("r".equals(parts[1]), "expected registries");
-    envelope.deviceRegistryId = nullAsNull(parts[2]);
-    checkState("d".equals(parts[3]), "expected devices");
-    envelope.deviceId = nullAsNull(parts[4]);
-    int base = parts[5].equals(SEND_CHANNEL_DESIGNATOR) ? 2 : 0;
-    if (parts.length < base + 6) {
-      throw new IllegalArgumentException("Unexpected topic length for implicit topic: " + topic);
-    }
-    if (base > 0) {
-      envelope.source = parts[6];
-    }
-    envelope.subType = convertSubType(parts[base + 5]);
-    if (parts.length > base + 6 && !parts[base + 6].isEmpty()) {
-      envelope.subFolder = convertSubFolder(parts[base + 6]);
-    }
-    if (parts.length > base + 7 && !parts[base + 7].isEmpty()) {
-      envelope.gatewayId = nullAsNull(parts[base + 7]);
-    }
-    if (parts.length > base + 8) {
-      throw new IllegalArgumentException("Unrecognized extra topic arguments: " + parts[base + 8]);
-    }
-    return toStringMap(envelope);
-  }
-
   /**
    * Parse an MQTT envelope topic (either legacy or implicit format) into attributes map.
    *
@@ -234,19 +137,7 @@ public class SimpleMqttPipe extends MessageBase {
    * @return Map of envelope attributes
    */
   public static Map<String, String> parseEnvelopeTopic(String topic) {
-    try {
-      if (isUufiTopic(topic)) {
-        return parseUufiTopic(topic);
-      } else if (isLegacyTopic(topic)) {
-        return parseLegacyTopic(topic);
-      } else if (topic != null && topic.startsWith(IMPLICIT_TOPIC_PREFIX)) {
-        return parseImplicitTopic(topic);
-      } else {
-        throw new IllegalArgumentException("Unrecognized topic structure: " + topic);
-      }
-    } catch (Exception e) {
-      throw new RuntimeException("While parsing envelope topic " + topic, e);
-    }
+    return EnvelopeCodec.parseTopic(topic);
   }
 
   @Override
@@ -275,12 +166,8 @@ public class SimpleMqttPipe extends MessageBase {
   }
 
   private void captureMessage(String topic, String message, boolean incoming) {
-    File captureFile = new File("out/udmis_messages.log");
-    try (PrintWriter out = new PrintWriter(new FileOutputStream(captureFile, true))) {
-      String direction = incoming ? "<<<" : ">>>";
-      out.printf("%s %s %s %s: %s%n", JsonUtil.currentIsoMs(), clientId, direction, topic, message);
-    } catch (Exception e) {
-      // Ignore errors writing to capture log
+    if (CaptureWriter.shouldCapture(endpoint.capture_rate)) {
+      captureWriter.capture(clientId, incoming, topic, message);
     }
   }
 
@@ -306,6 +193,8 @@ public class SimpleMqttPipe extends MessageBase {
         });
 
         info("Attempting mqtt connection for %s to %s", clientId, mqttClient.getServerURI());
+        // Acks deferred from a previous connection don't apply to the new session.
+        deferredAcks.clear();
         mqttClient.connect(options);
         info("Established mqtt connection as %s", clientId);
         subscribeToMessages();
@@ -323,6 +212,7 @@ public class SimpleMqttPipe extends MessageBase {
     try {
       MqttClient client = new MqttClient(broker, clientId, new MemoryPersistence());
       client.setCallback(new MqttCallbackHandler());
+      client.setManualAcks(true);
       client.setTimeToWait(INITIALIZE_TIME_MS);
       return client;
     } catch (Exception e) {
@@ -386,7 +276,7 @@ public class SimpleMqttPipe extends MessageBase {
       topic = "/" + envelope.subType + topic;
     }
     String channel = IMPLICIT_CHANNEL.equals(envelope.source) ? "" : sendTopicChannel;
-    return format("/r/%s/d/%s%s%s", envelope.deviceRegistryId, envelope.deviceId, channel, topic);
+    return "/r/" + envelope.deviceRegistryId + "/d/" + envelope.deviceId + channel + topic;
   }
 
 
@@ -456,6 +346,8 @@ public class SimpleMqttPipe extends MessageBase {
       mqttClient.close();
     } catch (Exception e) {
       throw new RuntimeException("While shutdown of mqtt pipe", e);
+    } finally {
+      CaptureWriter.release(CAPTURE_FILE);
     }
     super.shutdown();
   }
@@ -492,10 +384,49 @@ public class SimpleMqttPipe extends MessageBase {
       } catch (Exception e) {
         error("Exception receiving message on %s: %s", clientId, friendlyStackTrace(e));
         debug("Full error details for %s: %s", topic, stackTraceString(e));
+      } finally {
+        acknowledge(message);
       }
     }
   }
 
+  /**
+   * Acknowledge a received message, unless reception is throttled, in which case the ack is held
+   * back until resumed. With the broker's in-flight window full of unacked messages, it stops
+   * sending, without blocking the client callback thread (which also handles keepalives).
+   */
+  private void acknowledge(MqttMessage message) {
+    if (!isReceptionThrottled()) {
+      completeAck(message);
+      return;
+    }
+    deferredAcks.add(message);
+    // Reception might have been resumed since the check, so don't leave the ack stranded.
+    if (!isReceptionThrottled()) {
+      releaseDeferredAcks();
+    }
+  }
+
+  private void releaseDeferredAcks() {
+    MqttMessage message;
+    while ((message = deferredAcks.poll()) != null) {
+      completeAck(message);
+    }
+  }
+
+  private void completeAck(MqttMessage message) {
+    try {
+      mqttClient.messageArrivedComplete(message.getId(), message.getQos());
+    } catch (Exception e) {
+      error("Exception acking message on %s: %s", clientId, friendlyStackTrace(e));
+    }
+  }
+
+  @Override
+  protected void resumeReception() {
+    releaseDeferredAcks();
+  }
+
   @Override
   void resetForTest() {
     super.resetForTest();
@@ -7,7 +7,6 @@ import static com.google.udmi.util.GeneralUtils.getTimestamp;
 import static com.google.udmi.util.GeneralUtils.ifNotNullThen;
 import static com.google.udmi.util.JsonUtil.asMap;
 import static com.google.udmi.util.JsonUtil.isoConvert;
-import static com.google.udmi.util.JsonUtil.stringify;
 import static com.google.udmi.util.JsonUtil.writeFile;
 import static java.lang.String.format;
 import static java.util.Optional.ofNullable;
@@ -50,6 +49,7 @@ public class TraceMessagePipe extends MessageBase {
       Map<String, Object> traceBundle = asMap(file);
       Map<String, String> envelopeMap = makeEnvelope(traceBundle);
       Map<String, Object> message = asMap(decodeBase64((String) traceBundle.get("data")));
+      awaitReceiveCapacity();
       receiveMessage(envelopeMap, message);
     } catch (Exception e) {
       e.printStackTrace();
@@ -101,7 +101,7 @@ public class TraceMessagePipe extends MessageBase {
     String sanitized = publishTime.replaceAll(":", "x");
     File outFile = new File(outDir, format("%s_%06d.json", sanitized, messageCount));
     Map<String, Object> outputMap = ImmutableMap.of(
-        "data", encodeBase64(stringify(bundle.message)),
+        "data", encodeBase64(encodeMessage(bundle)),
         "attributes", envelope
     );
     writeFile(outputMap, outFile);
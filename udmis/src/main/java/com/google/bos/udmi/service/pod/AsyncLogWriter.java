@@ -0,0 +1,107 @@
+package com.google.bos.udmi.service.pod;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous log appender, so that logging threads only need to queue a formatted line in a
+ * bounded ring buffer. A background thread drains the buffer and writes out the lines in batches,
+ * with one flush per batch. If the buffer is full, the line is written synchronously instead so
+ * that nothing is lost.
+ */
+class AsyncLogWriter {
+
+  private static final int BUFFER_SIZE = 8192;
+  private static final int MAX_BATCH = 256;
+  private static final long POLL_MS = 100;
+  private static final long SHUTDOWN_WAIT_MS = 2000;
+
+  private final BlockingQueue<LogLine> buffer = new ArrayBlockingQueue<>(BUFFER_SIZE);
+  private final AtomicLong overflows = new AtomicLong();
+  private final Thread writerThread;
+  private volatile boolean running = true;
+
+  AsyncLogWriter() {
+    writerThread = new Thread(this::writeLoop, "async-log-writer");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /**
+   * Queue a line for output, writing it directly if the buffer is full.
+   */
+  void write(boolean isError, String line) {
+    LogLine logLine = new LogLine(isError, line);
+    if (!buffer.offer(logLine)) {
+      overflows.incrementAndGet();
+      writeBatch(List.of(logLine));
+    }
+  }
+
+  /**
+   * Stop the writer, after writing out anything still buffered.
+   */
+  void close() {
+    running = false;
+    writerThread.interrupt();
+    try {
+      writerThread.join(SHUTDOWN_WAIT_MS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    drain();
+  }
+
+  long getOverflows() {
+    return overflows.get();
+  }
+
+  private void writeLoop() {
+    while (running) {
+      try {
+        LogLine first = buffer.poll(POLL_MS, TimeUnit.MILLISECONDS);
+        if (first != null) {
+          List<LogLine> batch = new ArrayList<>(MAX_BATCH);
+          batch.add(first);
+          buffer.drainTo(batch, MAX_BATCH - 1);
+          writeBatch(batch);
+        }
+      } catch (InterruptedException e) {
+        // Interrupted by close(), so loop around to check the running flag.
+      }
+    }
+  }
+
+  private void drain() {
+    List<LogLine> batch = new ArrayList<>(MAX_BATCH);
+    while (buffer.drainTo(batch, MAX_BATCH) > 0) {
+      writeBatch(batch);
+      batch.clear();
+    }
+  }
+
+  private static void writeBatch(List<LogLine> batch) {
+    StringBuilder out = new StringBuilder();
+    StringBuilder err = new StringBuilder();
+    batch.forEach(line -> (line.isError ? err : out).append(line.line)
+        .append(System.lineSeparator()));
+    writeTo(System.out, out);
+    writeTo(System.err, err);
+  }
+
+  private static void writeTo(PrintStream printStream, StringBuilder lines) {
+    if (!lines.isEmpty()) {
+      printStream.print(lines);
+      printStream.flush();
+    }
+  }
+
+  private record LogLine(boolean isError, String line) {
+
+  }
+}
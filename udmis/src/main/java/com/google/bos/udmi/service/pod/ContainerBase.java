@@ -52,7 +52,7 @@ public abstract class ContainerBase implements UdmiComponent {
 
   public static final String INITIAL_EXECUTION_CONTEXT = "xxxxxxxx";
   public static final Integer FUNCTIONS_VERSION_MIN = 18;
-  public static final Integer FUNCTIONS_VERSION_MAX = 18;
+  public static final Integer FUNCTIONS_VERSION_MAX = 19;
   public static final String EMPTY_JSON = "{}";
   public static final String REFLECT_BASE = "UDMI-REFLECT";
   private static final ThreadLocal<String> executionContext = new ThreadLocal<>();
@@ -64,7 +64,8 @@ public abstract class ContainerBase implements UdmiComponent {
   public static final String FALSE_OPTION = "false";
   protected static String reflectRegistry = REFLECT_BASE;
   private static BasePodConfiguration basePodConfig = new BasePodConfiguration();
-  private static Level podLogLevel = Level.INFO;
+  private static volatile Level podLogLevel = Level.INFO;
+  private static volatile AsyncLogWriter asyncLogWriter;
   protected final PodConfiguration podConfiguration;
   protected final long periodicSec;
   protected final String containerId;
@@ -140,6 +141,25 @@ public abstract class ContainerBase implements UdmiComponent {
     podLogLevel = requireNonNull(level, "log level not defined");
   }
 
+  /**
+   * Check if messages at the given level will be logged, to avoid needlessly building messages.
+   */
+  public static boolean isLoggable(Level level) {
+    return level.value() >= podLogLevel.value();
+  }
+
+  /**
+   * Enable (or disable) asynchronous output of log messages through a background writer.
+   */
+  public static synchronized void setAsyncLogging(boolean async) {
+    if (async && asyncLogWriter == null) {
+      asyncLogWriter = new AsyncLogWriter();
+    } else if (!async && asyncLogWriter != null) {
+      asyncLogWriter.close();
+      asyncLogWriter = null;
+    }
+  }
+
   private Level extractLogLevel(BasePodConfiguration config) {
     String levelStr = ofNullable(config.log_level).map(this::variableSubstitution).orElse("");
     try {
@@ -293,7 +313,7 @@ public abstract class ContainerBase implements UdmiComponent {
   }
 
   public void debug(String format, Object... args) {
-    debug(format(format, args));
+    outputFormat(Level.DEBUG, format, args);
   }
 
   public void debug(String message) {
@@ -301,7 +321,7 @@ public abstract class ContainerBase implements UdmiComponent {
   }
 
   public void error(String format, Object... args) {
-    error(format(format, args));
+    outputFormat(Level.ERROR, format, args);
   }
 
   public void error(String message) {
@@ -309,7 +329,7 @@ public abstract class ContainerBase implements UdmiComponent {
   }
 
   public void info(String format, Object... args) {
-    info(format(format, args));
+    outputFormat(Level.INFO, format, args);
   }
 
   public void info(String message) {
@@ -321,17 +341,33 @@ public abstract class ContainerBase implements UdmiComponent {
   }
 
   public void notice(String message, Object... args) {
-    notice(format(message, args));
+    outputFormat(Level.NOTICE, message, args);
+  }
+
+  /**
+   * Output a formatted message, but only format it if the level is actually being logged.
+   */
+  private void outputFormat(Level level, String format, Object[] args) {
+    if (isLoggable(level)) {
+      output(level, format(format, args));
+    }
   }
 
   @Override
   public void output(Level level, String message) {
-    if (level.value() < podLogLevel.value()) {
+    if (!isLoggable(level)) {
+      return;
+    }
+    boolean isError = level.value() >= Level.WARNING.value();
+    String line = JsonUtil.currentIsoMs() + " " + getExecutionContext() + " "
+        + level.name().charAt(0) + ": " + getSimpleName() + " " + message;
+    AsyncLogWriter writer = asyncLogWriter;
+    if (writer != null) {
+      writer.write(isError, line);
       return;
     }
-    PrintStream printStream = level.value() >= Level.WARNING.value() ? System.err : System.out;
-    printStream.printf("%s %s %s: %s %s%n", JsonUtil.currentIsoMs(), getExecutionContext(),
-        level.name().charAt(0), getSimpleName(), message);
+    PrintStream printStream = isError ? System.err : System.out;
+    printStream.println(line);
     printStream.flush();
   }
 
@@ -345,7 +381,7 @@ public abstract class ContainerBase implements UdmiComponent {
   }
 
   public void trace(String format, Object... args) {
-    trace(format(format, args));
+    outputFormat(Level.TRACE, format, args);
   }
 
   public void warn(String message) {
@@ -353,7 +389,7 @@ public abstract class ContainerBase implements UdmiComponent {
   }
 
   public void warn(String format, Object... args) {
-    warn(format(format, args));
+    outputFormat(Level.WARNING, format, args);
   }
 
   protected Map<String, String> parseOptions(IotAccess iotAccess) {
@@ -0,0 +1,54 @@
+package com.google.bos.udmi.service.pod;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.bos.udmi.service.support.LatencyMetrics;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+
+/**
+ * Lightweight HTTP endpoint that exposes the pod's latency metrics for scraping.
+ */
+class MetricsEndpoint {
+
+  static final String METRICS_PATH = "/metrics";
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+  private static final int STOP_DELAY_SEC = 1;
+
+  private final HttpServer server;
+
+  MetricsEndpoint(int port) {
+    try {
+      server = HttpServer.create(new InetSocketAddress(port), 0);
+      server.createContext(METRICS_PATH, this::handleMetrics);
+      server.setExecutor(Executors.newSingleThreadExecutor());
+      server.start();
+    } catch (Exception e) {
+      throw new RuntimeException("While starting metrics endpoint on port " + port, e);
+    }
+  }
+
+  int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  void stop() {
+    server.stop(STOP_DELAY_SEC);
+  }
+
+  private void handleMetrics(HttpExchange exchange) {
+    try (exchange) {
+      byte[] body = LatencyMetrics.render().getBytes(UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    } catch (Exception e) {
+      // Nothing useful to do if the scraper went away mid-response.
+    }
+  }
+}
@@ -54,6 +54,7 @@ public class UdmiServicePod extends ContainerBase {
   public static final String DEPLOY_FILE = "var/deployed_version.json";
   public static final String UDMI_VERSION = requireNonNull(getDeployedConfig().udmi_version);
   public static final int FATAL_ERROR_CODE = -1;
+  public static final String METRICS_PORT_ENV = "UDMI_METRICS_PORT";
   public static final String INSTANCE_ID = format("%08x", (long) (Math.random() * 0x100000000L));
   static final File READY_INDICATOR = new File(
       System.getenv("UDMI_POD_READY") != null
@@ -65,6 +66,9 @@ public class UdmiServicePod extends ContainerBase {
       BitboxAdapter.class, DistributorPipe.class, UufiProcessor.class,
       CaptureProcessor.class);
   private static final Map<String, Class<? extends ProcessorBase>> PROCESSORS = new HashMap<>();
+  private static final long DEPLOY_CHECK_MS = 10000;
+  private static volatile DeployedConfig deployedConfig;
+  private MetricsEndpoint metricsEndpoint;
 
   static {
     PROCESSOR_CLASSES.forEach(clazz -> PROCESSORS.put(ContainerBase.getName(clazz), clazz));
@@ -113,8 +117,25 @@ public class UdmiServicePod extends ContainerBase {
     return requireNonNull(maybeGetComponent(name), "missing component " + name);
   }
 
+  /**
+   * Get the deployed setup configuration. The parsed file is cached, and the file is checked for
+   * changes (modification time or size) at most every DEPLOY_CHECK_MS, so this is cheap enough for
+   * hot paths. The returned instance is shared, so must not be modified.
+   */
   public static SetupUdmiConfig getDeployedConfig() {
-    return loadFileStrictRequired(SetupUdmiConfig.class, new File(DEPLOY_FILE));
+    DeployedConfig cached = deployedConfig;
+    long now = System.currentTimeMillis();
+    if (cached != null && now < cached.checked + DEPLOY_CHECK_MS) {
+      return cached.config;
+    }
+    File deployFile = new File(DEPLOY_FILE);
+    long modified = deployFile.lastModified();
+    long length = deployFile.length();
+    SetupUdmiConfig config = cached != null && cached.modified == modified
+        && cached.length == length ? cached.config
+        : loadFileStrictRequired(SetupUdmiConfig.class, deployFile);
+    deployedConfig = new DeployedConfig(modified, length, now, config);
+    return config;
   }
 
   /**
@@ -155,11 +176,14 @@ public class UdmiServicePod extends ContainerBase {
    */
   public static void main(String[] args) {
     try {
+      setAsyncLogging(true);
       UdmiServicePod udmiServicePod = new UdmiServicePod(args);
       Runtime.getRuntime().addShutdownHook(new Thread(udmiServicePod::shutdown));
       udmiServicePod.activate();
       udmiServicePod.block();
     } catch (Exception e) {
+      // Flush any queued log output, else it would be lost on exit.
+      setAsyncLogging(false);
       System.err.println("Exception activating pod: " + friendlyStackTrace(e));
       e.printStackTrace();
       System.exit(FATAL_ERROR_CODE);
@@ -214,9 +238,13 @@ public class UdmiServicePod extends ContainerBase {
     }
   }
 
+  /**
+   * Reset the component map and cached deployed config for unit tests.
+   */
   public static void resetForTest() {
     COMPONENT_MAP.clear();
     READY_INDICATOR.delete();
+    deployedConfig = null;
   }
 
   private static void setConfigName(EndpointConfiguration config, String name) {
@@ -271,6 +299,7 @@ public class UdmiServicePod extends ContainerBase {
   public void activate() {
     super.activate();
     notice("Starting activation of container components");
+    ifNotNullThen(System.getenv(METRICS_PORT_ENV), this::startMetricsEndpoint);
     String absolutePath = READY_INDICATOR.getAbsolutePath();
     try {
       forAllComponents(UdmiComponent::activate);
@@ -282,6 +311,12 @@ public class UdmiServicePod extends ContainerBase {
     notice("Finished activation of container components, created " + absolutePath);
   }
 
+  private void startMetricsEndpoint(String port) {
+    metricsEndpoint = new MetricsEndpoint(Integer.parseInt(port));
+    notice("Serving latency metrics on port %d at %s", metricsEndpoint.getPort(),
+        MetricsEndpoint.METRICS_PATH);
+  }
+
   public PodConfiguration getPodConfiguration() {
     return podConfiguration;
   }
@@ -291,7 +326,14 @@ public class UdmiServicePod extends ContainerBase {
     notice("Starting shutdown of container components (triggered by "
         + Thread.currentThread().getName() + ")");
     forAllComponents(UdmiComponent::shutdown);
+    ifNotNullThen(metricsEndpoint, MetricsEndpoint::stop);
     notice("Finished shutdown of container components");
     super.shutdown();
+    setAsyncLogging(false);
+  }
+
+  private record DeployedConfig(long modified, long length, long checked,
+                                SetupUdmiConfig config) {
+
   }
 }
@@ -0,0 +1,182 @@
+package com.google.bos.udmi.service.support;
+
+import static java.lang.String.format;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Buffered writer stage that collects items into size- and time-bounded batches, which are then
+ * flushed by a dedicated background thread. When the buffer is full, the producer is blocked for
+ * a bounded time (pushing back on the upstream queue) before the item is dropped.
+ */
+public class BatchWriter<T> {
+
+  private static final long SHUTDOWN_WAIT_MS = 10000;
+
+  private final String name;
+  private final int maxBatch;
+  private final long maxDelayMs;
+  private final long maxBlockMs;
+  private final Consumer<List<T>> flusher;
+  private final BlockingQueue<T> buffer;
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong rows = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong flushNanos = new AtomicLong();
+  private final AtomicLong maxFlushNanos = new AtomicLong();
+  private Thread flushThread;
+  private volatile boolean running;
+
+  /**
+   * Create a new writer that passes batches to the given flusher.
+   */
+  public BatchWriter(String name, int capacity, int maxBatch, long maxDelayMs, long maxBlockMs,
+      Consumer<List<T>> flusher) {
+    this.name = name;
+    this.maxBatch = maxBatch;
+    this.maxDelayMs = maxDelayMs;
+    this.maxBlockMs = maxBlockMs;
+    this.flusher = flusher;
+    this.buffer = new ArrayBlockingQueue<>(capacity);
+  }
+
+  /**
+   * Add an item to be written, blocking if the buffer is full. Returns false if it was dropped.
+   */
+  public boolean add(T item) {
+    try {
+      if (buffer.offer(item, maxBlockMs, TimeUnit.MILLISECONDS)) {
+        return true;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    dropped.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * Start the background flush thread.
+   */
+  public synchronized void start() {
+    if (flushThread != null) {
+      return;
+    }
+    running = true;
+    flushThread = new Thread(this::flushLoop, name + "-writer");
+    flushThread.setDaemon(true);
+    flushThread.start();
+  }
+
+  /**
+   * Stop the background flush thread, after flushing anything still buffered. The thread isn't
+   * interrupted, since that could abort a flush in progress, so it notices the stop the next time
+   * it polls the buffer (within the max batch delay) and then does a final drain and flush.
+   */
+  public synchronized void stop() {
+    if (flushThread == null) {
+      flush();
+      return;
+    }
+    running = false;
+    try {
+      flushThread.join(SHUTDOWN_WAIT_MS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flushThread = null;
+  }
+
+  /**
+   * Synchronously flush everything currently in the buffer.
+   */
+  public void flush() {
+    List<T> batch = new ArrayList<>(maxBatch);
+    while (buffer.drainTo(batch, maxBatch) > 0) {
+      flushBatch(batch);
+      batch = new ArrayList<>(maxBatch);
+    }
+  }
+
+  private void flushLoop() {
+    while (running) {
+      try {
+        List<T> batch = new ArrayList<>(maxBatch);
+        T first = buffer.poll(maxDelayMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        while (batch.size() < maxBatch) {
+          buffer.drainTo(batch, maxBatch - batch.size());
+          long remaining = deadline - System.nanoTime();
+          if (batch.size() >= maxBatch || remaining <= 0) {
+            break;
+          }
+          T next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+        flushBatch(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    flush();
+  }
+
+  private void flushBatch(List<T> batch) {
+    long start = System.nanoTime();
+    try {
+      flusher.accept(batch);
+      long nanos = System.nanoTime() - start;
+      batches.incrementAndGet();
+      rows.addAndGet(batch.size());
+      flushNanos.addAndGet(nanos);
+      maxFlushNanos.accumulateAndGet(nanos, Math::max);
+    } catch (Exception e) {
+      failed.addAndGet(batch.size());
+    }
+  }
+
+  public long getBatches() {
+    return batches.get();
+  }
+
+  public long getRows() {
+    return rows.get();
+  }
+
+  public long getDropped() {
+    return dropped.get();
+  }
+
+  public long getFailed() {
+    return failed.get();
+  }
+
+  public int getBuffered() {
+    return buffer.size();
+  }
+
+  @Override
+  public String toString() {
+    long batchCount = batches.get();
+    double averageBatch = batchCount == 0 ? 0 : rows.get() / (double) batchCount;
+    double averageFlushMs = batchCount == 0 ? 0 : flushNanos.get() / 1e6 / batchCount;
+    return format("%s batches %d, rows %d, avg batch %.1f, avg flush %.1fms, max flush %.1fms, "
+            + "buffered %d, dropped %d, failed %d", name, batchCount, rows.get(), averageBatch,
+        averageFlushMs, maxFlushNanos.get() / 1e6, buffer.size(), dropped.get(), failed.get());
+  }
+}
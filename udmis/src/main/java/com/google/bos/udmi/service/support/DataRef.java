@@ -1,8 +1,11 @@
 package com.google.bos.udmi.service.support;
 
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.udmi.util.GeneralUtils.ifNotNullGet;
 import static java.lang.String.format;
 
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 /**
@@ -10,6 +13,12 @@ import java.util.Set;
  */
 public abstract class DataRef {
 
+  private static final String PATH_SEPARATOR = "/";
+  private static final String KEY_SEPARATOR = ":";
+  private static final String REGISTRY_PATH = PATH_SEPARATOR + "r" + PATH_SEPARATOR;
+  private static final String DEVICE_PATH = PATH_SEPARATOR + "d" + PATH_SEPARATOR;
+  private static final String COLLECT_PATH = PATH_SEPARATOR + "c" + PATH_SEPARATOR;
+
   protected String registryId;
   protected String deviceId;
   protected String collection;
@@ -28,6 +37,17 @@ public abstract class DataRef {
 
   public abstract void delete(String key);
 
+  /**
+   * Get the full storage key path for an entry key of this reference.
+   */
+  protected String getKeyPath(String key) {
+    checkState(deviceId == null || registryId != null, "device without registry");
+    return ifNotNullGet(registryId, id -> REGISTRY_PATH + id, "")
+        + ifNotNullGet(deviceId, id -> DEVICE_PATH + id, "")
+        + ifNotNullGet(collection, id -> COLLECT_PATH + id, "")
+        + KEY_SEPARATOR + key;
+  }
+
   /**
    * Add a device specification.
    */
@@ -44,6 +64,13 @@ public abstract class DataRef {
     return get(key);
   }
 
+  /**
+   * Get the values of the given keys in a single consistent read. Each result entry is keyed by
+   * the modification revision of the value, suitable for a later {@link #updateIfRevision}. Keys
+   * that don't exist are not included in the result.
+   */
+  public abstract Map<String, Entry<Long, String>> getRevised(Set<String> keys);
+
   public abstract AutoCloseable lock();
 
   public abstract void put(String key, String value);
@@ -53,6 +80,13 @@ public abstract class DataRef {
   public abstract boolean updateIfMatch(String matchKey, String expectedValue,
       Map<String, String> puts, Set<String> deletes);
 
+  /**
+   * Conditionally apply the puts and deletes if the match key is still at the given modification
+   * revision (zero for a key that does not exist).
+   */
+  public abstract boolean updateIfRevision(String matchKey, long revision,
+      Map<String, String> puts, Set<String> deletes);
+
   /**
    * Add a registry specification.
    */
@@ -5,9 +5,11 @@ import static com.google.bos.udmi.service.core.DistributorPipe.clientId;
 import static com.google.udmi.util.GeneralUtils.CSV_JOINER;
 import static com.google.udmi.util.GeneralUtils.friendlyStackTrace;
 import static com.google.udmi.util.GeneralUtils.ifNotNullGet;
+import static com.google.udmi.util.GeneralUtils.ifNotNullThen;
 import static com.google.udmi.util.GeneralUtils.isNullOrTruthy;
 
 import com.google.bos.udmi.service.pod.ContainerBase;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.udmi.util.GeneralUtils;
 import io.etcd.jetcd.ByteSequence;
 import io.etcd.jetcd.Client;
@@ -15,6 +17,7 @@ import io.etcd.jetcd.ClientBuilder;
 import io.etcd.jetcd.KV;
 import io.etcd.jetcd.KeyValue;
 import io.etcd.jetcd.Lock;
+import io.etcd.jetcd.Watch.Watcher;
 import io.etcd.jetcd.cluster.Member;
 import io.etcd.jetcd.kv.GetResponse;
 import io.etcd.jetcd.kv.TxnResponse;
@@ -24,6 +27,9 @@ import io.etcd.jetcd.op.Op;
 import io.etcd.jetcd.options.DeleteOption;
 import io.etcd.jetcd.options.GetOption;
 import io.etcd.jetcd.options.PutOption;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.watch.WatchEvent.EventType;
+import io.etcd.jetcd.watch.WatchResponse;
 import io.grpc.netty.GrpcSslContexts;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
@@ -31,9 +37,12 @@ import java.io.File;
 import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -43,6 +52,13 @@ import udmi.schema.IotAccess;
 
 /**
  * Data provider that uses etcd.
+ *
+ * <p>Supported options:
+ * <ul>
+ * <li><code>max_inbound_message_size</code>: Maximum size of an etcd response message.</li>
+ * <li><code>cache_size</code>: Number of registry/device records to keep in a local read-through
+ * cache, kept current with an etcd watch (defaults to 0, no cache).</li>
+ * </ul>
  */
 public class EtcdDataProvider extends ContainerBase implements IotDataProvider {
 
@@ -63,12 +79,16 @@ public class EtcdDataProvider extends ContainerBase implements IotDataProvider {
   public static final String MAX_INBOUND_MESSAGE_SIZE_KEY = "max_inbound_message_size";
   public static final int DEFAULT_MAX_INBOUND_MESSAGE_SIZE = Integer.MAX_VALUE;
   private static final GetOption LIST_OPT = GetOption.newBuilder().isPrefix(true).build();
+  public static final String CACHE_SIZE_KEY = "cache_size";
+  private static final String CACHED_PREFIX = "/r/";
   private final IotAccess config;
   private final Client client;
   private final KV kvClient;
   private final Lock lockClient;
   private final Map<String, String> options;
   private final boolean enabled;
+  private final RecordCache recordCache;
+  private Watcher cacheWatcher;
   private ScheduledExecutorService scheduledExecutorService;
 
   /**
@@ -81,6 +101,9 @@ public class EtcdDataProvider extends ContainerBase implements IotDataProvider {
     client = enabled ? initializeClient() : null;
     kvClient = ifNotNullGet(client, Client::getKVClient);
     lockClient = ifNotNullGet(client, Client::getLockClient);
+    int cacheSize = getCacheSize();
+    recordCache = enabled && cacheSize > 0 ? new RecordCache(cacheSize) : null;
+    ifNotNullThen(recordCache, this::startCacheWatch);
   }
 
   private static String asString(ByteSequence input) {
@@ -95,6 +118,85 @@ public class EtcdDataProvider extends ContainerBase implements IotDataProvider {
   protected void periodicTask() {
     updateConnectedKey(client);
     reapConnectedKeys(client);
+    ifNotNullThen(recordCache, cache -> info("Record cache " + cache));
+  }
+
+  private void startCacheWatch(RecordCache cache) {
+    try {
+      GetOption countOnly = GetOption.newBuilder().isPrefix(true).withCountOnly(true).build();
+      long revision = kvClient.get(bytes(CACHED_PREFIX), countOnly)
+          .get(QUERY_TIMEOUT_SEC, TimeUnit.SECONDS).getHeader().getRevision();
+      cache.reset(revision);
+      WatchOption watchOption =
+          WatchOption.newBuilder().isPrefix(true).withRevision(revision + 1).build();
+      cacheWatcher = client.getWatchClient().watch(bytes(CACHED_PREFIX), watchOption,
+          this::handleCacheEvents, this::handleCacheError);
+      info("Started record cache watch on %s from revision %d", CACHED_PREFIX, revision);
+    } catch (Exception e) {
+      cache.suspend();
+      error("Record cache disabled, could not start watch: " + friendlyStackTrace(e));
+    }
+  }
+
+  private void handleCacheEvents(WatchResponse response) {
+    response.getEvents().forEach(event -> {
+      KeyValue kv = event.getKeyValue();
+      boolean deleted = event.getEventType() == EventType.DELETE;
+      recordCache.apply(asString(kv.getKey()), deleted ? null : asString(kv.getValue()),
+          kv.getModRevision());
+    });
+  }
+
+  private void handleCacheError(Throwable throwable) {
+    warn("Record cache watch failed, restarting: " + friendlyStackTrace(throwable));
+    recordCache.suspend();
+    ifNotNullThen(cacheWatcher, Watcher::close);
+    startCacheWatch(recordCache);
+  }
+
+  int getCacheSize() {
+    String sizeStr = cleanOption(options.get(CACHE_SIZE_KEY));
+    try {
+      return sizeStr == null ? 0 : Integer.parseInt(sizeStr);
+    } catch (NumberFormatException e) {
+      warn("Invalid cache_size option: %s, disabling record cache", sizeStr);
+      return 0;
+    }
+  }
+
+  private Map<String, String> getCachedEntries(String keyPath) {
+    Map<String, String> cached = recordCache.get(keyPath);
+    if (cached != null) {
+      return cached;
+    }
+    long loadGeneration = recordCache.startLoad();
+    try {
+      GetResponse response =
+          kvClient.get(bytes(keyPath), LIST_OPT).get(QUERY_TIMEOUT_SEC, TimeUnit.SECONDS);
+      Map<String, String> entries = response.getKvs().stream().collect(Collectors.toMap(
+          kv -> asString(kv.getKey()).substring(keyPath.length()), kv -> asString(kv.getValue())));
+      recordCache.load(keyPath, entries, response.getHeader().getRevision(), loadGeneration);
+      return entries;
+    } catch (Exception e) {
+      throw new RuntimeException("While loading cached record " + keyPath, e);
+    }
+  }
+
+  private boolean isCached(String keyPath) {
+    return recordCache != null && keyPath.startsWith(CACHED_PREFIX);
+  }
+
+  private void invalidateCached(String keyPath) {
+    if (isCached(keyPath)) {
+      recordCache.invalidate(RecordCache.recordPath(keyPath));
+    }
+  }
+
+  /**
+   * Get the record cache, or null if not enabled.
+   */
+  public RecordCache getRecordCache() {
+    return recordCache;
   }
 
   private void deleteEntry(String key) {
@@ -233,7 +335,8 @@ public class EtcdDataProvider extends ContainerBase implements IotDataProvider {
     return DEFAULT_MAX_INBOUND_MESSAGE_SIZE;
   }
 
-  private Client initializeClient() {
+  @VisibleForTesting
+  protected Client initializeClient() {
     String target = variableSubstitution(config.project_id, "undefined project_id");
     boolean isSecure = target.startsWith(HTTPS_PREFIX);
     String expectedPrefix = isSecure ? HTTPS_PREFIX : HTTP_PREFIX;
@@ -361,6 +464,7 @@ public class EtcdDataProvider extends ContainerBase implements IotDataProvider {
   @Override
   public void shutdown() {
     try {
+      ifNotNullThen(cacheWatcher, Watcher::close);
       if (enabled) {
         scheduledExecutorService.shutdown();
         scheduledExecutorService.awaitTermination(HEARTBEAT_SEC, TimeUnit.SECONDS);
@@ -373,36 +477,28 @@ public class EtcdDataProvider extends ContainerBase implements IotDataProvider {
 
   class EtcdDataRef extends DataRef {
 
-    private static final String PATH_SEPARATOR = "/";
-    private static final String KEY_SEPARATOR = ":";
-    private static final String REGISTRY_PATH = PATH_SEPARATOR + "r" + PATH_SEPARATOR;
-    private static final String DEVICE_PATH = PATH_SEPARATOR + "d" + PATH_SEPARATOR;
-    private static final String COLLECT_PATH = PATH_SEPARATOR + "c" + PATH_SEPARATOR;
-
-    private String getKeyPath(String key) {
-      checkState(deviceId == null || registryId != null, "device without registry");
-      return ifNotNullGet(registryId, id -> REGISTRY_PATH + id, "")
-          + ifNotNullGet(deviceId, id -> DEVICE_PATH + id, "")
-          + ifNotNullGet(collection, id -> COLLECT_PATH + id, "")
-          + KEY_SEPARATOR + key;
-    }
-
     @Override
     public void delete(String key) {
       deleteEntry(getKeyPath(key));
+      invalidateCached(getKeyPath(""));
     }
 
     public Map<String, String> entries() {
-      return getEntries(getKeyPath(""));
+      String keyPath = getKeyPath("");
+      return isCached(keyPath) ? getCachedEntries(keyPath) : getEntries(keyPath);
     }
 
     public String get(String key) {
-      return getKey(getKeyPath(key));
+      String recordPath = getKeyPath("");
+      return isCached(recordPath) ? getCachedEntries(recordPath).get(key)
+          : getKey(getKeyPath(key));
     }
 
     @Override
     public String getAsSerializable(String key) {
-      return getSerializableKey(getKeyPath(key));
+      String recordPath = getKeyPath("");
+      return isCached(recordPath) ? getCachedEntries(recordPath).get(key)
+          : getSerializableKey(getKeyPath(key));
     }
 
     @Override
@@ -412,29 +508,61 @@ public class EtcdDataProvider extends ContainerBase implements IotDataProvider {
 
     public void put(String key, String value) {
       putKey(getKeyPath(key), value);
+      invalidateCached(getKeyPath(""));
+    }
+
+    private List<Op> makeOps(Map<String, String> puts, Set<String> deletes) {
+      List<Op> ops = new ArrayList<>();
+      if (puts != null) {
+        puts.forEach((key, value) -> {
+          if (value != null) {
+            ops.add(Op.put(bytes(getKeyPath(key)), bytes(value), PutOption.DEFAULT));
+          }
+        });
+      }
+      if (deletes != null) {
+        deletes.forEach(key -> {
+          if (key != null) {
+            ops.add(Op.delete(bytes(getKeyPath(key)), DeleteOption.DEFAULT));
+          }
+        });
+      }
+      return ops;
     }
 
     @Override
-    public void update(Map<String, String> puts, Set<String> deletes) {
+    public Map<String, Entry<Long, String>> getRevised(Set<String> keys) {
       try {
-        List<Op> ops = new ArrayList<>();
-        if (puts != null) {
-          puts.forEach((key, value) -> {
-            if (value != null) {
-              ops.add(Op.put(bytes(getKeyPath(key)), bytes(value), PutOption.DEFAULT));
-            }
-          });
-        }
-        if (deletes != null) {
-          deletes.forEach(key -> {
-            if (key != null) {
-              ops.add(Op.delete(bytes(getKeyPath(key)), DeleteOption.DEFAULT));
-            }
-          });
+        List<String> keyList = new ArrayList<>(keys);
+        Op[] gets = keyList.stream()
+            .map(key -> Op.get(bytes(getKeyPath(key)), GetOption.DEFAULT)).toArray(Op[]::new);
+        // All gets in one txn are evaluated at the same store revision, in one round trip.
+        TxnResponse response = kvClient.txn().Then(gets).commit()
+            .get(QUERY_TIMEOUT_SEC, TimeUnit.SECONDS);
+        List<GetResponse> results = response.getGetResponses();
+        Map<String, Entry<Long, String>> revised = new HashMap<>();
+        for (int i = 0; i < keyList.size(); i++) {
+          List<KeyValue> kvs = results.get(i).getKvs();
+          if (!kvs.isEmpty()) {
+            KeyValue kv = kvs.get(0);
+            revised.put(keyList.get(i),
+                new SimpleEntry<>(kv.getModRevision(), asString(kv.getValue())));
+          }
         }
+        return revised;
+      } catch (Exception e) {
+        throw new RuntimeException("While getting revised entries " + getKeyPath(""), e);
+      }
+    }
+
+    @Override
+    public void update(Map<String, String> puts, Set<String> deletes) {
+      try {
+        List<Op> ops = makeOps(puts, deletes);
         if (!ops.isEmpty()) {
           kvClient.txn().Then(ops.toArray(new Op[0])).commit()
               .get(QUERY_TIMEOUT_SEC, TimeUnit.SECONDS);
+          invalidateCached(getKeyPath(""));
         }
       } catch (Exception e) {
         throw new RuntimeException("While executing batch update on " + getKeyPath(""), e);
@@ -445,21 +573,7 @@ public class EtcdDataProvider extends ContainerBase implements IotDataProvider {
     public boolean updateIfMatch(String matchKey, String expectedValue, Map<String, String> puts,
         Set<String> deletes) {
       try {
-        List<Op> ops = new ArrayList<>();
-        if (puts != null) {
-          puts.forEach((key, value) -> {
-            if (value != null) {
-              ops.add(Op.put(bytes(getKeyPath(key)), bytes(value), PutOption.DEFAULT));
-            }
-          });
-        }
-        if (deletes != null) {
-          deletes.forEach(key -> {
-            if (key != null) {
-              ops.add(Op.delete(bytes(getKeyPath(key)), DeleteOption.DEFAULT));
-            }
-          });
-        }
+        List<Op> ops = makeOps(puts, deletes);
         if (!ops.isEmpty()) {
           Cmp cmp = expectedValue == null
               ? new Cmp(bytes(getKeyPath(matchKey)), Cmp.Op.EQUAL, CmpTarget.version(0))
@@ -471,6 +585,7 @@ public class EtcdDataProvider extends ContainerBase implements IotDataProvider {
               .Then(ops.toArray(new Op[0]))
               .commit()
               .get(QUERY_TIMEOUT_SEC, TimeUnit.SECONDS);
+          invalidateCached(getKeyPath(""));
           return response.isSucceeded();
         }
         return true;
@@ -479,6 +594,25 @@ public class EtcdDataProvider extends ContainerBase implements IotDataProvider {
             "While executing conditional batch update on " + getKeyPath(""), e);
       }
     }
+
+    @Override
+    public boolean updateIfRevision(String matchKey, long revision, Map<String, String> puts,
+        Set<String> deletes) {
+      try {
+        Cmp cmp = new Cmp(bytes(getKeyPath(matchKey)), Cmp.Op.EQUAL,
+            CmpTarget.modRevision(revision));
+        TxnResponse response = kvClient.txn()
+            .If(cmp)
+            .Then(makeOps(puts, deletes).toArray(new Op[0]))
+            .commit()
+            .get(QUERY_TIMEOUT_SEC, TimeUnit.SECONDS);
+        invalidateCached(getKeyPath(""));
+        return response.isSucceeded();
+      } catch (Exception e) {
+        throw new RuntimeException(
+            "While executing revision update on " + getKeyPath(matchKey), e);
+      }
+    }
   }
 
   private class LockCloser implements AutoCloseable {
@@ -15,7 +15,9 @@ import udmi.schema.IotAccess.IotProvider;
 public interface IotDataProvider extends UdmiComponent {
 
   Map<IotProvider, Class<? extends IotDataProvider>> PROVIDERS =
-      ImmutableMap.of(IotProvider.ETCD, EtcdDataProvider.class);
+      ImmutableMap.of(
+          IotProvider.ETCD, EtcdDataProvider.class,
+          IotProvider.LOCAL, MemoryDataProvider.class);
 
   /**
    * Construct a provider given the configuration.
@@ -0,0 +1,87 @@
+package com.google.bos.udmi.service.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets (HDR-style), covering the full range of
+ * nanosecond durations with a bounded relative error of 1/16. Recording is a couple of atomic
+ * increments, so it can be used on the message hot paths from any number of threads.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BITS = 4;
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_COUNT;
+  private static final double NANOS_PER_SEC = 1e9;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  static int bucketIndex(long nanos) {
+    if (nanos < SUB_COUNT) {
+      return (int) Math.max(nanos, 0);
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+    int shift = exponent - SUB_BITS;
+    return (shift + 1) * SUB_COUNT + (int) ((nanos >>> shift) & (SUB_COUNT - 1));
+  }
+
+  static long bucketUpperBound(int index) {
+    if (index < SUB_COUNT) {
+      return index;
+    }
+    int shift = index / SUB_COUNT - 1;
+    long lower = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+    return lower + (1L << shift) - 1;
+  }
+
+  /**
+   * Record a single latency sample, in nanoseconds.
+   */
+  public void record(long nanos) {
+    counts.incrementAndGet(bucketIndex(nanos));
+    count.increment();
+    totalNanos.add(nanos);
+    if (nanos > maxNanos.get()) {
+      maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public double getTotalSec() {
+    return totalNanos.sum() / NANOS_PER_SEC;
+  }
+
+  public double getMaxSec() {
+    return maxNanos.get() / NANOS_PER_SEC;
+  }
+
+  /**
+   * Get the value (in seconds) below which the given fraction of samples fall.
+   */
+  public double getPercentileSec(double fraction) {
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      total += counts.get(i);
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(total * fraction));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= target) {
+        return Math.min(bucketUpperBound(i), maxNanos.get()) / NANOS_PER_SEC;
+      }
+    }
+    return getMaxSec();
+  }
+}
@@ -0,0 +1,71 @@
+package com.google.bos.udmi.service.support;
+
+import static java.lang.String.format;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Process-wide registry of latency histograms, keyed by metric name and source (e.g. the pipe or
+ * handler class), with rendering in the Prometheus text exposition format.
+ */
+public abstract class LatencyMetrics {
+
+  public static final String QUEUE_WAIT = "queue_wait";
+  public static final String RECEIVE = "receive";
+  public static final String DISPATCH = "dispatch";
+  public static final String PUBLISH = "publish";
+  public static final String HANDLER = "handler";
+  private static final String METRIC_NAME = "udmis_latency_seconds";
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+  private static final Map<MetricKey, LatencyHistogram> HISTOGRAMS =
+      new ConcurrentSkipListMap<>();
+
+  /**
+   * Get the histogram for the given metric and source, creating it if necessary.
+   */
+  public static LatencyHistogram get(String metric, String source) {
+    return HISTOGRAMS.computeIfAbsent(new MetricKey(metric, source),
+        key -> new LatencyHistogram());
+  }
+
+  /**
+   * Record a latency sample, in nanoseconds, for the given metric and source.
+   */
+  public static void record(String metric, String source, long nanos) {
+    get(metric, source).record(nanos);
+  }
+
+  /**
+   * Render all the histograms in the Prometheus text format.
+   */
+  public static String render() {
+    StringBuilder out = new StringBuilder();
+    out.append(format("# TYPE %s summary\n", METRIC_NAME));
+    HISTOGRAMS.forEach((key, histogram) -> {
+      String labels = format("metric=\"%s\",source=\"%s\"", key.metric, escape(key.source));
+      for (double quantile : QUANTILES) {
+        out.append(format("%s{%s,quantile=\"%s\"} %.9f\n", METRIC_NAME, labels, quantile,
+            histogram.getPercentileSec(quantile)));
+      }
+      out.append(format("%s_sum{%s} %.9f\n", METRIC_NAME, labels, histogram.getTotalSec()));
+      out.append(format("%s_count{%s} %d\n", METRIC_NAME, labels, histogram.getCount()));
+      out.append(format("%s_max{%s} %.9f\n", METRIC_NAME, labels, histogram.getMaxSec()));
+    });
+    return out.toString();
+  }
+
+  private static String escape(String value) {
+    return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+
+  private record MetricKey(String metric, String source) implements Comparable<MetricKey> {
+
+    @Override
+    public int compareTo(MetricKey other) {
+      int compare = metric.compareTo(other.metric);
+      return compare != 0 ? compare
+          : String.valueOf(source).compareTo(String.valueOf(other.source));
+    }
+  }
+}
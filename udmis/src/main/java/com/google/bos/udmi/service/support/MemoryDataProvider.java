@@ -0,0 +1,202 @@
+package com.google.bos.udmi.service.support;
+
+import static com.google.udmi.util.GeneralUtils.ifNotNullGet;
+import static com.google.udmi.util.GeneralUtils.ifNotNullThen;
+import static com.google.udmi.util.JsonUtil.loadFile;
+import static com.google.udmi.util.JsonUtil.writeFile;
+
+import com.google.bos.udmi.service.pod.ContainerBase;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import udmi.schema.IotAccess;
+
+/**
+ * Data provider that keeps everything in local memory, for running without an external database
+ * (e.g. for local testing or load generation). Entries use the same key layout and revision
+ * semantics as the etcd provider, and multi-key updates are atomic.
+ *
+ * <p>Supported options:
+ * <ul>
+ * <li><code>snapshot_file</code>: File used to load the initial entries on activation, and save
+ * them again on shutdown.</li>
+ * </ul>
+ */
+public class MemoryDataProvider extends ContainerBase implements IotDataProvider {
+
+  public static final String SNAPSHOT_FILE_KEY = "snapshot_file";
+  private final ConcurrentSkipListMap<String, Entry<Long, String>> entries =
+      new ConcurrentSkipListMap<>();
+  private final Map<String, Semaphore> locks = new ConcurrentHashMap<>();
+  private final ReadWriteLock updateLock = new ReentrantReadWriteLock();
+  private final File snapshotFile;
+  private long revision;
+
+  /**
+   * Create an instance of this component.
+   */
+  public MemoryDataProvider(IotAccess iotConfig) {
+    Map<String, String> options = parseOptions(iotConfig);
+    snapshotFile = ifNotNullGet(options.get(SNAPSHOT_FILE_KEY), File::new);
+  }
+
+  private void loadSnapshot(File file) {
+    if (!file.exists()) {
+      info("Snapshot file %s not found, starting empty", file.getAbsolutePath());
+      return;
+    }
+    @SuppressWarnings("unchecked")
+    Map<String, String> snapshot = loadFile(TreeMap.class, file);
+    writeEntries(() -> snapshot.forEach(this::putEntry));
+    info("Loaded %d entries from %s", snapshot.size(), file.getAbsolutePath());
+  }
+
+  private void saveSnapshot(File file) {
+    Map<String, String> snapshot = new TreeMap<>();
+    entries.forEach((key, entry) -> snapshot.put(key, entry.getValue()));
+    writeFile(snapshot, file);
+    info("Saved %d entries to %s", snapshot.size(), file.getAbsolutePath());
+  }
+
+  private void putEntry(String key, String value) {
+    entries.put(key, Map.entry(++revision, value));
+  }
+
+  private void writeEntries(Runnable action) {
+    updateLock.writeLock().lock();
+    try {
+      action.run();
+    } finally {
+      updateLock.writeLock().unlock();
+    }
+  }
+
+  private boolean writeEntriesIf(String matchKey, Predicate<Entry<Long, String>> condition,
+      Map<String, String> puts, Set<String> deletes) {
+    updateLock.writeLock().lock();
+    try {
+      if (!condition.test(entries.get(matchKey))) {
+        return false;
+      }
+      ifNotNullThen(puts, map -> map.forEach((key, value) -> ifNotNullThen(value,
+          v -> putEntry(key, v))));
+      ifNotNullThen(deletes, set -> set.forEach(key -> ifNotNullThen(key, entries::remove)));
+      return true;
+    } finally {
+      updateLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void activate() {
+    super.activate();
+    ifNotNullThen(snapshotFile, this::loadSnapshot);
+  }
+
+  @Override
+  public DataRef ref() {
+    return new MemoryDataRef();
+  }
+
+  @Override
+  public void shutdown() {
+    ifNotNullThen(snapshotFile, this::saveSnapshot);
+    super.shutdown();
+  }
+
+  class MemoryDataRef extends DataRef {
+
+    private Map<String, String> fullPaths(Map<String, String> puts) {
+      Map<String, String> paths = new HashMap<>();
+      ifNotNullThen(puts, map -> map.forEach((key, value) -> paths.put(getKeyPath(key), value)));
+      return paths;
+    }
+
+    private Set<String> fullPaths(Set<String> deletes) {
+      return ifNotNullGet(deletes, set -> set.stream().map(this::getKeyPath)
+          .collect(Collectors.toSet()));
+    }
+
+    @Override
+    public void delete(String key) {
+      writeEntries(() -> entries.remove(getKeyPath(key)));
+    }
+
+    @Override
+    public Map<String, String> entries() {
+      String prefix = getKeyPath("");
+      Map<String, String> result = new HashMap<>();
+      updateLock.readLock().lock();
+      try {
+        entries.tailMap(prefix).entrySet().stream()
+            .takeWhile(entry -> entry.getKey().startsWith(prefix))
+            .forEach(entry -> result.put(entry.getKey().substring(prefix.length()),
+                entry.getValue().getValue()));
+      } finally {
+        updateLock.readLock().unlock();
+      }
+      return result;
+    }
+
+    @Override
+    public String get(String key) {
+      return ifNotNullGet(entries.get(getKeyPath(key)), Entry::getValue);
+    }
+
+    @Override
+    public Map<String, Entry<Long, String>> getRevised(Set<String> keys) {
+      Map<String, Entry<Long, String>> result = new HashMap<>();
+      updateLock.readLock().lock();
+      try {
+        keys.forEach(key -> ifNotNullThen(entries.get(getKeyPath(key)),
+            entry -> result.put(key, entry)));
+      } finally {
+        updateLock.readLock().unlock();
+      }
+      return result;
+    }
+
+    @Override
+    public AutoCloseable lock() {
+      Semaphore semaphore = locks.computeIfAbsent(getKeyPath(""), path -> new Semaphore(1));
+      semaphore.acquireUninterruptibly();
+      return semaphore::release;
+    }
+
+    @Override
+    public void put(String key, String value) {
+      writeEntries(() -> putEntry(getKeyPath(key), value));
+    }
+
+    @Override
+    public void update(Map<String, String> puts, Set<String> deletes) {
+      writeEntriesIf(getKeyPath(""), entry -> true, fullPaths(puts), fullPaths(deletes));
+    }
+
+    @Override
+    public boolean updateIfMatch(String matchKey, String expectedValue, Map<String, String> puts,
+        Set<String> deletes) {
+      return writeEntriesIf(getKeyPath(matchKey), entry -> expectedValue == null ? entry == null
+              : entry != null && expectedValue.equals(entry.getValue()), fullPaths(puts),
+          fullPaths(deletes));
+    }
+
+    @Override
+    public boolean updateIfRevision(String matchKey, long expectedRevision,
+        Map<String, String> puts, Set<String> deletes) {
+      return writeEntriesIf(getKeyPath(matchKey),
+          entry -> ifNotNullGet(entry, Entry::getKey, 0L) == expectedRevision, fullPaths(puts),
+          fullPaths(deletes));
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package com.google.bos.udmi.service.support;
+
+import static java.lang.String.format;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of data store records, where a record is the set of entries that share a
+ * common path (e.g. all the properties of one device). Records are loaded on demand (read-through)
+ * and then kept current by applying change events from a watch on the underlying store, using
+ * store revisions to make sure that no change is lost between a load and the event stream. Local
+ * writes invalidate their record, and any load that was started before the invalidation is then
+ * rejected, since it might have read the store before the write.
+ */
+public class RecordCache {
+
+  private static final char KEY_SEPARATOR = ':';
+
+  private final int maxSize;
+  private final Map<String, Record> records;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final Map<String, Long> invalidations;
+  private long watchRevision = Long.MAX_VALUE;
+  private long eventRevision;
+  private long generation;
+  private long prunedGeneration;
+
+  /**
+   * Create a new cache holding at most the given number of records.
+   */
+  public RecordCache(int maxSize) {
+    this.maxSize = maxSize;
+    this.records = new LinkedHashMap<>(maxSize, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Record> eldest) {
+        boolean evict = size() > RecordCache.this.maxSize;
+        if (evict) {
+          evictions.incrementAndGet();
+        }
+        return evict;
+      }
+    };
+    this.invalidations = new LinkedHashMap<>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+        boolean prune = size() > RecordCache.this.maxSize;
+        if (prune) {
+          prunedGeneration = Math.max(prunedGeneration, eldest.getValue());
+        }
+        return prune;
+      }
+    };
+  }
+
+  /**
+   * Get the record path for the given full entry key.
+   */
+  static String recordPath(String key) {
+    int index = key.indexOf(KEY_SEPARATOR);
+    return index < 0 ? null : key.substring(0, index + 1);
+  }
+
+  /**
+   * Get a copy of the cached record for the path, or null if not cached.
+   */
+  public synchronized Map<String, String> get(String recordPath) {
+    Record record = records.get(recordPath);
+    if (record == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return new HashMap<>(record.values);
+  }
+
+  /**
+   * Mark the start of a record load (before the store is read), returning the generation that
+   * should then be passed to load().
+   */
+  public synchronized long startLoad() {
+    return generation;
+  }
+
+  /**
+   * Add a freshly loaded record, read from the store at the given revision. The record is only
+   * cached if the watch is guaranteed to deliver every change after that revision, and if the
+   * record wasn't changed locally since the load was started.
+   */
+  public synchronized void load(String recordPath, Map<String, String> values, long revision,
+      long loadGeneration) {
+    long invalidated = invalidations.getOrDefault(recordPath, prunedGeneration);
+    if (revision >= watchRevision && revision >= eventRevision && invalidated <= loadGeneration) {
+      records.put(recordPath, new Record(new HashMap<>(values), revision));
+    }
+  }
+
+  /**
+   * Apply a change event from the store watch. A null value indicates a deleted entry.
+   */
+  public synchronized void apply(String key, String value, long revision) {
+    eventRevision = Math.max(eventRevision, revision);
+    String recordPath = recordPath(key);
+    Record record = recordPath == null ? null : records.get(recordPath);
+    if (record == null || revision <= record.revision) {
+      return;
+    }
+    String name = key.substring(recordPath.length());
+    if (value == null) {
+      record.values.remove(name);
+    } else {
+      record.values.put(name, value);
+    }
+  }
+
+  /**
+   * Drop a cached record, used when the record is changed locally.
+   */
+  public synchronized void invalidate(String recordPath) {
+    records.remove(recordPath);
+    invalidations.remove(recordPath);
+    invalidations.put(recordPath, ++generation);
+  }
+
+  /**
+   * Reset the cache for a (re)started watch that will deliver all changes after the revision.
+   */
+  public synchronized void reset(long revision) {
+    records.clear();
+    watchRevision = revision;
+    eventRevision = revision;
+  }
+
+  /**
+   * Suspend caching, e.g. when the watch has failed and changes might be missed.
+   */
+  public synchronized void suspend() {
+    records.clear();
+    watchRevision = Long.MAX_VALUE;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  public synchronized int size() {
+    return records.size();
+  }
+
+  @Override
+  public String toString() {
+    return format("size %d/%d, hits %d, misses %d, evictions %d", size(), maxSize, getHits(),
+        getMisses(), getEvictions());
+  }
+
+  private record Record(Map<String, String> values, long revision) {
+
+  }
+}
@@ -1,5 +1,6 @@
 package com.google.bos.udmi.service.access;
 
+import static java.lang.String.format;
 import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -20,10 +21,13 @@ import com.google.bos.udmi.service.support.IotDataProvider;
 import com.google.bos.udmi.service.support.MosquittoBroker;
 import com.google.bos.udmi.service.support.QueueFullException;
 import java.lang.reflect.Field;
+import java.util.AbstractMap.SimpleEntry;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -32,6 +36,7 @@ import udmi.schema.CloudModel.Auth_type;
 import udmi.schema.CloudModel.ModelOperation;
 import udmi.schema.Credential;
 import udmi.schema.Credential.Key_format;
+import udmi.schema.Envelope;
 import udmi.schema.IotAccess;
 
 class ImplicitIotAccessProviderTest {
@@ -42,6 +47,8 @@ class ImplicitIotAccessProviderTest {
   private static final String CLIENT_ID = "/r/test-reg/d/test-dev";
 
   private Map<String, String> store;
+  private final Map<String, Long> revisions = new HashMap<>();
+  private long revision;
   private ImplicitIotAccessProvider provider;
   private ConnectionBroker mockBroker;
 
@@ -355,6 +362,31 @@ class ImplicitIotAccessProviderTest {
   }
 
 
+  @Test
+  void testModifyConfigOptimistic() {
+    Envelope envelope = new Envelope();
+    envelope.deviceRegistryId = TEST_REGISTRY;
+    envelope.deviceId = TEST_DEVICE;
+
+    provider.modifyConfig(envelope, previous -> "{}");
+    assertEquals("1", store.get("r/test-reg/d/test-dev:config_ver"));
+    assertEquals(2, provider.configUpdateRpcs.get(), "rpcs for uncontended update");
+
+    // Simulate a concurrent writer sneaking in during the first attempt.
+    AtomicBoolean interfered = new AtomicBoolean();
+    String updated = provider.modifyConfig(envelope, previous -> {
+      if (!interfered.getAndSet(true)) {
+        new FakeDataRef(store).registry(TEST_REGISTRY).device(TEST_DEVICE).put("config_ver", "5");
+      }
+      return format("{\"version\": %d}", previous.getKey());
+    });
+    assertEquals("{\"version\": 5}", updated);
+    assertEquals("6", store.get("r/test-reg/d/test-dev:config_ver"));
+    assertEquals(updated, store.get("r/test-reg/d/test-dev:last_config"));
+    assertEquals(2, provider.configUpdates.get(), "config updates");
+    assertEquals(6, provider.configUpdateRpcs.get(), "rpcs including one retry");
+  }
+
   class FakeDataRef extends DataRef {
     private final Map<String, String> data;
 
@@ -362,7 +394,8 @@ class ImplicitIotAccessProviderTest {
       this.data = data;
     }
 
-    private String getKeyPath(String key) {
+    @Override
+    protected String getKeyPath(String key) {
       return (registryId != null ? "r/" + registryId : "")
           + (deviceId != null ? "/d/" + deviceId : "")
           + (collection != null ? "/c/" + collection : "")
@@ -373,6 +406,7 @@ class ImplicitIotAccessProviderTest {
     @Override
     public void delete(String key) {
       data.remove(getKeyPath(key));
+      revisions.remove(getKeyPath(key));
     }
 
     @Override
@@ -392,6 +426,14 @@ class ImplicitIotAccessProviderTest {
       return data.get(getKeyPath(key));
     }
 
+    @Override
+    public Map<String, Entry<Long, String>> getRevised(Set<String> keys) {
+      Map<String, Entry<Long, String>> res = new HashMap<>();
+      keys.stream().filter(key -> data.containsKey(getKeyPath(key))).forEach(key -> res.put(key,
+          new SimpleEntry<>(revisions.get(getKeyPath(key)), data.get(getKeyPath(key)))));
+      return res;
+    }
+
     @Override
     public AutoCloseable lock() {
       return () -> {};
@@ -400,6 +442,7 @@ class ImplicitIotAccessProviderTest {
     @Override
     public void put(String key, String value) {
       data.put(getKeyPath(key), value);
+      revisions.put(getKeyPath(key), ++revision);
     }
 
     @Override
@@ -423,5 +466,15 @@ class ImplicitIotAccessProviderTest {
       }
       return false;
     }
+
+    @Override
+    public boolean updateIfRevision(String matchKey, long expectedRevision,
+        Map<String, String> puts, Set<String> deletes) {
+      if (revisions.getOrDefault(getKeyPath(matchKey), 0L) == expectedRevision) {
+        update(puts, deletes);
+        return true;
+      }
+      return false;
+    }
   }
 }
@@ -1,9 +1,13 @@
 package com.google.bos.udmi.service.access;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.common.collect.ImmutableMap;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
+import udmi.schema.CloudModel;
+import udmi.schema.CloudModel.ModelOperation;
 import udmi.schema.IotAccess;
 
 class IotAccessBaseTest {
@@ -24,4 +28,18 @@ class IotAccessBaseTest {
         ImmutableMap.of("enable", "true", "foo", "bar", "x", "");
     assertEquals(expected, localIotAccessProvider.options, "parsed options object");
   }
+
+  @Test
+  public void batchErrorReceipts() {
+    LocalIotAccessProvider localIotAccessProvider = new LocalIotAccessProvider(new IotAccess());
+    CloudModel model = new CloudModel();
+    model.operation = ModelOperation.CREATE;
+    Map<String, CloudModel> receipts = localIotAccessProvider.modelDevices("registry",
+        ImmutableMap.of("AHU-1", model, "AHU-2", model), null);
+    assertEquals(2, receipts.size(), "batch receipt count");
+    receipts.values().forEach(receipt -> {
+      assertEquals(ModelOperation.ERROR, receipt.operation, "receipt operation");
+      assertTrue(receipt.detail.contains("Not yet implemented"), "receipt detail");
+    });
+  }
 }
@@ -1,9 +1,13 @@
 package com.google.bos.udmi.service.core;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
+import com.google.bos.udmi.service.core.CaptureProcessor.PostgresRow;
+import java.sql.Timestamp;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import udmi.schema.Envelope;
@@ -61,4 +65,17 @@ public class CaptureProcessorTest extends ProcessorTestBase {
     CaptureProcessor captureProcessor = initializeTestInstance(CaptureProcessor.class);
     assertDoesNotThrow(() -> captureProcessor.saveToPostgres(envelope, payload));
   }
+
+  @Test
+  public void testCopyCsv() {
+    Timestamp publishTime = Timestamp.valueOf("2026-07-30 12:00:00");
+    List<PostgresRow> rows = List.of(
+        new PostgresRow("project", "registry", "device", "system", "state", publishTime,
+            "{\"note\":\"say \\\"hi\\\"\"}"),
+        new PostgresRow("project", null, "", null, null, null, "{}"));
+    assertEquals("\"project\",\"registry\",\"device\",\"system\",\"state\","
+            + "\"2026-07-30 12:00:00.0\",\"{\"\"note\"\":\"\"say \\\"\"hi\\\"\"\"\"}\"\n"
+            + "\"project\",,\"\",,,,\"{}\"\n",
+        CaptureProcessor.toCopyCsv(rows));
+  }
 }
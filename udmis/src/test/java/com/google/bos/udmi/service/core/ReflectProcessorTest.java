@@ -3,6 +3,7 @@ package com.google.bos.udmi.service.core;
 import static com.google.bos.udmi.service.core.ProcessorBase.FUNCTIONS_VERSION_MAX;
 import static com.google.bos.udmi.service.core.ProcessorBase.FUNCTIONS_VERSION_MIN;
 import static com.google.bos.udmi.service.messaging.impl.MessagePipeTestBase.REFLECT_REGISTRY;
+import static com.google.udmi.util.GeneralUtils.decodeBase64;
 import static com.google.udmi.util.GeneralUtils.encodeBase64;
 import static com.google.udmi.util.JsonUtil.convertToStrict;
 import static com.google.udmi.util.JsonUtil.stringify;
@@ -188,6 +189,38 @@ public class ReflectProcessorTest extends ProcessorTestBase {
         eq(requestModel));
   }
 
+  @Test
+  public void modelDeviceBatchTest() {
+    CloudModel created = new CloudModel();
+    created.operation = ModelOperation.CREATE;
+    created.num_id = "1234";
+    CloudModel failed = new CloudModel();
+    failed.operation = ModelOperation.ERROR;
+    failed.detail = "device exploded";
+    Map<String, CloudModel> receipts = ImmutableMap.of("AHU-1", created, "AHU-2", failed);
+    when(provider.modelDevices(anyString(), notNull(), any())).thenReturn(receipts);
+
+    CloudModel deviceModel = new CloudModel();
+    deviceModel.operation = ModelOperation.CREATE;
+    CloudModel requestModel = new CloudModel();
+    requestModel.operation = ModelOperation.UPDATE;
+    requestModel.resource_type = Resource_type.REGISTRY;
+    requestModel.device_ids = ImmutableMap.of("AHU-1", deviceModel, "AHU-2", deviceModel);
+    activeTestInstance(() -> getReverseDispatcher().publish(makeModelBundle(requestModel)));
+    verify(provider, times(1)).modelDevices(eq(TEST_REGISTRY),
+        eq(requestModel.device_ids), any());
+    verify(provider, times(0)).modelRegistry(any(), any(), any());
+
+    ArgumentCaptor<String> commandCaptor = ArgumentCaptor.forClass(String.class);
+    verify(provider, times(1)).sendCommand(
+        any(Envelope.class), eq(SubFolder.UDMI), commandCaptor.capture());
+    Envelope envelope = JsonUtil.fromStringStrict(Envelope.class, commandCaptor.getValue());
+    assertEquals(transactionId, envelope.transactionId);
+    CloudModel reply = JsonUtil.fromString(CloudModel.class, decodeBase64(envelope.payload));
+    assertEquals(ModelOperation.UPDATE, reply.operation, "batch reply operation");
+    assertEquals(receipts, reply.device_ids, "batch receipts");
+  }
+
   @Test
   public void updateAwarenessPayloadLogging() {
     ByteArrayOutputStream out = new ByteArrayOutputStream();
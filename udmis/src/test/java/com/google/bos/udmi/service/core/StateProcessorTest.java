@@ -5,6 +5,7 @@ import static com.google.udmi.util.JsonUtil.fromStringStrict;
 import static com.google.udmi.util.JsonUtil.loadFileRequired;
 import static com.google.udmi.util.JsonUtil.stringify;
 import static com.google.udmi.util.JsonUtil.toMap;
+import static java.lang.String.format;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -23,10 +24,12 @@ import com.google.udmi.util.CleanDateFormat;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -35,6 +38,8 @@ import udmi.schema.Envelope;
 import udmi.schema.GatewayState;
 import udmi.schema.Level;
 import udmi.schema.Operation;
+import udmi.schema.PointPointsetState;
+import udmi.schema.PointsetState;
 import udmi.schema.State;
 import udmi.schema.StateSystemOperation;
 import udmi.schema.SystemConfig;
@@ -48,6 +53,7 @@ public class StateProcessorTest extends ProcessorTestBase {
 
   public static final Date INITIAL_LAST_START = CleanDateFormat.cleanDate(new Date(12981837));
   public static final long CONFIG_VERSION = 23L;
+  private static final int SHARD_POINT_COUNT = 1000;
   private static final String LEGACY_STATE_MESSAGE_FILE = "src/test/messages/legacy_state.json";
 
   private boolean contains(Predicate<Object> objectPredicate) {
@@ -187,6 +193,36 @@ public class StateProcessorTest extends ProcessorTestBase {
     verify(provider, never()).modifyConfig(eq(makeTestEnvelope(false)), any());
   }
 
+  /**
+   * Test that a large state sub-block is sharded intact, tagged with the state version/timestamp.
+   */
+  @Test
+  public void largeShardExpansion() {
+    initializeTestInstance();
+
+    State stateMessage = getTestStateMessage(false, false);
+    stateMessage.timestamp = CleanDateFormat.cleanDate();
+    stateMessage.pointset = new PointsetState();
+    stateMessage.pointset.points = new HashMap<>();
+    IntStream.range(0, SHARD_POINT_COUNT).forEach(index -> {
+      PointPointsetState pointState = new PointPointsetState();
+      pointState.units = "Degrees-Celsius";
+      stateMessage.pointset.points.put(format("point_%04d", index), pointState);
+    });
+    getReverseDispatcher().publish(new Bundle(getTestStateEnvelope(), stateMessage));
+
+    terminateAndWait();
+
+    assertEquals(3, captured.size(), "unexpected received message count");
+    PointsetState pointsetState = (PointsetState) captured.stream()
+        .filter(message -> message instanceof PointsetState).findFirst().orElseThrow();
+    assertEquals(SHARD_POINT_COUNT, pointsetState.points.size(), "sharded point count");
+    assertEquals("Degrees-Celsius", pointsetState.points.get("point_0042").units, "point units");
+    assertEquals(TEST_VERSION, pointsetState.version, "sharded version");
+    assertEquals(stateMessage.timestamp, pointsetState.timestamp, "sharded timestamp");
+    assertEquals(0, getExceptionCount(), "exception count");
+  }
+
   /**
    * Test that receiving an invalid message results in the appropriate exception handler being
    * called.
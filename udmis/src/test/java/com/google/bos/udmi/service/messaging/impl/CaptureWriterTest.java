@@ -0,0 +1,94 @@
+package com.google.bos.udmi.service.messaging.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CaptureWriterTest {
+
+  private static final long FLUSH_WAIT_MS = 5000;
+  private static final long NO_ROTATE_AGE_MS = 3600000;
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void batchedCapture() throws Exception {
+    File captureFile = tempDir.resolve("messages.log").toFile();
+    CaptureWriter writer = new CaptureWriter(captureFile, Long.MAX_VALUE, NO_ROTATE_AGE_MS, 2);
+    for (int i = 0; i < 100; i++) {
+      writer.capture("client", i % 2 == 0, "topic/" + i, "message " + i);
+    }
+    assertTrue(writer.awaitFlushed(FLUSH_WAIT_MS), "capture flushed");
+    List<String> lines = Files.readAllLines(captureFile.toPath());
+    assertEquals(100, lines.size(), "captured lines");
+    assertTrue(lines.get(0).endsWith(" client <<< topic/0: message 0"), "first line format");
+    assertTrue(lines.get(99).endsWith(" client >>> topic/99: message 99"), "last line format");
+    assertEquals(0, writer.getDropped(), "dropped messages");
+  }
+
+  @Test
+  void sizeRotation() throws Exception {
+    File captureFile = tempDir.resolve("rotate.log").toFile();
+    CaptureWriter writer = new CaptureWriter(captureFile, 10, NO_ROTATE_AGE_MS, 2);
+    for (int i = 0; i < 4; i++) {
+      writer.capture("client", true, "topic", "message " + i);
+      assertTrue(writer.awaitFlushed(FLUSH_WAIT_MS), "capture flushed");
+    }
+    assertTrue(Files.readString(captureFile.toPath()).endsWith("message 3\n"), "current file");
+    assertTrue(Files.readString(writer.rotatedFile(1).toPath()).endsWith("message 2\n"),
+        "first rotated file");
+    assertTrue(Files.readString(writer.rotatedFile(2).toPath()).endsWith("message 1\n"),
+        "second rotated file");
+    assertFalse(writer.rotatedFile(3).exists(), "oldest file removed");
+  }
+
+  @Test
+  void closeDrains() throws Exception {
+    File captureFile = tempDir.resolve("close.log").toFile();
+    CaptureWriter writer = new CaptureWriter(captureFile, Long.MAX_VALUE, NO_ROTATE_AGE_MS, 2);
+    for (int i = 0; i < 1000; i++) {
+      writer.capture("client", true, "topic", "message " + i);
+    }
+    writer.close();
+    assertEquals(1000, Files.readAllLines(captureFile.toPath()).size(), "lines after close");
+    writer.capture("client", true, "topic", "late message");
+    assertEquals(1, writer.getDropped(), "dropped after close");
+    assertEquals(1000, Files.readAllLines(captureFile.toPath()).size(), "lines after drop");
+  }
+
+  @Test
+  void sharedRelease() throws Exception {
+    String path = tempDir.resolve("shared.log").toString();
+    CaptureWriter writer = CaptureWriter.forFile(path);
+    assertSame(writer, CaptureWriter.forFile(path), "shared writer");
+    writer.capture("client", true, "topic", "message");
+    CaptureWriter.release(path);
+    writer.capture("client", true, "topic", "still open");
+    CaptureWriter.release(path);
+    assertEquals(2, Files.readAllLines(Path.of(path)).size(), "lines after release");
+    assertNotSame(writer, CaptureWriter.forFile(path), "new writer after release");
+    CaptureWriter.release(path);
+  }
+
+  @Test
+  void sampleRate() {
+    assertTrue(CaptureWriter.shouldCapture(null), "default captures everything");
+    assertTrue(CaptureWriter.shouldCapture(1.0), "full capture");
+    assertFalse(CaptureWriter.shouldCapture(0.0), "capture disabled");
+    int captured = 0;
+    for (int i = 0; i < 10000; i++) {
+      captured += CaptureWriter.shouldCapture(0.1) ? 1 : 0;
+    }
+    assertTrue(captured > 500 && captured < 1500, "sampled capture count " + captured);
+  }
+}
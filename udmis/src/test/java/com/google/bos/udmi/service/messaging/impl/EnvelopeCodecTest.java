@@ -0,0 +1,70 @@
+package com.google.bos.udmi.service.messaging.impl;
+
+import static com.google.udmi.util.JsonUtil.convertTo;
+import static com.google.udmi.util.JsonUtil.toStringMap;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.google.udmi.util.CleanDateFormat;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import udmi.schema.Envelope;
+import udmi.schema.Envelope.SubFolder;
+import udmi.schema.Envelope.SubType;
+
+class EnvelopeCodecTest {
+
+  private static Envelope makeEnvelope() {
+    Envelope envelope = new Envelope();
+    envelope.deviceId = "AHU-1";
+    envelope.deviceNumId = "12345";
+    envelope.deviceRegistryId = "ZZ-TRI-FECTA";
+    envelope.deviceRegistryLocation = "us-central1";
+    envelope.projectId = "test-project";
+    envelope.payload = "e30=";
+    envelope.source = "control";
+    envelope.gatewayId = "GAT-123";
+    envelope.transactionId = "RC:12345";
+    envelope.principal = "someone@example.com";
+    envelope.publishTime = CleanDateFormat.cleanDate();
+    envelope.rawFolder = "unknown";
+    envelope.subFolder = SubFolder.POINTSET;
+    envelope.subType = SubType.EVENTS;
+    return envelope;
+  }
+
+  @Test
+  void attributesMatchJsonConversion() {
+    Envelope envelope = makeEnvelope();
+    assertEquals(toStringMap(envelope), EnvelopeCodec.toAttributes(envelope));
+    assertEquals(toStringMap(new Envelope()), EnvelopeCodec.toAttributes(new Envelope()));
+  }
+
+  @Test
+  void envelopeMatchesJsonConversion() {
+    Map<String, String> attributes = new HashMap<>(toStringMap(makeEnvelope()));
+    attributes.put("mqttTopic", "/r/ZZ-TRI-FECTA/d/AHU-1/events/pointset");
+    Envelope expected = convertTo(Envelope.class, attributes);
+    assertEquals(expected, EnvelopeCodec.fromAttributes(attributes));
+    assertEquals(expected.publishTime, EnvelopeCodec.fromAttributes(attributes).publishTime);
+  }
+
+  @Test
+  void internedIds() {
+    Map<String, String> first = EnvelopeCodec.parseTopic("/r/" + "reg" + "/d/" + "dev" + "/state");
+    Map<String, String> second = EnvelopeCodec.parseTopic(new String("/r/reg/d/dev/events"));
+    assertSame(first.get("deviceRegistryId"), second.get("deviceRegistryId"));
+    assertSame(first.get("deviceId"), second.get("deviceId"));
+  }
+
+  @Test
+  void splitMatchesString() {
+    List<String> topics = List.of("", "/", "a", "/r/reg/d/dev/events", "/r/reg/d/dev/", "a//b",
+        "/1/2/3/4/5/6/7/8/9/10/11/12/13/14", "/devices/dev/events/pointset");
+    topics.forEach(topic -> assertArrayEquals(topic.split("/", 12),
+        EnvelopeCodec.splitTopic(topic), topic));
+  }
+}
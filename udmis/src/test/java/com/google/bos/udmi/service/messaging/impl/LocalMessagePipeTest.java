@@ -1,22 +1,41 @@
 package com.google.bos.udmi.service.messaging.impl;
 
+import static com.google.bos.udmi.service.messaging.impl.MessageBase.RECEIVE_STATS;
+import static com.google.udmi.util.JsonUtil.toStringMap;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.bos.udmi.service.messaging.StateUpdate;
 import com.google.bos.udmi.service.messaging.impl.MessageBase.Bundle;
 import com.google.udmi.util.JsonUtil;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Test;
 import udmi.schema.EndpointConfiguration;
 import udmi.schema.EndpointConfiguration.Protocol;
+import udmi.schema.Envelope;
 
 /**
  * Tests for LocalMessagePipe.
  */
 public class LocalMessagePipeTest extends MessagePipeTestBase {
 
+  private static final int SHARD_LANES = 4;
+  private static final int SHARD_DEVICES = 10;
+  private static final int SHARD_MESSAGES = 50;
+  private static final String SEQUENCE_KEY = "sequence";
+  private static final long RECEIVE_TIMEOUT_SEC = 10;
+  private static final int THROTTLE_CAPACITY = 10;
+  private static final long PAUSE_CHECK_MS = 200;
+
   private Map<String, Object> testSend(Object message) {
     getTestDispatcher().publish(message);
     List<Bundle> bundles = getReverseDispatcher().drain();
@@ -50,6 +69,38 @@ public class LocalMessagePipeTest extends MessagePipeTestBase {
     assertEquals(TEST_VERSION, message.get("version"));
   }
 
+  /**
+   * Test that a published bundle is detached from the publisher, so later changes to the
+   * published message object are not visible to the receiver.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  void publishedBundleDetached() {
+    Map<String, Object> testMessage = new HashMap<>();
+    testMessage.put(SEQUENCE_KEY, 1);
+    getTestDispatcher().publishBundle(new Bundle(makeTestEnvelope(false), testMessage));
+    testMessage.put(SEQUENCE_KEY, 2);
+    List<Bundle> bundles = getReverseDispatcher().drain();
+    assertEquals(1, bundles.size(), "unexpected received bundle");
+    Map<String, Object> message = JsonUtil.asMap(bundles.get(0).message);
+    assertEquals(1, message.get(SEQUENCE_KEY), "unexpected received sequence");
+  }
+
+  /**
+   * Test that a pre-serialized message is only used for the message it was made for, and is
+   * carried over to a detached bundle.
+   */
+  @Test
+  void preSerializedMessage() {
+    Map<String, Object> testMessage = Map.of(SEQUENCE_KEY, 1);
+    Bundle bundle = new Bundle(makeTestEnvelope(false), testMessage, "{ \"cached\": true }");
+    assertEquals("{ \"cached\": true }", MessageBase.encodeMessage(bundle));
+    assertEquals("{ \"cached\": true }",
+        MessageBase.encodeMessage(MessageBase.detachBundle(bundle)));
+    bundle.message = Map.of(SEQUENCE_KEY, 2);
+    assertEquals(JsonUtil.stringify(bundle.message), MessageBase.encodeMessage(bundle));
+  }
+
   /**
    * Test that publishing an unexpected type of object results in an appropriate exception.
    */
@@ -58,4 +109,80 @@ public class LocalMessagePipeTest extends MessagePipeTestBase {
     assertThrows(Exception.class,
         () -> testSend(new BespokeObject()), "missing expected exception");
   }
+
+  /**
+   * Test that a sharded pipe processes messages from the same device in-order and serially.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  void shardedDeviceOrdering() throws InterruptedException {
+    EndpointConfiguration receiveConfig = getMessageConfig(false);
+    receiveConfig.threads = SHARD_LANES;
+    receiveConfig.sharded = true;
+    LocalMessagePipe receiver = new LocalMessagePipe(receiveConfig);
+    LocalMessagePipe sender = new LocalMessagePipe(getMessageConfig(true));
+
+    Map<String, AtomicInteger> lastSequence = new ConcurrentHashMap<>();
+    Map<String, AtomicBoolean> inFlight = new ConcurrentHashMap<>();
+    AtomicInteger violations = new AtomicInteger();
+    CountDownLatch received = new CountDownLatch(SHARD_DEVICES * SHARD_MESSAGES);
+    receiver.activate(bundle -> {
+      String deviceId = bundle.envelope.deviceId;
+      int sequence = (Integer) ((Map<String, Object>) bundle.message).get(SEQUENCE_KEY);
+      if (inFlight.computeIfAbsent(deviceId, key -> new AtomicBoolean()).getAndSet(true)) {
+        violations.incrementAndGet();
+      }
+      int previous = lastSequence.computeIfAbsent(deviceId, key -> new AtomicInteger(-1))
+          .getAndSet(sequence);
+      if (previous + 1 != sequence) {
+        violations.incrementAndGet();
+      }
+      inFlight.get(deviceId).set(false);
+      received.countDown();
+    });
+
+    for (int sequence = 0; sequence < SHARD_MESSAGES; sequence++) {
+      for (int device = 0; device < SHARD_DEVICES; device++) {
+        Envelope envelope = makeTestEnvelope(false);
+        envelope.deviceId = TEST_DEVICE + "-" + device;
+        sender.publish(new Bundle(envelope, Map.of(SEQUENCE_KEY, sequence)));
+      }
+    }
+
+    assertTrue(received.await(RECEIVE_TIMEOUT_SEC, TimeUnit.SECONDS), "messages not received");
+    assertEquals(0, violations.get(), "device ordering violations");
+    assertEquals(SHARD_DEVICES, lastSequence.size(), "unexpected device count");
+    assertEquals(SHARD_LANES, receiver.extractStats().get(RECEIVE_STATS).lanes.length,
+        "unexpected reported lane count");
+    receiver.shutdown();
+  }
+
+  /**
+   * Test that crossing the queue high-water mark pauses reception until the queue drains.
+   */
+  @Test
+  void throttledReception() throws InterruptedException {
+    EndpointConfiguration receiveConfig = getMessageConfig(false);
+    receiveConfig.capacity = THROTTLE_CAPACITY;
+    LocalMessagePipe receiver = new LocalMessagePipe(receiveConfig);
+    Map<String, String> envelopeMap = toStringMap(makeTestEnvelope(false));
+    for (int i = 0; i < THROTTLE_CAPACITY * MessageBase.QUEUE_THROTTLE_MARK + 1; i++) {
+      receiver.receiveMessage(envelopeMap, Map.of(SEQUENCE_KEY, i));
+    }
+
+    CountDownLatch unblocked = new CountDownLatch(1);
+    Thread source = new Thread(() -> {
+      receiver.awaitReceiveCapacity();
+      unblocked.countDown();
+    });
+    source.start();
+    assertFalse(unblocked.await(PAUSE_CHECK_MS, TimeUnit.MILLISECONDS), "source not blocked");
+
+    while (receiver.poll() != null) {
+      // Drain the queue so reception can resume.
+    }
+    assertTrue(unblocked.await(RECEIVE_TIMEOUT_SEC, TimeUnit.SECONDS), "source not released");
+    double paused = receiver.extractStats().get(RECEIVE_STATS).paused;
+    assertTrue(paused * 1000 >= PAUSE_CHECK_MS, "reported paused time " + paused);
+  }
 }
@@ -6,14 +6,18 @@ import static com.google.bos.udmi.service.messaging.impl.MessagePipeTestBase.TES
 import static com.google.bos.udmi.service.messaging.impl.MessagePipeTestBase.makeTestEnvelope;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.bos.udmi.service.core.ProcessorTestBase;
 import com.google.bos.udmi.service.messaging.MessageDispatcher;
 import com.google.udmi.util.JsonUtil;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -23,6 +27,7 @@ import org.junit.jupiter.api.Test;
 import udmi.schema.DiscoveryConfig;
 import udmi.schema.EndpointConfiguration;
 import udmi.schema.EndpointConfiguration.Protocol;
+import udmi.schema.FamilyLocalnetModel;
 import udmi.schema.GatewayConfig;
 import udmi.schema.LocalnetModel;
 import udmi.schema.PointsetEvents;
@@ -82,6 +87,67 @@ public class MessageDispatcherImplTest {
     assertEquals(2, devNullCapture.size());
   }
 
+  @Test
+  public void cachedConversions() throws Exception {
+    MessageDispatcher dispatcher = new TestingDispatcher();
+    CompletableFuture<List<Object>> future = new CompletableFuture<>();
+    dispatcher.registerHandler(GatewayConfig.class, message -> future.complete(List.of(message,
+        dispatcher.convertMessage(message, GatewayConfig.class),
+        dispatcher.convertMessage(message, TreeMap.class),
+        dispatcher.convertMessage(message, TreeMap.class),
+        dispatcher.convertMessage(message, JsonNode.class),
+        dispatcher.convertMessage(message, JsonNode.class))));
+    GatewayConfig gatewayConfig = new GatewayConfig();
+    gatewayConfig.target = new FamilyLocalnetModel();
+    gatewayConfig.target.addr = "0x12";
+    getReversedDispatcher().publish(gatewayConfig);
+    dispatcher.activate();
+    List<Object> results = future.get(GET_TIMEOUT_SEC, TimeUnit.SECONDS);
+    assertNotSame(results.get(0), results.get(1), "typed conversion");
+    assertEquals(results.get(0), results.get(1), "typed conversion");
+    assertNotSame(results.get(2), results.get(3), "map conversion");
+    assertEquals(results.get(2), results.get(3), "map conversion");
+    assertEquals(TreeMap.class, results.get(3).getClass(), "map conversion class");
+    assertNotSame(results.get(4), results.get(5), "tree conversion");
+    assertEquals(gatewayConfig, results.get(0), "converted message");
+    assertEquals("0x12", ((JsonNode) results.get(4)).get("target").get("addr").asText());
+    assertNotSame(results.get(2), dispatcher.convertMessage(results.get(0), TreeMap.class),
+        "conversion outside of handler");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void isolatedConversions() throws Exception {
+    MessageDispatcher dispatcher = new TestingDispatcher();
+    CompletableFuture<List<Object>> future = new CompletableFuture<>();
+    dispatcher.registerHandler(GatewayConfig.class, message -> {
+      // What a second handler of the same bundle would be given.
+      GatewayConfig second = dispatcher.convertMessage(message, GatewayConfig.class);
+      // First handler modifies both the message and a map view of it.
+      Map<String, Object> firstMap = dispatcher.convertMessage(message, TreeMap.class);
+      ((Map<String, Object>) firstMap.get("target")).put("addr", "0x34");
+      message.target.addr = "0x56";
+      future.complete(List.of(second, dispatcher.convertMessage(second, TreeMap.class),
+          dispatcher.convertMessage(message, TreeMap.class),
+          dispatcher.convertMessage(firstMap, GatewayConfig.class)));
+    });
+    GatewayConfig gatewayConfig = new GatewayConfig();
+    gatewayConfig.target = new FamilyLocalnetModel();
+    gatewayConfig.target.addr = "0x12";
+    getReversedDispatcher().publish(gatewayConfig);
+    dispatcher.activate();
+    List<Object> results = future.get(GET_TIMEOUT_SEC, TimeUnit.SECONDS);
+    assertEquals("0x12", ((GatewayConfig) results.get(0)).target.addr, "second handler");
+    assertEquals("0x12", targetAddr(results.get(1)), "second handler map");
+    assertEquals("0x56", targetAddr(results.get(2)), "modified message map");
+    assertEquals("0x34", ((GatewayConfig) results.get(3)).target.addr, "modified map typed");
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Object targetAddr(Object messageMap) {
+    return ((Map<String, Object>) ((Map<String, Object>) messageMap).get("target")).get("addr");
+  }
+
   class TestingDispatcher extends MessageDispatcherImpl {
 
     public TestingDispatcher() {
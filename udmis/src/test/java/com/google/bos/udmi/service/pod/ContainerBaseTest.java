@@ -64,4 +64,41 @@ class ContainerBaseTest {
       System.setOut(originalOut);
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void deferredFormatting() {
+    ContainerBase.setLogLevel(Level.INFO);
+    ContainerBase container = new ContainerBase() {};
+    Object argument = new Object() {
+      @Override
+      public String toString() {
+        throw new IllegalStateException("argument should not be formatted");
+      }
+    };
+    container.trace("Unformatted trace %s", argument);
+    container.debug("Unformatted debug %s", argument);
+  }
+
+  @Test
+  public void asyncLogging() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PrintStream originalOut = System.out;
+    try {
+      System.setOut(new PrintStream(out));
+      ContainerBase.setLogLevel(Level.INFO);
+      ContainerBase.setAsyncLogging(true);
+      ContainerBase container = new ContainerBase() {};
+      for (int i = 0; i < 100; i++) {
+        container.info("Async message %d", i);
+      }
+      ContainerBase.setAsyncLogging(false);
+      String logOutput = out.toString();
+      assertTrue(logOutput.contains("Async message 0"), "first async message written");
+      assertTrue(logOutput.indexOf("Async message 99") > logOutput.indexOf("Async message 98"),
+          "async messages written in order");
+    } finally {
+      ContainerBase.setAsyncLogging(false);
+      System.setOut(originalOut);
+    }
+  }
+}
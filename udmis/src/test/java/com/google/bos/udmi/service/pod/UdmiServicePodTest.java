@@ -9,6 +9,7 @@ import static com.google.bos.udmi.service.pod.ContainerBase.REFLECT_BASE;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.udmi.util.GeneralUtils.arrayOf;
 import static com.google.udmi.util.GeneralUtils.deepCopy;
+import static com.google.udmi.util.JsonUtil.writeFile;
 import static java.lang.String.format;
 import static org.apache.commons.io.FileUtils.deleteDirectory;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -16,10 +17,12 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.bos.udmi.service.access.IotAccessBase;
 import com.google.bos.udmi.service.access.LocalIotAccessProvider;
+import com.google.bos.udmi.service.core.ProcessorTestBase;
 import com.google.bos.udmi.service.messaging.StateUpdate;
 import com.google.bos.udmi.service.messaging.impl.LocalMessagePipe;
 import com.google.bos.udmi.service.messaging.impl.MessageBase.Bundle;
@@ -41,6 +44,7 @@ import udmi.schema.Envelope.SubFolder;
 import udmi.schema.LocalnetModel;
 import udmi.schema.PodConfiguration;
 import udmi.schema.PointsetState;
+import udmi.schema.SetupUdmiConfig;
 import udmi.schema.UdmiState;
 
 /**
@@ -228,4 +232,25 @@ public class UdmiServicePodTest {
     UdmiServicePod.resetForTest();
     LocalMessagePipe.resetForTestStatic();
   }
+
+  @Test
+  public void cachedDeployedConfig() {
+    ProcessorTestBase.writeVersionDeployFile();
+    File deployFile = new File(UdmiServicePod.DEPLOY_FILE);
+    try {
+      SetupUdmiConfig original = UdmiServicePod.getDeployedConfig();
+      assertSame(original, UdmiServicePod.getDeployedConfig(), "cached config");
+
+      SetupUdmiConfig updated = deepCopy(original);
+      updated.deployed_by = "updated_user";
+      writeFile(updated, deployFile);
+      assertTrue(deployFile.setLastModified(deployFile.lastModified() + 2000), "set modified");
+      assertSame(original, UdmiServicePod.getDeployedConfig(), "not yet checked");
+      UdmiServicePod.resetForTest();
+      assertEquals("updated_user", UdmiServicePod.getDeployedConfig().deployed_by,
+          "reloaded deployed by");
+    } finally {
+      ProcessorTestBase.writeVersionDeployFile();
+    }
+  }
 }
@@ -0,0 +1,109 @@
+package com.google.bos.udmi.service.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class BatchWriterTest {
+
+  private static final int CAPACITY = 10;
+  private static final int MAX_BATCH = 4;
+  private static final long MAX_DELAY_MS = 100;
+  private static final long MAX_BLOCK_MS = 10;
+
+  @Test
+  void sizeAndTimeBatches() throws Exception {
+    List<List<Integer>> batches = new ArrayList<>();
+    CountDownLatch flushed = new CountDownLatch(3);
+    BatchWriter<Integer> writer = new BatchWriter<>("test", CAPACITY, MAX_BATCH, MAX_DELAY_MS,
+        MAX_BLOCK_MS, batch -> {
+          synchronized (batches) {
+            batches.add(batch);
+          }
+          flushed.countDown();
+        });
+    for (int i = 0; i < 9; i++) {
+      assertTrue(writer.add(i), "item added");
+    }
+    writer.start();
+    assertTrue(flushed.await(MAX_DELAY_MS * 10, TimeUnit.MILLISECONDS), "batches flushed");
+    writer.stop();
+    synchronized (batches) {
+      assertEquals(List.of(List.of(0, 1, 2, 3), List.of(4, 5, 6, 7), List.of(8)), batches);
+    }
+    assertEquals(3, writer.getBatches(), "batch count");
+    assertEquals(9, writer.getRows(), "row count");
+  }
+
+  @Test
+  void dropWhenFull() {
+    List<Integer> written = new ArrayList<>();
+    BatchWriter<Integer> writer = new BatchWriter<>("test", CAPACITY, MAX_BATCH, MAX_DELAY_MS,
+        MAX_BLOCK_MS, written::addAll);
+    for (int i = 0; i < CAPACITY; i++) {
+      assertTrue(writer.add(i), "item added");
+    }
+    assertFalse(writer.add(CAPACITY), "item dropped");
+    assertEquals(1, writer.getDropped(), "dropped count");
+    writer.flush();
+    assertEquals(CAPACITY, written.size(), "written count");
+    assertEquals(0, writer.getBuffered(), "buffered count");
+  }
+
+  @Test
+  void failedBatches() {
+    BatchWriter<Integer> writer = new BatchWriter<>("test", CAPACITY, MAX_BATCH, MAX_DELAY_MS,
+        MAX_BLOCK_MS, batch -> {
+          throw new RuntimeException("write failed");
+        });
+    writer.add(1);
+    writer.add(2);
+    writer.flush();
+    assertEquals(2, writer.getFailed(), "failed count");
+    assertEquals(0, writer.getRows(), "row count");
+    assertEquals(0, writer.getBatches(), "batch count");
+  }
+
+  @Test
+  void stopCompletesFlushes() {
+    List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+    AtomicBoolean interrupted = new AtomicBoolean();
+    BatchWriter<Integer> writer = new BatchWriter<>("test", CAPACITY, MAX_BATCH, MAX_DELAY_MS,
+        MAX_BLOCK_MS, batch -> {
+          try {
+            Thread.sleep(MAX_DELAY_MS);
+          } catch (InterruptedException e) {
+            interrupted.set(true);
+            throw new RuntimeException("interrupted flush", e);
+          }
+          written.addAll(batch);
+        });
+    writer.start();
+    for (int i = 0; i < CAPACITY; i++) {
+      assertTrue(writer.add(i), "item added");
+    }
+    writer.stop();
+    assertFalse(interrupted.get(), "flush interrupted");
+    assertEquals(CAPACITY, written.size(), "written count");
+    assertEquals(CAPACITY, writer.getRows(), "row count");
+    assertEquals(0, writer.getBuffered(), "buffered count");
+  }
+
+  @Test
+  void stopWithoutStart() {
+    List<Integer> written = new ArrayList<>();
+    BatchWriter<Integer> writer = new BatchWriter<>("test", CAPACITY, MAX_BATCH, MAX_DELAY_MS,
+        MAX_BLOCK_MS, written::addAll);
+    writer.add(1);
+    writer.stop();
+    assertEquals(List.of(1), written, "written on stop");
+  }
+}
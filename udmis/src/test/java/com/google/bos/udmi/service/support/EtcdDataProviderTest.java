@@ -1,7 +1,20 @@
 package com.google.bos.udmi.service.support;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.KV;
+import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.kv.GetResponse;
+import io.etcd.jetcd.options.GetOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.Test;
 import udmi.schema.IotAccess;
 import udmi.schema.IotAccess.IotProvider;
@@ -34,4 +47,46 @@ class EtcdDataProviderTest {
     EtcdDataProvider provider = new EtcdDataProvider(iotAccess);
     assertEquals(Integer.MAX_VALUE, provider.getMaxInboundMessageSize());
   }
+
+  @Test
+  void testRecordCacheDisabled() {
+    IotAccess iotAccess = new IotAccess();
+    iotAccess.provider = IotProvider.ETCD;
+    iotAccess.options = "enabled=false,cache_size=1000";
+    EtcdDataProvider provider = new EtcdDataProvider(iotAccess);
+    assertEquals(1000, provider.getCacheSize());
+    assertNull(provider.getRecordCache(), "no cache when not enabled");
+  }
+
+  @Test
+  void testEntriesWithoutCache() {
+    IotAccess iotAccess = new IotAccess();
+    iotAccess.provider = IotProvider.ETCD;
+    iotAccess.options = "enabled=true";
+    Client client = mockClient("/r/ZZ-TRI-FECTA/d/AHU-1:", "key", "value");
+    EtcdDataProvider provider = new EtcdDataProvider(iotAccess) {
+      @Override
+      protected Client initializeClient() {
+        return client;
+      }
+    };
+    assertNull(provider.getRecordCache(), "no cache when not configured");
+    Map<String, String> entries = provider.ref().registry("ZZ-TRI-FECTA").device("AHU-1")
+        .entries();
+    assertEquals(Map.of("key", "value"), entries);
+  }
+
+  private static Client mockClient(String keyPath, String key, String value) {
+    KeyValue keyValue = mock(KeyValue.class);
+    when(keyValue.getKey()).thenReturn(ByteSequence.from((keyPath + key).getBytes()));
+    when(keyValue.getValue()).thenReturn(ByteSequence.from(value.getBytes()));
+    GetResponse response = mock(GetResponse.class);
+    when(response.getKvs()).thenReturn(List.of(keyValue));
+    KV kvClient = mock(KV.class);
+    when(kvClient.get(any(ByteSequence.class), any(GetOption.class)))
+        .thenReturn(CompletableFuture.completedFuture(response));
+    Client client = mock(Client.class);
+    when(client.getKVClient()).thenReturn(kvClient);
+    return client;
+  }
 }
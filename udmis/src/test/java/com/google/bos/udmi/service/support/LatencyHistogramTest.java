@@ -0,0 +1,46 @@
+package com.google.bos.udmi.service.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+  private static final double NANOS_PER_SEC = 1e9;
+  private static final double RELATIVE_ERROR = 1.0 / 16;
+
+  @Test
+  void bucketBounds() {
+    long[] samples = {0, 1, 15, 16, 17, 31, 32, 33, 1000, 123456789, Long.MAX_VALUE};
+    for (long sample : samples) {
+      int index = LatencyHistogram.bucketIndex(sample);
+      long upper = LatencyHistogram.bucketUpperBound(index);
+      assertTrue(upper >= sample, "upper bound for " + sample);
+      assertTrue(upper - sample <= sample * RELATIVE_ERROR, "bucket error for " + sample);
+    }
+  }
+
+  @Test
+  void percentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long millis = 1; millis <= 100; millis++) {
+      histogram.record(millis * 1_000_000);
+    }
+    assertEquals(100, histogram.getCount(), "sample count");
+    assertEquals(0.1, histogram.getMaxSec(), 1e-9, "max latency");
+    assertEquals(0.05, histogram.getPercentileSec(0.5), 0.05 * RELATIVE_ERROR, "p50 latency");
+    assertEquals(0.099, histogram.getPercentileSec(0.99), 0.099 * RELATIVE_ERROR, "p99 latency");
+    assertEquals(5050 * 1e6 / NANOS_PER_SEC, histogram.getTotalSec(), 1e-9, "total");
+  }
+
+  @Test
+  void renderedMetrics() {
+    LatencyMetrics.record(LatencyMetrics.HANDLER, "TestHandler", 1_000_000);
+    String rendered = LatencyMetrics.render();
+    assertTrue(rendered.contains(
+        "udmis_latency_seconds_count{metric=\"handler\",source=\"TestHandler\"} 1"), rendered);
+    assertTrue(rendered.contains(
+        "udmis_latency_seconds{metric=\"handler\",source=\"TestHandler\",quantile=\"0.99\"}"));
+  }
+}
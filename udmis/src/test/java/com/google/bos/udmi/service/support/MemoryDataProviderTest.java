@@ -0,0 +1,134 @@
+package com.google.bos.udmi.service.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableSet;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import udmi.schema.IotAccess;
+import udmi.schema.IotAccess.IotProvider;
+
+class MemoryDataProviderTest {
+
+  private static final String COUNTER_KEY = "counter";
+  private static final int THREADS = 8;
+  private static final int INCREMENTS = 100;
+
+  private static MemoryDataProvider makeProvider(String options) {
+    IotAccess iotAccess = new IotAccess();
+    iotAccess.provider = IotProvider.LOCAL;
+    iotAccess.options = options;
+    return (MemoryDataProvider) IotDataProvider.from(iotAccess);
+  }
+
+  @Test
+  void basicEntries() {
+    MemoryDataProvider provider = makeProvider(null);
+    provider.ref().registry("reg").device("dev").put("num_id", "1234");
+    provider.ref().registry("reg").device("dev2").put("num_id", "5678");
+    provider.ref().registry("reg").put("created_at", "now");
+    assertEquals(Map.of("num_id", "1234"), provider.ref().registry("reg").device("dev").entries());
+    assertEquals(Map.of("created_at", "now"), provider.ref().registry("reg").entries());
+    provider.ref().registry("reg").device("dev").update(Map.of("blocked", "true"),
+        Set.of("num_id"));
+    assertEquals(Map.of("blocked", "true"), provider.ref().registry("reg").device("dev").entries());
+    provider.ref().registry("reg").device("dev").delete("blocked");
+    assertNull(provider.ref().registry("reg").device("dev").get("blocked"));
+  }
+
+  @Test
+  void conditionalUpdates() {
+    DataRef ref = makeProvider(null).ref().registry("reg").device("dev");
+    assertTrue(ref.updateIfMatch(COUNTER_KEY, null, Map.of(COUNTER_KEY, "1"), null));
+    assertFalse(ref.updateIfMatch(COUNTER_KEY, null, Map.of(COUNTER_KEY, "1"), null));
+    assertTrue(ref.updateIfMatch(COUNTER_KEY, "1", Map.of(COUNTER_KEY, "2"), null));
+
+    Entry<Long, String> entry = ref.getRevised(ImmutableSet.of(COUNTER_KEY)).get(COUNTER_KEY);
+    assertEquals("2", entry.getValue());
+    assertFalse(ref.updateIfRevision(COUNTER_KEY, entry.getKey() - 1, Map.of(COUNTER_KEY, "3"),
+        null));
+    assertTrue(ref.updateIfRevision(COUNTER_KEY, entry.getKey(), Map.of(COUNTER_KEY, "3"), null));
+    assertTrue(ref.updateIfRevision("missing", 0, Map.of("missing", "1"), null));
+  }
+
+  @Test
+  void concurrentRevisionUpdates() throws Exception {
+    MemoryDataProvider provider = makeProvider(null);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<Object>> futures = IntStream.range(0, THREADS).mapToObj(thread -> executor.submit(
+        () -> {
+          DataRef ref = provider.ref().registry("reg").device("dev");
+          for (int i = 0; i < INCREMENTS; i++) {
+            while (true) {
+              Entry<Long, String> entry =
+                  ref.getRevised(ImmutableSet.of(COUNTER_KEY)).get(COUNTER_KEY);
+              long revision = entry == null ? 0 : entry.getKey();
+              int value = entry == null ? 0 : Integer.parseInt(entry.getValue());
+              if (ref.updateIfRevision(COUNTER_KEY, revision,
+                  Map.of(COUNTER_KEY, Integer.toString(value + 1)), null)) {
+                break;
+              }
+            }
+          }
+          return null;
+        })).toList();
+    for (Future<Object> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+    assertEquals(Integer.toString(THREADS * INCREMENTS),
+        provider.ref().registry("reg").device("dev").get(COUNTER_KEY), "final count");
+  }
+
+  @Test
+  void exclusiveLock() throws Exception {
+    MemoryDataProvider provider = makeProvider(null);
+    AtomicInteger holders = new AtomicInteger();
+    AtomicInteger maxHolders = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<Object>> futures = IntStream.range(0, THREADS).mapToObj(thread -> executor.submit(
+        () -> {
+          try (AutoCloseable locked = provider.ref().registry("reg").device("dev").lock()) {
+            maxHolders.accumulateAndGet(holders.incrementAndGet(), Math::max);
+            Thread.sleep(1);
+            holders.decrementAndGet();
+          }
+          return null;
+        })).toList();
+    for (Future<Object> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+    assertEquals(1, maxHolders.get(), "maximum concurrent lock holders");
+  }
+
+  @Test
+  void snapshotRoundTrip() throws Exception {
+    File snapshot = Files.createTempFile("memory_data", ".json").toFile();
+    assertTrue(snapshot.delete());
+    MemoryDataProvider provider = makeProvider("snapshot_file=" + snapshot.getAbsolutePath());
+    provider.activate();
+    provider.ref().registry("reg").device("dev").put("num_id", "1234");
+    provider.shutdown();
+    assertTrue(snapshot.exists(), "snapshot file written");
+
+    MemoryDataProvider restored = makeProvider("snapshot_file=" + snapshot.getAbsolutePath());
+    restored.activate();
+    assertEquals("1234", restored.ref().registry("reg").device("dev").get("num_id"));
+    restored.shutdown();
+    snapshot.delete();
+  }
+}
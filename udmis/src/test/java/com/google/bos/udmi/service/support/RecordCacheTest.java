@@ -0,0 +1,81 @@
+package com.google.bos.udmi.service.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class RecordCacheTest {
+
+  private static final String DEVICE_PATH = "/r/reg/d/dev:";
+  private static final String OTHER_PATH = "/r/reg/d/other:";
+
+  @Test
+  void readThroughAndWatchUpdates() {
+    RecordCache cache = new RecordCache(10);
+    cache.reset(100);
+    assertNull(cache.get(DEVICE_PATH));
+    cache.load(DEVICE_PATH, Map.of("num_id", "1234", "blocked", "false"), 105, cache.startLoad());
+    assertEquals("1234", cache.get(DEVICE_PATH).get("num_id"));
+
+    cache.apply(DEVICE_PATH + "blocked", "true", 104);
+    assertEquals("false", cache.get(DEVICE_PATH).get("blocked"), "stale event ignored");
+    cache.apply(DEVICE_PATH + "blocked", "true", 106);
+    assertEquals("true", cache.get(DEVICE_PATH).get("blocked"), "watch update");
+    cache.apply(DEVICE_PATH + "num_id", null, 107);
+    assertNull(cache.get(DEVICE_PATH).get("num_id"), "watch delete");
+
+    assertEquals(4, cache.getHits(), "cache hits");
+    assertEquals(1, cache.getMisses(), "cache misses");
+  }
+
+  @Test
+  void raceWithWatchEvents() {
+    RecordCache cache = new RecordCache(10);
+    cache.load(DEVICE_PATH, Map.of(), 100, cache.startLoad());
+    assertNull(cache.get(DEVICE_PATH), "no caching before watch started");
+
+    cache.reset(100);
+    cache.apply(OTHER_PATH + "num_id", "1", 110);
+    cache.load(DEVICE_PATH, Map.of(), 108, cache.startLoad());
+    assertNull(cache.get(DEVICE_PATH), "load older than delivered event");
+    cache.load(DEVICE_PATH, Map.of(), 110, cache.startLoad());
+    assertEquals(Map.of(), cache.get(DEVICE_PATH));
+
+    cache.invalidate(DEVICE_PATH);
+    assertNull(cache.get(DEVICE_PATH), "invalidated record");
+    cache.load(DEVICE_PATH, Map.of(), 110, cache.startLoad());
+    cache.suspend();
+    assertNull(cache.get(DEVICE_PATH), "suspended cache");
+  }
+
+  @Test
+  void staleLoadAfterLocalWrite() {
+    RecordCache cache = new RecordCache(10);
+    cache.reset(100);
+    // A read starts and fetches revision 101, before a local write at 102.
+    long readGeneration = cache.startLoad();
+    // The writer invalidates the record before its watch event (for 102) arrives.
+    cache.invalidate(DEVICE_PATH);
+    cache.load(DEVICE_PATH, Map.of("blocked", "false"), 101, readGeneration);
+    assertNull(cache.get(DEVICE_PATH), "stale load rejected");
+
+    cache.apply(DEVICE_PATH + "blocked", "true", 102);
+    cache.load(DEVICE_PATH, Map.of("blocked", "true"), 102, cache.startLoad());
+    assertEquals("true", cache.get(DEVICE_PATH).get("blocked"), "load after write");
+  }
+
+  @Test
+  void evictsLeastRecentlyUsed() {
+    RecordCache cache = new RecordCache(2);
+    cache.reset(0);
+    cache.load("/r/reg/d/a:", Map.of(), 1, cache.startLoad());
+    cache.load("/r/reg/d/b:", Map.of(), 1, cache.startLoad());
+    cache.get("/r/reg/d/a:");
+    cache.load("/r/reg/d/c:", Map.of(), 1, cache.startLoad());
+    assertEquals(2, cache.size());
+    assertNull(cache.get("/r/reg/d/b:"), "least recently used evicted");
+    assertEquals(1, cache.getEvictions());
+  }
+}
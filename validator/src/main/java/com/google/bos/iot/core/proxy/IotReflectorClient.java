@@ -632,6 +632,14 @@ public class IotReflectorClient implements MessagePublisher {
 
   @Override
   public String publish(String deviceId, String topic, String data) {
+    return publish(deviceId, topic, data, getNextTransactionId());
+  }
+
+  /**
+   * Publish a message using a pre-allocated transaction id, so that the caller can be ready for
+   * the reply before the message is actually sent.
+   */
+  public String publish(String deviceId, String topic, String data, String transactionId) {
     updateLastProgressEvent();
     Envelope envelope = new Envelope();
     envelope.deviceRegistryId = registryId;
@@ -640,7 +648,6 @@ public class IotReflectorClient implements MessagePublisher {
     envelope.subFolder = SubFolder.fromValue(parts[0]);
     envelope.subType = SubType.fromValue(parts[1]);
     envelope.payload = GeneralUtils.encodeBase64(data);
-    String transactionId = getNextTransactionId();
     envelope.transactionId = transactionId;
     envelope.publishTime = new Date();
     envelope.principal = sessionId;
@@ -0,0 +1,147 @@
+package com.google.daq.mqtt.registrar;
+
+import static com.google.udmi.util.GeneralUtils.catchToNull;
+import static com.google.udmi.util.GeneralUtils.ifNotNullGet;
+import static com.google.udmi.util.GeneralUtils.sha256;
+import static com.google.udmi.util.JsonUtil.OBJECT_MAPPER;
+import static java.util.Optional.ofNullable;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.daq.mqtt.util.CloudDeviceSettings;
+import com.google.udmi.util.JsonUtil;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Persistent store of per-device content fingerprints, used by optimized registrar runs to only
+ * process devices that have changed since they were last successfully registered.
+ */
+class DeviceFingerprints {
+
+  private final File storeFile;
+  private final String scope;
+  private final Map<String, String> previous;
+  private final Map<String, String> current = new ConcurrentHashMap<>();
+  private final double previousSecondsPerDevice;
+  private int checked;
+  private int unchanged;
+  private int processed;
+  private double processingSeconds;
+
+  DeviceFingerprints(File storeFile, String scope) {
+    this.storeFile = storeFile;
+    this.scope = scope;
+    Store store = ofNullable(catchToNull(() -> JsonUtil.loadFile(Store.class, storeFile)))
+        .orElseGet(Store::new);
+    previous = ofNullable(store.devices).orElseGet(HashMap::new);
+    previousSecondsPerDevice = ofNullable(store.secondsPerDevice).orElse(0.0);
+    current.putAll(previous);
+  }
+
+  /**
+   * Fingerprint of everything that goes into registering a device: merged metadata, credentials,
+   * generated config, and gateway bindings, along with the target registry scope.
+   */
+  String fingerprint(LocalDevice device) {
+    CloudDeviceSettings settings = device.getSettings();
+    Map<String, Object> content = new TreeMap<>();
+    content.put("scope", scope);
+    content.put("metadata", settings.metadata);
+    content.put("config", settings.config);
+    content.put("credentials", settings.credentials);
+    content.put("key_algorithm", settings.keyAlgorithm);
+    content.put("key_hash", ifNotNullGet(settings.keyBytes, bytes -> sha256(bytes)));
+    content.put("blocked", settings.blocked);
+    content.put("gateway_id", device.getGatewayId());
+    content.put("proxy_ids",
+        ifNotNullGet(settings.proxyDevices, devices -> new TreeSet<>(devices)));
+    try {
+      return sha256(OBJECT_MAPPER.writeValueAsString(content));
+    } catch (Exception e) {
+      throw new RuntimeException("While fingerprinting device " + device.getDeviceId(), e);
+    }
+  }
+
+  /**
+   * Filter the given devices down to the ones whose fingerprint differs from the stored one.
+   * Devices without valid settings are always considered changed.
+   */
+  Set<String> changed(Set<String> deviceIds, Map<String, LocalDevice> devices) {
+    Set<String> changed = deviceIds.stream()
+        .filter(id -> {
+          String fingerprint = catchToNull(() -> fingerprint(devices.get(id)));
+          return fingerprint == null || !fingerprint.equals(previous.get(id));
+        })
+        .collect(Collectors.toCollection(TreeSet::new));
+    checked += deviceIds.size();
+    unchanged += deviceIds.size() - changed.size();
+    return changed;
+  }
+
+  /**
+   * Record the fingerprint of a device that has been successfully processed.
+   */
+  void update(LocalDevice device) {
+    current.put(device.getDeviceId(), fingerprint(device));
+  }
+
+  /**
+   * Drop the fingerprint for a device, so it will be processed again on the next run.
+   */
+  void forget(String deviceId) {
+    current.remove(deviceId);
+  }
+
+  synchronized void recordTiming(int deviceCount, double seconds) {
+    processed += deviceCount;
+    processingSeconds += seconds;
+  }
+
+  double getHitRate() {
+    return checked == 0 ? 0 : unchanged / (double) checked;
+  }
+
+  /**
+   * Estimated time saved by skipping unchanged devices, based on the per-device processing time
+   * of this run (or the previous one if nothing was processed this time).
+   */
+  double getSecondsSaved() {
+    return unchanged * getSecondsPerDevice();
+  }
+
+  private double getSecondsPerDevice() {
+    return processed == 0 ? previousSecondsPerDevice : processingSeconds / processed;
+  }
+
+  Map<String, Object> getSummary() {
+    Map<String, Object> summary = new TreeMap<>();
+    summary.put("checked", checked);
+    summary.put("unchanged", unchanged);
+    summary.put("hit_rate", getHitRate());
+    summary.put("seconds_saved", getSecondsSaved());
+    return summary;
+  }
+
+  void save() {
+    Store store = new Store();
+    store.secondsPerDevice = getSecondsPerDevice();
+    store.devices = new TreeMap<>(current);
+    JsonUtil.writeFile(store, storeFile);
+  }
+
+  /**
+   * On-disk representation of the fingerprint store.
+   */
+  static class Store {
+
+    @JsonProperty("seconds_per_device")
+    public Double secondsPerDevice;
+    public Map<String, String> devices;
+  }
+}
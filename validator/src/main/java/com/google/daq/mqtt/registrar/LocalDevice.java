@@ -214,6 +214,15 @@ class LocalDevice implements SiteDevice {
   LocalDevice(
       SiteModel siteModel, String deviceId, Map<String, JsonSchema> schemas,
       String generation, DeviceKind kind) {
+    this(siteModel, deviceId, schemas, generation, kind, null);
+  }
+
+  /**
+   * Create a local device using already loaded metadata, or loading it here if null.
+   */
+  LocalDevice(
+      SiteModel siteModel, String deviceId, Map<String, JsonSchema> schemas,
+      String generation, DeviceKind kind, Metadata loadedMetadata) {
     try {
       this.deviceId = deviceId;
       this.schemas = schemas;
@@ -229,7 +238,7 @@ class LocalDevice implements SiteDevice {
           ? siteModel.getDeviceDir(deviceId) : siteModel.getExtraDir(deviceId);
       outDir = new File(deviceDir, OUT_DIR);
       exceptionManager = new DeviceExceptionManager(new File(siteModel.getSitePath()));
-      metadata = readMetadata();
+      metadata = readMetadata(loadedMetadata);
     } catch (Exception e) {
       throw new RuntimeException("While loading local device " + deviceId, e);
     }
@@ -433,9 +442,10 @@ class LocalDevice implements SiteDevice {
     }
   }
 
-  private Metadata readMetadata() {
+  private Metadata readMetadata(Metadata loadedMetadata) {
     try {
-      Metadata deviceMetadata = siteModel.loadDeviceMetadata(deviceId);
+      Metadata deviceMetadata = ofNullable(loadedMetadata)
+          .orElseGet(() -> siteModel.loadDeviceMetadata(deviceId));
       if (deviceMetadata instanceof MetadataException metadataException) {
         throw new RuntimeException("Loading " + metadataException.file.getAbsolutePath(),
             metadataException.exception);
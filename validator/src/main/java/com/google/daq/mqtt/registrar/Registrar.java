@@ -36,7 +36,6 @@ import static com.google.udmi.util.GeneralUtils.setOrSize;
 import static com.google.udmi.util.GeneralUtils.writeString;
 import static com.google.udmi.util.JsonUtil.JSON_SUFFIX;
 import static com.google.udmi.util.JsonUtil.OBJECT_MAPPER;
-import static com.google.udmi.util.JsonUtil.asMap;
 import static com.google.udmi.util.JsonUtil.isoConvert;
 import static com.google.udmi.util.JsonUtil.loadFile;
 import static com.google.udmi.util.JsonUtil.loadFileRequired;
@@ -153,6 +152,8 @@ public class Registrar {
   public static final String REGISTRAR_TOOL_NAME = "registrar";
   private static final int UNBIND_SET_SIZE = 1000;
   public static final int BATCH_REPORT_SIZE = 100;
+  private static final String FINGERPRINTS_FILE = "out/registration_fingerprints.json";
+  private static final String OPTIMIZE_KEY = "optimize";
   private boolean autoAltRegistry;
   private final Map<String, JsonSchema> schemas = new HashMap<>();
   private final String generation = JsonUtil.isoConvert();
@@ -171,7 +172,6 @@ public class Registrar {
   private PubSubPusher feedPusher;
   private Map<String, LocalDevice> allDevices;
   private Map<String, LocalDevice> workingDevices;
-  private Set<String> changedDevices;
   private Set<String> extraDevices;
   private String projectId;
   private boolean updateCloudIoT;
@@ -200,8 +200,8 @@ public class Registrar {
   private boolean expandDependencies;
   private boolean updateMetadata;
   private String currentRunTimestamp;
-  private String lastRunTimestamp;
   private boolean optimizeRun;
+  private DeviceFingerprints fingerprints;
   private final Map<ModelOperation, AtomicInteger> operationCounts = new ConcurrentHashMap<>();
 
   private void recordOperation(ModelOperation op, int count) {
@@ -291,7 +291,7 @@ public class Registrar {
   }
 
   @CommandLineOption(short_form = "-o", arg_name = "optimize",
-      description = "Only process devices updated after the last run")
+      description = "Only process devices changed since the last optimized run")
   private void setOptimizeRun() {
     this.optimizeRun = true;
   }
@@ -426,9 +426,6 @@ public class Registrar {
 
   private void loadSiteRegistrationTimestamps() {
     currentRunTimestamp = isoConvert(Instant.now());
-
-    File registrationHistory = new File(siteDir, SiteModel.REGISTRATION_SUMMARY_BASE + ".json");
-    lastRunTimestamp = catchToNull(() -> asMap(registrationHistory).get(TIMESTAMP_KEY).toString());
   }
 
   private void updateDeviceMetadata(String deviceId) {
@@ -551,6 +548,7 @@ public class Registrar {
       operationCounts.forEach((op, count) -> System.err.println(
           "  " + op + ": " + count.get()));
     }
+    ifNotNullThen(fingerprints, store -> summarizeFingerprints(store, errorSummary));
     // WARNING! entries inserted into `errorSummary` ABOVE this comment must have a map value ^^^^^^
     errorSummary.put(CLOUD_VERSION_KEY, getCloudVersionInfo());
     errorSummary.put(TIMESTAMP_KEY, currentRunTimestamp);
@@ -573,6 +571,12 @@ public class Registrar {
     });
   }
 
+  private void summarizeFingerprints(DeviceFingerprints store, Map<String, Object> errorSummary) {
+    System.err.printf("Optimized run skipped %.0f%% unchanged devices, saving ~%.03fs%n",
+        store.getHitRate() * 100, store.getSecondsSaved());
+    errorSummary.put(OPTIMIZE_KEY, store.getSummary());
+  }
+
   private Set<Entry<String, ErrorTree>> getDeviceErrorEntries(LocalDevice device) {
     return device.getTreeChildren();
   }
@@ -657,7 +661,6 @@ public class Registrar {
 
   private void processAllDevices(Runnable modelMunger) {
     allDevices = loadAllDevices();
-    changedDevices = loadChangedDevices();
     Set<String> explicitDevices = getExplicitDevices();
     try {
       workingDevices = instantiateExtras
@@ -681,7 +684,16 @@ public class Registrar {
 
       boolean isTargeted = explicitDevices != null;
       Set<String> targetDevices = isTargeted ? explicitDevices : workingDevices.keySet();
-      Map<String, LocalDevice> targetLocals = targetDevices.stream()
+      Set<String> bindingDevices = targetDevices;
+      if (deviceList == null && optimizeRun) {
+        fingerprints = new DeviceFingerprints(new File(siteDir, FINGERPRINTS_FILE),
+            getFingerprintScope());
+        targetDevices = fingerprints.changed(targetDevices, workingDevices);
+        bindingDevices = getBindingDevices(bindingDevices, targetDevices);
+        System.err.printf("Found %d devices changed since the last optimized run%n",
+            targetDevices.size());
+      }
+      Map<String, LocalDevice> targetLocals = bindingDevices.stream()
           .collect(Collectors.toMap(key -> key, key -> workingDevices.get(key)));
       Set<String> oldDevices = targetDevices.stream().filter(this::alreadyRegistered)
           .collect(Collectors.toSet());
@@ -707,6 +719,8 @@ public class Registrar {
         bindGatewayDevices(targetLocals);
       }
 
+      ifNotNullThen(fingerprints, this::saveFingerprints);
+
       finalizeLocalDevices();
 
       if (cloudModels != null && !isTargeted && !instantiateExtras) {
@@ -731,19 +745,32 @@ public class Registrar {
     return loadDevices(SiteModel.listDevices(devicesDir));
   }
 
-  private Set<String> loadChangedDevices() {
-    if (optimizeRun && lastRunTimestamp != null) {
-      System.err.println("Collecting devices changed after " + lastRunTimestamp);
-      return allDevices.entrySet().stream()
-          .filter(entry -> {
-            LocalDevice device = entry.getValue();
-            Metadata metadata = device.getMetadata();
-            return metadata == null || metadata.timestamp == null
-                || metadata.timestamp.toInstant().isAfter(Instant.parse(lastRunTimestamp));
-          })
-          .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)).keySet();
-    }
-    return allDevices.keySet();
+  private String getFingerprintScope() {
+    return format("%s/%s/%s", projectId, ifNotNullGet(cloudIotManager,
+        CloudIotManager::getRegistryId), updateCloudIoT);
+  }
+
+  /**
+   * Gateway bindings are handled per-gateway, so include all the proxied devices for any gateway
+   * that has a changed gateway or proxy device.
+   */
+  private Set<String> getBindingDevices(Set<String> candidates, Set<String> changed) {
+    Set<String> gateways = changed.stream().map(workingDevices::get)
+        .map(device -> catchToNull(
+            () -> device.isGateway() ? device.getDeviceId() : device.getGatewayId()))
+        .filter(Objects::nonNull)
+        .collect(Collectors.toSet());
+    return candidates.stream()
+        .filter(id -> gateways.contains(catchToNull(() -> workingDevices.get(id).getGatewayId())))
+        .collect(Collectors.toSet());
+  }
+
+  private void saveFingerprints(DeviceFingerprints store) {
+    workingDevices.values().stream()
+        .filter(device -> device.hasCategory(ExceptionCategory.registering)
+            || device.hasCategory(ExceptionCategory.binding))
+        .forEach(device -> store.forget(device.getDeviceId()));
+    store.save();
   }
 
   private int processDevices(Set<String> deviceSet) {
@@ -768,6 +795,7 @@ public class Registrar {
       int finalCount = processedCount.get();
       System.err.printf("Processed %d (skipped %d) devices in %.03fs, %.03fs/d%n",
           finalCount, deviceCount - finalCount, seconds, perDevice);
+      ifNotNullThen(fingerprints, store -> store.recordTiming(finalCount, seconds));
       return finalCount;
     } catch (Exception e) {
       throw new RuntimeException("While processing local devices", e);
@@ -790,6 +818,11 @@ public class Registrar {
     return new LocalDevice(siteModel, id, schemas, generation, kind);
   }
 
+  private LocalDevice makeLocalDevice(String id, Metadata metadata) {
+    return new LocalDevice(siteModel, id, schemas, generation,
+        doValidate ? DeviceKind.LOCAL : DeviceKind.SIMPLE, metadata);
+  }
+
   private LocalDevice makeExtraDevice(String id) {
     return makeLocalDevice(id, DeviceKind.EXTRA);
   }
@@ -1000,6 +1033,7 @@ public class Registrar {
             seconds, created ? "add" : "update");
       }
       ifTrueThen(updateMetadata, () -> updateDeviceMetadata(localName));
+      ifNotNullThen(fingerprints, store -> store.update(localDevice));
     } catch (Exception e) {
       System.err.printf("Error processing %s: %s%n", localDevice.getDeviceId(), e);
       localDevice.captureError(ExceptionCategory.registering, e);
@@ -1096,7 +1130,7 @@ public class Registrar {
 
   private Set<String> getExplicitDevices() {
     if (deviceList == null && optimizeRun) {
-      return new HashSet<>(changedDevices);
+      return new HashSet<>(allDevices.keySet());
     }
     if (deviceList == null) {
       return null;
@@ -1514,7 +1548,9 @@ public class Registrar {
   private Map<String, LocalDevice> loadDevices(List<String> devices) {
     Set<String> actual = devices.stream()
         .filter(deviceName -> siteModel.deviceExists(deviceName)).collect(Collectors.toSet());
-    return actual.stream().collect(Collectors.toMap(name -> name, this::makeLocalDevice));
+    Map<String, Metadata> metadata = siteModel.loadDeviceMetadataSafe(actual);
+    return actual.stream().collect(Collectors.toMap(name -> name,
+        name -> makeLocalDevice(name, metadata.get(name))));
   }
 
   private void initializeLocalDevices() {
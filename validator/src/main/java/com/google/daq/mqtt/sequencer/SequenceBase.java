@@ -87,6 +87,7 @@ import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.daq.mqtt.sequencer.SequenceRunner.TestTiming;
 import com.google.daq.mqtt.sequencer.semantic.SemanticDate;
 import com.google.daq.mqtt.sequencer.semantic.SemanticValue;
 import com.google.daq.mqtt.sequencer.sequences.BlobsetSequences;
@@ -122,8 +123,8 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.Stack;
 import java.util.TreeMap;
+import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -279,7 +280,8 @@ public class SequenceBase {
   public static final String PROXIED_SUBDIR = "proxied";
   public static final String TRACE_SUBDIR = "trace";
   public static final String STRAY_SUBDIR = "stray";
-  private static final long MESSAGE_POLL_SLEEP_MS = 1000;
+  private static final long MESSAGE_POLL_MAX_MS = 1000;
+  private static final String INACTIVE_MESSAGE_LOOP = "Message loop no longer for active instance";
   private static final String MESSAGE_SOURCE_INDICATOR = "message_envelope_source_key";
   private static final Duration WAITING_SLOP_TIME = Duration.ofSeconds(2);
   private static final String FACET_SUFFIX_SEPARATOR = "+";
@@ -298,8 +300,8 @@ public class SequenceBase {
   private static File deviceOutputDir;
   private static File resultSummary;
   private static MessagePublisher client;
-  private static SequenceBase activeInstance;
-  private static final Queue<MessageBundle> messageQueue = new ConcurrentLinkedQueue<>();
+  private static volatile SequenceBase activeInstance;
+  private static final BlockingDeque<MessageBundle> messageQueue = new LinkedBlockingDeque<>();
   private static final ExecutorService executorService = Executors.newFixedThreadPool(4,
       runnable -> {
         Thread thread = Executors.defaultThreadFactory().newThread(runnable);
@@ -347,6 +349,7 @@ public class SequenceBase {
   private Bucket testBucket;
   private FeatureStage testStage;
   private long startTestTimeMs;
+  private long idleTimeMs;
   private long startCaptureTime;
   private File testDir;
   private PrintWriter sequencerLog;
@@ -1024,7 +1027,9 @@ public class SequenceBase {
   private void recordSchemaValidations(Description description) {
     // Ensure that enough time has passed to capture event messages for schema validation.
     info(format("Waiting %ds for more messages...", waitTimeRemainingSec()));
-    whileDoing("minimum test time", () -> messageEvaluateLoop(() -> waitTimeRemainingSec() > 0));
+    Instant minimumEnd = Instant.ofEpochMilli(startCaptureTime).plus(MINIMUM_TEST_TIME);
+    whileDoing("minimum test time", () -> messageEvaluateLoop(DEFAULT_LOOP_TIMEOUT, minimumEnd,
+        () -> waitTimeRemainingSec() > 0));
 
     validationResults.entrySet().stream()
         .filter(isInterestingValidation())
@@ -1719,7 +1724,7 @@ public class SequenceBase {
     if (endTime.isAfter(getNowInstant())) {
       debug(format("Waiting until %s for logs to arrive...", isoConvert(endTime)));
     }
-    messageEvaluateLoop(() -> endTime.isAfter(getNowInstant()));
+    messageEvaluateLoop(DEFAULT_LOOP_TIMEOUT, endTime, () -> endTime.isAfter(getNowInstant()));
     processLogMessages();
     List<Entry> entries = matchingLogQueue(
         entry -> category.equals(entry.category) && entry.level >= minLevel.value());
@@ -1838,7 +1843,8 @@ public class SequenceBase {
   private void delayAndProcess(Duration duration) {
     debug(format("Delaying sequence progression for %ss", duration.getSeconds()));
     Instant end = Instant.now().plus(duration);
-    messageEvaluateLoop(duration.plus(DEFAULT_LOOP_TIMEOUT), () -> Instant.now().isBefore(end));
+    messageEvaluateLoop(duration.plus(DEFAULT_LOOP_TIMEOUT), end,
+        () -> Instant.now().isBefore(end));
   }
 
   private void messageEvaluateLoop(Supplier<Boolean> whileTrue) {
@@ -1846,13 +1852,24 @@ public class SequenceBase {
   }
 
   private void messageEvaluateLoop(Duration maxWait, Supplier<Boolean> whileTrue) {
+    messageEvaluateLoop(maxWait, null, whileTrue);
+  }
+
+  /**
+   * Evaluate the condition each time a message arrives, or when the (optional) wakeup time passes,
+   * rather than on a fixed polling interval.
+   */
+  private void messageEvaluateLoop(Duration maxWait, Instant wakeup, Supplier<Boolean> whileTrue) {
     Instant end = Instant.now().plus(maxWait);
+    Instant deadline = wakeup != null && wakeup.isBefore(end) ? wakeup : end;
     while (whileTrue.get()) {
-      if (Instant.now().isAfter(end)) {
+      Instant now = Instant.now();
+      if (now.isAfter(end)) {
         throw new RuntimeException(
             format("Timeout after %ss %s", maxWait.getSeconds(), currentWaitingCondition()));
       }
-      processNextMessage();
+      long untilDeadline = Math.max(between(now, deadline).toMillis(), 0);
+      processNextMessage(Math.min(untilDeadline, MESSAGE_POLL_MAX_MS));
     }
     if (expectedInterestingStatus != null) {
       withRecordSequence(false, () -> checkThatHasInterestingStatus(expectedInterestingStatus));
@@ -1937,13 +1954,33 @@ public class SequenceBase {
    * @return message bundle
    */
   MessageBundle nextMessageBundle() {
+    return nextMessageBundle(MESSAGE_POLL_MAX_MS);
+  }
+
+  /**
+   * Block for up to maxWaitMs for the next message, returning as soon as one arrives (or null if
+   * none did). Time spent blocked is accounted as test idle time. If this instance stopped being
+   * the active one during the wait, the message is put back at the head of the queue.
+   */
+  MessageBundle nextMessageBundle(long maxWaitMs) {
     if (activeInstance != this) {
-      throw new RuntimeException("Message loop no longer for active instance");
+      throw new RuntimeException(INACTIVE_MESSAGE_LOOP);
     }
 
-    MessageBundle poll = messageQueue.poll();
-    ifNullThen(poll, () -> safeSleep(MESSAGE_POLL_SLEEP_MS));
-    return poll;
+    long startMs = System.currentTimeMillis();
+    try {
+      MessageBundle bundle = messageQueue.poll(maxWaitMs, TimeUnit.MILLISECONDS);
+      if (bundle != null && activeInstance != this) {
+        messageQueue.offerFirst(bundle);
+        throw new RuntimeException(INACTIVE_MESSAGE_LOOP);
+      }
+      return bundle;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted waiting for next message", e);
+    } finally {
+      idleTimeMs += System.currentTimeMillis() - startMs;
+    }
   }
 
   private static MessageBundle getNextMessageBundle(MessagePublisher reflector) {
@@ -1959,7 +1996,11 @@ public class SequenceBase {
   }
 
   private void processNextMessage() {
-    ifNotNullThen(nextMessageBundle(), this::processMessageBundle);
+    processNextMessage(MESSAGE_POLL_MAX_MS);
+  }
+
+  private void processNextMessage(long maxWaitMs) {
+    ifNotNullThen(nextMessageBundle(maxWaitMs), this::processMessageBundle);
   }
 
   private void processMessageBundle(MessageBundle bundle) {
@@ -2840,6 +2881,7 @@ public class SequenceBase {
 
         startCaptureTime = 0;
         startTestTimeMs = System.currentTimeMillis();
+        idleTimeMs = 0;
         notice("Starting test " + testName + " " + START_END_MARKER);
         ifTrueThen(activeFacet != null && Objects.equals(activeFacet.getValue(), activePrimary),
             () -> notice("This test is primary for facet " + activeFacet.getKey()));
@@ -2868,6 +2910,9 @@ public class SequenceBase {
       ifTrueThen(testResult == PASS && shouldValidateSchema(SubFolder.VALIDATION),
           () -> recordSchemaValidations(description));
 
+      TestTiming timing = new TestTiming(System.currentTimeMillis() - startTestTimeMs, idleTimeMs);
+      SequenceRunner.getAllTimings().put(getDeviceId() + "/" + testName, timing);
+      notice("Timing for test " + testName + " " + timing);
       notice("Ending test " + testName + " after " + timeSinceStart() + " " + START_END_MARKER);
       testName = null;
       if (deviceConfig != null) {
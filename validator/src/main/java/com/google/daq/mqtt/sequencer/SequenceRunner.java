@@ -67,6 +67,7 @@ public class SequenceRunner {
   private static final String TOOL_ROOT = "..";
   private static final List<String> failures = new ArrayList<>();
   private static final Map<String, SequenceResult> allTestResults = new TreeMap<>();
+  private static final Map<String, TestTiming> allTestTimings = new TreeMap<>();
   private static final List<String> SHARD_LIST = new ArrayList<>();
   private static final Map<SubFolder, FacetResolver> FACET_RESOLVERS = ImmutableMap.of(
       SubFolder.DISCOVERY, new DiscoveryFacetResolver());
@@ -132,6 +133,7 @@ public class SequenceRunner {
 
     failures.clear();
     allTestResults.clear();
+    allTestTimings.clear();
 
     SequenceBase.resetState();
 
@@ -153,6 +155,10 @@ public class SequenceRunner {
     return allTestResults;
   }
 
+  public static Map<String, TestTiming> getAllTimings() {
+    return allTestTimings;
+  }
+
   /**
    * Check if a particular feature stage should be processed given the configured level.
    *
@@ -287,6 +293,11 @@ public class SequenceRunner {
         .collect(Collectors.groupingBy(Entry::getValue, Collectors.counting()));
     resultCounts.forEach(
         (key, value) -> System.err.println("Sequencer result count " + key.name() + " = " + value));
+    allTestTimings.forEach(
+        (key, value) -> System.err.println("Sequencer timing " + key + " " + value));
+    TestTiming total = allTestTimings.values().stream()
+        .reduce(new TestTiming(0, 0), TestTiming::plus);
+    System.err.println("Sequencer timing total " + total);
     String stateAbsolutePath = getSequencerStateFile().getAbsolutePath();
     System.err.println("Sequencer state summary in " + stateAbsolutePath);
   }
@@ -390,4 +401,19 @@ public class SequenceRunner {
     Feature annotation = method.getAnnotation(Feature.class);
     return processStage(annotation == null ? Feature.DEFAULT_STAGE : annotation.stage());
   }
+
+  /**
+   * Wall-clock time for a test, and how much of that was spent idle waiting for messages.
+   */
+  public record TestTiming(long wallMs, long idleMs) {
+
+    TestTiming plus(TestTiming other) {
+      return new TestTiming(wallMs + other.wallMs, idleMs + other.idleMs);
+    }
+
+    @Override
+    public String toString() {
+      return format("wall %.1fs idle %.1fs", wallMs / 1000.0, idleMs / 1000.0);
+    }
+  }
 }
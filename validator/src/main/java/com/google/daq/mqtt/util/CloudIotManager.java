@@ -29,7 +29,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import udmi.schema.CloudModel;
 import udmi.schema.CloudModel.ModelOperation;
 import udmi.schema.CloudModel.Resource_type;
@@ -209,25 +212,71 @@ public class CloudIotManager {
    * @return true if this is a new device entry
    */
   public boolean registerDevice(String deviceId, CloudDeviceSettings settings) {
+    return await(registerDeviceAsync(deviceId, settings));
+  }
+
+  private static <T> T await(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+    }
+  }
+
+  /**
+   * Register the given device in a cloud registry, without waiting for the result. The device
+   * config is written once the device entry has been created (or updated), and any errors are
+   * collected into a single exception that fails the returned future.
+   *
+   * @param deviceId device to register
+   * @param settings settings for the device
+   * @return future that completes with true if this is a new device entry
+   */
+  public CompletableFuture<Boolean> registerDeviceAsync(String deviceId,
+      CloudDeviceSettings settings) {
     ExceptionMap exceptions = new ExceptionMap("registering");
     CloudModel device = getRegisteredDevice(deviceId);
     if (usePasswords) {
       coerceCredentialsToPassword(deviceId, settings);
     }
-    if (device == null) {
-      exceptions.capture(ExceptionCategory.creating, () -> createDevice(deviceId, settings));
-    } else {
-      exceptions.capture(ExceptionCategory.updating,
-          () -> updateDevice(deviceId, settings, device));
-    }
+    CompletableFuture<?> registered = device == null
+        ? captureAsync(exceptions, ExceptionCategory.creating,
+            () -> createDeviceAsync(deviceId, settings))
+        : captureAsync(exceptions, ExceptionCategory.updating,
+            () -> updateDeviceAsync(deviceId, makeDevice(settings, device), ModelOperation.UPDATE));
+
+    return registered
+        .thenCompose(result -> settings.config == null ? CompletableFuture.completedFuture(null)
+            : captureAsync(exceptions, ExceptionCategory.configuring,
+                () -> getIotProvider().updateConfigAsync(deviceId, SubFolder.UPDATE,
+                    settings.config)))
+        .thenApply(result -> {
+          exceptions.throwIfNotEmpty();
+          return device == null;
+        });
+  }
 
-    if (settings.config != null) {
-      exceptions.capture(ExceptionCategory.configuring,
-          () -> writeDeviceConfig(deviceId, settings.config));
+  /**
+   * Capture any failure of an async operation in the exception map, rather than failing the
+   * future, so that subsequent operations will still be attempted.
+   */
+  private static CompletableFuture<?> captureAsync(ExceptionMap exceptions,
+      ExceptionCategory category, Supplier<CompletableFuture<?>> action) {
+    try {
+      return action.get().handle((result, throwable) -> {
+        ifNotNullThen(throwable, e -> exceptions.put(category, unwrapException(e)));
+        return null;
+      });
+    } catch (Exception e) {
+      exceptions.put(category, e);
+      return CompletableFuture.completedFuture(null);
     }
+  }
 
-    exceptions.throwIfNotEmpty();
-    return device == null;
+  private static Exception unwrapException(Throwable throwable) {
+    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+        ? throwable.getCause() : throwable;
+    return cause instanceof Exception exception ? exception : new RuntimeException(cause);
   }
 
   private void coerceCredentialsToPassword(String deviceId, CloudDeviceSettings settings) {
@@ -258,10 +307,6 @@ public class CloudIotManager {
     return deviceMap.get(deviceId);
   }
 
-  private void writeDeviceConfig(String deviceId, String config) {
-    getIotProvider().updateConfig(deviceId, SubFolder.UPDATE, config);
-  }
-
   public void modifyConfig(String deviceId, SubFolder subFolder, String config) {
     getIotProvider().updateConfig(deviceId, subFolder, config);
   }
@@ -308,11 +353,14 @@ public class CloudIotManager {
     return settings.credentials == null ? ImmutableList.of() : settings.credentials;
   }
 
-  private void createDevice(String deviceId, CloudDeviceSettings settings) {
+  private CompletableFuture<CloudModel> createDeviceAsync(String deviceId,
+      CloudDeviceSettings settings) {
     CloudModel newDevice = makeDevice(settings, null);
     limitValueSizes(newDevice.metadata);
-    getIotProvider().createResource(deviceId, newDevice);
-    deviceMap.put(deviceId, newDevice);
+    return getIotProvider().createResourceAsync(deviceId, newDevice).thenApply(created -> {
+      deviceMap.put(deviceId, newDevice);
+      return newDevice;
+    });
   }
 
   public void updateDevice(String deviceId, CloudDeviceSettings settings,
@@ -328,9 +376,17 @@ public class CloudIotManager {
    * Update a device using the given operation parameter.
    */
   public void updateDevice(String deviceId, CloudModel device, ModelOperation operation) {
+    await(updateDeviceAsync(deviceId, device, operation));
+  }
+
+  /**
+   * Asynchronously update a device using the given operation parameter.
+   */
+  public CompletableFuture<CloudModel> updateDeviceAsync(String deviceId, CloudModel device,
+      ModelOperation operation) {
     limitValueSizes(device.metadata);
     device.operation = operation;
-    getIotProvider().updateDevice(deviceId, device);
+    return getIotProvider().updateDeviceAsync(deviceId, device);
   }
 
   private void limitValueSizes(Map<String, String> metadata) {
@@ -1,5 +1,7 @@
 package com.google.daq.mqtt.util;
 
+import static com.google.bos.iot.core.proxy.IotReflectorClient.getNextTransactionId;
+import static com.google.bos.iot.core.proxy.IotReflectorClient.isFunctionVersionSupported;
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static com.google.daq.mqtt.validator.Validator.TOOLS_FUNCTIONS_VERSION;
 import static com.google.udmi.util.Common.CONDENSER_STRING;
@@ -21,11 +23,16 @@ import static java.util.Optional.ofNullable;
 import static udmi.schema.CloudModel.ModelOperation.BIND;
 import static udmi.schema.CloudModel.ModelOperation.BLOCK;
 import static udmi.schema.CloudModel.ModelOperation.BOUND;
+import static udmi.schema.CloudModel.ModelOperation.CREATE;
 import static udmi.schema.CloudModel.ModelOperation.DELETE;
+import static udmi.schema.CloudModel.ModelOperation.MODIFY;
 import static udmi.schema.CloudModel.ModelOperation.READ;
 import static udmi.schema.CloudModel.ModelOperation.UNBIND;
+import static udmi.schema.CloudModel.ModelOperation.UPDATE;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
 import com.google.daq.mqtt.util.MessagePublisher.QuerySpeed;
 import com.google.daq.mqtt.validator.Validator.MessageBundle;
 import com.google.udmi.util.IotProvider;
@@ -33,17 +40,23 @@ import com.google.udmi.util.SiteModel;
 import java.io.File;
 import java.io.PrintWriter;
 import java.time.Instant;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import udmi.schema.CloudModel;
 import udmi.schema.CloudModel.ModelOperation;
+import udmi.schema.CloudModel.Resource_type;
 import udmi.schema.Credential;
 import udmi.schema.Envelope.SubFolder;
 import udmi.schema.Envelope.SubType;
@@ -62,10 +75,23 @@ public class IotReflectorClient implements IotProvider {
   private static final String CONFIG_TOPIC_FORMAT = "%s/config";
   private static final File ERROR_DIR = new File("out");
   public static final String UPDATE_PREFIX = "update/";
+  public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+  private static final long EXPIRE_CHECK_SEC = 1;
+  private static final int MODEL_BATCH_FUNCTIONS_VERSION = 19;
+  private static final int MODEL_BATCH_SIZE = 50;
+  private static final int MODEL_BATCHES_OUTSTANDING = 4;
+  private static final Set<ModelOperation> BATCH_OPERATIONS =
+      ImmutableSet.of(CREATE, UPDATE, MODIFY, BIND, UNBIND, BLOCK);
   private final com.google.bos.iot.core.proxy.IotReflectorClient messageClient;
-  private final Map<String, CompletableFuture<Map<String, Object>>> futures =
-      new ConcurrentHashMap<>();
+  private final Map<String, PendingReply> futures = new ConcurrentHashMap<>();
+  private final Queue<QueuedTransaction> queued = new ConcurrentLinkedQueue<>();
   private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final ExecutorService completions = Executors.newCachedThreadPool();
+  private final ScheduledExecutorService expireExecutor =
+      Executors.newSingleThreadScheduledExecutor();
+  private final Semaphore inFlight;
+  private final ModelBatcher modelBatcher =
+      new ModelBatcher(this::modelBatchTransaction, MODEL_BATCH_SIZE, MODEL_BATCHES_OUTSTANDING);
   private final String sessionPrefix;
 
   /**
@@ -75,13 +101,40 @@ public class IotReflectorClient implements IotProvider {
    * @param toolName               name of tool using this reflector
    */
   public IotReflectorClient(ExecutionConfiguration executionConfiguration, String toolName) {
-    SiteModel siteModel = new SiteModel(executionConfiguration.site_model);
-    executionConfiguration.key_file = siteModel.validatorKey();
-    messageClient = new com.google.bos.iot.core.proxy.IotReflectorClient(executionConfiguration,
-        TOOLS_FUNCTIONS_VERSION, toolName);
+    this(executionConfiguration, toolName, DEFAULT_MAX_IN_FLIGHT);
+  }
+
+  /**
+   * Create a new client with a limit on the number of pipelined (in-flight) transactions.
+   *
+   * @param executionConfiguration configuration to use for connection
+   * @param toolName               name of tool using this reflector
+   * @param maxInFlight            maximum number of outstanding transactions
+   */
+  public IotReflectorClient(ExecutionConfiguration executionConfiguration, String toolName,
+      int maxInFlight) {
+    this(makeMessageClient(executionConfiguration, toolName), maxInFlight);
+  }
+
+  @VisibleForTesting
+  IotReflectorClient(com.google.bos.iot.core.proxy.IotReflectorClient messageClient,
+      int maxInFlight) {
+    Preconditions.checkArgument(maxInFlight > 0, "max in-flight must be positive");
+    inFlight = new Semaphore(maxInFlight);
+    this.messageClient = messageClient;
     messageClient.activate();
     sessionPrefix = messageClient.getSessionPrefix();
     executor.execute(this::processReplies);
+    expireExecutor.scheduleWithFixedDelay(() -> expireTransactions(Instant.now()),
+        EXPIRE_CHECK_SEC, EXPIRE_CHECK_SEC, TimeUnit.SECONDS);
+  }
+
+  private static com.google.bos.iot.core.proxy.IotReflectorClient makeMessageClient(
+      ExecutionConfiguration executionConfiguration, String toolName) {
+    SiteModel siteModel = new SiteModel(executionConfiguration.site_model);
+    executionConfiguration.key_file = siteModel.validatorKey();
+    return new com.google.bos.iot.core.proxy.IotReflectorClient(executionConfiguration,
+        TOOLS_FUNCTIONS_VERSION, toolName);
   }
 
   @Override
@@ -91,48 +144,73 @@ public class IotReflectorClient implements IotProvider {
 
   @Override
   public void shutdown() {
+    ifTrueThen(!modelBatcher.isEmpty(), () -> System.err.println(modelBatcher.getSummary()));
     messageClient.close();
     executor.shutdown();
+    expireExecutor.shutdown();
+    IllegalStateException shutdown = new IllegalStateException("Reflector client shutdown");
+    for (QueuedTransaction waiting = queued.poll(); waiting != null; waiting = queued.poll()) {
+      waiting.future.completeExceptionally(shutdown);
+    }
+    futures.values().forEach(pending -> pending.future.completeExceptionally(shutdown));
+    completions.shutdown();
   }
 
   @Override
   public void updateConfig(String deviceId, SubFolder subFolder, String config) {
-    try {
-      transaction(deviceId, format(CONFIG_TOPIC_FORMAT, subFolder.value()), config,
-          QuerySpeed.LONG);
-    } catch (Exception e) {
-      System.err.println("Exception handling config update: " + friendlyStackTrace(e));
-      throw e;
-    }
+    await(updateConfigAsync(deviceId, subFolder, config));
+  }
+
+  @Override
+  public CompletableFuture<Void> updateConfigAsync(String deviceId, SubFolder subFolder,
+      String config) {
+    return transactionAsync(deviceId, format(CONFIG_TOPIC_FORMAT, subFolder.value()), config,
+        QuerySpeed.LONG)
+        .whenComplete((reply, e) -> ifNotNullThen(e, ex -> System.err.println(
+            "Exception handling config update: " + friendlyStackTrace(unwrap(ex)))))
+        .thenApply(reply -> null);
   }
 
   @Override
   public void setBlocked(String deviceId, boolean blocked) {
     CloudModel cloudModel = new CloudModel();
     cloudModel.operation = BLOCK;
-    cloudModelTransaction(deviceId, CLOUD_MODEL_TOPIC, cloudModel);
+    await(cloudModelTransaction(deviceId, CLOUD_MODEL_TOPIC, cloudModel));
   }
 
   @Override
   public void updateDevice(String deviceId, CloudModel device) {
+    await(updateDeviceAsync(deviceId, device));
+  }
+
+  @Override
+  public CompletableFuture<CloudModel> updateDeviceAsync(String deviceId, CloudModel device) {
     device.operation = ofNullable(device.operation).orElse(ModelOperation.UPDATE);
-    cloudModelTransaction(deviceId, CLOUD_MODEL_TOPIC, device);
+    return cloudModelTransaction(deviceId, CLOUD_MODEL_TOPIC, device);
   }
 
   @Override
   public void updateRegistry(CloudModel registry) {
     registry.operation = ofNullable(registry.operation).orElse(ModelOperation.UPDATE);
-    cloudModelTransaction(null, CLOUD_MODEL_TOPIC, registry);
+    await(cloudModelTransaction(null, CLOUD_MODEL_TOPIC, registry));
   }
 
   @Override
   public void createResource(String deviceId, CloudModel makeDevice) {
+    await(createResourceAsync(deviceId, makeDevice));
+  }
+
+  @Override
+  public CompletableFuture<CloudModel> createResourceAsync(String deviceId,
+      CloudModel makeDevice) {
     makeDevice.operation = ModelOperation.CREATE;
-    CloudModel created = cloudModelTransaction(deviceId, CLOUD_MODEL_TOPIC, makeDevice);
-    ifNotNullThen(makeDevice.num_id, () -> ifTrueThen(!makeDevice.num_id.equals(created.num_id),
-        () -> System.err.printf("created num_id %s does not match expected %s%n", created.num_id,
-            makeDevice.num_id)));
-    makeDevice.num_id = created.num_id;
+    return cloudModelTransaction(deviceId, CLOUD_MODEL_TOPIC, makeDevice).thenApply(created -> {
+      ifNotNullThen(makeDevice.num_id, () -> ifTrueThen(!makeDevice.num_id.equals(created.num_id),
+          () -> System.err.printf("created num_id %s does not match expected %s%n",
+              created.num_id, makeDevice.num_id)));
+      makeDevice.num_id = created.num_id;
+      return created;
+    });
   }
 
   @Override
@@ -140,7 +218,7 @@ public class IotReflectorClient implements IotProvider {
     CloudModel deleteModel = new CloudModel();
     deleteModel.operation = ModelOperation.DELETE;
     deleteModel.gateway = ifNotNullGet(unbindIds, this::proxyGatewayModel);
-    cloudModelTransaction(deviceId, CLOUD_MODEL_TOPIC, deleteModel);
+    await(cloudModelTransaction(deviceId, CLOUD_MODEL_TOPIC, deleteModel));
   }
 
   private GatewayModel proxyGatewayModel(Set<String> unbindIds) {
@@ -149,11 +227,44 @@ public class IotReflectorClient implements IotProvider {
     return gatewayModel;
   }
 
-  private CloudModel cloudModelTransaction(String deviceId, String topic, CloudModel model) {
+  private CompletableFuture<CloudModel> cloudModelTransaction(String deviceId, String topic,
+      CloudModel model) {
     ModelOperation operation = Preconditions.checkNotNull(model.operation, "no operation");
     model.functions_ver = TOOLS_FUNCTIONS_VERSION;
-    Map<String, Object> result = transaction(deviceId, topic, stringify(model), QuerySpeed.DYNAMIC);
-    CloudModel cloudModel = convertTo(CloudModel.class, result);
+    CompletableFuture<CloudModel> receipt = isBatchable(deviceId, topic, model)
+        ? modelBatcher.submit(deviceId, model)
+        : transactionAsync(deviceId, topic, stringify(model), QuerySpeed.DYNAMIC)
+            .thenApply(result -> convertTo(CloudModel.class, result));
+    return receipt.thenApply(result -> checkReceipt(operation, result));
+  }
+
+  /**
+   * Device-level operations can be coalesced into batches if the UDMIS functions support it.
+   * Deletes are excluded since they have special handling for bound devices.
+   */
+  private static boolean isBatchable(String deviceId, String topic, CloudModel model) {
+    return deviceId != null && CLOUD_MODEL_TOPIC.equals(topic)
+        && BATCH_OPERATIONS.contains(model.operation)
+        && model.resource_type != Resource_type.REGISTRY
+        && isFunctionVersionSupported(MODEL_BATCH_FUNCTIONS_VERSION);
+  }
+
+  /**
+   * Send a batch of device models as a single registry-level transaction, returning the
+   * per-device receipts.
+   */
+  private CompletableFuture<Map<String, CloudModel>> modelBatchTransaction(
+      Map<String, CloudModel> models) {
+    CloudModel batch = new CloudModel();
+    batch.operation = UPDATE;
+    batch.resource_type = Resource_type.REGISTRY;
+    batch.device_ids = models;
+    batch.functions_ver = TOOLS_FUNCTIONS_VERSION;
+    return transactionAsync(null, CLOUD_MODEL_TOPIC, stringify(batch), QuerySpeed.DYNAMIC)
+        .thenApply(result -> checkReceipt(UPDATE, convertTo(CloudModel.class, result)).device_ids);
+  }
+
+  private static CloudModel checkReceipt(ModelOperation operation, CloudModel cloudModel) {
     String cloudNumId = ifNotNullGet(cloudModel, out -> out.num_id);
     ModelOperation cloudOperation = ifNotNullGet(cloudModel, out -> out.operation);
     // This happens with devices are bound to gateways, so explicitly capture the relevant info.
@@ -169,7 +280,7 @@ public class IotReflectorClient implements IotProvider {
 
   @Override
   public CloudModel fetchDevice(String deviceId) {
-    return fetchCloudModel(deviceId);
+    return await(fetchCloudModel(deviceId));
   }
 
   @Override
@@ -183,29 +294,32 @@ public class IotReflectorClient implements IotProvider {
     CloudModel device = new CloudModel();
     device.operation = shouldBind ? BIND : UNBIND;
     device.gateway = proxyGatewayModel(deviceIds);
-    cloudModelTransaction(gatewayId, CLOUD_MODEL_TOPIC, device);
+    await(cloudModelTransaction(gatewayId, CLOUD_MODEL_TOPIC, device));
   }
 
   @Override
   public Map<String, CloudModel> fetchCloudModels(String forGatewayId) {
-    return ofNullable(fetchCloudModel(forGatewayId)).map(model -> model.device_ids).orElse(null);
+    return ofNullable(fetchDevice(forGatewayId)).map(model -> model.device_ids).orElse(null);
   }
 
-  private CloudModel fetchCloudModel(String deviceId) {
-    try {
-      Map<String, Object> message = transaction(deviceId, CLOUD_QUERY_TOPIC,
-          getQueryMessageString(), QuerySpeed.DYNAMIC);
-      // TODO: Remove this legacy workaround once all cloud environments are updated (2024/11/15).
-      if ("FETCH".equals(message.get("operation"))) {
-        message.put("operation", READ.toString());
-      }
-      return convertTo(CloudModel.class, message);
-    } catch (Exception e) {
-      if (e.getMessage().contains("NOT_FOUND")) {
+  private CompletableFuture<CloudModel> fetchCloudModel(String deviceId) {
+    return transactionAsync(deviceId, CLOUD_QUERY_TOPIC, getQueryMessageString(),
+        QuerySpeed.DYNAMIC).handle(this::convertQueryReply);
+  }
+
+  private CloudModel convertQueryReply(Map<String, Object> message, Throwable throwable) {
+    if (throwable != null) {
+      RuntimeException e = unwrap(throwable);
+      if (ofNullable(e.getMessage()).orElse("").contains("NOT_FOUND")) {
         return null;
       }
       throw e;
     }
+    // TODO: Remove this legacy workaround once all cloud environments are updated (2024/11/15).
+    if ("FETCH".equals(message.get("operation"))) {
+      message.put("operation", READ.toString());
+    }
+    return convertTo(CloudModel.class, message);
   }
 
   private String getQueryMessageString() {
@@ -214,11 +328,70 @@ public class IotReflectorClient implements IotProvider {
     return stringify(cloudModel);
   }
 
-  private Map<String, Object> transaction(String deviceId, String topic,
+  /**
+   * Send a transaction to UDMIS, returning a future for the reply. This never blocks: if there are
+   * already the maximum number of transactions in flight, the transaction is queued and sent once
+   * an earlier one completes.
+   */
+  private CompletableFuture<Map<String, Object>> transactionAsync(String deviceId, String topic,
       String message, QuerySpeed speed) {
-    // TODO: Publish should return future to avoid race conditions.
-    String transactionId = messageClient.publish(deviceId, topic, message);
-    Map<String, Object> objectMap = waitForReply(transactionId, speed);
+    QueuedTransaction transaction = new QueuedTransaction(deviceId, topic, message, speed,
+        new CompletableFuture<>());
+    queued.add(transaction);
+    sendQueued();
+    return transaction.future;
+  }
+
+  /**
+   * Send queued transactions while there are in-flight slots available. This is called both when
+   * a transaction is queued and when one completes, so nothing is left waiting on a free slot.
+   */
+  private void sendQueued() {
+    while (!queued.isEmpty() && inFlight.tryAcquire()) {
+      QueuedTransaction transaction = queued.poll();
+      if (transaction == null) {
+        inFlight.release();
+      } else {
+        send(transaction);
+      }
+    }
+  }
+
+  /**
+   * Publish a transaction, registering the reply future before the message is published so there
+   * is no race with a fast reply. The in-flight slot is released when the reply future completes,
+   * and the transaction is completed off of the reply thread, so neither sending the next queued
+   * transaction nor any caller continuations can hold up processing of other replies.
+   */
+  private void send(QueuedTransaction transaction) {
+    String transactionId = getNextTransactionId();
+    CompletableFuture<Map<String, Object>> replyFuture = new CompletableFuture<>();
+    futures.put(transactionId, new PendingReply(replyFuture, transaction.speed, Instant.now()));
+    replyFuture.whenCompleteAsync((reply, e) -> {
+      futures.remove(transactionId);
+      inFlight.release();
+      sendQueued();
+      if (e != null) {
+        transaction.future.completeExceptionally(e);
+        return;
+      }
+      try {
+        transaction.future.complete(checkReply(transaction.deviceId, transaction.topic,
+            transaction.message, transactionId, reply));
+      } catch (Exception checkError) {
+        transaction.future.completeExceptionally(checkError);
+      }
+    }, completions);
+    try {
+      messageClient.publish(transaction.deviceId, transaction.topic, transaction.message,
+          transactionId);
+    } catch (Exception e) {
+      replyFuture.completeExceptionally(e);
+    }
+  }
+
+  private Map<String, Object> checkReply(String deviceId, String topic, String message,
+      String transactionId, Map<String, Object> objectMap) {
     String error = (String) ofNullable(objectMap).map(x -> x.get(ERROR_KEY)).orElse(null);
     if (error != null) {
       writeErrorDetail(transactionId, error, (String) objectMap.get(DETAIL_KEY));
@@ -245,30 +418,40 @@ public class IotReflectorClient implements IotProvider {
     }
   }
 
-  private Map<String, Object> waitForReply(String sentId, QuerySpeed speed) {
+  /**
+   * Fail any transactions that have timed out. Fixed-speed transactions have a fixed deadline,
+   * while dynamic ones wait as long as the reflector is still showing signs of progress.
+   */
+  @VisibleForTesting
+  void expireTransactions(Instant now) {
+    int pollSeconds = QuerySpeed.SHORT.seconds();
+    boolean stalled = !messageClient.getLastProgressEvent().plusSeconds(pollSeconds * 2L)
+        .isAfter(now);
+    // Collect expired entries first, since failing one can send a queued transaction.
+    Map<String, PendingReply> expired = new HashMap<>();
+    futures.forEach((transactionId, pending) -> {
+      ifTrueThen(pending.speed == QuerySpeed.DYNAMIC
+          ? stalled && !pending.sent.plusSeconds(pollSeconds).isAfter(now)
+          : !pending.sent.plusSeconds(pending.speed.seconds()).isAfter(now),
+          () -> expired.put(transactionId, pending));
+    });
+    expired.forEach((transactionId, pending) -> pending.future.completeExceptionally(
+        new RuntimeException(format("UDMIS reflector timeout %ss for %s",
+            pending.speed.seconds(), transactionId))));
+  }
+
+  private static <T> T await(CompletableFuture<T> future) {
     try {
-      CompletableFuture<Map<String, Object>> replyFuture = new CompletableFuture<>();
-      futures.put(sentId, replyFuture);
-      return speed == QuerySpeed.DYNAMIC ? dynamicReplyFutureGet(replyFuture) :
-          replyFuture.get(speed.seconds(), TimeUnit.SECONDS);
-    } catch (Exception e) {
-      futures.remove(sentId);
-      throw new RuntimeException(
-          format("UDMIS reflector timeout %ss for %s", speed.seconds(), sentId));
+      return future.join();
+    } catch (CompletionException e) {
+      throw unwrap(e);
     }
   }
 
-  private Map<String, Object> dynamicReplyFutureGet(
-      CompletableFuture<Map<String, Object>> replyFuture) throws Exception {
-    int pollSeconds = QuerySpeed.SHORT.seconds();
-    while (messageClient.getLastProgressEvent().plusSeconds(pollSeconds).isAfter(Instant.now())) {
-      try {
-        return replyFuture.get(pollSeconds, TimeUnit.SECONDS);
-      } catch (TimeoutException e) {
-        // Do nothing, but loop for timeout check only when there's a timeout.
-      }
-    }
-    return replyFuture.get(pollSeconds, TimeUnit.SECONDS);
+  private static RuntimeException unwrap(Throwable throwable) {
+    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+        ? throwable.getCause() : throwable;
+    return cause instanceof RuntimeException runtime ? runtime : new RuntimeException(cause);
   }
 
   private void processReplies() {
@@ -285,9 +468,8 @@ public class IotReflectorClient implements IotProvider {
         if (SubFolder.UDMI.value().equals(subFolder) && SubType.EVENTS.value().equals(subType)) {
           continue;
         }
-        CompletableFuture<Map<String, Object>> future = ifNotNullGet(transactionId,
-            futures::remove);
-        ifNotNullThen(future, f -> f.complete(messageBundle.message));
+        PendingReply pending = ifNotNullGet(transactionId, futures::remove);
+        ifNotNullThen(pending, p -> p.future.complete(messageBundle.message));
 
         if (messageBundle.message != null) {
           Exception exception = (Exception) messageBundle.message.get(EXCEPTION_KEY);
@@ -305,7 +487,7 @@ public class IotReflectorClient implements IotProvider {
           }
         }
 
-        if (future == null && transactionId != null && transactionId.startsWith(sessionPrefix)) {
+        if (pending == null && transactionId != null && transactionId.startsWith(sessionPrefix)) {
           throw new RuntimeException(
               "Received unexpected reply message " + stringifyTerse(messageBundle.attributes));
         }
@@ -330,4 +512,14 @@ public class IotReflectorClient implements IotProvider {
     return messageClient.getVersionInformation();
   }
 
+  private record QueuedTransaction(String deviceId, String topic, String message,
+                                   QuerySpeed speed,
+                                   CompletableFuture<Map<String, Object>> future) {
+
+  }
+
+  private record PendingReply(CompletableFuture<Map<String, Object>> future, QuerySpeed speed,
+                              Instant sent) {
+
+  }
 }
@@ -0,0 +1,146 @@
+package com.google.daq.mqtt.util;
+
+import static com.google.udmi.util.GeneralUtils.ifNotNullGet;
+import static java.lang.String.format;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import udmi.schema.CloudModel;
+import udmi.schema.CloudModel.ModelOperation;
+
+/**
+ * Coalesces individual device model operations into batched transactions. Operations are sent
+ * right away while there's a free batch slot, and otherwise accumulate until an outstanding batch
+ * completes, so a serial caller sees no added latency while concurrent callers get batched. A
+ * device is only ever in one outstanding batch, so operations for any one device stay in order.
+ */
+class ModelBatcher {
+
+  private final Function<Map<String, CloudModel>, CompletableFuture<Map<String, CloudModel>>>
+      sender;
+  private final int maxBatchSize;
+  private final int maxOutstanding;
+  private final List<PendingModel> pending = new ArrayList<>();
+  private final Set<String> sending = new HashSet<>();
+  private int outstanding;
+  private int batches;
+  private int operations;
+
+  ModelBatcher(
+      Function<Map<String, CloudModel>, CompletableFuture<Map<String, CloudModel>>> sender,
+      int maxBatchSize, int maxOutstanding) {
+    this.sender = sender;
+    this.maxBatchSize = maxBatchSize;
+    this.maxOutstanding = maxOutstanding;
+  }
+
+  /**
+   * Queue up a model operation for the given device, returning a future for its receipt.
+   */
+  CompletableFuture<CloudModel> submit(String deviceId, CloudModel model) {
+    PendingModel entry = new PendingModel(deviceId, model, new CompletableFuture<>());
+    synchronized (this) {
+      pending.add(entry);
+      operations++;
+    }
+    sendReady();
+    return entry.future;
+  }
+
+  synchronized String getSummary() {
+    return format("Batched %d model operations into %d transactions", operations, batches);
+  }
+
+  synchronized boolean isEmpty() {
+    return operations == 0;
+  }
+
+  private void sendReady() {
+    List<Map<String, PendingModel>> ready = new ArrayList<>();
+    synchronized (this) {
+      while (!pending.isEmpty() && outstanding < maxOutstanding) {
+        Map<String, PendingModel> batch = nextBatch();
+        if (batch.isEmpty()) {
+          break;
+        }
+        sending.addAll(batch.keySet());
+        ready.add(batch);
+        outstanding++;
+        batches++;
+      }
+    }
+    // Send outside the lock, since sending can block waiting for a transaction slot.
+    ready.forEach(this::send);
+  }
+
+  /**
+   * Take the next batch off the pending list. A device can only appear once in a batch, so stop at
+   * a repeated device to keep the operations for any one device in order. Devices that are still
+   * in an outstanding batch are held back (along with any later operations for them).
+   */
+  private Map<String, PendingModel> nextBatch() {
+    Map<String, PendingModel> batch = new LinkedHashMap<>();
+    Iterator<PendingModel> iterator = pending.iterator();
+    while (iterator.hasNext() && batch.size() < maxBatchSize) {
+      PendingModel entry = iterator.next();
+      if (batch.containsKey(entry.deviceId)) {
+        break;
+      }
+      if (sending.contains(entry.deviceId)) {
+        continue;
+      }
+      batch.put(entry.deviceId, entry);
+      iterator.remove();
+    }
+    return batch;
+  }
+
+  private void send(Map<String, PendingModel> batch) {
+    Map<String, CloudModel> models = new LinkedHashMap<>();
+    batch.forEach((deviceId, entry) -> models.put(deviceId, entry.model));
+    CompletableFuture<Map<String, CloudModel>> reply;
+    try {
+      reply = sender.apply(models);
+    } catch (Exception e) {
+      reply = CompletableFuture.failedFuture(e);
+    }
+    reply.whenComplete((receipts, throwable) -> {
+      batch.values().forEach(entry -> complete(entry, receipts, throwable));
+      synchronized (this) {
+        sending.removeAll(batch.keySet());
+        outstanding--;
+      }
+      sendReady();
+    });
+  }
+
+  private static void complete(PendingModel entry, Map<String, CloudModel> receipts,
+      Throwable throwable) {
+    if (throwable != null) {
+      entry.future.completeExceptionally(throwable);
+      return;
+    }
+    CloudModel receipt = ifNotNullGet(receipts, map -> map.get(entry.deviceId));
+    if (receipt == null) {
+      entry.future.completeExceptionally(
+          new RuntimeException("Missing batch receipt for " + entry.deviceId));
+    } else if (receipt.operation == ModelOperation.ERROR) {
+      entry.future.completeExceptionally(new RuntimeException(
+          format("UDMIS batch error for %s: %s", entry.deviceId, receipt.detail)));
+    } else {
+      entry.future.complete(receipt);
+    }
+  }
+
+  private record PendingModel(String deviceId, CloudModel model,
+                              CompletableFuture<CloudModel> future) {
+
+  }
+}
@@ -44,11 +44,6 @@ import static udmi.schema.IotAccess.IotProvider.PUBSUB;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.github.fge.jsonschema.core.load.configuration.LoadingConfiguration;
-import com.github.fge.jsonschema.core.load.download.URIDownloader;
-import com.github.fge.jsonschema.core.report.ProcessingReport;
-import com.github.fge.jsonschema.main.JsonSchema;
-import com.github.fge.jsonschema.main.JsonSchemaFactory;
 import com.google.bos.iot.core.proxy.IotReflectorClient;
 import com.google.bos.iot.core.proxy.MqttPublisher;
 import com.google.bos.iot.core.proxy.NullPublisher;
@@ -74,15 +69,14 @@ import com.google.udmi.util.ExceptionMap.ErrorTree;
 import com.google.udmi.util.GeneralUtils;
 import com.google.udmi.util.JsonUtil;
 import com.google.udmi.util.MessageUpgrader;
-import com.google.udmi.util.MessageValidator;
+import com.google.udmi.util.SchemaValidator;
+import com.google.udmi.util.SchemaValidator.Engine;
 import com.google.udmi.util.SiteModel;
+import com.google.udmi.util.SiteModel.MetadataException;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.URI;
-import java.net.URL;
 import java.nio.file.Files;
 import java.time.Duration;
 import java.time.Instant;
@@ -98,10 +92,16 @@ import java.util.Map.Entry;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
@@ -175,15 +175,17 @@ public class Validator {
   private static final String VALIDATOR_TOOL_NAME = "validator";
   private static final String REGISTRY_DEVICE_DEFAULT = "_regsitry";
   private static final String SCHEMA_NAME_KEY = "ignore_envelope";
+  private static final int SHARD_QUEUE_SIZE = 1000;
+  private static final long SHARD_STOP_SEC = 30;
   private long reportingDelaySec = DEFAULT_INTERVAL_SEC;
   private final CommandLineProcessor commandLineProcessor = new CommandLineProcessor(this);
-  private final Map<String, ReportingDevice> reportingDevices = new TreeMap<>();
-  private final Set<String> extraDevices = new TreeSet<>();
-  private final Set<String> processedDevices = new TreeSet<>();
-  private final Set<String> base64Devices = new TreeSet<>();
-  private final Set<String> ignoredRegistries = new HashSet<>();
+  private final Map<String, ReportingDevice> reportingDevices = new ConcurrentSkipListMap<>();
+  private final Set<String> extraDevices = new ConcurrentSkipListSet<>();
+  private final Set<String> processedDevices = new ConcurrentSkipListSet<>();
+  private final Set<String> base64Devices = new ConcurrentSkipListSet<>();
+  private final Set<String> ignoredRegistries = ConcurrentHashMap.newKeySet();
   private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
-  private final Map<String, AtomicInteger> deviceMessageIndex = new HashMap<>();
+  private final Map<String, AtomicInteger> deviceMessageIndex = new ConcurrentHashMap<>();
   private final List<MessagePublisher> dataSinks = new ArrayList<>();
   private final Set<String> summaryDevices = new HashSet<>();
   private final ImpulseRunningAverage validationStats = new ImpulseRunningAverage(
@@ -196,13 +198,16 @@ public class Validator {
   private String schemaSpec;
   private ExecutionConfiguration config;
   private MessagePublisher client;
-  private Map<String, JsonSchema> schemaMap;
+  private Map<String, SchemaValidator> schemaMap;
+  private Engine schemaEngine = Engine.FGE;
   private File traceDir;
   private boolean simulatedMessages;
   private Instant mockNow = null;
   private boolean forceUpgrade;
   private SiteModel siteModel;
   private boolean validateCurrent;
+  private int validationThreads = 1;
+  private List<ThreadPoolExecutor> validationShards;
 
   static {
     System.setProperty(SimpleLogger.DEFAULT_LOG_LEVEL_KEY, "info");
@@ -347,6 +352,22 @@ public class Validator {
     reportingDelaySec = Integer.parseInt(arg);
   }
 
+  @CommandLineOption(short_form = "-j", arg_name = "threads",
+      description = "Parallel validation threads (sharded by device)")
+  private void setValidationThreads(String arg) {
+    validationThreads = Integer.parseInt(arg);
+    checkArgument(validationThreads > 0, "validation threads must be positive");
+  }
+
+  @CommandLineOption(short_form = "-e", arg_name = "engine",
+      description = "Schema validation engine (fge or compiled)")
+  private void setSchemaEngine(String arg) {
+    schemaEngine = Engine.valueOf(arg.toUpperCase());
+    if (schemaRoot != null) {
+      schemaMap = getSchemaMap();
+    }
+  }
+
   @CommandLineOption(short_form = "-c", description = "Validate current device messages")
   private void setValidateCurrent() {
     validateCurrent = true;
@@ -461,16 +482,20 @@ public class Validator {
   private void initializeExpectedDevices() {
     Set<String> siteDevices = siteModel.getDeviceIds();
     try {
-      expectedDevices = new HashSet<>(siteDevices);
+      expectedDevices = ConcurrentHashMap.newKeySet();
+      expectedDevices.addAll(siteDevices);
+      Map<String, Metadata> siteMetadata = siteModel.loadDeviceMetadataSafe(siteDevices);
       for (String device : siteDevices) {
         ReportingDevice reportingDevice = newReportingDevice(device);
-        try {
-          Metadata metadata = siteModel.loadDeviceMetadata(device);
-          reportingDevice.setMetadata(metadata);
-        } catch (Exception e) {
+        Metadata metadata = siteMetadata.get(device);
+        if (metadata instanceof MetadataException metadataException) {
+          Exception e = new RuntimeException("While loading device metadata for " + device,
+              metadataException.exception);
           String detail = friendlyStackTrace(e);
           outputLogger.error("Error while loading device %s: %s", device, detail);
           reportingDevice.addError(e, Category.VALIDATION_DEVICE_SCHEMA, detail);
+        } else {
+          reportingDevice.setMetadata(metadata);
         }
         reportingDevices.put(device, reportingDevice);
       }
@@ -510,10 +535,10 @@ public class Validator {
     schemaMap = getSchemaMap();
   }
 
-  private Map<String, JsonSchema> getSchemaMap() {
-    Map<String, JsonSchema> schemaMap = new TreeMap<>();
+  private Map<String, SchemaValidator> getSchemaMap() {
+    Map<String, SchemaValidator> schemaMap = new TreeMap<>();
     for (File schemaFile : makeFileList(null, schemaRoot)) {
-      JsonSchema schema = getSchema(schemaFile);
+      SchemaValidator schema = getSchema(schemaFile);
       String fullName = schemaFile.getName();
       String schemaName =
           schemaFile.getName().substring(0, fullName.length() - JSON_SUFFIX.length());
@@ -573,6 +598,7 @@ public class Validator {
     sendInitializationQuery();
     outputLogger.info("Running udmi tools version " + UDMI_TOOLS);
     outputLogger.notice("Entering message loop on " + client.getSubscriptionId());
+    startValidationShards();
     processValidationReport();
     ScheduledFuture<?> reportSender =
         simulatedMessages ? null : executor.scheduleAtFixedRate(this::processValidationReport,
@@ -580,7 +606,7 @@ public class Validator {
     try {
       while (client.isActive()) {
         try {
-          validateMessage(client.takeNextMessage(QuerySpeed.SHORT));
+          dispatchMessage(client.takeNextMessage(QuerySpeed.SHORT));
         } catch (Exception e) {
           e.printStackTrace();
         }
@@ -590,7 +616,96 @@ public class Validator {
       if (reportSender != null) {
         reportSender.cancel(true);
       }
+      stopValidationShards();
+    }
+  }
+
+  /**
+   * Start the per-device validation workers. Each device is always handled by the same
+   * single-threaded shard, so per-device message order is preserved and all the state for a
+   * given ReportingDevice is confined to one thread. Simulated (trace) runs depend on a shared
+   * mock clock, so they are always processed in-line.
+   */
+  @VisibleForTesting
+  void startValidationShards() {
+    if (validationThreads <= 1 || simulatedMessages) {
+      return;
+    }
+    outputLogger.info("Starting %d validation shards", validationThreads);
+    List<ThreadPoolExecutor> shards = new ArrayList<>();
+    for (int index = 0; index < validationThreads; index++) {
+      shards.add(newValidationShard(index));
     }
+    validationShards = shards;
+  }
+
+  /**
+   * Stop the validation workers, letting them finish any messages that are already queued.
+   */
+  @VisibleForTesting
+  void stopValidationShards() {
+    List<ThreadPoolExecutor> shards = validationShards;
+    if (shards == null) {
+      return;
+    }
+    shards.forEach(ThreadPoolExecutor::shutdown);
+    try {
+      for (ThreadPoolExecutor shard : shards) {
+        if (!shard.awaitTermination(SHARD_STOP_SEC, TimeUnit.SECONDS)) {
+          outputLogger.warn(format("Validation shard did not finish, dropping %d messages",
+              shard.shutdownNow().size()));
+        }
+      }
+    } catch (InterruptedException e) {
+      shards.forEach(ThreadPoolExecutor::shutdownNow);
+      Thread.currentThread().interrupt();
+    } finally {
+      validationShards = null;
+    }
+  }
+
+  private static ThreadPoolExecutor newValidationShard(int index) {
+    return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(SHARD_QUEUE_SIZE), runnable -> {
+          Thread thread = new Thread(runnable, "validator-shard-" + index);
+          thread.setDaemon(true);
+          return thread;
+        }, Validator::blockingEnqueue);
+  }
+
+  /**
+   * Block the message loop when a shard falls behind, rather than dropping or reordering.
+   */
+  private static void blockingEnqueue(Runnable task, ThreadPoolExecutor shard) {
+    if (shard.isShutdown()) {
+      throw new RejectedExecutionException("Validation shard is shut down");
+    }
+    try {
+      shard.getQueue().put(task);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RejectedExecutionException("Interrupted while queueing validation", e);
+    }
+  }
+
+  private int shardIndex(String deviceId) {
+    return deviceId == null ? 0 : Math.floorMod(deviceId.hashCode(), validationShards.size());
+  }
+
+  @VisibleForTesting
+  void dispatchMessage(MessageBundle message) {
+    if (validationShards == null || message == null) {
+      validateMessage(message);
+      return;
+    }
+    String deviceId = ifNotNullGet(message.attributes, attributes -> attributes.get("deviceId"));
+    validationShards.get(shardIndex(deviceId)).execute(() -> {
+      try {
+        validateBundle(message);
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    });
   }
 
   private void sendInitializationQuery() {
@@ -645,13 +760,7 @@ public class Validator {
   }
 
   protected synchronized void validateMessage(MessageBundle message) {
-    ifNotNullThen(message, bundle -> {
-      Object object = ofNullable((Object) bundle.message).orElse(bundle.rawMessage);
-      if (!handleSystemMessage(bundle.attributes, object)
-          && !handleMetadataUpdate(bundle.attributes, object)) {
-        validateMessage(object, bundle.attributes);
-      }
-    });
+    validateBundle(message);
   }
 
   private void validateMessage(Object msgObject, Map<String, String> attributes) {
@@ -683,10 +792,19 @@ public class Validator {
     }
   }
 
-  private void validateMessage(JsonSchema schema, Object message) throws Exception {
-    ProcessingReport report = schema.validate(OBJECT_MAPPER.valueToTree(message), true);
-    ifTrueThen(!report.isSuccess(),
-        () -> ifNotNullThrow(MessageValidator.fromProcessingReport(report)));
+  private void validateMessage(SchemaValidator schema, Object message) throws Exception {
+    ifNotNullThrow(schema.validate(OBJECT_MAPPER.valueToTree(message)));
+  }
+
+  @VisibleForTesting
+  void validateBundle(MessageBundle message) {
+    ifNotNullThen(message, bundle -> {
+      Object object = ofNullable((Object) bundle.message).orElse(bundle.rawMessage);
+      if (!handleSystemMessage(bundle.attributes, object)
+          && !handleMetadataUpdate(bundle.attributes, object)) {
+        validateMessage(object, bundle.attributes);
+      }
+    });
   }
 
   private Instant getInstant(Object msgObject, Map<String, String> attributes) {
@@ -912,10 +1030,12 @@ public class Validator {
     }
   }
 
-  private synchronized void sendValidationMessage(String deviceId, Object message, String topic) {
+  private void sendValidationMessage(String deviceId, Object message, String topic) {
     try {
       String messageString = OBJECT_MAPPER.writeValueAsString(message);
-      dataSinks.forEach(sink -> sink.publish(deviceId, topic, messageString));
+      synchronized (dataSinks) {
+        dataSinks.forEach(sink -> sink.publish(deviceId, topic, messageString));
+      }
     } catch (Exception e) {
       throw new RuntimeException("While sending validation event for " + deviceId, e);
     }
@@ -1033,7 +1153,7 @@ public class Validator {
     }
   }
 
-  private void processValidationReportRaw() {
+  private void processValidationReportRaw() throws Exception {
     ValidationSummary summary = new ValidationSummary();
     Map<String, ValidationState> summaries = new HashMap<>();
 
@@ -1045,30 +1165,79 @@ public class Validator {
 
     Map<String, DeviceValidationEvents> devices = new TreeMap<>();
     Collection<String> targets = targetDevices.isEmpty() ? expectedDevices : targetDevices;
-    for (String deviceId : reportingDevices.keySet()) {
+    for (DeviceReports reports : collectDeviceReports(targets)) {
+      summary.correct_devices.addAll(reports.correct);
+      summary.pending_devices.addAll(reports.pending);
+      summary.error_devices.addAll(reports.error);
+      devices.putAll(reports.devices);
+      summaries.putAll(reports.summaries);
+    }
+    summary.correct_devices.sort(null);
+    summary.pending_devices.sort(null);
+    summary.error_devices.sort(null);
+
+    summary.missing_devices = new ArrayList<>(targets);
+    summary.missing_devices.removeAll(summary.error_devices);
+    summary.missing_devices.removeAll(summary.correct_devices);
+    summary.missing_devices.removeAll(summary.pending_devices);
+
+    System.err.println("Updating validation reports to " + outBaseDir.getAbsolutePath());
+    sendValidationReport(makeValidationReport(summary, devices));
+    sendDeviceValidationReports(summaries);
+  }
+
+  /**
+   * Collect the per-device report entries. When sharded, each shard reports on its own devices
+   * (queued behind any pending messages), so ReportingDevice state is never touched from here.
+   */
+  @VisibleForTesting
+  List<DeviceReports> collectDeviceReports(Collection<String> targets) throws Exception {
+    List<ThreadPoolExecutor> shards = validationShards;
+    if (shards == null) {
+      return List.of(reportDevices(reportingDevices.keySet(), targets));
+    }
+    List<Future<DeviceReports>> futures = new ArrayList<>();
+    for (int index = 0; index < shards.size(); index++) {
+      int shard = index;
+      futures.add(shards.get(shard).submit(() -> reportDevices(reportingDevices.keySet().stream()
+          .filter(deviceId -> shardIndex(deviceId) == shard).toList(), targets)));
+    }
+    List<DeviceReports> results = new ArrayList<>();
+    for (Future<DeviceReports> future : futures) {
+      results.add(future.get());
+    }
+    return results;
+  }
+
+  private DeviceReports reportDevices(Collection<String> deviceIds, Collection<String> targets) {
+    DeviceReports reports = new DeviceReports();
+    for (String deviceId : deviceIds) {
       ReportingDevice deviceInfo = reportingDevices.get(deviceId);
-      ValidationState deviceState = summaries.computeIfAbsent(deviceId,
+      if (deviceInfo == null) {
+        continue;
+      }
+      ValidationState deviceState = reports.summaries.computeIfAbsent(deviceId,
           id -> makeDeviceValidationState(deviceInfo));
       deviceInfo.expireEntries(getNow());
       boolean expected = targets.contains(deviceId);
       if (deviceInfo.hasErrors()) {
-        DeviceValidationEvents event = getValidationEvents(devices, deviceInfo);
+        DeviceValidationEvents event = getValidationEvents(reports.devices, deviceInfo);
         deviceState.last_updated = event.last_seen;
         event.status = ReportingDevice.getSummaryEntry(deviceInfo.getErrors(null, null));
         if (expected) {
-          summary.error_devices.add(deviceId);
+          reports.error.add(deviceId);
         } else {
           event.status.category = Category.VALIDATION_DEVICE_EXTRA;
           event.status.level = Level.WARNING.value();
         }
       } else if (deviceInfo.seenRecently(getNow())) {
-        DeviceValidationEvents event = getValidationEvents(devices, deviceInfo);
+        DeviceValidationEvents event = getValidationEvents(reports.devices, deviceInfo);
         event.status = ReportingDevice.getSummaryEntry(deviceInfo.getErrors(null, null));
         if (expected) {
           if (isPending(deviceInfo)) {
-            summary.pending_devices.add(deviceId);
+            reports.pending.add(deviceId);
           } else {
-            summary.correct_devices.add(deviceId);
+            reports.correct.add(deviceId);
           }
         } else {
           event.status.category = Category.VALIDATION_DEVICE_EXTRA;
@@ -1076,15 +1245,7 @@ public class Validator {
         }
       }
     }
-
-    summary.missing_devices = new ArrayList<>(targets);
-    summary.missing_devices.removeAll(summary.error_devices);
-    summary.missing_devices.removeAll(summary.correct_devices);
-    summary.missing_devices.removeAll(summary.pending_devices);
-
-    System.err.println("Updating validation reports to " + outBaseDir.getAbsolutePath());
-    sendValidationReport(makeValidationReport(summary, devices));
-    sendDeviceValidationReports(summaries);
+    return reports;
   }
 
   private boolean isPending(ReportingDevice device) {
@@ -1175,7 +1336,7 @@ public class Validator {
         new ErrorMap(format(SCHEMA_VALIDATION_FORMAT, schemaFiles.size()));
     for (File schemaFile : schemaFiles) {
       try {
-        JsonSchema schema = getSchema(schemaFile);
+        SchemaValidator schema = getSchema(schemaFile);
         String fileName = schemaFile.getName();
         ErrorMap validateExceptions =
             new ErrorMap(format(TARGET_VALIDATION_FORMAT, targetFiles.size(), fileName));
@@ -1214,18 +1375,8 @@ public class Validator {
     }
   }
 
-  private JsonSchema getSchema(File schemaFile) {
-    try (InputStream schemaStream = Files.newInputStream(schemaFile.toPath())) {
-      return JsonSchemaFactory.newBuilder()
-          .setLoadingConfiguration(
-              LoadingConfiguration.newBuilder()
-                  .addScheme("file", new RelativeDownloader())
-                  .freeze())
-          .freeze()
-          .getJsonSchema(OBJECT_MAPPER.readTree(schemaStream));
-    } catch (Exception e) {
-      throw new RuntimeException("While loading schema " + schemaFile.getAbsolutePath(), e);
-    }
+  private SchemaValidator getSchema(File schemaFile) {
+    return SchemaValidator.load(schemaEngine, schemaFile, schemaRoot);
   }
 
   private List<File> makeFileList(String prefix, String spec) {
@@ -1253,7 +1404,7 @@ public class Validator {
   }
 
   private void validateFile(
-      String prefix, String targetFile, String schemaName, JsonSchema schema) {
+      String prefix, String targetFile, String schemaName, SchemaValidator schema) {
     final File targetOut = getOutputPath(prefix, targetFile.replace(".json", ".out"));
     File outputFile = getOutputPath(prefix, targetFile);
     File inputFile = new File(targetFile);
@@ -1371,23 +1522,15 @@ public class Validator {
     }
   }
 
-  class RelativeDownloader implements URIDownloader {
-
-    private static final String FILE_URL_PREFIX = "file:";
+  /**
+   * Report entries for a set of devices, to be merged into the overall validation summary.
+   */
+  static class DeviceReports {
 
-    @Override
-    public InputStream fetch(URI source) {
-      String url = source.toString();
-      try {
-        if (!url.startsWith(FILE_URL_PREFIX)) {
-          throw new IllegalStateException("Expected path to start with " + FILE_URL_PREFIX);
-        }
-        String newUrl =
-            FILE_URL_PREFIX + new File(schemaRoot, url.substring(FILE_URL_PREFIX.length()));
-        return (InputStream) (new URL(newUrl)).getContent();
-      } catch (Exception e) {
-        throw new RuntimeException("While loading URL " + url, e);
-      }
-    }
+    final List<String> correct = new ArrayList<>();
+    final List<String> pending = new ArrayList<>();
+    final List<String> error = new ArrayList<>();
+    final Map<String, DeviceValidationEvents> devices = new HashMap<>();
+    final Map<String, ValidationState> summaries = new HashMap<>();
   }
 }
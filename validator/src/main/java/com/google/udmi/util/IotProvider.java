@@ -3,6 +3,8 @@ package com.google.udmi.util;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import udmi.schema.CloudModel;
 import udmi.schema.Credential;
 import udmi.schema.Envelope.SubFolder;
@@ -117,4 +119,45 @@ public interface IotProvider {
   }
 
   boolean stillActive();
+
+  /**
+   * Asynchronous version of {@link #updateConfig}. Providers that support pipelined requests
+   * should override the async methods, otherwise the operation is executed synchronously.
+   */
+  default CompletableFuture<Void> updateConfigAsync(String deviceId, SubFolder subFolder,
+      String config) {
+    return invokeNow(() -> {
+      updateConfig(deviceId, subFolder, config);
+      return null;
+    });
+  }
+
+  /**
+   * Asynchronous version of {@link #updateDevice}.
+   */
+  default CompletableFuture<CloudModel> updateDeviceAsync(String deviceId, CloudModel device) {
+    return invokeNow(() -> {
+      updateDevice(deviceId, device);
+      return device;
+    });
+  }
+
+  /**
+   * Asynchronous version of {@link #createResource}.
+   */
+  default CompletableFuture<CloudModel> createResourceAsync(String deviceId,
+      CloudModel makeDevice) {
+    return invokeNow(() -> {
+      createResource(deviceId, makeDevice);
+      return makeDevice;
+    });
+  }
+
+  private static <T> CompletableFuture<T> invokeNow(Supplier<T> action) {
+    try {
+      return CompletableFuture.completedFuture(action.get());
+    } catch (Exception e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
 }
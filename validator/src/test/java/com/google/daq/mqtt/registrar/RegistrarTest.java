@@ -30,6 +30,7 @@ import com.google.daq.mqtt.util.IotMockProvider;
 import com.google.daq.mqtt.util.IotMockProvider.ActionType;
 import com.google.daq.mqtt.util.IotMockProvider.MockAction;
 import com.google.udmi.util.ExceptionMap.ExceptionCategory;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -225,6 +226,24 @@ public class RegistrarTest {
             Collectors.toSet()));
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void optimizedRerun() {
+    new File(MOCK_SITE, "out/registration_fingerprints.json").delete();
+    List<MockAction> firstActions = executeRegistrarPopulated(ImmutableList.of("-o"));
+    Registrar registrar = getRegistrar(ImmutableList.of("-o"));
+    registrar.execute();
+    List<MockAction> secondActions = registrar.getMockActions();
+
+    assertTrue("fewer devices updated on rerun",
+        filterActions(secondActions, UPDATE_DEVICE_ACTION).size()
+            < filterActions(firstActions, UPDATE_DEVICE_ACTION).size());
+    Map<String, Object> optimized =
+        (Map<String, Object>) registrar.getLastErrorSummary().get("optimize");
+    assertNotNull("optimize summary", optimized);
+    assertTrue("unchanged devices", (Integer) optimized.get("unchanged") > 0);
+  }
+
   @Test
   public void scanAddrMismatchHandlingTest() {
     Registrar registrar = getRegistrar(ImmutableList.of());
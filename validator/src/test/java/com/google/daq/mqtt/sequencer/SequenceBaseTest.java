@@ -2,6 +2,8 @@ package com.google.daq.mqtt.sequencer;
 
 import static com.google.udmi.util.JsonUtil.stringify;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.google.daq.mqtt.TestCommon;
@@ -9,6 +11,7 @@ import com.google.daq.mqtt.util.TimePeriodConstants;
 import com.google.daq.mqtt.validator.Validator.MessageBundle;
 import java.lang.annotation.Annotation;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.Description;
@@ -18,6 +21,9 @@ import org.junit.runner.Description;
  */
 public class SequenceBaseTest {
 
+  private static final long BLOCKED_WAIT_MS = 10000;
+  private static final long DRAIN_WAIT_MS = 500;
+
   /**
    * Reset the state of the underlying infrastructure for each test.
    */
@@ -67,6 +73,45 @@ public class SequenceBaseTest {
     baseTwo.testWatcher.finished(testTwo);
   }
 
+  @Test
+  public void messageDuringBlockedWait() throws Exception {
+    final SequenceBase baseOne = new SequenceBase();
+    Description testOne = makeTestDescription("test_one");
+    baseOne.testWatcher.starting(testOne);
+    drainMessages(baseOne);
+
+    AtomicReference<Object> blockedResult = new AtomicReference<>();
+    Thread blocked = new Thread(() -> {
+      try {
+        blockedResult.set(baseOne.nextMessageBundle(BLOCKED_WAIT_MS));
+      } catch (RuntimeException e) {
+        blockedResult.set(e);
+      }
+    });
+    blocked.start();
+    while (blocked.isAlive() && blocked.getState() != Thread.State.TIMED_WAITING) {
+      Thread.sleep(10);
+    }
+
+    baseOne.testWatcher.finished(testOne);
+    final SequenceBase baseTwo = new SequenceBase();
+    Description testTwo = makeTestDescription("test_two");
+    baseTwo.testWatcher.starting(testTwo);
+
+    blocked.join(BLOCKED_WAIT_MS);
+    assertTrue("stale wait rejected", blockedResult.get() instanceof RuntimeException);
+    assertNotNull("message preserved for active test",
+        baseTwo.nextMessageBundle(DRAIN_WAIT_MS));
+    baseTwo.testWatcher.finished(testTwo);
+  }
+
+  private static void drainMessages(SequenceBase base) {
+    MessageBundle messageBundle;
+    do {
+      messageBundle = base.nextMessageBundle(DRAIN_WAIT_MS);
+    } while (messageBundle != null);
+  }
+
   private static MessageBundle waitForNextMessage(SequenceBase baseOne) {
     MessageBundle messageBundle;
     do {
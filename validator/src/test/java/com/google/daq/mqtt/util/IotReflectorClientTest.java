@@ -0,0 +1,172 @@
+package com.google.daq.mqtt.util;
+
+import static com.google.udmi.util.Common.TRANSACTION_KEY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.daq.mqtt.util.MessagePublisher.QuerySpeed;
+import com.google.daq.mqtt.validator.Validator.MessageBundle;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import udmi.schema.CloudModel;
+import udmi.schema.CloudModel.ModelOperation;
+import udmi.schema.Envelope.SubFolder;
+
+/**
+ * Tests for pipelined reflector transactions.
+ */
+public class IotReflectorClientTest {
+
+  private static final long WAIT_SEC = 5;
+  private static final String SESSION_PREFIX = "RC:test.";
+  private final BlockingQueue<MessageBundle> replies = new LinkedBlockingQueue<>();
+  private final List<String> published = new CopyOnWriteArrayList<>();
+  private volatile boolean active = true;
+  private IotReflectorClient client;
+
+  private IotReflectorClient makeClient(int maxInFlight) {
+    com.google.bos.iot.core.proxy.IotReflectorClient messageClient =
+        mock(com.google.bos.iot.core.proxy.IotReflectorClient.class);
+    when(messageClient.getSessionPrefix()).thenReturn(SESSION_PREFIX);
+    when(messageClient.isActive()).thenAnswer(invocation -> active);
+    when(messageClient.getLastProgressEvent()).thenReturn(Instant.EPOCH);
+    when(messageClient.takeNextMessage(QuerySpeed.QUICK)).thenAnswer(
+        invocation -> replies.poll(QuerySpeed.QUICK.seconds(), TimeUnit.SECONDS));
+    doAnswer(invocation -> {
+      published.add(invocation.getArgument(3));
+      return invocation.getArgument(3);
+    }).when(messageClient).publish(any(), anyString(), anyString(), anyString());
+    client = new IotReflectorClient(messageClient, maxInFlight);
+    return client;
+  }
+
+  @After
+  public void shutdown() {
+    active = false;
+    if (client != null) {
+      client.shutdown();
+    }
+  }
+
+  private static CloudModel updateModel() {
+    CloudModel model = new CloudModel();
+    model.operation = ModelOperation.UPDATE;
+    return model;
+  }
+
+  private void reply(String transactionId, String numId) {
+    MessageBundle bundle = new MessageBundle();
+    bundle.attributes = new HashMap<>(Map.of(TRANSACTION_KEY, transactionId));
+    bundle.message = new HashMap<>(Map.of("operation", ModelOperation.UPDATE.toString(),
+        "num_id", numId));
+    replies.add(bundle);
+  }
+
+  private static Throwable failure(CompletableFuture<?> future) throws Exception {
+    try {
+      future.get(WAIT_SEC, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      return e.getCause();
+    }
+    fail("expected transaction failure");
+    return null;
+  }
+
+  @Test
+  public void outOfOrderReplies() throws Exception {
+    makeClient(IotReflectorClient.DEFAULT_MAX_IN_FLIGHT);
+    CompletableFuture<CloudModel> first = client.updateDeviceAsync("AHU-1", updateModel());
+    CompletableFuture<CloudModel> second = client.updateDeviceAsync("AHU-2", updateModel());
+    CompletableFuture<CloudModel> third = client.updateDeviceAsync("AHU-3", updateModel());
+    assertEquals("pipelined transactions", 3, published.size());
+
+    reply(published.get(2), "3");
+    reply(published.get(0), "1");
+    reply(published.get(1), "2");
+
+    assertEquals("first reply", "1", first.get(WAIT_SEC, TimeUnit.SECONDS).num_id);
+    assertEquals("second reply", "2", second.get(WAIT_SEC, TimeUnit.SECONDS).num_id);
+    assertEquals("third reply", "3", third.get(WAIT_SEC, TimeUnit.SECONDS).num_id);
+  }
+
+  @Test
+  public void blockingContinuation() throws Exception {
+    makeClient(IotReflectorClient.DEFAULT_MAX_IN_FLIGHT);
+    CompletableFuture<CloudModel> first = client.updateDeviceAsync("AHU-1", updateModel());
+    CompletableFuture<CloudModel> second = client.updateDeviceAsync("AHU-2", updateModel());
+    CompletableFuture<CloudModel> chained = first.thenApply(model -> second.join());
+
+    reply(published.get(0), "1");
+    reply(published.get(1), "2");
+
+    assertEquals("chained reply", "2", chained.get(WAIT_SEC, TimeUnit.SECONDS).num_id);
+  }
+
+  @Test
+  public void inFlightLimit() throws Exception {
+    makeClient(2);
+    CompletableFuture<CloudModel> first = client.updateDeviceAsync("AHU-1", updateModel());
+    client.updateDeviceAsync("AHU-2", updateModel());
+    CompletableFuture<CloudModel> third = client.updateDeviceAsync("AHU-3", updateModel());
+    assertEquals("limited transactions", 2, published.size());
+    assertFalse("queued transaction", third.isDone());
+
+    reply(published.get(0), "1");
+    first.get(WAIT_SEC, TimeUnit.SECONDS);
+    assertEquals("queued transaction sent", 3, published.size());
+
+    reply(published.get(2), "3");
+    assertEquals("queued reply", "3", third.get(WAIT_SEC, TimeUnit.SECONDS).num_id);
+  }
+
+  @Test
+  public void transactionExpiry() throws Exception {
+    makeClient(1);
+    CompletableFuture<Void> config = client.updateConfigAsync("AHU-1", SubFolder.UPDATE, "{}");
+    CompletableFuture<CloudModel> queued = client.updateDeviceAsync("AHU-2", updateModel());
+    assertEquals("limited transactions", 1, published.size());
+
+    client.expireTransactions(Instant.now());
+    assertFalse("not yet expired", config.isDone());
+
+    client.expireTransactions(Instant.now().plusSeconds(QuerySpeed.LONG.seconds() + 1));
+    assertTrue("timeout failure",
+        failure(config).getMessage().contains("UDMIS reflector timeout"));
+    assertEquals("queued transaction sent after expiry", 2, published.size());
+
+    reply(published.get(1), "2");
+    assertEquals("queued reply", "2", queued.get(WAIT_SEC, TimeUnit.SECONDS).num_id);
+  }
+
+  @Test
+  public void shutdownFailsPending() throws Exception {
+    makeClient(1);
+    CompletableFuture<CloudModel> pending = client.updateDeviceAsync("AHU-1", updateModel());
+    CompletableFuture<CloudModel> queued = client.updateDeviceAsync("AHU-2", updateModel());
+    assertEquals("limited transactions", 1, published.size());
+
+    active = false;
+    client.shutdown();
+
+    assertTrue("pending failed", failure(pending) instanceof IllegalStateException);
+    assertTrue("queued failed", failure(queued) instanceof IllegalStateException);
+    assertEquals("queued transaction never sent", 1, published.size());
+  }
+}
@@ -0,0 +1,136 @@
+package com.google.daq.mqtt.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.Test;
+import udmi.schema.CloudModel;
+import udmi.schema.CloudModel.ModelOperation;
+
+/**
+ * Tests for coalescing model operations into batches.
+ */
+public class ModelBatcherTest {
+
+  private final List<Map<String, CloudModel>> sent = new ArrayList<>();
+  private final List<CompletableFuture<Map<String, CloudModel>>> replies = new ArrayList<>();
+
+  private CompletableFuture<Map<String, CloudModel>> sender(Map<String, CloudModel> models) {
+    CompletableFuture<Map<String, CloudModel>> reply = new CompletableFuture<>();
+    sent.add(models);
+    replies.add(reply);
+    return reply;
+  }
+
+  private static CloudModel makeModel(ModelOperation operation) {
+    CloudModel model = new CloudModel();
+    model.operation = operation;
+    return model;
+  }
+
+  private static Map<String, CloudModel> receipts(Map<String, CloudModel> models) {
+    Map<String, CloudModel> receipts = new HashMap<>();
+    models.forEach((deviceId, model) -> {
+      CloudModel receipt = makeModel(model.operation);
+      receipt.num_id = deviceId;
+      receipts.put(deviceId, receipt);
+    });
+    return receipts;
+  }
+
+  @Test
+  public void coalesceWhileOutstanding() {
+    ModelBatcher batcher = new ModelBatcher(this::sender, 3, 1);
+    CompletableFuture<CloudModel> first = batcher.submit("AHU-1", makeModel(ModelOperation.CREATE));
+    assertEquals("sent immediately", 1, sent.size());
+
+    List<CompletableFuture<CloudModel>> queued = new ArrayList<>();
+    for (int i = 2; i <= 6; i++) {
+      queued.add(batcher.submit("AHU-" + i, makeModel(ModelOperation.UPDATE)));
+    }
+    assertEquals("held while outstanding", 1, sent.size());
+
+    replies.get(0).complete(receipts(sent.get(0)));
+    assertEquals("first receipt", "AHU-1", first.join().num_id);
+    assertEquals("next batch sent", 2, sent.size());
+    assertEquals("batch size limit", 3, sent.get(1).size());
+
+    replies.get(1).complete(receipts(sent.get(1)));
+    replies.get(2).complete(receipts(sent.get(2)));
+    assertEquals("all batches sent", 3, sent.size());
+    for (int i = 0; i < queued.size(); i++) {
+      assertEquals("queued receipt", "AHU-" + (i + 2), queued.get(i).join().num_id);
+    }
+    assertEquals("Batched 6 model operations into 3 transactions", batcher.getSummary());
+  }
+
+  @Test
+  public void repeatedDeviceOrder() {
+    ModelBatcher batcher = new ModelBatcher(this::sender, 10, 1);
+    batcher.submit("AHU-1", makeModel(ModelOperation.CREATE));
+    batcher.submit("AHU-2", makeModel(ModelOperation.CREATE));
+    batcher.submit("AHU-2", makeModel(ModelOperation.BLOCK));
+    batcher.submit("AHU-3", makeModel(ModelOperation.CREATE));
+    replies.get(0).complete(receipts(sent.get(0)));
+    assertEquals("split at repeated device", List.of("AHU-2"), List.copyOf(sent.get(1).keySet()));
+    replies.get(1).complete(receipts(sent.get(1)));
+    assertEquals("repeated device batch", ModelOperation.BLOCK,
+        sent.get(2).get("AHU-2").operation);
+  }
+
+  @Test
+  public void repeatedDeviceOutstanding() {
+    ModelBatcher batcher = new ModelBatcher(this::sender, 10, 2);
+    batcher.submit("AHU-1", makeModel(ModelOperation.CREATE));
+    CompletableFuture<CloudModel> blocked =
+        batcher.submit("AHU-1", makeModel(ModelOperation.BLOCK));
+    assertEquals("held back while device outstanding", 1, sent.size());
+
+    batcher.submit("AHU-2", makeModel(ModelOperation.CREATE));
+    assertEquals("other device not held back", List.of("AHU-2"),
+        List.copyOf(sent.get(1).keySet()));
+
+    replies.get(0).complete(receipts(sent.get(0)));
+    assertEquals("released after outstanding batch", 3, sent.size());
+    assertEquals("repeated device batch", ModelOperation.BLOCK,
+        sent.get(2).get("AHU-1").operation);
+    replies.get(2).complete(receipts(sent.get(2)));
+    assertEquals("repeated device receipt", ModelOperation.BLOCK, blocked.join().operation);
+  }
+
+  @Test
+  public void perDeviceErrors() {
+    ModelBatcher batcher = new ModelBatcher(this::sender, 10, 1);
+    batcher.submit("AHU-0", makeModel(ModelOperation.CREATE));
+    CompletableFuture<CloudModel> good = batcher.submit("AHU-1", makeModel(ModelOperation.CREATE));
+    CompletableFuture<CloudModel> bad = batcher.submit("AHU-2", makeModel(ModelOperation.CREATE));
+    CompletableFuture<CloudModel> missing =
+        batcher.submit("AHU-3", makeModel(ModelOperation.CREATE));
+    replies.get(0).complete(receipts(sent.get(0)));
+
+    Map<String, CloudModel> receipts = receipts(sent.get(1));
+    receipts.get("AHU-2").operation = ModelOperation.ERROR;
+    receipts.get("AHU-2").detail = "device exploded";
+    receipts.remove("AHU-3");
+    replies.get(1).complete(receipts);
+
+    assertEquals("good receipt", "AHU-1", good.join().num_id);
+    assertTrue("error detail", failure(bad).contains("device exploded"));
+    assertTrue("missing receipt", failure(missing).contains("Missing batch receipt"));
+  }
+
+  private static String failure(CompletableFuture<CloudModel> future) {
+    try {
+      future.join();
+      throw new AssertionError("expected failure");
+    } catch (CompletionException e) {
+      return e.getCause().getMessage();
+    }
+  }
+}
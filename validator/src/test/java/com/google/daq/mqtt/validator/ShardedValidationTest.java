@@ -0,0 +1,106 @@
+package com.google.daq.mqtt.validator;
+
+import static com.google.udmi.util.Common.DEVICE_ID_KEY;
+import static com.google.udmi.util.Common.PUBLISH_TIME_KEY;
+import static com.google.udmi.util.JsonUtil.isoConvert;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.daq.mqtt.TestCommon;
+import com.google.daq.mqtt.validator.Validator.DeviceReports;
+import com.google.daq.mqtt.validator.Validator.MessageBundle;
+import com.google.udmi.util.SiteModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import org.junit.Test;
+
+/**
+ * Tests for validation sharded across multiple worker threads.
+ */
+public class ShardedValidationTest extends TestBase {
+
+  private static final int SHARDS = 4;
+  private static final int DEVICES = 10;
+  private static final int MESSAGES = 20;
+  private static final List<String> TEST_ARGS = ImmutableList.of(
+      "-n",
+      "-j", Integer.toString(SHARDS),
+      "-p", SiteModel.MOCK_PROJECT,
+      "-a", TestCommon.SCHEMA_SPEC,
+      "-s", TestCommon.SITE_DIR);
+  private final Map<MessageBundle, Integer> sequences = new IdentityHashMap<>();
+  private final Map<String, List<Integer>> processed = new ConcurrentHashMap<>();
+  private final Map<String, Set<String>> threads = new ConcurrentHashMap<>();
+  private final Validator validator = new Validator(TEST_ARGS) {
+    @Override
+    void validateBundle(MessageBundle message) {
+      String deviceId = message.attributes.get(DEVICE_ID_KEY);
+      processed.computeIfAbsent(deviceId, key -> Collections.synchronizedList(new ArrayList<>()))
+          .add(sequences.get(message));
+      threads.computeIfAbsent(deviceId, key -> ConcurrentHashMap.newKeySet())
+          .add(Thread.currentThread().getName());
+      super.validateBundle(message);
+    }
+  };
+
+  private MessageBundle deviceBundle(String deviceId, int sequence) {
+    MessageBundle bundle = getMessageBundle("events", "pointset", basePointsetEvents());
+    String now = isoConvert(new Date());
+    bundle.message.put("timestamp", now);
+    bundle.attributes.put(PUBLISH_TIME_KEY, now);
+    bundle.attributes.put(DEVICE_ID_KEY, deviceId);
+    sequences.put(bundle, sequence);
+    return bundle;
+  }
+
+  @Test
+  public void mixedDeviceStream() throws Exception {
+    List<String> deviceIds = IntStream.range(0, DEVICES).mapToObj(index -> "AHU-" + index)
+        .toList();
+    List<MessageBundle> bundles = new ArrayList<>();
+    for (int sequence = 0; sequence < MESSAGES; sequence++) {
+      for (String deviceId : deviceIds) {
+        bundles.add(deviceBundle(deviceId, sequence));
+      }
+    }
+
+    validator.startValidationShards();
+    try {
+      bundles.forEach(validator::dispatchMessage);
+      List<DeviceReports> reports = validator.collectDeviceReports(deviceIds);
+
+      assertEquals("shard reports", SHARDS, reports.size());
+      List<String> reported = new ArrayList<>();
+      reports.forEach(report -> {
+        reported.addAll(report.correct);
+        reported.addAll(report.pending);
+        reported.addAll(report.error);
+      });
+      assertEquals("each device reported once", DEVICES, reported.size());
+      assertEquals("reported devices", new TreeSet<>(deviceIds), new TreeSet<>(reported));
+      assertEquals("device events", DEVICES,
+          reports.stream().mapToInt(report -> report.devices.size()).sum());
+    } finally {
+      validator.stopValidationShards();
+    }
+
+    List<Integer> expected = IntStream.range(0, MESSAGES).boxed().toList();
+    Set<String> usedThreads = new HashSet<>();
+    for (String deviceId : deviceIds) {
+      assertEquals("message order for " + deviceId, expected, processed.get(deviceId));
+      assertEquals("threads for " + deviceId, 1, threads.get(deviceId).size());
+      usedThreads.addAll(threads.get(deviceId));
+    }
+    assertTrue("messages spread across shards", usedThreads.size() > 1);
+  }
+}